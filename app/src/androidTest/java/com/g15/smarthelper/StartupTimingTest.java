@@ -0,0 +1,68 @@
+package com.g15.smarthelper;
+
+import android.app.Instrumentation;
+import android.os.Bundle;
+import android.util.Log;
+
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Measures the time from launching the {@link MainActivity} until its first frame is drawn. The
+ * activity is launched repeatedly in the warm process of the test, so the results show the cost
+ * of the activity and of the services it starts, not of the process start.
+ *
+ * The app is measured as it is configured, so run the test once with all scenarios disabled and
+ * once with a scenario enabled. The optional argument {@code label} names the measurement:
+ * <pre>
+ * adb shell am instrument -w -e class com.g15.smarthelper.StartupTimingTest -e label no_scenario \
+ *     com.g15.smarthelper.test/androidx.test.runner.AndroidJUnitRunner
+ * </pre>
+ * The medians are reported as instrumentation status and logged. The test only uses the activity,
+ * so it compiles against older builds as well and running it on two builds compares them.
+ */
+@RunWith(AndroidJUnit4.class)
+public class StartupTimingTest {
+
+    private static final String LOG_TAG = "StartupTimingTest";
+    private static final int WARMUP_RUNS = 2;
+    private static final int RUNS = 10;
+
+    @Test
+    public void firstFrame() {
+        Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+        String name = InstrumentationRegistry.getArguments().getString("label", "startup");
+
+        long[] times = new long[RUNS];
+        for (int i = -WARMUP_RUNS; i < RUNS; i++) {
+            long start = System.nanoTime();
+            ActivityScenario<MainActivity> activity = ActivityScenario.launch(MainActivity.class);
+            // The main thread only becomes idle after the first frame has been drawn.
+            instrumentation.waitForIdleSync();
+            long elapsed = System.nanoTime() - start;
+            activity.close();
+            if (i >= 0) {
+                times[i] = elapsed;
+            }
+        }
+        Arrays.sort(times);
+        long medianMillis = times[RUNS / 2] / 1000000;
+        assertTrue(medianMillis > 0);
+
+        Bundle results = new Bundle();
+        results.putLong(name + ".first_frame_median_ms", medianMillis);
+        results.putLong(name + ".first_frame_min_ms", times[0] / 1000000);
+        results.putLong(name + ".first_frame_max_ms", times[RUNS - 1] / 1000000);
+        instrumentation.sendStatus(0, results);
+        Log.i(LOG_TAG, name + ": first frame after " + medianMillis + "ms (median of " + RUNS
+                + " launches), " + results);
+    }
+}
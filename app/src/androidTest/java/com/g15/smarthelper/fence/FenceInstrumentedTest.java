@@ -0,0 +1,52 @@
+package com.g15.smarthelper.fence;
+
+import android.location.Location;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the fence distance checks with {@link Location#distanceTo(Location)} on a device.
+ */
+@RunWith(AndroidJUnit4.class)
+public class FenceInstrumentedTest {
+
+    private static final int MAX_RADIUS = 10000;
+
+    @Test
+    public void fenceChecks_matchLocationDistance() {
+        Random random = new Random(3);
+        Location center = new Location("test");
+        Location location = new Location("test");
+        for (int i = 0; i < 20000; i++) {
+            int radius = 10 + random.nextInt(MAX_RADIUS);
+            Fence fence = new Fence(0, random.nextDouble() * 160 - 80,
+                    random.nextDouble() * 340 - 170, radius);
+            double distance = random.nextDouble() * radius * 1.5;
+            double bearing = random.nextDouble() * 2 * Math.PI;
+            double latitude = fence.getLatitude() + distance * Math.cos(bearing) / 110574;
+            double longitude = fence.getLongitude() + distance * Math.sin(bearing)
+                    / (111320 * Math.cos(Math.toRadians(fence.getLatitude())));
+
+            center.setLatitude(fence.getLatitude());
+            center.setLongitude(fence.getLongitude());
+            location.setLatitude(latitude);
+            location.setLongitude(longitude);
+            float expected = location.distanceTo(center);
+
+            assertEquals(expected, Geodesy.distance(latitude, longitude,
+                    fence.getLatitude(), fence.getLongitude()), 0.01 + expected * 1e-6);
+            assertEquals(expected, fence.planarDistance(latitude, longitude), 0.2);
+            // Skip locations where the float precision of distanceTo decides the result.
+            if (Math.abs(expected - radius) > 0.01) {
+                assertEquals(expected < radius, fence.contains(latitude, longitude));
+            }
+        }
+    }
+}
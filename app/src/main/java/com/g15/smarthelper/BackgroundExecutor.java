@@ -0,0 +1,63 @@
+package com.g15.smarthelper;
+
+import android.os.Process;
+import android.util.Log;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link BackgroundExecutor} runs the short disk and package manager tasks of the UI and the
+ * receivers off the main thread. The tasks run one after another on a single background thread,
+ * which ends when there is nothing to do.
+ */
+public final class BackgroundExecutor {
+
+    private static final String LOG_TAG = "BackgroundExecutor";
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private static final ThreadPoolExecutor EXECUTOR = createExecutor();
+
+    private BackgroundExecutor() {
+    }
+
+    /**
+     * Queues a task for the background thread.
+     * @param task The task to run.
+     */
+    public static void execute(final Runnable task) {
+        EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    // A failing task must not affect the tasks queued after it.
+                    Log.e(LOG_TAG, "A background task failed.", e);
+                }
+            }
+        });
+    }
+
+    private static ThreadPoolExecutor createExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    @Override
+                    public Thread newThread(final Runnable runnable) {
+                        Thread thread = new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                                runnable.run();
+                            }
+                        }, LOG_TAG);
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
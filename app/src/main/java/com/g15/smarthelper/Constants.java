@@ -3,13 +3,24 @@ package com.g15.smarthelper;
 public class Constants {
 
     // Activity Recognition
-    public static final String BROADCAST_DETECTED_ACTIVITY = "activity_intent";
     public static final long DETECTION_INTERVAL_IN_MILLISECONDS = 5 * 1000; // 5 seconds
     public static final int CONFIDENCE = 70;
+    public static final int ACTIVITY_WINDOW_SIZE = 3; // the last 15 seconds vote on the activity
+    public static final int STILL_SAMPLES_BEFORE_PAUSE = 12; // 1 minute of STILL samples
+
+    // Rules
+    public static final String TIME_ZONE = "Europe/Berlin"; // the time zone of the time windows
+
+    // Event log
+    public static final int EVENT_LOG_CAPACITY = 16384; // 1 MiB of 64 byte records
 
     // Location
-    public static final String BROADCAST_DETECTED_LOCATION = "location_intent";
     public static final long UPDATE_INTERVAL = 20000; // 20 sec
     public static final long FASTEST_UPDATE_INTERVAL = 10000; // 10 sec
     public static final long MAX_WAIT_TIME = UPDATE_INTERVAL * 4; // 80 sec
+
+    // Notifications
+    public static final int NOTIFICATION_BURST = 3; // notifications a scenario may post at once
+    public static final long NOTIFICATION_REFILL_INTERVAL = 10 * 60 * 1000; // 1 more per 10 min
+    public static final long NOTIFICATION_COALESCE_WINDOW = 5 * 60 * 1000; // 5 min
 }
\ No newline at end of file
@@ -7,9 +7,13 @@ import android.content.Intent;
 import android.content.ServiceConnection;
 import android.content.pm.PackageManager;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
 
 import com.g15.smarthelper.Services.DetectedActivitiesService;
 import com.g15.smarthelper.Services.DetectedLocationService;
+import com.g15.smarthelper.metrics.Metrics;
 import com.g15.smarthelper.ui.main.SectionsPagerAdapter;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.google.android.material.tabs.TabLayout;
@@ -23,14 +27,67 @@ import android.util.Log;
 import android.view.View;
 
 
+/**
+ * The main activity shows the settings and the detected context in two tabs.
+ *
+ * The tracking services are only bound while a scenario is enabled. They are bound after the
+ * first frame has been drawn, so creating them does not delay the first frame, or as soon as the
+ * first scenario is enabled. Whether a scenario is enabled is checked on the
+ * {@link BackgroundExecutor}, since loading the scenarios opens their database.
+ */
 public class MainActivity extends AppCompatActivity {
 
     private static final String LOG_TAG = MainActivity.class.getSimpleName();
 
     private DetectedLocationService locationService;
     private DetectedActivitiesService activitiesService;
+    private boolean servicesBound = false;
     private boolean shouldRefreshLocationService = false;
     private boolean shouldRefreshActivityService = false;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private long createTime;
+    private boolean firstFrameRecorded = false;
+    private boolean started = false;
+
+    // A task posted from a frame callback runs after the frame has been drawn.
+    private final Choreographer.FrameCallback frameCallback = new Choreographer.FrameCallback() {
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            handler.post(afterFrame);
+        }
+    };
+
+    private final Runnable afterFrame = new Runnable() {
+        @Override
+        public void run() {
+            if (!firstFrameRecorded) {
+                firstFrameRecorded = true;
+                Metrics.STARTUP_FIRST_FRAME.record(System.nanoTime() - createTime);
+            }
+            final Context context = getApplicationContext();
+            BackgroundExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    final boolean scenarioEnabled =
+                            Scenarios.getInstance(context).isAnyScenarioEnabled();
+                    handler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (!started) {
+                                return;
+                            }
+                            if (scenarioEnabled) {
+                                bindServices();
+                            } else {
+                                Log.v(LOG_TAG, "No scenario enabled, the services are not bound.");
+                            }
+                        }
+                    });
+                }
+            });
+        }
+    };
     protected ServiceConnection locationServiceConnection = new ServiceConnection() {
         @Override
         public void onServiceConnected(ComponentName name, IBinder binder) {
@@ -68,6 +125,7 @@ public class MainActivity extends AppCompatActivity {
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        createTime = System.nanoTime();
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
@@ -95,28 +153,44 @@ public class MainActivity extends AppCompatActivity {
     @Override
     public void onStart() {
         super.onStart();
-
-        Log.v(LOG_TAG, "Binding to location service.");
-        bindService(new Intent(this, DetectedLocationService.class),
-                locationServiceConnection, Context.BIND_AUTO_CREATE);
-        Log.v(LOG_TAG, "Binding to activity service.");
-        bindService(new Intent(this, DetectedActivitiesService.class),
-                activityServiceConnection, Context.BIND_AUTO_CREATE);
+        started = true;
+        Choreographer.getInstance().postFrameCallback(frameCallback);
     }
 
     @Override
     protected void onStop() {
-        if (locationService != null) {
+        started = false;
+        Choreographer.getInstance().removeFrameCallback(frameCallback);
+        handler.removeCallbacks(afterFrame);
+        if (servicesBound) {
             Log.v(LOG_TAG, "Unbinding from location service.");
             unbindService(locationServiceConnection);
-        }
-        if (activitiesService != null) {
             Log.v(LOG_TAG, "Unbinding from activity service.");
             unbindService(activityServiceConnection);
+            servicesBound = false;
+            locationService = null;
+            activitiesService = null;
         }
         super.onStop();
     }
 
+    /**
+     * Binds the location and activity services unless they are already bound. The services are
+     * created by the first binding.
+     */
+    private void bindServices() {
+        if (servicesBound) {
+            return;
+        }
+        Log.v(LOG_TAG, "Binding to location service.");
+        bindService(new Intent(this, DetectedLocationService.class),
+                locationServiceConnection, Context.BIND_AUTO_CREATE);
+        Log.v(LOG_TAG, "Binding to activity service.");
+        bindService(new Intent(this, DetectedActivitiesService.class),
+                activityServiceConnection, Context.BIND_AUTO_CREATE);
+        servicesBound = true;
+    }
+
 
     public void requestLocationUpdates() {
         if (ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED && ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_COARSE_LOCATION) != PackageManager.PERMISSION_GRANTED) {
@@ -125,10 +199,14 @@ public class MainActivity extends AppCompatActivity {
         }
         if (locationService != null) {
             locationService.startTracking();
+        } else {
+            shouldRefreshLocationService = true;
+            bindServices();
         }
     }
 
     public void removeLocationUpdates() {
+        shouldRefreshLocationService = false;
         if (locationService != null) {
             locationService.stopTracking();
         }
@@ -137,10 +215,14 @@ public class MainActivity extends AppCompatActivity {
     public void requestActivityUpdates() {
         if (activitiesService != null) {
             activitiesService.startTracking();
+        } else {
+            shouldRefreshActivityService = true;
+            bindServices();
         }
     }
 
     public void removeActivityUpdates() {
+        shouldRefreshActivityService = false;
         if (activitiesService != null) {
             activitiesService.stopTracking();
         }
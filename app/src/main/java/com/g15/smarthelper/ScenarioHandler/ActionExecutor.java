@@ -0,0 +1,198 @@
+package com.g15.smarthelper.ScenarioHandler;
+
+import android.os.Process;
+import android.util.Log;
+
+import com.g15.smarthelper.Scenarios;
+import com.g15.smarthelper.metrics.Metrics;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The {@link ActionExecutor} runs the {@link ScenarioAction}s of triggered rules on its own
+ * threads, so a slow action never delays the evaluation of the next sensor event.
+ *
+ * An action that is already queued or running is not queued again: a rule that triggers again
+ * before its action has finished runs the action once. An action that takes longer than its
+ * timeout is interrupted. Its scenario stays in flight until the action has returned, so an action
+ * that ignores the interrupt is never run twice at the same time. A few threads run the actions,
+ * so a hanging action does not block the actions of the other scenarios. The threads end when
+ * there is nothing to do.
+ *
+ * The time the actions wait in the queue and the time they take are recorded in the
+ * {@link Metrics}, as are the deduplicated, timed out and failed actions.
+ */
+public class ActionExecutor {
+
+    private static final String LOG_TAG = "ActionExecutor";
+    private static final int THREADS = 2;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private final ActionRegistry registry;
+    private final ThreadPoolExecutor executor;
+    private final ScheduledThreadPoolExecutor watchdog;
+    // The queued or running submission of every scenario, indexed by the scenario ordinal.
+    private final AtomicReferenceArray<Submission> inFlight =
+            new AtomicReferenceArray<>(Scenarios.Scenario.values().length);
+
+    /**
+     * Creates an executor, its threads are started when the first action is submitted.
+     * @param registry The actions of the scenarios.
+     */
+    public ActionExecutor(ActionRegistry registry) {
+        this.registry = registry;
+        this.executor = new ThreadPoolExecutor(THREADS, THREADS, KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(), new ActionThreadFactory());
+        this.executor.allowCoreThreadTimeOut(true);
+        this.watchdog = new ScheduledThreadPoolExecutor(1, new ActionThreadFactory());
+        this.watchdog.setKeepAliveTime(KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+        this.watchdog.allowCoreThreadTimeOut(true);
+        this.watchdog.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Queues the action of a scenario, unless it is already queued or running.
+     * @param scenario The scenario of the triggered rule.
+     * @return true if the action was queued.
+     */
+    public boolean submit(final Scenarios.Scenario scenario) {
+        final ScenarioAction action = registry.get(scenario);
+        if (action == null) {
+            Log.w(LOG_TAG, "No action is registered for " + scenario + ".");
+            return false;
+        }
+        final Submission submission = new Submission(scenario, action);
+        if (!inFlight.compareAndSet(scenario.ordinal(), null, submission)) {
+            Metrics.ACTIONS_DEDUPLICATED.increment();
+            Log.i(LOG_TAG, "The action of " + scenario + " is still in flight.");
+            return false;
+        }
+
+        try {
+            submission.future = executor.submit(submission);
+        } catch (RejectedExecutionException e) {
+            inFlight.compareAndSet(scenario.ordinal(), submission, null);
+            Log.e(LOG_TAG, "Could not queue the action of " + scenario + ".", e);
+            return false;
+        }
+
+        submission.timeout = watchdog.schedule(new Runnable() {
+            @Override
+            public void run() {
+                submission.timeOut();
+            }
+        }, action.getTimeoutMillis(), TimeUnit.MILLISECONDS);
+        if (submission.state.get() == Submission.DONE) {
+            // The action finished before its timeout was scheduled.
+            submission.timeout.cancel(false);
+        }
+        return true;
+    }
+
+    /**
+     * @param scenario A scenario.
+     * @return true if the action of the scenario is queued or running.
+     */
+    public boolean isInFlight(Scenarios.Scenario scenario) {
+        return inFlight.get(scenario.ordinal()) != null;
+    }
+
+    /**
+     * Stops the threads after the queued actions have run. No more actions can be submitted.
+     */
+    public void shutdown() {
+        executor.shutdown();
+        watchdog.shutdown();
+    }
+
+    /**
+     * One submitted action. Only the submission itself clears its flag in {@link #inFlight}, when
+     * the action has returned or when it timed out before it started.
+     */
+    private final class Submission implements Runnable {
+        static final int QUEUED = 0;
+        static final int RUNNING = 1;
+        static final int DONE = 2;
+
+        final Scenarios.Scenario scenario;
+        final ScenarioAction action;
+        final long queued = System.nanoTime();
+        final AtomicInteger state = new AtomicInteger(QUEUED);
+        volatile Future<?> future;
+        volatile ScheduledFuture<?> timeout;
+
+        Submission(Scenarios.Scenario scenario, ScenarioAction action) {
+            this.scenario = scenario;
+            this.action = action;
+        }
+
+        @Override
+        public void run() {
+            if (!state.compareAndSet(QUEUED, RUNNING)) {
+                // The action timed out before it started.
+                return;
+            }
+            long start = System.nanoTime();
+            Metrics.ACTION_QUEUE.record(start - queued);
+            try {
+                action.execute();
+            } catch (RuntimeException e) {
+                // A failing action must not affect the other actions.
+                Metrics.ACTIONS_FAILED.increment();
+                Log.e(LOG_TAG, "The action of " + scenario + " failed.", e);
+            } finally {
+                Metrics.action(scenario).record(System.nanoTime() - start);
+                state.set(DONE);
+                ScheduledFuture<?> scheduledTimeout = timeout;
+                if (scheduledTimeout != null) {
+                    scheduledTimeout.cancel(false);
+                }
+                inFlight.compareAndSet(scenario.ordinal(), this, null);
+            }
+        }
+
+        /**
+         * Interrupts the action when its timeout has passed. An action that did not start yet is
+         * dropped and its flag is cleared, a running action clears its flag when it returns.
+         */
+        void timeOut() {
+            if (state.compareAndSet(QUEUED, DONE)) {
+                future.cancel(false);
+                inFlight.compareAndSet(scenario.ordinal(), this, null);
+            } else if (state.get() == RUNNING) {
+                future.cancel(true);
+            } else {
+                return;
+            }
+            Metrics.ACTIONS_TIMED_OUT.increment();
+            Log.w(LOG_TAG, "The action of " + scenario + " timed out after "
+                    + action.getTimeoutMillis() + "ms.");
+        }
+    }
+
+    private static final class ActionThreadFactory implements ThreadFactory {
+        private static final AtomicInteger COUNT = new AtomicInteger();
+
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, LOG_TAG + "-" + COUNT.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.g15.smarthelper.ScenarioHandler;
+
+import android.content.Context;
+
+import com.g15.smarthelper.Scenarios;
+
+/**
+ * The {@link ActionRegistry} holds the {@link ScenarioAction} of every scenario. It is set up
+ * before it is passed to the {@link ActionExecutor} and not changed afterwards.
+ */
+public class ActionRegistry {
+
+    private final ScenarioAction[] actions = new ScenarioAction[Scenarios.Scenario.values().length];
+
+    /**
+     * Creates a registry with the actions of the app.
+     * @param context A context of the app.
+     * @return The registry.
+     */
+    public static ActionRegistry createDefault(Context context) {
+        Context applicationContext = context.getApplicationContext();
+        ActionRegistry registry = new ActionRegistry();
+        registry.register(new MusicAction(applicationContext));
+        registry.register(new WarningAction(applicationContext));
+        registry.register(new HomeAction(applicationContext));
+        return registry;
+    }
+
+    /**
+     * Sets the action of a scenario, replacing a previously registered one.
+     * @param action The action, it is registered for its scenario.
+     */
+    public void register(ScenarioAction action) {
+        actions[action.getScenario().ordinal()] = action;
+    }
+
+    /**
+     * @param scenario The scenario.
+     * @return The action of the scenario, or null if none is registered.
+     */
+    public ScenarioAction get(Scenarios.Scenario scenario) {
+        return actions[scenario.ordinal()];
+    }
+}
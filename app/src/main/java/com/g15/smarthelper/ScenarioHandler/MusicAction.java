@@ -1,85 +1,58 @@
 package com.g15.smarthelper.ScenarioHandler;
 
-import android.app.Notification;
-import android.app.NotificationChannel;
-import android.app.NotificationManager;
-import android.app.PendingIntent;
 import android.content.Context;
 import android.content.ContextWrapper;
 import android.content.Intent;
-import android.content.pm.PackageManager;
-import android.os.Build;
-import android.net.Uri;
 
 import android.util.Log;
 
-import androidx.core.app.NotificationCompat;
-import androidx.core.app.NotificationManagerCompat;
-
 import com.g15.smarthelper.R;
+import com.g15.smarthelper.Scenarios;
 
 
-public class MusicAction extends ContextWrapper {
+public class MusicAction extends ContextWrapper implements ScenarioAction {
 
     private static final String LOG_TAG = "ScenarioMusic";
-    private static final String CHANNEL_ID = "channel_02";
-    private static int notificationId = 1;
+    private static final long TIMEOUT_MILLIS = 10 * 1000;
+
+    private final MusicTarget target;
 
+    /**
+     * Creates the action and starts to resolve its {@link MusicTarget} in the background.
+     * @param base A context of the app.
+     */
     public MusicAction(Context base) {
         super(base);
+        this.target = MusicTarget.getInstance(base);
     }
 
-    private void createNotificationChannel() {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-            Log.v(LOG_TAG, "Creating notification channel for music scenario action.");
-            CharSequence name = getString(R.string.app_name);
-            String description = getString(R.string.description);
+    @Override
+    public Scenarios.Scenario getScenario() {
+        return Scenarios.Scenario.SCENARIO_MUSIC;
+    }
 
-            NotificationChannel channel = new NotificationChannel(CHANNEL_ID, name, NotificationManager.IMPORTANCE_DEFAULT);
-            channel.setDescription(description);
-            NotificationManager mNotificationManager =
-                    (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
-            mNotificationManager.createNotificationChannel(channel);
-        }
+    @Override
+    public long getTimeoutMillis() {
+        return TIMEOUT_MILLIS;
     }
 
-    public void sendNotification() {
-        createNotificationChannel();
+    @Override
+    public void execute() {
         Intent intent = openMusicApp();
-        intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-        PendingIntent pendingIntent = PendingIntent.getActivity(this, 0, intent, 0);
-
-        Notification notification = new NotificationCompat.Builder(this, CHANNEL_ID)
-                .setSmallIcon(R.drawable.ic_launcher_foreground)
-                .setColor(getResources().getColor(R.color.colorPrimary))
-                .setContentTitle(getString(R.string.music_notification_title))
-                .setContentText(getString(R.string.music_notification_text))
-                .setPriority(NotificationCompat.PRIORITY_DEFAULT)
-                .setContentIntent(pendingIntent)
-                .setAutoCancel(true)
-                .build();
-        NotificationManagerCompat notificationManager = NotificationManagerCompat.from(this);
-        notificationManager.notify(notificationId++, notification);
-        Log.i(LOG_TAG, "Music action notification is sent.");
+        boolean posted = NotificationDispatcher.getInstance(this).post(
+                Scenarios.Scenario.SCENARIO_MUSIC, R.string.music_notification_title,
+                R.string.music_notification_text, intent);
+        if (posted) {
+            Log.i(LOG_TAG, "Music action notification is sent.");
+        }
     }
 
+    /**
+     * Starts the music app and returns the intent that started it.
+     * @return The launch intent, see {@link MusicTarget}.
+     */
     public Intent openMusicApp() {
-        Intent launchIntent;
-
-        try {
-            getPackageManager().getPackageInfo("com.spotify.music", 0);
-            launchIntent = new Intent(Intent.ACTION_VIEW);
-            launchIntent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-            launchIntent.setData(Uri.parse("spotify:playlist:4cgeOaRCHDkVDQPaDrRQFR:play"));
-            launchIntent.putExtra(Intent.EXTRA_REFERRER,
-                    Uri.parse("android-app://" + this.getPackageName()));
-            Log.i(LOG_TAG, "Spotify opened.");
-
-        } catch (PackageManager.NameNotFoundException e) {
-            launchIntent = new Intent("android.intent.action.MUSIC_PLAYER");
-            launchIntent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-            Log.i(LOG_TAG, "Please open other music players.");
-        }
+        Intent launchIntent = target.getLaunchIntent();
         startActivity(launchIntent);
         return launchIntent;
     }
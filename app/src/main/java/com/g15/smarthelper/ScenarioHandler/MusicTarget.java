@@ -0,0 +1,167 @@
+package com.g15.smarthelper.ScenarioHandler;
+
+import android.content.BroadcastReceiver;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.PackageManager;
+import android.content.pm.ResolveInfo;
+import android.net.Uri;
+import android.util.Log;
+
+import com.g15.smarthelper.BackgroundExecutor;
+
+/**
+ * The {@link MusicTarget} resolves which app the music action starts and caches the result, so
+ * a trigger does not have to ask the package manager.
+ *
+ * If Spotify is installed, its playlist is opened by a deep link. Otherwise the music player
+ * the user chose as default is started, or the system lets the user pick a player. The target
+ * is created with the actions when the engine starts and resolved on the
+ * {@link BackgroundExecutor}. It is resolved again when Spotify or the chosen player is installed,
+ * updated or removed, or when any app is installed while there is no default player.
+ */
+public class MusicTarget {
+
+    private static final String LOG_TAG = "MusicTarget";
+    private static final String SPOTIFY_PACKAGE = "com.spotify.music";
+    private static final String SPOTIFY_PLAYLIST = "spotify:playlist:4cgeOaRCHDkVDQPaDrRQFR:play";
+    private static final String ACTION_MUSIC_PLAYER = "android.intent.action.MUSIC_PLAYER";
+    // The package of the system activity that lets the user choose between several apps.
+    private static final String RESOLVER_PACKAGE = "android";
+
+    private static MusicTarget instance;
+
+    private final Context context;
+    // The resolved launch intent, null until it is resolved again after a package change.
+    private volatile Intent target;
+    // The package the target starts, null if the user has to pick a player.
+    private volatile String targetPackage;
+
+    /**
+     * Returns the target of the app. On first use it starts to listen for package changes and is
+     * resolved in the background.
+     * @param context A context of the app.
+     * @return The shared target.
+     */
+    public static synchronized MusicTarget getInstance(Context context) {
+        if (instance == null) {
+            instance = new MusicTarget(context.getApplicationContext());
+            instance.registerPackageReceiver();
+            instance.resolveInBackground(null);
+        }
+        return instance;
+    }
+
+    private MusicTarget(Context context) {
+        this.context = context;
+    }
+
+    /**
+     * Returns the intent that starts the music. Only if the background resolution has not
+     * finished yet the target has to be resolved first.
+     * @return A new copy of the launch intent, it can be changed by the caller.
+     */
+    public Intent getLaunchIntent() {
+        Intent current = target;
+        if (current == null) {
+            current = resolve();
+        }
+        return new Intent(current);
+    }
+
+    /**
+     * Resolves the launch intent and caches it.
+     * @return The resolved intent.
+     */
+    private Intent resolve() {
+        PackageManager packageManager = context.getPackageManager();
+        Intent intent;
+        String packageName = null;
+        try {
+            packageManager.getPackageInfo(SPOTIFY_PACKAGE, 0);
+            intent = new Intent(Intent.ACTION_VIEW);
+            intent.setData(Uri.parse(SPOTIFY_PLAYLIST));
+            intent.putExtra(Intent.EXTRA_REFERRER,
+                    Uri.parse("android-app://" + context.getPackageName()));
+            packageName = SPOTIFY_PACKAGE;
+            Log.i(LOG_TAG, "Music is started in Spotify.");
+        } catch (PackageManager.NameNotFoundException e) {
+            intent = new Intent(ACTION_MUSIC_PLAYER);
+            ResolveInfo player = packageManager.resolveActivity(intent,
+                    PackageManager.MATCH_DEFAULT_ONLY);
+            if (player != null && !RESOLVER_PACKAGE.equals(player.activityInfo.packageName)) {
+                intent.setComponent(new ComponentName(player.activityInfo.packageName,
+                        player.activityInfo.name));
+                packageName = player.activityInfo.packageName;
+                Log.i(LOG_TAG, "Music is started in " + player.activityInfo.packageName + ".");
+            } else {
+                Log.i(LOG_TAG, "No default music player, the user has to pick one.");
+            }
+        }
+        intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        targetPackage = packageName;
+        target = intent;
+        return intent;
+    }
+
+    /**
+     * Resolves the launch intent on the {@link BackgroundExecutor}.
+     * @param result The pending broadcast to finish afterwards or null.
+     */
+    private void resolveInBackground(final BroadcastReceiver.PendingResult result) {
+        BackgroundExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    resolve();
+                } finally {
+                    if (result != null) {
+                        result.finish();
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Checks whether a package change may change the target. Only Spotify and the current player
+     * matter, unless there is no default player: then any new app might be one.
+     * @param packageName The changed package.
+     * @return true if the target has to be resolved again.
+     */
+    private boolean affectsTarget(String packageName) {
+        if (target == null) {
+            return true;
+        }
+        String current = targetPackage;
+        return current == null || SPOTIFY_PACKAGE.equals(packageName)
+                || current.equals(packageName);
+    }
+
+    /**
+     * Resolves the target again when a package that may change it is installed, updated or
+     * removed. The receiver lives as long as the process, like the cached target.
+     */
+    private void registerPackageReceiver() {
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        filter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        filter.addDataScheme("package");
+        context.registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                Uri data = intent.getData();
+                String packageName = data != null ? data.getSchemeSpecificPart() : null;
+                if (packageName == null || !affectsTarget(packageName)) {
+                    return;
+                }
+                Log.d(LOG_TAG, "Package " + packageName + " changed: " + intent.getAction());
+                target = null;
+                resolveInBackground(goAsync());
+            }
+        }, filter);
+    }
+}
@@ -0,0 +1,193 @@
+package com.g15.smarthelper.ScenarioHandler;
+
+import android.app.Notification;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.annotation.StringRes;
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.NotificationManagerCompat;
+
+import com.g15.smarthelper.Constants;
+import com.g15.smarthelper.R;
+import com.g15.smarthelper.Scenarios;
+import com.g15.smarthelper.metrics.Metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The {@link NotificationDispatcher} posts the notifications of the scenario actions.
+ *
+ * The notification channels are created once per process and the content intents are kept as
+ * long as the actions pass equal intents. Every scenario has a single notification: a scenario
+ * that triggers again within the coalesce window updates its notification with the number of
+ * triggers instead of posting another one, and without alerting again. If the notifications of
+ * several scenarios are shown together, they are grouped under a summary. A token bucket per
+ * scenario limits how often its notification is posted, so a rule that flaps at a fence boundary
+ * cannot flood the notification manager.
+ */
+public class NotificationDispatcher {
+
+    private static final String LOG_TAG = "NotificationDispatcher";
+    private static final String GROUP_KEY = "com.g15.smarthelper.ACTIONS";
+    // The channels of the scenarios, indexed by the scenario ordinal.
+    private static final String[] CHANNEL_IDS = {"channel_02", "channel_01", "channel_03"};
+    private static final int NOTIFICATION_ID_BASE = 1;
+    private static final int SUMMARY_ID = 0;
+
+    private static final Scenarios.Scenario[] SCENARIOS = Scenarios.Scenario.values();
+
+    private static NotificationDispatcher instance;
+
+    private final Context context;
+    private final NotificationManagerCompat notificationManager;
+    private final TokenBucket[] buckets = new TokenBucket[SCENARIOS.length];
+    private final Intent[] contentIntents = new Intent[SCENARIOS.length];
+    private final PendingIntent[] pendingIntents = new PendingIntent[SCENARIOS.length];
+    private final CharSequence[] titles = new CharSequence[SCENARIOS.length];
+    private final long[] lastPosted = new long[SCENARIOS.length];
+    private final int[] triggers = new int[SCENARIOS.length];
+
+    /**
+     * Returns the dispatcher of the app and creates the notification channels on first use.
+     * @param context A context of the app.
+     * @return The shared dispatcher.
+     */
+    public static synchronized NotificationDispatcher getInstance(Context context) {
+        if (instance == null) {
+            instance = new NotificationDispatcher(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private NotificationDispatcher(Context context) {
+        this.context = context;
+        this.notificationManager = NotificationManagerCompat.from(context);
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new TokenBucket(Constants.NOTIFICATION_BURST,
+                    Constants.NOTIFICATION_REFILL_INTERVAL);
+        }
+        createNotificationChannels();
+    }
+
+    private void createNotificationChannels() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            Log.v(LOG_TAG, "Creating notification channels for the scenario actions.");
+            CharSequence name = context.getString(R.string.app_name);
+            String description = context.getString(R.string.description);
+            List<NotificationChannel> channels = new ArrayList<>(CHANNEL_IDS.length);
+            for (String channelId : CHANNEL_IDS) {
+                NotificationChannel channel = new NotificationChannel(channelId, name,
+                        NotificationManager.IMPORTANCE_DEFAULT);
+                channel.setDescription(description);
+                channels.add(channel);
+            }
+            NotificationManager manager =
+                    (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+            manager.createNotificationChannels(channels);
+        }
+    }
+
+    /**
+     * Posts or updates the notification of a scenario, unless the scenario has posted too often.
+     * @param scenario The scenario of the action.
+     * @param title The title of the notification.
+     * @param text The text of the notification.
+     * @param contentIntent The activity to start when the notification is tapped.
+     * @return true if the notification was posted, false if it was rate limited.
+     */
+    public synchronized boolean post(Scenarios.Scenario scenario, @StringRes int title,
+                                     @StringRes int text, Intent contentIntent) {
+        int index = scenario.ordinal();
+        long now = System.currentTimeMillis();
+        if (!buckets[index].tryAcquire(now)) {
+            Metrics.NOTIFICATIONS_LIMITED.increment();
+            Log.i(LOG_TAG, "Rate limited the notification of " + scenario + ".");
+            return false;
+        }
+
+        boolean repeated = lastPosted[index] != 0
+                && now - lastPosted[index] < Constants.NOTIFICATION_COALESCE_WINDOW;
+        triggers[index] = repeated ? triggers[index] + 1 : 1;
+        lastPosted[index] = now;
+        titles[index] = context.getString(title);
+
+        NotificationCompat.Builder builder =
+                new NotificationCompat.Builder(context, CHANNEL_IDS[index])
+                .setSmallIcon(R.drawable.ic_launcher_foreground)
+                .setColor(context.getResources().getColor(R.color.colorPrimary))
+                .setContentTitle(titles[index])
+                .setContentText(context.getString(text))
+                .setPriority(NotificationCompat.PRIORITY_DEFAULT)
+                .setContentIntent(getPendingIntent(index, contentIntent))
+                .setGroup(GROUP_KEY)
+                .setOnlyAlertOnce(true)
+                .setAutoCancel(true);
+        if (triggers[index] > 1) {
+            builder.setNumber(triggers[index])
+                    .setSubText(context.getString(R.string.notification_repeated,
+                            triggers[index]));
+        }
+        notificationManager.notify(NOTIFICATION_ID_BASE + index, builder.build());
+        Metrics.NOTIFICATIONS_POSTED.increment();
+        if (repeated) {
+            Log.i(LOG_TAG, "Updated the notification of " + scenario + ", triggered "
+                    + triggers[index] + " times.");
+        } else {
+            Log.i(LOG_TAG, "Posted the notification of " + scenario + ".");
+        }
+        postSummary(index, now);
+        return true;
+    }
+
+    /**
+     * Returns the pending intent of a scenario's notification. It is only created again if the
+     * intent differs from the last one.
+     */
+    private PendingIntent getPendingIntent(int index, Intent intent) {
+        if (pendingIntents[index] == null || !intent.filterEquals(contentIntents[index])) {
+            contentIntents[index] = intent;
+            pendingIntents[index] = PendingIntent.getActivity(context, index, intent,
+                    PendingIntent.FLAG_UPDATE_CURRENT);
+        }
+        return pendingIntents[index];
+    }
+
+    /**
+     * Groups the notifications under a summary if several scenarios posted within the coalesce
+     * window. The summary lists their titles.
+     * @param latest The index of the scenario that posted last, the summary uses its channel.
+     * @param now The current time in milliseconds since the epoch.
+     */
+    private void postSummary(int latest, long now) {
+        NotificationCompat.InboxStyle style = new NotificationCompat.InboxStyle();
+        int shown = 0;
+        for (int i = 0; i < SCENARIOS.length; i++) {
+            if (lastPosted[i] != 0 && now - lastPosted[i] < Constants.NOTIFICATION_COALESCE_WINDOW) {
+                style.addLine(titles[i]);
+                shown++;
+            }
+        }
+        if (shown < 2) {
+            return;
+        }
+        CharSequence title = context.getString(R.string.notification_summary, shown);
+        Notification summary = new NotificationCompat.Builder(context, CHANNEL_IDS[latest])
+                .setSmallIcon(R.drawable.ic_launcher_foreground)
+                .setColor(context.getResources().getColor(R.color.colorPrimary))
+                .setContentTitle(title)
+                .setStyle(style.setBigContentTitle(title))
+                .setGroup(GROUP_KEY)
+                .setGroupSummary(true)
+                .setOnlyAlertOnce(true)
+                .setAutoCancel(true)
+                .build();
+        notificationManager.notify(SUMMARY_ID, summary);
+    }
+}
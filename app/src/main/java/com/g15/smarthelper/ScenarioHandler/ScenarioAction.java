@@ -0,0 +1,27 @@
+package com.g15.smarthelper.ScenarioHandler;
+
+import com.g15.smarthelper.Scenarios;
+
+/**
+ * A {@link ScenarioAction} is what happens when a rule of its scenario is triggered. The actions
+ * are looked up in the {@link ActionRegistry} and run by the {@link ActionExecutor}, never on the
+ * thread that evaluates the rules.
+ */
+public interface ScenarioAction {
+
+    /**
+     * @return The scenario the action belongs to.
+     */
+    Scenarios.Scenario getScenario();
+
+    /**
+     * @return The milliseconds the action may take before it is interrupted.
+     */
+    long getTimeoutMillis();
+
+    /**
+     * Performs the action. It runs on a thread of the {@link ActionExecutor} and should stop
+     * when the thread is interrupted.
+     */
+    void execute();
+}
@@ -0,0 +1,76 @@
+package com.g15.smarthelper.ScenarioHandler;
+
+/**
+ * A {@link TokenBucket} limits how often something may happen. Every event takes a token, and
+ * the bucket gains a token per refill interval up to its capacity. So a burst of up to capacity
+ * events passes at once, after which the events are limited to one per interval.
+ *
+ * A bucket is not thread-safe.
+ */
+public final class TokenBucket {
+
+    private final int capacity;
+    private final long refillInterval;
+    private int tokens;
+    // The time the next token is counted from.
+    private long refilled = Long.MIN_VALUE;
+
+    /**
+     * Creates a full bucket.
+     * @param capacity The maximum number of tokens.
+     * @param refillInterval The milliseconds after which a token is added.
+     */
+    public TokenBucket(int capacity, long refillInterval) {
+        if (capacity <= 0 || refillInterval <= 0) {
+            throw new IllegalArgumentException("The capacity and the refill interval have to be "
+                    + "positive: " + capacity + ", " + refillInterval);
+        }
+        this.capacity = capacity;
+        this.refillInterval = refillInterval;
+        this.tokens = capacity;
+    }
+
+    /**
+     * Takes a token if one is left.
+     * @param now The current time in milliseconds.
+     * @return true if a token was taken and the event may happen.
+     */
+    public boolean tryAcquire(long now) {
+        refill(now);
+        if (tokens == 0) {
+            return false;
+        }
+        tokens--;
+        return true;
+    }
+
+    /**
+     * @param now The current time in milliseconds.
+     * @return The number of tokens left.
+     */
+    public int getTokens(long now) {
+        refill(now);
+        return tokens;
+    }
+
+    private void refill(long now) {
+        if (tokens == capacity || refilled == Long.MIN_VALUE) {
+            // A full bucket starts to count the interval when the first token is taken.
+            refilled = now;
+            return;
+        }
+        if (now < refilled) {
+            // The clock was set back.
+            refilled = now;
+            return;
+        }
+        long intervals = (now - refilled) / refillInterval;
+        if (intervals >= capacity - tokens) {
+            tokens = capacity;
+            refilled = now;
+        } else if (intervals > 0) {
+            tokens += (int) intervals;
+            refilled += intervals * refillInterval;
+        }
+    }
+}
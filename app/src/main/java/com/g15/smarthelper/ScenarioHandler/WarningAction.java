@@ -1,65 +1,44 @@
 package com.g15.smarthelper.ScenarioHandler;
 
-import android.app.Notification;
-import android.app.NotificationChannel;
-import android.app.NotificationManager;
-import android.app.PendingIntent;
 import android.content.Context;
 import android.content.ContextWrapper;
 import android.content.Intent;
-import android.os.Build;
 
 import android.util.Log;
 
-import androidx.core.app.NotificationCompat;
-import androidx.core.app.NotificationManagerCompat;
-
 import com.g15.smarthelper.R;
+import com.g15.smarthelper.Scenarios;
 import com.g15.smarthelper.MainActivity;
 
 
-public class WarningAction extends ContextWrapper {
+public class WarningAction extends ContextWrapper implements ScenarioAction {
 
     private static final String LOG_TAG = "ScenarioWarning";
-    private static final String CHANNEL_ID = "channel_01";
-    private static int notificationId = 1;
+    private static final long TIMEOUT_MILLIS = 5 * 1000;
 
     public WarningAction(Context base) {
         super(base);
     }
 
-    private void createNotificationChannel() {
-        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
-            Log.v(LOG_TAG, "Creating notification channel for warning scenario action.");
-            CharSequence name = getString(R.string.app_name);
-            String description = getString(R.string.description);
-
-            NotificationChannel channel = new NotificationChannel(CHANNEL_ID, name, NotificationManager.IMPORTANCE_DEFAULT);
-            channel.setDescription(description);
-            NotificationManager mNotificationManager =
-                    (NotificationManager) getSystemService(Context.NOTIFICATION_SERVICE);
-            mNotificationManager.createNotificationChannel(channel);
-        }
+    @Override
+    public Scenarios.Scenario getScenario() {
+        return Scenarios.Scenario.SCENARIO_WARNING;
     }
 
-    public void sendNotification() {
-        createNotificationChannel();
+    @Override
+    public long getTimeoutMillis() {
+        return TIMEOUT_MILLIS;
+    }
 
+    @Override
+    public void execute() {
         Intent intent = new Intent(this, MainActivity.class);
         intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
-        PendingIntent pendingIntent = PendingIntent.getActivity(this, 0, intent, 0);
-
-        Notification notification = new NotificationCompat.Builder(this, CHANNEL_ID)
-                .setSmallIcon(R.drawable.ic_launcher_foreground)
-                .setColor(getResources().getColor(R.color.colorPrimary))
-                .setContentTitle(getString(R.string.warning_notification_title))
-                .setContentText(getString(R.string.warning_notification_text))
-                .setPriority(NotificationCompat.PRIORITY_DEFAULT)
-                .setContentIntent(pendingIntent)
-                .setAutoCancel(true)
-                .build();
-        NotificationManagerCompat notificationManager = NotificationManagerCompat.from(this);
-        notificationManager.notify(notificationId++, notification);
-        Log.i(LOG_TAG, "Warning action notification is sent.");
+        boolean posted = NotificationDispatcher.getInstance(this).post(
+                Scenarios.Scenario.SCENARIO_WARNING, R.string.warning_notification_title,
+                R.string.warning_notification_text, intent);
+        if (posted) {
+            Log.i(LOG_TAG, "Warning action notification is sent.");
+        }
     }
 }
@@ -1,17 +1,43 @@
 package com.g15.smarthelper;
 
-import android.content.SharedPreferences;
+import android.content.Context;
 import android.location.Location;
 import android.util.Log;
 
+import com.g15.smarthelper.metrics.Metrics;
+import com.g15.smarthelper.rules.Rule;
+import com.g15.smarthelper.rules.RuleDefinition;
+import com.g15.smarthelper.rules.RuleTable;
+import com.g15.smarthelper.rules.TimeSchedule;
+import com.g15.smarthelper.store.PreferencesMigration;
+import com.g15.smarthelper.store.ScenarioStore;
+import com.g15.smarthelper.store.ScenarioStore.RuleStateRow;
+import com.g15.smarthelper.store.ScenarioStore.ScenarioRow;
+import com.g15.smarthelper.store.SqliteScenarioStore;
 import com.google.android.gms.location.DetectedActivity;
 
-import java.util.Date;
+import org.json.JSONException;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.TimeZone;
 
 /**
  * This class allows access to the activation state of the scenarios.
- * The activation states of the scenarios are stored in the shared preferences.
+ * The activation states of the scenarios are stored in a {@link ScenarioStore}.
+ *
+ * A single process-wide instance keeps a typed snapshot of the stored values in memory, so the
+ * getters that are called for every sensor event never read the store. All changes are made
+ * through this instance, so the snapshot never has to be reloaded.
+ * The runtime state (trigger, geofence and activity state) is written behind: unchanged values are
+ * ignored and all changes of one update cycle are persisted in one transaction by
+ * {@link #flushState()}.
+ *
+ * When a scenario is triggered is described by data: {@link RuleDefinition}s are stored as JSON
+ * and compiled into a {@link RuleTable}. The trigger and geofence state is kept per rule.
  */
 
 public class Scenarios {
@@ -23,21 +49,156 @@ public class Scenarios {
     }
 
     private static final String LOG_TAG = "scenarios";
-    public static final String SHARED_PREFERENCES_KEY = "scenarios-shared-preferences";
-    private static final String CURRENT_ACTIVITY = "current_activity";
-    private static final String SCENARIOS_INITIALIZED = "scenarios_initialized";
-    private static final String SCENARIO_TRIGGERED_FORMAT = "scenario%1$s_triggered";
-    private static final String SCENARIO_ACTIVATED_FORMAT = "scenario%1$s_activated";
-    private static final String SCENARIO_GEOFENCE_ENTERED_FORMAT = "scenario%1$s_geofence_entered";
-    private static final String SCENARIO_LOCATION_SET_FORMAT = "scenario%1$s_location_set";
-    private static final String SCENARIO_RADIUS_FORMAT = "scenario%1$s_radius";
-    private static final String SCENARIO_LAT_FORMAT = "scenario%1$s_lat";
-    private static final String SCENARIO_LNG_FORMAT = "scenario%1$s_lng";
 
-    private SharedPreferences sharedPreferences;
+    private static final Scenario[] SCENARIOS = Scenario.values();
+    private static final Rule[] NO_RULES = new Rule[0];
+
+    private static Scenarios instance;
+
+    /**
+     * The runtime state of the rules of one compiled {@link RuleTable}, indexed by rule index.
+     * The state is stored by rule key, so it survives recompiling the rules.
+     */
+    private static final class RuleState {
+        final RuleTable table;
+        final TimeSchedule schedule;
+        final boolean[] triggered;
+        final boolean[] geofenceEntered;
+        // The rules whose row has to be written by the next flush.
+        final boolean[] dirty;
+        // The indexes of all rules whose fence is currently entered.
+        final int[] enteredRules;
+        int enteredCount;
+        int dirtyCount;
+
+        RuleState(RuleTable table) {
+            int size = table.size();
+            this.table = table;
+            schedule = new TimeSchedule(table, TimeZone.getTimeZone(Constants.TIME_ZONE));
+            triggered = new boolean[size];
+            geofenceEntered = new boolean[size];
+            dirty = new boolean[size];
+            enteredRules = new int[size];
+        }
+
+        void markDirty(int index) {
+            if (!dirty[index]) {
+                dirty[index] = true;
+                dirtyCount++;
+            }
+        }
+    }
+
+    private final ScenarioStore store;
+
+    // The configuration is replaced as a whole on every change, so readers always see a
+    // consistent snapshot without locking.
+    private volatile ScenarioRow[] configs;
+    private volatile boolean scenariosInitialized;
+    private volatile List<RuleDefinition> ruleDefinitions;
+
+    // The runtime state is only written through this class by the scenario evaluation. Changes
+    // are kept in memory and marked dirty until they are written by flushState(). The rule state
+    // is recompiled together with every configuration change.
+    private final Object stateLock = new Object();
+    private volatile RuleState ruleState;
+    private volatile int currentActivity;
+    private boolean currentActivityDirty;
 
-    public Scenarios(SharedPreferences sharedPreferences) {
-        this.sharedPreferences = sharedPreferences;
+    /**
+     * Returns the process-wide scenario repository.
+     * @param context Any context of the app.
+     * @return The shared scenario repository.
+     */
+    public static synchronized Scenarios getInstance(Context context) {
+        if (instance == null) {
+            Context appContext = context.getApplicationContext();
+            ScenarioStore store = new SqliteScenarioStore(appContext, SCENARIOS.length);
+            String[] names = new String[SCENARIOS.length];
+            for (Scenario scenario : SCENARIOS) {
+                names[scenario.ordinal()] = scenario.name();
+            }
+            if (PreferencesMigration.migrate(appContext.getSharedPreferences(
+                    PreferencesMigration.SHARED_PREFERENCES_KEY, Context.MODE_PRIVATE),
+                    store, names)) {
+                Log.i(LOG_TAG, "Migrated the scenarios from the shared preferences.");
+            }
+            instance = new Scenarios(store);
+        }
+        return instance;
+    }
+
+    public Scenarios(ScenarioStore store) {
+        this.store = store;
+        currentActivity = store.readCurrentActivity(DetectedActivity.UNKNOWN);
+        loadConfig();
+    }
+
+    /**
+     * Reads the configuration of all scenarios and the rules from the store.
+     */
+    private synchronized void loadConfig() {
+        configs = store.readScenarios();
+        scenariosInitialized = store.readInitialized();
+        ruleDefinitions = loadRuleDefinitions();
+        compileRules();
+    }
+
+    private List<RuleDefinition> loadRuleDefinitions() {
+        String json = store.readRules();
+        if (json != null) {
+            try {
+                return RuleDefinition.fromJson(json);
+            } catch (JSONException e) {
+                Log.e(LOG_TAG, "Stored scenario rules are invalid, using the default rules.", e);
+            }
+        }
+        return RuleDefinition.getDefaults();
+    }
+
+    /**
+     * Compiles the rule definitions with the current scenario fences into a new rule table. Pending
+     * state changes are written first, so the state of the new table can be read from the store.
+     */
+    private synchronized void compileRules() {
+        ScenarioRow[] current = configs;
+        List<RuleDefinition> resolved = new ArrayList<>();
+        for (RuleDefinition definition : ruleDefinitions) {
+            ScenarioRow config = current[definition.getAction().ordinal()];
+            if (definition.hasFence()) {
+                resolved.add(definition);
+            } else if (config.locationSet) {
+                resolved.add(definition.withFence(config.latitude, config.longitude, config.radius));
+            }
+        }
+        RuleTable table = new RuleTable(resolved);
+
+        synchronized (stateLock) {
+            flushState();
+            Map<String, RuleStateRow> stored = store.readRuleStates();
+            RuleState state = new RuleState(table);
+            for (Rule rule : table.getRules()) {
+                RuleStateRow row = stored.get(rule.getKey());
+                if (row == null) {
+                    continue;
+                }
+                int index = rule.getIndex();
+                state.triggered[index] = row.triggered;
+                state.geofenceEntered[index] = row.geofenceEntered;
+                if (state.geofenceEntered[index]) {
+                    state.enteredRules[state.enteredCount++] = index;
+                }
+            }
+            ruleState = state;
+        }
+    }
+
+    /**
+     * Replaces the configuration in the snapshot.
+     */
+    private synchronized void updateConfig(ScenarioRow[] updated) {
+        configs = updated;
+        compileRules();
     }
 
 
@@ -47,10 +208,7 @@ public class Scenarios {
      * @return Returns if the scenario is active.
      */
     public boolean isScenarioActivated(Scenario scenario) {
-        String scenarioName = String.format(SCENARIO_ACTIVATED_FORMAT, scenario);
-        Boolean isActive = sharedPreferences.getBoolean(scenarioName, false);
-        Log.d(LOG_TAG, "Scenario " + scenario + (isActive ? " is" : " is not") + " activated.");
-        return isActive;
+        return configs[scenario.ordinal()].activated;
     }
 
     /**
@@ -59,10 +217,7 @@ public class Scenarios {
      */
     public void enableScenario(Scenario scenario) {
         Log.i(LOG_TAG, "Enabling scenario " + scenario);
-        String scenarioName = String.format(SCENARIO_ACTIVATED_FORMAT, scenario);
-        sharedPreferences.edit()
-                .putBoolean(scenarioName, true)
-                .commit();
+        setActivated(scenario, true);
     }
 
     /**
@@ -71,10 +226,16 @@ public class Scenarios {
      */
     public void disableScenario(Scenario scenario) {
         Log.i(LOG_TAG, "Disabling scenario " + scenario);
-        String scenarioName = String.format(SCENARIO_ACTIVATED_FORMAT, scenario);
-        sharedPreferences.edit()
-                .putBoolean(scenarioName, false)
-                .commit();
+        setActivated(scenario, false);
+    }
+
+    private synchronized void setActivated(Scenario scenario, boolean activated) {
+        ScenarioRow[] updated = configs.clone();
+        ScenarioRow config = updated[scenario.ordinal()];
+        updated[scenario.ordinal()] = new ScenarioRow(activated, config.locationSet,
+                config.latitude, config.longitude, config.radius);
+        updateConfig(updated);
+        store.writeActivated(scenario.ordinal(), activated);
     }
 
     /**
@@ -95,54 +256,50 @@ public class Scenarios {
      * @return true if any scenario is enabled, otherwise false.
      */
     public boolean isAnyScenarioEnabled() {
-        return isScenarioActivated(Scenario.SCENARIO_MUSIC)
-                || isScenarioActivated(Scenario.SCENARIO_WARNING)
-                || isScenarioActivated(Scenario.SCENARIO_HOME);
+        for (ScenarioRow config : configs) {
+            if (config.activated) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
-     * Returns the activity that a scenario is triggering at.
-     * @param scenario The selected scenario.
-     * @return The trigger activity.
+     * Check if an instant is in the time window of a rule. The windows are given in the time of
+     * day of {@link Constants#TIME_ZONE}.
+     * @param rule The rule to specify the time window.
+     * @param time The instant to check in milliseconds since the epoch.
+     * @return If the instant is in the rule's time window. Rules that are no longer part of the
+     *         rule table are never in their time window.
      */
-    public int getTargetActivity(Scenario scenario) {
-        switch (scenario) {
-            case SCENARIO_HOME: return DetectedActivity.STILL;
-            case SCENARIO_MUSIC: return DetectedActivity.RUNNING;
-            case SCENARIO_WARNING: return DetectedActivity.WALKING;
-        }
-        return DetectedActivity.UNKNOWN;
+    public boolean isInTimeFrame(Rule rule, long time) {
+        RuleState state = ruleState;
+        return state.table.contains(rule) && state.schedule.isActive(rule, time);
     }
 
     /**
-     * Check if the date is in the time frame the scenario is active. A scenario may restrict the
-     * time frame the action can be triggered.
-     * @param scenario The scenario to specify the time span.
-     * @param date The date to check.
-     * @return If the date is in the scenario's time frame.
+     * Returns the next instant at which the time window of any rule starts or ends.
+     * @param time The instant to start from in milliseconds since the epoch.
+     * @return The next boundary or {@link Long#MAX_VALUE} if there is none.
      */
-    public boolean isInTimeFrame(Scenario scenario, Date date) {
-        Log.v(LOG_TAG, "Checking time frame for scenario " + scenario + " and date " + date);
-        TimeZone tz = TimeZone.getTimeZone("Europe/Berlin");
-        int tzOffset = tz.getOffset(new Date().getTime()) / 1000 / 60 / 60; // Timezone offset in hours
-        int hour = date.getHours() + tzOffset;
-        if (scenario == Scenario.SCENARIO_HOME) {
-            // Check if date is at night time
-            return hour > 22 || hour < 4;
-        } else {
-            return true;
-        }
+    public long getNextTimeFrameTransition(long time) {
+        return ruleState.schedule.getNextTransition(time);
     }
 
     /**
-     * Stores the activity as last detected activity.
+     * Stores the activity as last detected activity. The change is persisted with the next
+     * {@link #flushState()}.
      * @param activity The activity to store.
      */
     public void setCurrentActivity(int activity) {
-        Log.d(LOG_TAG, "Updating current activity to: " + activity);
-        sharedPreferences.edit()
-                .putInt(CURRENT_ACTIVITY, activity)
-                .commit();
+        synchronized (stateLock) {
+            if (currentActivity == activity) {
+                return;
+            }
+            Log.d(LOG_TAG, "Updating current activity to: " + activity);
+            currentActivity = activity;
+            currentActivityDirty = true;
+        }
     }
 
     /**
@@ -150,53 +307,129 @@ public class Scenarios {
      * @return The last detected activity.
      */
     public int getCurrentActivity() {
-        return sharedPreferences.getInt(CURRENT_ACTIVITY, DetectedActivity.UNKNOWN);
+        return currentActivity;
     }
 
     /**
-     * Sets if the selected scenario is currently triggered.
-     * @param scenario The selected scenario.
+     * Returns the compiled rules of all scenarios.
+     * @return The current rule table.
+     */
+    public RuleTable getRuleTable() {
+        return ruleState.table;
+    }
+
+    /**
+     * Returns the stored rule definitions.
+     * @return The rule definitions.
+     */
+    public List<RuleDefinition> getRuleDefinitions() {
+        return Collections.unmodifiableList(ruleDefinitions);
+    }
+
+    /**
+     * Replaces the stored rule definitions and recompiles the rule table.
+     * @param definitions The new rule definitions.
+     */
+    public synchronized void setRuleDefinitions(List<RuleDefinition> definitions) {
+        Log.i(LOG_TAG, "Changing scenario rules to " + definitions.size() + " rules.");
+        try {
+            String json = RuleDefinition.toJson(definitions);
+            ruleDefinitions = new ArrayList<>(definitions);
+            compileRules();
+            store.writeRules(json);
+        } catch (JSONException e) {
+            Log.e(LOG_TAG, "Could not store scenario rules.", e);
+        }
+    }
+
+    /**
+     * Sets if the selected rule is currently triggered. The change is persisted with the next
+     * {@link #flushState()}. Changes of rules that are no longer part of the rule table are ignored.
+     * @param rule The selected rule.
      * @param triggered The current trigger state.
      */
-    public void setScenarioTriggered(Scenario scenario, boolean triggered) {
-        Log.v(LOG_TAG, "Scenario " + scenario + " triggered: " + triggered);
-        String scenarioName = String.format(SCENARIO_TRIGGERED_FORMAT, scenario);
-        sharedPreferences.edit()
-                .putBoolean(scenarioName, triggered)
-                .commit();
+    public void setRuleTriggered(Rule rule, boolean triggered) {
+        int index = rule.getIndex();
+        synchronized (stateLock) {
+            RuleState state = ruleState;
+            if (!state.table.contains(rule) || state.triggered[index] == triggered) {
+                return;
+            }
+            Log.v(LOG_TAG, "Rule " + rule.getKey() + " triggered: " + triggered);
+            state.triggered[index] = triggered;
+            state.markDirty(index);
+        }
+        if (triggered) {
+            Metrics.countTrigger(rule.getAction());
+        }
     }
 
     /**
-     * Returns if the selected scenario is currently triggered.
-     * @param scenario The selected scenario.
-     * @return If the scenario is triggered.
+     * Returns if the selected rule is currently triggered.
+     * @param rule The selected rule.
+     * @return If the rule is triggered.
      */
-    public boolean getScenarioTriggered(Scenario scenario) {
-        String scenarioName = String.format(SCENARIO_TRIGGERED_FORMAT, scenario);
-        return sharedPreferences.getBoolean(scenarioName, false);
+    public boolean getRuleTriggered(Rule rule) {
+        RuleState state = ruleState;
+        return state.table.contains(rule) && state.triggered[rule.getIndex()];
     }
 
     /**
-     * Stores if the corresponding geofence to the scenario is currently entered.
-     * @param scenario The selected scenario
+     * Stores if the fence of the rule is currently entered. The change is persisted with the next
+     * {@link #flushState()}. Changes of rules that are no longer part of the rule table are ignored.
+     * @param rule The selected rule.
      * @param entered If the geofence is currently entered.
      */
-    public void setScenarioGeofenceEntered(Scenario scenario, boolean entered) {
-        Log.v(LOG_TAG, "Scenario " + scenario + " geofence entered: " + entered);
-        String scenarioName = String.format(SCENARIO_GEOFENCE_ENTERED_FORMAT, scenario);
-        sharedPreferences.edit()
-                .putBoolean(scenarioName, entered)
-                .commit();
+    public void setRuleGeofenceEntered(Rule rule, boolean entered) {
+        int index = rule.getIndex();
+        synchronized (stateLock) {
+            RuleState state = ruleState;
+            if (!state.table.contains(rule) || state.geofenceEntered[index] == entered) {
+                return;
+            }
+            Log.v(LOG_TAG, "Rule " + rule.getKey() + " geofence entered: " + entered);
+            state.geofenceEntered[index] = entered;
+            state.markDirty(index);
+            if (entered) {
+                state.enteredRules[state.enteredCount++] = index;
+            } else {
+                for (int i = 0; i < state.enteredCount; i++) {
+                    if (state.enteredRules[i] == index) {
+                        state.enteredRules[i] = state.enteredRules[--state.enteredCount];
+                        break;
+                    }
+                }
+            }
+        }
     }
 
     /**
-     * Returns if the geofence corresponding to the scenario is currently entered.
-     * @param scenario The selected scenario.
+     * Returns if the fence of the rule is currently entered.
+     * @param rule The selected rule.
      * @return If the geofence is currently entered.
      */
-    public boolean getScenarioGeofenceEntered(Scenario scenario) {
-        String scenarioName = String.format(SCENARIO_GEOFENCE_ENTERED_FORMAT, scenario);
-        return sharedPreferences.getBoolean(scenarioName, false);
+    public boolean getRuleGeofenceEntered(Rule rule) {
+        RuleState state = ruleState;
+        return state.table.contains(rule) && state.geofenceEntered[rule.getIndex()];
+    }
+
+    /**
+     * Returns the rules whose fence is currently entered, without looking at the other rules.
+     * @return The entered rules of the current rule table.
+     */
+    public Rule[] getEnteredRules() {
+        synchronized (stateLock) {
+            RuleState state = ruleState;
+            if (state.enteredCount == 0) {
+                return NO_RULES;
+            }
+            Rule[] rules = state.table.getRules();
+            Rule[] entered = new Rule[state.enteredCount];
+            for (int i = 0; i < entered.length; i++) {
+                entered[i] = rules[state.enteredRules[i]];
+            }
+            return entered;
+        }
     }
 
     /**
@@ -207,18 +440,32 @@ public class Scenarios {
      * @param radius The geofence's radius
      */
     public void setScenarioFence(Scenario scenario, double latitude, double longitude, int radius) {
-        Log.i(LOG_TAG, "Changing scenario " + scenario + " location: lat=" + latitude
-                + ", lng=" + longitude + "(r=" + radius + ")");
-        String locationSetName = String.format(SCENARIO_LOCATION_SET_FORMAT, scenario);
-        String radiusName = String.format(SCENARIO_RADIUS_FORMAT, scenario);
-        String latName = String.format(SCENARIO_LAT_FORMAT, scenario);
-        String lngName = String.format(SCENARIO_LNG_FORMAT, scenario);
-        sharedPreferences.edit()
-                .putLong(latName, Double.doubleToRawLongBits(latitude))
-                .putLong(lngName, Double.doubleToRawLongBits(longitude))
-                .putInt(radiusName, radius)
-                .putBoolean(locationSetName, true)
-                .commit();
+        setScenarioFences(new Scenario[]{scenario}, new double[]{latitude},
+                new double[]{longitude}, new int[]{radius});
+    }
+
+    /**
+     * Set the location triggers of several scenarios at once. The rules are compiled once and the
+     * fences are stored in one transaction, so either all or none of the fences are changed.
+     * The arrays are parallel, an index describes one scenario.
+     * @param scenarios The selected scenarios.
+     * @param latitudes The latitudes of the geofences' centers
+     * @param longitudes The longitudes of the geofences' centers
+     * @param radii The geofences' radii
+     */
+    public synchronized void setScenarioFences(Scenario[] scenarios, double[] latitudes,
+                                               double[] longitudes, int[] radii) {
+        ScenarioRow[] updated = configs.clone();
+        int[] ordinals = new int[scenarios.length];
+        for (int i = 0; i < scenarios.length; i++) {
+            Log.i(LOG_TAG, "Changing scenario " + scenarios[i] + " location: lat=" + latitudes[i]
+                    + ", lng=" + longitudes[i] + "(r=" + radii[i] + ")");
+            ordinals[i] = scenarios[i].ordinal();
+            updated[ordinals[i]] = new ScenarioRow(updated[ordinals[i]].activated, true,
+                    latitudes[i], longitudes[i], radii[i]);
+        }
+        updateConfig(updated);
+        store.writeFences(ordinals, latitudes, longitudes, radii);
     }
 
     /**
@@ -227,19 +474,14 @@ public class Scenarios {
      * @return The center location of the geofence.
      */
     public Location getScenarioLocation(Scenario scenario) {
-        String locationSetName = String.format(SCENARIO_LOCATION_SET_FORMAT, scenario);
-        String latName = String.format(SCENARIO_LAT_FORMAT, scenario);
-        String lngName = String.format(SCENARIO_LNG_FORMAT, scenario);
-        boolean locationSet = sharedPreferences.getBoolean(locationSetName, false);
-        if (!locationSet) {
+        ScenarioRow config = configs[scenario.ordinal()];
+        if (!config.locationSet) {
             Log.e(LOG_TAG, "Location for scenarion " + scenario + " not set.");
             return null;
         }
-        double latitude = Double.longBitsToDouble(sharedPreferences.getLong(latName, 0));
-        double longitude = Double.longBitsToDouble(sharedPreferences.getLong(lngName, 0));
         Location location = new Location("");
-        location.setLatitude(latitude);
-        location.setLongitude(longitude);
+        location.setLatitude(config.latitude);
+        location.setLongitude(config.longitude);
         return location;
     }
 
@@ -249,24 +491,52 @@ public class Scenarios {
      * @return The radius of the geofence.
      */
     public int getScenarioRadius(Scenario scenario) {
-        String locationSetName = String.format(SCENARIO_LOCATION_SET_FORMAT, scenario);
-        String radiusName = String.format(SCENARIO_RADIUS_FORMAT, scenario);
-        boolean locationSet = sharedPreferences.getBoolean(locationSetName, false);
-        if (!locationSet) {
+        ScenarioRow config = configs[scenario.ordinal()];
+        if (!config.locationSet) {
             return -1;
         } else {
-            return sharedPreferences.getInt(radiusName, 0);
+            return config.radius;
+        }
+    }
+
+    /**
+     * Writes all runtime state changes since the last flush in one transaction of the store. Only
+     * the changed rows are written and nothing is written if no value has changed. The write is
+     * synchronous, so the state is persisted when this returns. If the write fails, the changes
+     * are kept and written by the next flush.
+     */
+    public void flushState() {
+        synchronized (stateLock) {
+            RuleState state = ruleState;
+            int dirtyCount = state != null ? state.dirtyCount : 0;
+            if (dirtyCount == 0 && !currentActivityDirty) {
+                return;
+            }
+            List<RuleStateRow> rows = new ArrayList<>(dirtyCount);
+            for (int i = 0; dirtyCount > 0 && i < state.table.size(); i++) {
+                if (state.dirty[i]) {
+                    rows.add(new RuleStateRow(state.table.getRules()[i].getKey(),
+                            state.triggered[i], state.geofenceEntered[i]));
+                }
+            }
+            store.writeState(currentActivityDirty ? currentActivity
+                    : ScenarioStore.ACTIVITY_UNCHANGED, rows);
+            // Only a successful write clears the changes, the next flush retries a failed one.
+            if (state != null) {
+                Arrays.fill(state.dirty, false);
+                state.dirtyCount = 0;
+            }
+            currentActivityDirty = false;
         }
     }
 
     public void initializeScenarios() {
-        sharedPreferences.edit()
-                .putBoolean(SCENARIOS_INITIALIZED, true)
-                .commit();
+        scenariosInitialized = true;
+        store.writeInitialized();
     }
 
     public boolean getScenariosInitialized() {
-        return sharedPreferences.getBoolean(SCENARIOS_INITIALIZED, false);
+        return scenariosInitialized;
     }
 
 }
@@ -3,16 +3,19 @@ package com.g15.smarthelper;
 import androidx.appcompat.app.AppCompatActivity;
 
 import android.content.Context;
-import android.content.SharedPreferences;
 import android.location.Location;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import android.view.View;
 import android.widget.Button;
+import android.widget.CompoundButton;
 import android.widget.EditText;
+import android.widget.Switch;
 import android.widget.Toast;
 
-import static com.g15.smarthelper.Scenarios.SHARED_PREFERENCES_KEY;
+import com.g15.smarthelper.Services.LocationSampling;
 
 public class SelectLocationActivity extends AppCompatActivity {
 
@@ -32,6 +35,8 @@ public class SelectLocationActivity extends AppCompatActivity {
     EditText homeLngTf;
     EditText homeRadiusTf;
 
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -52,12 +57,28 @@ public class SelectLocationActivity extends AppCompatActivity {
         homeLngTf = findViewById(R.id.home_lng_textfield);
         homeRadiusTf = findViewById(R.id.home_radius_textfield);
 
-        SharedPreferences sharedPreferences = getSharedPreferences(SHARED_PREFERENCES_KEY, Context.MODE_PRIVATE);
-        scenarios = new Scenarios(sharedPreferences);
-
-        initLocationSettings();
+        final Button saveButton = findViewById(R.id.saveButton);
+        saveButton.setEnabled(false);
+        // Opening the scenarios may migrate their database, so they are loaded in the background.
+        final Context context = getApplicationContext();
+        BackgroundExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Scenarios loaded = Scenarios.getInstance(context);
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (isDestroyed()) {
+                            return;
+                        }
+                        scenarios = loaded;
+                        initLocationSettings();
+                        saveButton.setEnabled(true);
+                    }
+                });
+            }
+        });
 
-        Button saveButton = findViewById(R.id.saveButton);
         saveButton.setOnClickListener(new View.OnClickListener() {
             @Override
             public void onClick(View view) {
@@ -65,6 +86,16 @@ public class SelectLocationActivity extends AppCompatActivity {
                 updateLocationSettings();
             }
         });
+
+        Switch geofencingSwitch = findViewById(R.id.geofencing_switch);
+        geofencingSwitch.setChecked(LocationSampling.isGeofencingMode(this));
+        geofencingSwitch.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
+            @Override
+            public void onCheckedChanged(CompoundButton compoundButton, boolean checked) {
+                Log.i(LOG_TAG, "Geofencing mode changed to: " + checked);
+                LocationSampling.setGeofencingMode(SelectLocationActivity.this, checked);
+            }
+        });
     }
 
     private void initLocationSettings() {
@@ -103,11 +134,24 @@ public class SelectLocationActivity extends AppCompatActivity {
             double homeLng = Double.parseDouble(homeLngTf.getText().toString());
             int homeRadius = Integer.parseInt(homeRadiusTf.getText().toString());
 
-            scenarios.setScenarioFence(Scenarios.Scenario.SCENARIO_MUSIC, musicLat, musicLng, musicRadius);
-            scenarios.setScenarioFence(Scenarios.Scenario.SCENARIO_WARNING, warningLat, warningLng, warningRadius);
-            scenarios.setScenarioFence(Scenarios.Scenario.SCENARIO_HOME, homeLat, homeLng, homeRadius);
-
-            Log.i(LOG_TAG, "Location settings successfully updated.");
+            final double[] latitudes = {musicLat, warningLat, homeLat};
+            final double[] longitudes = {musicLng, warningLng, homeLng};
+            final int[] radii = {musicRadius, warningRadius, homeRadius};
+            final Scenarios loaded = scenarios;
+            final Context context = getApplicationContext();
+            BackgroundExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    // All three fences are stored in one transaction.
+                    loaded.setScenarioFences(
+                            new Scenarios.Scenario[]{Scenarios.Scenario.SCENARIO_MUSIC,
+                                    Scenarios.Scenario.SCENARIO_WARNING,
+                                    Scenarios.Scenario.SCENARIO_HOME},
+                            latitudes, longitudes, radii);
+                    LocationSampling.onFencesChanged(context);
+                    Log.i(LOG_TAG, "Location settings successfully updated.");
+                }
+            });
         } catch (NumberFormatException e) {
             Log.e(LOG_TAG, "Invalid location settings input.", e);
             Toast.makeText(getApplicationContext(),
@@ -12,6 +12,8 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import com.g15.smarthelper.Constants;
+import com.g15.smarthelper.Scenarios;
+import com.g15.smarthelper.power.PowerAccounting;
 import com.g15.smarthelper.receiver.ActivityUpdateReceiver;
 import com.google.android.gms.location.ActivityRecognitionClient;
 import com.google.android.gms.tasks.OnFailureListener;
@@ -20,7 +22,7 @@ import com.google.android.gms.tasks.OnSuccessListener;
 
 /**
  * The {@link DetectedActivitiesService} handles the activation and deactivation of the activity
- * tracking.
+ * tracking. The activity recognition client is created when tracking is first started or stopped.
  */
 public class DetectedActivitiesService extends Service {
 
@@ -39,8 +41,25 @@ public class DetectedActivitiesService extends Service {
     @Override
     public void onCreate() {
         Log.i(LOG_TAG, "DetectedActivitiesService created.");
+    }
 
-        mActivityRecognitionClient = new ActivityRecognitionClient(this);
+    /**
+     * Returns the activity recognition client and creates it on first use.
+     * @return The activity recognition client of the service.
+     */
+    private ActivityRecognitionClient getActivityRecognitionClient() {
+        if (mActivityRecognitionClient == null) {
+            mActivityRecognitionClient = new ActivityRecognitionClient(this);
+        }
+        return mActivityRecognitionClient;
+    }
+
+    @Override
+    public void onDestroy() {
+        Log.i(LOG_TAG, "DetectedActivitiesService destroyed.");
+        Scenarios.getInstance(this).flushState();
+        PowerAccounting.getInstance(this).save();
+        super.onDestroy();
     }
 
     @Nullable
@@ -67,7 +86,7 @@ public class DetectedActivitiesService extends Service {
     public void startTracking() {
         Log.i(LOG_TAG, "Starting activity tracking.");
 
-        mActivityRecognitionClient.requestActivityUpdates(Constants.DETECTION_INTERVAL_IN_MILLISECONDS, getBroadcastPendingIntent())
+        getActivityRecognitionClient().requestActivityUpdates(Constants.DETECTION_INTERVAL_IN_MILLISECONDS, getBroadcastPendingIntent())
                 .addOnSuccessListener(new OnSuccessListener<Void>() {
                     @Override
                     public void onSuccess(Void result) {
@@ -95,7 +114,7 @@ public class DetectedActivitiesService extends Service {
      */
     public void stopTracking() {
         Log.i(LOG_TAG, "Stopping activity tracking.");
-        mActivityRecognitionClient.removeActivityUpdates(getBroadcastPendingIntent())
+        getActivityRecognitionClient().removeActivityUpdates(getBroadcastPendingIntent())
                 .addOnSuccessListener(new OnSuccessListener<Void>() {
                     @Override
                     public void onSuccess(Void result) {
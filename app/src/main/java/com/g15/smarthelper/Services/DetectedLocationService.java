@@ -5,11 +5,13 @@ import android.app.NotificationChannel;
 import android.app.NotificationManager;
 import android.app.PendingIntent;
 import android.app.Service;
+import android.content.ComponentCallbacks2;
 import android.content.Intent;
 import android.os.Binder;
 import android.os.Build;
 import android.os.HandlerThread;
 import android.os.IBinder;
+import android.os.Process;
 import android.util.Log;
 import android.widget.Toast;
 
@@ -17,13 +19,17 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.core.app.NotificationCompat;
 
-import com.g15.smarthelper.Constants;
 import com.g15.smarthelper.MainActivity;
 import com.g15.smarthelper.R;
+import com.g15.smarthelper.Scenarios;
+import com.g15.smarthelper.engine.SamplingTier;
+import com.g15.smarthelper.engine.ScenarioEngine;
+import com.g15.smarthelper.metrics.Metrics;
+import com.g15.smarthelper.power.PowerAccounting;
 import com.g15.smarthelper.receiver.LocationUpdateReceiver;
-import com.google.android.gms.location.FusedLocationProviderClient;
+import com.google.android.gms.location.LocationCallback;
 import com.google.android.gms.location.LocationRequest;
-import com.google.android.gms.location.LocationServices;
+import com.google.android.gms.location.LocationResult;
 import com.google.android.gms.tasks.OnFailureListener;
 import com.google.android.gms.tasks.OnSuccessListener;
 
@@ -32,6 +38,15 @@ import com.google.android.gms.tasks.OnSuccessListener;
  * The {@link DetectedLocationService} handles the activation and deactivation of the location
  * tracking. The service starts as a foreground service when the app is closed to obtain location
  * updates in the background.
+ *
+ * While the service is running, the location updates are delivered to a {@link LocationCallback}
+ * on a thread of the service, which hands them to the {@link ScenarioEngine} without a broadcast.
+ * When the process may be killed, i.e. the task is removed, memory is low or the service is
+ * destroyed, the updates are delivered to the {@link LocationUpdateReceiver} instead. They are
+ * taken back as soon as the UI binds the service again or the service returns to the foreground.
+ *
+ * The service is created while the main activity starts, so creating it only sets up the delivery
+ * if tracking is already active. The notification channel is created when it is first needed.
  */
 public class DetectedLocationService extends Service {
 
@@ -39,10 +54,19 @@ public class DetectedLocationService extends Service {
     private static final String CHANNEL_ID = "foreground-service-notifications";
     private static final int NOTIFICATION_ID = 9213875;
 
-    private FusedLocationProviderClient fusedLocationClient;
-    private LocationRequest locationRequest;
+    private HandlerThread handlerThread;
     private boolean isActive = false;
 
+    private final LocationCallback locationCallback = new LocationCallback() {
+        @Override
+        public void onLocationResult(LocationResult result) {
+            long start = System.nanoTime();
+            ScenarioEngine.getInstance(DetectedLocationService.this)
+                    .postLocationResult(result.getLocations(), null);
+            Metrics.LOCATION_CALLBACK.record(System.nanoTime() - start);
+        }
+    };
+
     private final IBinder locBinder = new LocalBinder();
 
     public class LocalBinder extends Binder {
@@ -54,15 +78,37 @@ public class DetectedLocationService extends Service {
     @Override
     public void onCreate() {
         Log.i(LOG_TAG, "Detected Location Service created.");
+        // The service was restarted while tracking, take the updates over from the receiver.
+        resumeInProcessDelivery();
+    }
 
-        fusedLocationClient = LocationServices.getFusedLocationProviderClient(this);
-
-        createLocationRequest();
-        fetchLocation();
+    /**
+     * Takes the location updates back from the receiver while tracking, e.g. when the UI returns
+     * after the task was removed or the memory was trimmed. Nothing changes if the updates are
+     * already delivered to the callback.
+     */
+    private void resumeInProcessDelivery() {
+        if (LocationSampling.isTrackingActive(this) && !LocationSampling.isGeofencingMode(this)) {
+            deliverInProcess();
+        }
+    }
 
-        HandlerThread handlerThread = new HandlerThread(LOG_TAG);
-        handlerThread.start();
+    /**
+     * Delivers the location updates to the callback on the thread of the service.
+     */
+    private void deliverInProcess() {
+        if (handlerThread == null) {
+            handlerThread = new HandlerThread(LOG_TAG, Process.THREAD_PRIORITY_BACKGROUND);
+            handlerThread.start();
+        }
+        LocationSampling.deliverInProcess(this, locationCallback, handlerThread.getLooper());
+    }
 
+    /**
+     * Creates the notification channel of the foreground service notification. Creating an
+     * existing channel does nothing, so it is created before every foreground start.
+     */
+    private void createNotificationChannel() {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
             Log.v(LOG_TAG, "Creating notification channel for foreground service notification.");
             CharSequence name = getString(R.string.app_name);
@@ -73,28 +119,35 @@ public class DetectedLocationService extends Service {
         }
     }
 
-    /**
-     * Fetch the latest device location.
-     */
-    private void fetchLocation() {
-        try {
-            Log.v(LOG_TAG, "Fetching latest location.");
-            fusedLocationClient.getLastLocation();
-        } catch (SecurityException ex) {
-            Log.e(LOG_TAG, "Lost location permission.", ex);
+    @Override
+    public void onTaskRemoved(Intent rootIntent) {
+        Log.v(LOG_TAG, "Task removed, persisting pending scenario state.");
+        LocationSampling.deliverByIntent(this);
+        Scenarios.getInstance(this).flushState();
+        PowerAccounting.getInstance(this).save();
+        super.onTaskRemoved(rootIntent);
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_COMPLETE) {
+            Log.v(LOG_TAG, "Process may be killed, delivering location updates by intent.");
+            LocationSampling.deliverByIntent(this);
         }
     }
 
-    /**
-     * Create a location request that determines the QoS of the location updates.
-     */
-    private void createLocationRequest() {
-        Log.v(LOG_TAG, "Creating location request.");
-        locationRequest = new LocationRequest()
-                .setInterval(Constants.UPDATE_INTERVAL)
-                .setFastestInterval(Constants.FASTEST_UPDATE_INTERVAL)
-                .setPriority(LocationRequest.PRIORITY_HIGH_ACCURACY)
-                .setMaxWaitTime(Constants.MAX_WAIT_TIME);
+    @Override
+    public void onDestroy() {
+        Log.i(LOG_TAG, "Detected Location Service destroyed.");
+        LocationSampling.deliverByIntent(this);
+        if (handlerThread != null) {
+            handlerThread.quitSafely();
+            handlerThread = null;
+        }
+        Scenarios.getInstance(this).flushState();
+        PowerAccounting.getInstance(this).save();
+        super.onDestroy();
     }
 
     @Nullable
@@ -102,6 +155,7 @@ public class DetectedLocationService extends Service {
     public IBinder onBind(Intent intent) {
         Log.v(LOG_TAG, "Bound to DetectedLocationService");
         stopForeground(true);
+        resumeInProcessDelivery();
         return locBinder;
     }
 
@@ -109,6 +163,7 @@ public class DetectedLocationService extends Service {
     public void onRebind(Intent intent) {
         Log.v(LOG_TAG, "Re-Bound to DetectedLocationService");
         stopForeground(true);
+        resumeInProcessDelivery();
         super.onRebind(intent);
     }
 
@@ -117,24 +172,31 @@ public class DetectedLocationService extends Service {
         Log.v(LOG_TAG, "Unbound from DetectedLocationService");
         if (isActive) {
             startForeground(NOTIFICATION_ID, createForegroundNotification());
+            resumeInProcessDelivery();
         }
         return true;
     }
 
-    private PendingIntent getBroadcastPendingIntent() {
-        Intent intent = new Intent(this, LocationUpdateReceiver.class);
-        return PendingIntent.getBroadcast(this, 0, intent, PendingIntent.FLAG_UPDATE_CURRENT);
-    }
-
-
     /**
-     * Start the activity recognition by registering the {@link LocationUpdateReceiver} for receiving location updates.
+     * Start the location tracking by requesting location updates for the callback of the service.
+     * The updates start with the {@link SamplingTier#NEAR} tier, the engine adapts the tier to the
+     * distance to the nearest fence through {@link LocationSampling}. In the geofencing mode the
+     * fences are registered with the system geofencing instead.
      */
     public void startTracking() {
         Log.i(LOG_TAG, "Starting location tracking.");
         startService(new Intent(getApplicationContext(), DetectedLocationService.class));
+        if (LocationSampling.isGeofencingMode(this)) {
+            Log.i(LOG_TAG, "Monitoring the fences with the system geofencing.");
+            LocationSampling.setTrackingActive(this, true);
+            LocationSampling.registerGeofences(this);
+            isActive = true;
+            return;
+        }
         try {
-            fusedLocationClient.requestLocationUpdates(locationRequest, getBroadcastPendingIntent())
+            deliverInProcess();
+            LocationRequest locationRequest = LocationSampling.createLocationRequest(SamplingTier.NEAR);
+            LocationSampling.requestUpdates(this, locationRequest)
                     .addOnSuccessListener(new OnSuccessListener<Void>() {
                         @Override
                         public void onSuccess(Void result) {
@@ -155,6 +217,7 @@ public class DetectedLocationService extends Service {
                                     .show();
                         }
                     });
+            LocationSampling.setTrackingActive(this, true);
             isActive = true;
         } catch (SecurityException ex) {
             Log.e(LOG_TAG, "Location permission denied.", ex);
@@ -162,12 +225,17 @@ public class DetectedLocationService extends Service {
     }
 
     /**
-     * Stop the activity recognition by unregistering the {@link LocationUpdateReceiver}.
+     * Stop the location tracking by removing the location updates.
      */
     public void stopTracking() {
         Log.i(LOG_TAG, "Stopping location tracking.");
         isActive = false;
-        fusedLocationClient.removeLocationUpdates(getBroadcastPendingIntent())
+        LocationSampling.setTrackingActive(this, false);
+        if (LocationSampling.isGeofencingMode(this)) {
+            LocationSampling.getGeofenceRegistrar(this).unregister();
+        }
+        TimeWindowAlarm.cancel(this);
+        LocationSampling.removeUpdates(this)
                 .addOnSuccessListener(new OnSuccessListener<Void>() {
                     @Override
                     public void onSuccess(Void result) {
@@ -198,6 +266,7 @@ public class DetectedLocationService extends Service {
      */
     private Notification createForegroundNotification () {
         Log.v(LOG_TAG, "Creating foreground notification.");
+        createNotificationChannel();
         Intent intent = new Intent(this, MainActivity.class);
         intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
         PendingIntent pendingIntent = PendingIntent.getActivity(this, 0, intent, 0);
@@ -0,0 +1,394 @@
+package com.g15.smarthelper.Services;
+
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.os.Looper;
+import android.util.Log;
+
+import com.g15.smarthelper.Constants;
+import com.g15.smarthelper.Scenarios;
+import com.g15.smarthelper.engine.SamplingTier;
+import com.g15.smarthelper.geofence.GeofenceRegistrar;
+import com.g15.smarthelper.geofence.PlayGeofenceClient;
+import com.g15.smarthelper.receiver.LocationUpdateReceiver;
+import com.google.android.gms.location.FusedLocationProviderClient;
+import com.google.android.gms.location.LocationCallback;
+import com.google.android.gms.location.LocationRequest;
+import com.google.android.gms.location.LocationServices;
+import com.google.android.gms.tasks.Task;
+
+/**
+ * The {@link LocationSampling} keeps the location request of the {@link DetectedLocationService}
+ * in line with the {@link SamplingTier} chosen by the scenario engine.
+ *
+ * While the {@link DetectedLocationService} is running, the location updates are delivered to its
+ * {@link LocationCallback} on the service's thread, without a broadcast. When the process may be
+ * killed, the service switches the delivery to a {@link PendingIntent}, whose updates keep
+ * arriving at the {@link LocationUpdateReceiver} after the process was restarted. Updates are
+ * always delivered to the same target, so requesting updates again replaces the previous request.
+ * A new request is only issued when the tier changes. Whether tracking is active and the current
+ * tier are persisted.
+ *
+ * While tracking is active the updates can be paused, e.g. while the user is not moving. A paused
+ * tracking is resumed with the {@link SamplingTier#NEAR} tier.
+ *
+ * In the geofencing mode no location updates are requested at all. Instead the rule fences are
+ * registered with the system geofencing, whose transitions are evaluated by the engine. The mode
+ * can be switched while tracking is active.
+ */
+public final class LocationSampling {
+
+    private static final String LOG_TAG = "LocationSampling";
+    private static final String SHARED_PREFERENCES_KEY = "location-sampling";
+    private static final String TRACKING_ACTIVE = "tracking_active";
+    private static final String SAMPLING_TIER = "sampling_tier";
+    private static final String TRACKING_PAUSED = "tracking_paused";
+    private static final String STILL_SAMPLES_BEFORE_PAUSE = "still_samples_before_pause";
+    private static final String GEOFENCING_MODE = "geofencing_mode";
+
+    private static PendingIntent pendingIntent;
+    private static GeofenceRegistrar geofenceRegistrar;
+    // The in-process target of the location updates, null while they are delivered by intent.
+    private static LocationCallback callback;
+    private static Looper callbackLooper;
+
+    private LocationSampling() {
+    }
+
+    /**
+     * Returns the pending intent the location updates are delivered to.
+     * @param context A context of the app.
+     * @return The shared pending intent.
+     */
+    static synchronized PendingIntent getPendingIntent(Context context) {
+        if (pendingIntent == null) {
+            Context appContext = context.getApplicationContext();
+            Intent intent = new Intent(appContext, LocationUpdateReceiver.class);
+            pendingIntent = PendingIntent.getBroadcast(appContext, 0, intent,
+                    PendingIntent.FLAG_UPDATE_CURRENT);
+        }
+        return pendingIntent;
+    }
+
+    /**
+     * Delivers the location updates to a callback in this process from now on. If updates are
+     * requested, they are requested for the callback before the pending intent is removed, so no
+     * update is lost while switching.
+     * @param context A context of the app.
+     * @param locationCallback The callback to deliver the updates to.
+     * @param looper The looper of the thread the callback is called on.
+     */
+    static synchronized void deliverInProcess(Context context, LocationCallback locationCallback,
+                                              Looper looper) {
+        if (callback == locationCallback) {
+            return;
+        }
+        LocationCallback previous = callback;
+        callback = locationCallback;
+        callbackLooper = looper;
+        Log.i(LOG_TAG, "Delivering location updates in process.");
+        switchTarget(context, previous);
+    }
+
+    /**
+     * Delivers the location updates to the {@link LocationUpdateReceiver} from now on, so they
+     * keep arriving if the process is killed.
+     * @param context A context of the app.
+     */
+    static synchronized void deliverByIntent(Context context) {
+        if (callback == null) {
+            return;
+        }
+        LocationCallback previous = callback;
+        callback = null;
+        callbackLooper = null;
+        Log.i(LOG_TAG, "Delivering location updates by intent.");
+        switchTarget(context, previous);
+    }
+
+    /**
+     * Requests the running location updates for the current target and removes them from the
+     * previous one.
+     * @param context A context of the app.
+     * @param previous The previous callback, or null if the updates were delivered by intent.
+     */
+    private static void switchTarget(Context context, LocationCallback previous) {
+        FusedLocationProviderClient client =
+                LocationServices.getFusedLocationProviderClient(context.getApplicationContext());
+        SharedPreferences preferences = getPreferences(context);
+        if (preferences.getBoolean(TRACKING_ACTIVE, false)
+                && !preferences.getBoolean(GEOFENCING_MODE, false)
+                && !preferences.getBoolean(TRACKING_PAUSED, false)) {
+            try {
+                requestUpdates(context, createLocationRequest(getTier(context)));
+            } catch (SecurityException ex) {
+                Log.e(LOG_TAG, "Location permission denied.", ex);
+            }
+        }
+        if (previous != null) {
+            client.removeLocationUpdates(previous);
+        } else {
+            client.removeLocationUpdates(getPendingIntent(context));
+        }
+    }
+
+    /**
+     * Requests location updates for the current target, which replaces a previous request.
+     * @param context A context of the app.
+     * @param request The location request.
+     * @return The task of the request.
+     * @throws SecurityException If the location permission is not granted.
+     */
+    static synchronized Task<Void> requestUpdates(Context context, LocationRequest request) {
+        FusedLocationProviderClient client =
+                LocationServices.getFusedLocationProviderClient(context.getApplicationContext());
+        if (callback != null) {
+            return client.requestLocationUpdates(request, callback, callbackLooper);
+        }
+        return client.requestLocationUpdates(request, getPendingIntent(context));
+    }
+
+    /**
+     * Removes the location updates of both targets. Removing the pending intent as well clears
+     * a request left over from a process that was killed.
+     * @param context A context of the app.
+     * @return The task of removing the updates of the current target.
+     */
+    static synchronized Task<Void> removeUpdates(Context context) {
+        FusedLocationProviderClient client =
+                LocationServices.getFusedLocationProviderClient(context.getApplicationContext());
+        Task<Void> removal = client.removeLocationUpdates(getPendingIntent(context));
+        if (callback != null) {
+            removal = client.removeLocationUpdates(callback);
+        }
+        return removal;
+    }
+
+    /**
+     * Returns the registrar of the system geofences.
+     * @param context A context of the app.
+     * @return The shared registrar.
+     */
+    static synchronized GeofenceRegistrar getGeofenceRegistrar(Context context) {
+        if (geofenceRegistrar == null) {
+            geofenceRegistrar = new GeofenceRegistrar(new PlayGeofenceClient(context));
+        }
+        return geofenceRegistrar;
+    }
+
+    /**
+     * Create a location request that determines the QoS of the location updates.
+     * @param tier The sampling tier to request.
+     * @return The location request.
+     */
+    static LocationRequest createLocationRequest(SamplingTier tier) {
+        return new LocationRequest()
+                .setInterval(tier.getInterval())
+                .setFastestInterval(tier.getFastestInterval())
+                .setPriority(tier.getPriority())
+                .setMaxWaitTime(tier.getMaxWaitTime());
+    }
+
+    /**
+     * Returns the tier location updates are currently requested with.
+     * @param context A context of the app.
+     * @return The current tier.
+     */
+    public static synchronized SamplingTier getTier(Context context) {
+        String name = getPreferences(context).getString(SAMPLING_TIER, null);
+        if (name != null) {
+            try {
+                return SamplingTier.valueOf(name);
+            } catch (IllegalArgumentException e) {
+                Log.w(LOG_TAG, "Unknown sampling tier " + name + ".");
+            }
+        }
+        return SamplingTier.NEAR;
+    }
+
+    /**
+     * Records whether location updates are requested. Tracking always starts with the
+     * {@link SamplingTier#NEAR} tier until the first location was evaluated.
+     * @param context A context of the app.
+     * @param active Whether location updates are requested.
+     */
+    static synchronized void setTrackingActive(Context context, boolean active) {
+        getPreferences(context).edit()
+                .putBoolean(TRACKING_ACTIVE, active)
+                .putBoolean(TRACKING_PAUSED, false)
+                .putString(SAMPLING_TIER, SamplingTier.NEAR.name())
+                .apply();
+    }
+
+    /**
+     * @param context A context of the app.
+     * @return true if location updates or geofences are requested.
+     */
+    public static synchronized boolean isTrackingActive(Context context) {
+        return getPreferences(context).getBoolean(TRACKING_ACTIVE, false);
+    }
+
+    /**
+     * @param context A context of the app.
+     * @return true if the fences are monitored by the system geofencing instead of location
+     *         updates.
+     */
+    public static synchronized boolean isGeofencingMode(Context context) {
+        return getPreferences(context).getBoolean(GEOFENCING_MODE, false);
+    }
+
+    /**
+     * Switches between location updates and the system geofencing. If tracking is active, the
+     * location updates are removed and the geofences registered or the other way around.
+     * @param context A context of the app.
+     * @param enabled true to use the system geofencing.
+     */
+    public static synchronized void setGeofencingMode(Context context, boolean enabled) {
+        SharedPreferences preferences = getPreferences(context);
+        if (enabled == preferences.getBoolean(GEOFENCING_MODE, false)) {
+            return;
+        }
+        preferences.edit()
+                .putBoolean(GEOFENCING_MODE, enabled)
+                .putBoolean(TRACKING_PAUSED, false)
+                .putString(SAMPLING_TIER, SamplingTier.NEAR.name())
+                .apply();
+        Log.i(LOG_TAG, "Changed geofencing mode to " + enabled + ".");
+        if (!preferences.getBoolean(TRACKING_ACTIVE, false)) {
+            return;
+        }
+
+        if (enabled) {
+            removeUpdates(context);
+            registerGeofences(context);
+        } else {
+            getGeofenceRegistrar(context).unregister();
+            try {
+                requestUpdates(context, createLocationRequest(SamplingTier.NEAR));
+            } catch (SecurityException ex) {
+                Log.e(LOG_TAG, "Location permission denied.", ex);
+            }
+        }
+    }
+
+    /**
+     * Registers the fences of the current rules with the system geofencing.
+     * @param context A context of the app.
+     */
+    static void registerGeofences(Context context) {
+        getGeofenceRegistrar(context).register(Scenarios.getInstance(context).getRuleTable());
+    }
+
+    /**
+     * Brings the tracking in line with changed fences. In the geofencing mode the fences are
+     * registered again, otherwise the sampling is reset to the {@link SamplingTier#NEAR} tier, as
+     * the current tier was chosen for the old fences.
+     * @param context A context of the app.
+     */
+    public static synchronized void onFencesChanged(Context context) {
+        SharedPreferences preferences = getPreferences(context);
+        if (!preferences.getBoolean(TRACKING_ACTIVE, false)) {
+            return;
+        }
+        if (preferences.getBoolean(GEOFENCING_MODE, false)) {
+            registerGeofences(context);
+        } else {
+            updateTier(context, SamplingTier.NEAR);
+        }
+    }
+
+    /**
+     * @param context A context of the app.
+     * @return true if tracking is active but the location updates are paused.
+     */
+    public static synchronized boolean isPaused(Context context) {
+        SharedPreferences preferences = getPreferences(context);
+        return preferences.getBoolean(TRACKING_ACTIVE, false)
+                && preferences.getBoolean(TRACKING_PAUSED, false);
+    }
+
+    /**
+     * Returns the number of consecutive STILL activity samples after which the location updates
+     * are paused.
+     * @param context A context of the app.
+     * @return The number of samples.
+     */
+    public static int getStillSamplesBeforePause(Context context) {
+        return getPreferences(context).getInt(STILL_SAMPLES_BEFORE_PAUSE,
+                Constants.STILL_SAMPLES_BEFORE_PAUSE);
+    }
+
+    /**
+     * Removes the location updates while tracking stays active.
+     * @param context A context of the app.
+     * @return true if the updates were paused.
+     */
+    public static synchronized boolean pause(Context context) {
+        SharedPreferences preferences = getPreferences(context);
+        if (!preferences.getBoolean(TRACKING_ACTIVE, false)
+                || preferences.getBoolean(GEOFENCING_MODE, false)
+                || preferences.getBoolean(TRACKING_PAUSED, false)) {
+            return false;
+        }
+        removeUpdates(context);
+        preferences.edit().putBoolean(TRACKING_PAUSED, true).apply();
+        Log.i(LOG_TAG, "Paused location updates.");
+        return true;
+    }
+
+    /**
+     * Requests the location updates again after they were paused.
+     * @param context A context of the app.
+     * @return true if the updates were resumed.
+     */
+    public static synchronized boolean resume(Context context) {
+        SharedPreferences preferences = getPreferences(context);
+        if (!isPaused(context) || preferences.getBoolean(GEOFENCING_MODE, false)) {
+            return false;
+        }
+        try {
+            requestUpdates(context, createLocationRequest(SamplingTier.NEAR));
+        } catch (SecurityException ex) {
+            Log.e(LOG_TAG, "Location permission denied.", ex);
+            return false;
+        }
+        preferences.edit()
+                .putBoolean(TRACKING_PAUSED, false)
+                .putString(SAMPLING_TIER, SamplingTier.NEAR.name())
+                .apply();
+        Log.i(LOG_TAG, "Resumed location updates.");
+        return true;
+    }
+
+    /**
+     * Requests location updates with a new tier if tracking is active and the tier changed.
+     * While the updates are paused the tier is not changed.
+     * @param context A context of the app.
+     * @param tier The tier to sample with.
+     * @return true if the location updates were requested again.
+     */
+    public static synchronized boolean updateTier(Context context, SamplingTier tier) {
+        SharedPreferences preferences = getPreferences(context);
+        if (!preferences.getBoolean(TRACKING_ACTIVE, false)
+                || preferences.getBoolean(GEOFENCING_MODE, false)
+                || preferences.getBoolean(TRACKING_PAUSED, false) || tier == getTier(context)) {
+            return false;
+        }
+        try {
+            requestUpdates(context, createLocationRequest(tier));
+        } catch (SecurityException ex) {
+            Log.e(LOG_TAG, "Location permission denied.", ex);
+            return false;
+        }
+        preferences.edit().putString(SAMPLING_TIER, tier.name()).apply();
+        Log.i(LOG_TAG, "Changed location sampling to " + tier + ".");
+        return true;
+    }
+
+    private static SharedPreferences getPreferences(Context context) {
+        return context.getApplicationContext()
+                .getSharedPreferences(SHARED_PREFERENCES_KEY, Context.MODE_PRIVATE);
+    }
+}
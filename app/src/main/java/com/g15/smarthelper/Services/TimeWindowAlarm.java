@@ -0,0 +1,65 @@
+package com.g15.smarthelper.Services;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+import com.g15.smarthelper.receiver.TimeWindowReceiver;
+
+/**
+ * The {@link TimeWindowAlarm} wakes the app up when the time window of a rule starts or ends.
+ * Location updates only arrive when the user moves, so without the alarm a rule whose fence is
+ * already entered would not trigger when its time window starts.
+ *
+ * Only one alarm is set at a time, setting it again replaces the previous one.
+ */
+public final class TimeWindowAlarm {
+
+    private static final String LOG_TAG = "TimeWindowAlarm";
+    private static final int REQUEST_CODE = 3;
+
+    private static PendingIntent pendingIntent;
+
+    private TimeWindowAlarm() {
+    }
+
+    private static synchronized PendingIntent getPendingIntent(Context context) {
+        if (pendingIntent == null) {
+            Context appContext = context.getApplicationContext();
+            Intent intent = new Intent(appContext, TimeWindowReceiver.class);
+            pendingIntent = PendingIntent.getBroadcast(appContext, REQUEST_CODE, intent,
+                    PendingIntent.FLAG_UPDATE_CURRENT);
+        }
+        return pendingIntent;
+    }
+
+    /**
+     * Sets the alarm, even if the device is idle.
+     * @param context A context of the app.
+     * @param time The time of the alarm in milliseconds since the epoch.
+     */
+    public static void schedule(Context context, long time) {
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        if (alarmManager == null) {
+            return;
+        }
+        alarmManager.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, time,
+                getPendingIntent(context));
+        Log.i(LOG_TAG, "Scheduled time window alarm at " + time + ".");
+    }
+
+    /**
+     * Cancels the alarm.
+     * @param context A context of the app.
+     */
+    public static void cancel(Context context) {
+        AlarmManager alarmManager = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        if (alarmManager == null) {
+            return;
+        }
+        alarmManager.cancel(getPendingIntent(context));
+        Log.i(LOG_TAG, "Cancelled time window alarm.");
+    }
+}
@@ -0,0 +1,103 @@
+package com.g15.smarthelper.engine;
+
+import com.google.android.gms.location.DetectedActivity;
+
+import java.util.Arrays;
+
+/**
+ * The {@link ActivityFusion} reduces each activity recognition result to a single activity. The
+ * probable activities of the last few results are kept in a sliding window and every activity
+ * gets a vote weighted by its confidences, where newer results weigh more than older ones.
+ *
+ * The activity with the most votes is only accepted if its weighted mean confidence is above the
+ * threshold. Otherwise the previous decision is kept, so a single uncertain or contradicting
+ * result does not change the current activity. {@link DetectedActivity#TILTING} and
+ * {@link DetectedActivity#UNKNOWN} do not describe a movement and get no vote.
+ */
+public class ActivityFusion {
+
+    /** No activity has been confident enough yet. */
+    public static final int NO_DECISION = -1;
+
+    // The DetectedActivity types are numbered from 0 to RUNNING.
+    private static final int TYPE_COUNT = DetectedActivity.RUNNING + 1;
+
+    private final int windowSize;
+    private final int minConfidence;
+    // The confidences of every type for each result in the window, a row per result.
+    private final int[] confidences;
+    private final long[] votes = new long[TYPE_COUNT];
+    private int next;
+    private int filled;
+    private int decision = NO_DECISION;
+
+    /**
+     * Creates a new fusion stage.
+     * @param windowSize The number of recent results that vote on the activity.
+     * @param minConfidence The weighted mean confidence an activity needs to be accepted.
+     */
+    public ActivityFusion(int windowSize, int minConfidence) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("The window size has to be positive: " + windowSize);
+        }
+        this.windowSize = windowSize;
+        this.minConfidence = minConfidence;
+        this.confidences = new int[windowSize * TYPE_COUNT];
+    }
+
+    /**
+     * Adds a result to the window and decides on the current activity.
+     * @param types The types of the probable activities of the result.
+     * @param confidences The confidences of the probable activities, from 0 to 100.
+     * @param count The number of probable activities.
+     * @return The fused activity type or {@link #NO_DECISION}.
+     */
+    public int fuse(int[] types, int[] confidences, int count) {
+        int row = next * TYPE_COUNT;
+        Arrays.fill(this.confidences, row, row + TYPE_COUNT, 0);
+        for (int i = 0; i < count; i++) {
+            int type = types[i];
+            if (type >= 0 && type < TYPE_COUNT && type != DetectedActivity.TILTING
+                    && type != DetectedActivity.UNKNOWN) {
+                this.confidences[row + type] += confidences[i];
+            }
+        }
+        next = (next + 1) % windowSize;
+        if (filled < windowSize) {
+            filled++;
+        }
+
+        // The newest result has the weight windowSize, the oldest result in a full window 1.
+        Arrays.fill(votes, 0);
+        long totalWeight = 0;
+        for (int age = 0; age < filled; age++) {
+            int weight = windowSize - age;
+            int offset = ((next - 1 - age + windowSize) % windowSize) * TYPE_COUNT;
+            for (int type = 0; type < TYPE_COUNT; type++) {
+                votes[type] += (long) weight * this.confidences[offset + type];
+            }
+            totalWeight += weight;
+        }
+
+        // On a tie the previous decision wins, unless it is ON_FOOT, which is reported together
+        // with the more specific WALKING or RUNNING.
+        int best = decision;
+        for (int type = 0; type < TYPE_COUNT; type++) {
+            if (best == NO_DECISION || votes[type] > votes[best]
+                    || (votes[type] == votes[best] && best == DetectedActivity.ON_FOOT)) {
+                best = type;
+            }
+        }
+        if (votes[best] > minConfidence * totalWeight) {
+            decision = best;
+        }
+        return decision;
+    }
+
+    /**
+     * @return The last accepted activity type or {@link #NO_DECISION}.
+     */
+    public int getDecision() {
+        return decision;
+    }
+}
@@ -0,0 +1,110 @@
+package com.g15.smarthelper.engine;
+
+/**
+ * A sensor update queued for the {@link ScenarioEngine}. Only primitive values are kept, so the
+ * events do not hold on to the intents they were extracted from.
+ */
+final class EngineEvent {
+
+    static final int TYPE_ACTIVITY = 0;
+    static final int TYPE_LOCATION = 1;
+    static final int TYPE_TRANSITION = 2;
+    static final int TYPE_TIME_WINDOW = 3;
+    static final int TYPE_LOCATION_RESULT = 4;
+
+    final int type;
+    final long time;
+    final int[] activityTypes;
+    final int[] confidences;
+    final LocationBatch locations;
+    final String[] ruleKeys;
+    final boolean entered;
+    // Run once the event has been processed or dropped, may be null.
+    Runnable completion;
+
+    private EngineEvent(int type, long time, int[] activityTypes, int[] confidences,
+                        LocationBatch locations, String[] ruleKeys, boolean entered) {
+        this.type = type;
+        this.time = time;
+        this.activityTypes = activityTypes;
+        this.confidences = confidences;
+        this.locations = locations;
+        this.ruleKeys = ruleKeys;
+        this.entered = entered;
+    }
+
+    /**
+     * Creates an event for the probable activities of one activity recognition result.
+     * @param activityTypes The {@link com.google.android.gms.location.DetectedActivity} types.
+     * @param confidences The confidences of the activities.
+     * @param time The time of the detection in milliseconds since the epoch.
+     * @return The new event.
+     */
+    static EngineEvent activity(int[] activityTypes, int[] confidences, long time) {
+        return new EngineEvent(TYPE_ACTIVITY, time, activityTypes, confidences, null, null, false);
+    }
+
+    /**
+     * Creates an event for the location fixes of one location result.
+     * @param locations The location fixes.
+     * @return The new event.
+     */
+    static EngineEvent location(LocationBatch locations) {
+        long time = locations.size() > 0 ? locations.getTime(locations.size() - 1) : 0;
+        return new EngineEvent(TYPE_LOCATION, time, null, null, locations, null, false);
+    }
+
+    /**
+     * Creates an event for the location fixes of one result of the location api. Unlike the
+     * fixes of {@link #location(LocationBatch)}, they are logged and accounted when processed.
+     * @param locations The location fixes.
+     * @return The new event.
+     */
+    static EngineEvent locationResult(LocationBatch locations) {
+        long time = locations.size() > 0 ? locations.getTime(locations.size() - 1) : 0;
+        return new EngineEvent(TYPE_LOCATION_RESULT, time, null, null, locations, null, false);
+    }
+
+    /**
+     * Creates an event for the fence transitions of one geofencing event.
+     * @param ruleKeys The keys of the rules whose fences were entered or left.
+     * @param entered true if the fences were entered, false if they were left.
+     * @param time The time of the transition in milliseconds since the epoch.
+     * @return The new event.
+     */
+    static EngineEvent transition(String[] ruleKeys, boolean entered, long time) {
+        return new EngineEvent(TYPE_TRANSITION, time, null, null, null, ruleKeys, entered);
+    }
+
+    /**
+     * Creates an event for the start or end of a rule's time window.
+     * @param time The time of the boundary in milliseconds since the epoch.
+     * @return The new event.
+     */
+    static EngineEvent timeWindow(long time) {
+        return new EngineEvent(TYPE_TIME_WINDOW, time, null, null, null, null, false);
+    }
+
+    boolean isLocation() {
+        return type == TYPE_LOCATION || type == TYPE_LOCATION_RESULT;
+    }
+
+    boolean isActivity() {
+        return type == TYPE_ACTIVITY;
+    }
+
+    @Override
+    public String toString() {
+        if (isLocation()) {
+            return "EngineEvent{" + locations.size() + " locations at " + time + "}";
+        }
+        if (type == TYPE_TRANSITION) {
+            return "EngineEvent{" + (entered ? "entered " : "left ") + ruleKeys.length
+                    + " fences at " + time + "}";
+        }
+        if (type == TYPE_TIME_WINDOW) {
+            return "EngineEvent{time window boundary at " + time + "}";
+        }
+        return "EngineEvent{" + activityTypes.length + " activities at " + time + "}";
+    }
+}
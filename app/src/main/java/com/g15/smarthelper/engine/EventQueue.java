@@ -0,0 +1,116 @@
+package com.g15.smarthelper.engine;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A bounded FIFO queue between the receivers and the engine thread.
+ *
+ * When the queue is full, the oldest queued location fix is dropped to make room: a newer fix
+ * describes the current position better than a stale one. Activity updates are only dropped if
+ * the queue holds no location fix. Fence transitions and time window boundaries are never
+ * dropped, since they are not reported again: if the queue holds nothing else, a new location fix
+ * or activity update is dropped instead and a new transition or boundary exceeds the capacity.
+ */
+final class EventQueue {
+
+    private final ArrayDeque<EngineEvent> events;
+    private final int capacity;
+    private long droppedCount;
+
+    EventQueue(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The capacity has to be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        this.events = new ArrayDeque<>(capacity);
+    }
+
+    /**
+     * Adds an event to the end of the queue, dropping a stale event if the queue is full.
+     * @param event The event to add.
+     * @return The dropped event, which may be the added event itself, or null if no event had to
+     *         be dropped.
+     */
+    synchronized EngineEvent offer(EngineEvent event) {
+        EngineEvent dropped = null;
+        if (events.size() >= capacity) {
+            dropped = removeOldest(EngineEvent.TYPE_LOCATION, EngineEvent.TYPE_LOCATION_RESULT);
+            if (dropped == null) {
+                dropped = removeOldest(EngineEvent.TYPE_ACTIVITY, EngineEvent.TYPE_ACTIVITY);
+            }
+            if (dropped == null && (event.isLocation() || event.isActivity())) {
+                // Only transitions and boundaries are queued, they are kept.
+                droppedCount++;
+                return event;
+            }
+            if (dropped != null) {
+                droppedCount++;
+            }
+        }
+        events.addLast(event);
+        notifyAll();
+        return dropped;
+    }
+
+    /**
+     * Removes the head of the queue, waiting until an event is available.
+     * @return The removed event.
+     * @throws InterruptedException If the thread was interrupted while waiting.
+     */
+    synchronized EngineEvent take() throws InterruptedException {
+        while (events.isEmpty()) {
+            wait();
+        }
+        return events.pollFirst();
+    }
+
+    /**
+     * Removes the head of the queue without waiting.
+     * @return The removed event or null if the queue is empty.
+     */
+    synchronized EngineEvent poll() {
+        return events.pollFirst();
+    }
+
+    synchronized int size() {
+        return events.size();
+    }
+
+    /**
+     * @return The number of events dropped since the queue was created.
+     */
+    synchronized long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * Removes the completions of the queued events, so the pending broadcasts can be finished
+     * while the events stay queued.
+     * @return The removed completions.
+     */
+    synchronized List<Runnable> takeCompletions() {
+        List<Runnable> completions = new ArrayList<>();
+        for (EngineEvent event : events) {
+            if (event.completion != null) {
+                completions.add(event.completion);
+                event.completion = null;
+            }
+        }
+        return completions;
+    }
+
+    private EngineEvent removeOldest(int type, int otherType) {
+        Iterator<EngineEvent> iterator = events.iterator();
+        while (iterator.hasNext()) {
+            EngineEvent event = iterator.next();
+            if (event.type == type || event.type == otherType) {
+                iterator.remove();
+                return event;
+            }
+        }
+        return null;
+    }
+}
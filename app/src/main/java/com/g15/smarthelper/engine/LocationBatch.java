@@ -0,0 +1,88 @@
+package com.g15.smarthelper.engine;
+
+/**
+ * The location fixes of one location result, stored as parallel primitive arrays. A batch is
+ * filled by the receiver and afterwards only read by the engine thread.
+ */
+public final class LocationBatch {
+
+    private final double[] latitudes;
+    private final double[] longitudes;
+    private final long[] times;
+    private final float[] speeds;
+    private int size;
+
+    /**
+     * Creates an empty batch.
+     * @param capacity The maximum number of fixes of the batch.
+     */
+    public LocationBatch(int capacity) {
+        latitudes = new double[capacity];
+        longitudes = new double[capacity];
+        times = new long[capacity];
+        speeds = new float[capacity];
+    }
+
+    /**
+     * Adds a fix to the batch.
+     * @param latitude The latitude of the fix.
+     * @param longitude The longitude of the fix.
+     * @param time The time of the fix in milliseconds since the epoch.
+     * @param speed The speed of the fix in meters per second or a negative value if unknown.
+     */
+    public void add(double latitude, double longitude, long time, float speed) {
+        if (size == times.length) {
+            throw new IllegalStateException("The batch is full: " + size);
+        }
+        latitudes[size] = latitude;
+        longitudes[size] = longitude;
+        times[size] = time;
+        speeds[size] = speed;
+        size++;
+    }
+
+    /**
+     * Orders the fixes by their time. The fixes of a location result are usually ordered already,
+     * so an insertion sort is used, which is linear in that case.
+     */
+    void sortByTime() {
+        for (int i = 1; i < size; i++) {
+            double latitude = latitudes[i];
+            double longitude = longitudes[i];
+            long time = times[i];
+            float speed = speeds[i];
+            int j = i - 1;
+            while (j >= 0 && times[j] > time) {
+                latitudes[j + 1] = latitudes[j];
+                longitudes[j + 1] = longitudes[j];
+                times[j + 1] = times[j];
+                speeds[j + 1] = speeds[j];
+                j--;
+            }
+            latitudes[j + 1] = latitude;
+            longitudes[j + 1] = longitude;
+            times[j + 1] = time;
+            speeds[j + 1] = speed;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double getLatitude(int index) {
+        return latitudes[index];
+    }
+
+    public double getLongitude(int index) {
+        return longitudes[index];
+    }
+
+    public long getTime(int index) {
+        return times[index];
+    }
+
+    public float getSpeed(int index) {
+        return speeds[index];
+    }
+}
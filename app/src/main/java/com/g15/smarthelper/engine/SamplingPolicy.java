@@ -0,0 +1,68 @@
+package com.g15.smarthelper.engine;
+
+import com.google.android.gms.location.DetectedActivity;
+
+/**
+ * The {@link SamplingPolicy} picks the location {@link SamplingTier} from the distance to the
+ * nearest fence boundary and the speed of the user.
+ *
+ * From both the earliest possible time of entry into a fence is estimated. The least frequent
+ * tier is chosen that still delivers updates at least twice before that time and whose accuracy
+ * is sufficient for the distance. Inside or close to a fence the original high accuracy sampling
+ * is used.
+ */
+public final class SamplingPolicy {
+
+    // Updates have to arrive at least this many times before the earliest possible entry.
+    private static final double SAFETY_FACTOR = 2;
+
+    private static final SamplingTier[] TIERS = SamplingTier.values();
+
+    private SamplingPolicy() {
+    }
+
+    /**
+     * Selects the sampling tier.
+     * @param distance The distance to the nearest fence boundary in meters, negative if inside.
+     * @param speed The speed of the user in meters per second.
+     * @return The least frequent tier that cannot miss a fence entry.
+     */
+    public static SamplingTier selectTier(double distance, double speed) {
+        double secondsToEntry = distance / Math.max(speed, 0.1);
+        for (int i = TIERS.length - 1; i > 0; i--) {
+            SamplingTier tier = TIERS[i];
+            if (distance >= tier.getMinDistance()
+                    && secondsToEntry * 1000 >= tier.getMaxWaitTime() * SAFETY_FACTOR) {
+                return tier;
+            }
+        }
+        return SamplingTier.NEAR;
+    }
+
+    /**
+     * Estimates the speed of the user. The reported speed is only trusted if it is above the
+     * typical speed of the detected activity, since the user can speed up at any time.
+     * @param reportedSpeed The speed of the last location fix or a negative value if unknown.
+     * @param activityType The current {@link DetectedActivity} type.
+     * @return The speed in meters per second.
+     */
+    public static double estimateSpeed(float reportedSpeed, int activityType) {
+        return Math.max(reportedSpeed, getTypicalSpeed(activityType));
+    }
+
+    private static double getTypicalSpeed(int activityType) {
+        switch (activityType) {
+            case DetectedActivity.STILL:
+            case DetectedActivity.WALKING:
+            case DetectedActivity.ON_FOOT:
+                return 2.5;
+            case DetectedActivity.RUNNING:
+                return 6;
+            case DetectedActivity.ON_BICYCLE:
+                return 12;
+            default:
+                // In a vehicle or unknown, assume highway speed.
+                return 40;
+        }
+    }
+}
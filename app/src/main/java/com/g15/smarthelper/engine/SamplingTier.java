@@ -0,0 +1,75 @@
+package com.g15.smarthelper.engine;
+
+import com.g15.smarthelper.Constants;
+import com.google.android.gms.location.LocationRequest;
+
+/**
+ * The location sampling tiers, ordered from the most to the least frequent sampling. Each tier
+ * describes the {@link LocationRequest} used while it is active.
+ */
+public enum SamplingTier {
+
+    /** Close to or inside a fence: the original high accuracy request. */
+    NEAR(LocationRequest.PRIORITY_HIGH_ACCURACY, Constants.UPDATE_INTERVAL,
+            Constants.FASTEST_UPDATE_INTERVAL, Constants.MAX_WAIT_TIME, 0),
+    /** A fence can be reached within a few minutes. */
+    APPROACHING(LocationRequest.PRIORITY_BALANCED_POWER_ACCURACY, 60 * 1000,
+            30 * 1000, 2 * 60 * 1000, 500),
+    /** No fence can be reached within the next quarter of an hour. */
+    FAR(LocationRequest.PRIORITY_BALANCED_POWER_ACCURACY, 5 * 60 * 1000,
+            60 * 1000, 10 * 60 * 1000, 2000),
+    /** All fences are far away, cell and wifi accuracy is sufficient. */
+    REMOTE(LocationRequest.PRIORITY_LOW_POWER, 15 * 60 * 1000,
+            5 * 60 * 1000, 30 * 60 * 1000, 10000);
+
+    private final int priority;
+    private final long interval;
+    private final long fastestInterval;
+    private final long maxWaitTime;
+    private final double minDistance;
+
+    SamplingTier(int priority, long interval, long fastestInterval, long maxWaitTime,
+                 double minDistance) {
+        this.priority = priority;
+        this.interval = interval;
+        this.fastestInterval = fastestInterval;
+        this.maxWaitTime = maxWaitTime;
+        this.minDistance = minDistance;
+    }
+
+    /**
+     * @return The {@link LocationRequest} priority of the tier.
+     */
+    public int getPriority() {
+        return priority;
+    }
+
+    /**
+     * @return The desired update interval in milliseconds.
+     */
+    public long getInterval() {
+        return interval;
+    }
+
+    /**
+     * @return The fastest accepted update interval in milliseconds.
+     */
+    public long getFastestInterval() {
+        return fastestInterval;
+    }
+
+    /**
+     * @return The maximum batching delay in milliseconds.
+     */
+    public long getMaxWaitTime() {
+        return maxWaitTime;
+    }
+
+    /**
+     * @return The minimal distance to the nearest fence boundary in meters for which the accuracy
+     *         of the tier's priority is sufficient.
+     */
+    public double getMinDistance() {
+        return minDistance;
+    }
+}
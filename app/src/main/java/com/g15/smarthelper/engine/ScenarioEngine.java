@@ -0,0 +1,479 @@
+package com.g15.smarthelper.engine;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.location.Location;
+import android.os.Process;
+import android.util.Log;
+
+import com.g15.smarthelper.Constants;
+import com.g15.smarthelper.ScenarioHandler.ActionExecutor;
+import com.g15.smarthelper.ScenarioHandler.ActionRegistry;
+import com.g15.smarthelper.Scenarios;
+import com.g15.smarthelper.Services.LocationSampling;
+import com.g15.smarthelper.Services.TimeWindowAlarm;
+import com.g15.smarthelper.eventlog.EventLog;
+import com.g15.smarthelper.fence.Fence;
+import com.g15.smarthelper.metrics.Metrics;
+import com.g15.smarthelper.power.PowerAccounting;
+import com.g15.smarthelper.rules.Rule;
+import com.g15.smarthelper.rules.RuleTable;
+import com.g15.smarthelper.state.EngineState;
+import com.google.android.gms.location.LocationServices;
+import com.google.android.gms.tasks.OnSuccessListener;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The {@link ScenarioEngine} processes the activity and location updates of the receivers on a
+ * dedicated background thread, so neither the evaluation nor the scenario actions run on the main
+ * thread.
+ *
+ * The receivers and the location callback of the location service only extract the updates and
+ * queue them, which never blocks. The engine thread takes the updates in order, fuses the probable
+ * activities of each activity result into a single activity, publishes the updates to the
+ * {@link EngineState} of the UI and evaluates the scenario rules. The actions of triggered rules
+ * are handed to an {@link ActionExecutor}, so they never delay the next update. The state is
+ * persisted whenever the queue has been drained, so a burst of updates is written at once. After
+ * every location update the location sampling is adapted to the distance to the nearest fence, and
+ * the location updates are paused while the user is not moving. In the geofencing mode the fence
+ * transitions of the system geofencing are evaluated instead of location updates. While a fence is
+ * entered, an alarm wakes the engine at the next time window boundary.
+ *
+ * The scenarios, the event log and the power accounting are loaded on the engine thread, so a
+ * receiver starting the engine does not open any files on the main thread. A receiver hands the
+ * {@link BroadcastReceiver.PendingResult} of its broadcast along with the update; it is finished
+ * once the update has been processed and the state has been persisted.
+ */
+public class ScenarioEngine implements ScenarioEvaluator.TriggerListener {
+
+    private static final String LOG_TAG = "ScenarioEngine";
+    private static final int QUEUE_CAPACITY = 64;
+    private static final long INITIAL_RETRY_MILLIS = 1000;
+    private static final long MAX_RETRY_MILLIS = 60 * 1000;
+
+    private static ScenarioEngine instance;
+
+    private final Context context;
+    private final EngineState state = EngineState.getInstance();
+    private final EventQueue queue = new EventQueue(QUEUE_CAPACITY);
+    // The completions of the processed events, run after the state has been persisted.
+    private final List<Runnable> completions = new ArrayList<>();
+    // Created on the engine thread and only used there.
+    private Scenarios scenarios;
+    private ScenarioEvaluator evaluator;
+    private EventLog eventLog;
+    private PowerAccounting powerAccounting;
+    private ActionExecutor actionExecutor;
+    private StillGate stillGate;
+    // The time of the time window alarm set by this process, 0 if none is set.
+    private long timeWindowAlarm;
+    private final ActivityFusion activityFusion =
+            new ActivityFusion(Constants.ACTIVITY_WINDOW_SIZE, Constants.CONFIDENCE);
+
+    /**
+     * Returns the engine of the app and starts its thread on first use.
+     * @param context A context of the app.
+     * @return The shared engine instance.
+     */
+    public static synchronized ScenarioEngine getInstance(Context context) {
+        if (instance == null) {
+            instance = new ScenarioEngine(context.getApplicationContext());
+            instance.start();
+        }
+        return instance;
+    }
+
+    private ScenarioEngine(Context context) {
+        this.context = context;
+    }
+
+    private void start() {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                if (initialize()) {
+                    processEvents();
+                }
+            }
+        }, LOG_TAG);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Loads the scenarios, the event log and the power accounting on the engine thread. If that
+     * fails, e.g. because the database cannot be opened, the pending broadcasts of the queued
+     * events are finished, so they do not run into their timeout, and loading is retried with a
+     * growing delay. The events stay queued until loading succeeds.
+     * @return true once loaded, false if the thread was interrupted while waiting for a retry.
+     */
+    private boolean initialize() {
+        long delay = INITIAL_RETRY_MILLIS;
+        while (true) {
+            try {
+                Scenarios loadedScenarios = Scenarios.getInstance(context);
+                EventLog loadedEventLog = EventLog.getInstance(context);
+                powerAccounting = PowerAccounting.getInstance(context);
+                actionExecutor = new ActionExecutor(ActionRegistry.createDefault(context));
+                stillGate = new StillGate(LocationSampling.getStillSamplesBeforePause(context));
+                evaluator = new ScenarioEvaluator(loadedScenarios, this, loadedEventLog);
+                eventLog = loadedEventLog;
+                scenarios = loadedScenarios;
+                return true;
+            } catch (RuntimeException e) {
+                Log.e(LOG_TAG, "Failed to start the engine, retrying in " + delay + "ms.", e);
+            }
+            runAll(queue.takeCompletions());
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Log.w(LOG_TAG, "Engine thread was interrupted while starting.", e);
+                runAll(queue.takeCompletions());
+                return false;
+            }
+            delay = Math.min(delay * 2, MAX_RETRY_MILLIS);
+        }
+    }
+
+    /**
+     * Queues the probable activities of one activity recognition result for evaluation. They are
+     * logged and fused into a single activity, which is evaluated once.
+     * @param activityTypes The {@link com.google.android.gms.location.DetectedActivity} types.
+     * @param confidences The confidences of the activities, they must not be changed afterwards.
+     * @param time The time of the detection in milliseconds since the epoch.
+     * @param pendingResult The pending broadcast to finish once the result is processed or null.
+     */
+    public void postActivityResult(int[] activityTypes, int[] confidences, long time,
+                                   BroadcastReceiver.PendingResult pendingResult) {
+        enqueue(EngineEvent.activity(activityTypes, confidences, time), pendingResult);
+    }
+
+    /**
+     * Queues the fixes of one location result for evaluation. Both location delivery paths, the
+     * in-process callback and the broadcast receiver, hand their results to this method; the fixes
+     * are logged and accounted on the engine thread.
+     * @param locations The location fixes of the result, ordered by time.
+     * @param pendingResult The pending broadcast to finish once the result is processed or null.
+     */
+    public void postLocationResult(List<Location> locations,
+                                   BroadcastReceiver.PendingResult pendingResult) {
+        if (locations.isEmpty()) {
+            finish(pendingResult);
+            return;
+        }
+        LocationBatch batch = new LocationBatch(locations.size());
+        for (Location location : locations) {
+            batch.add(location.getLatitude(), location.getLongitude(), location.getTime(),
+                    location.hasSpeed() ? location.getSpeed() : -1);
+        }
+        enqueue(EngineEvent.locationResult(batch), pendingResult);
+    }
+
+    /**
+     * Queues the location fixes of one location result for evaluation.
+     * @param locations The location fixes, they must not be changed afterwards.
+     */
+    public void postLocationUpdate(LocationBatch locations) {
+        if (locations.size() > 0) {
+            enqueue(EngineEvent.location(locations), null);
+        }
+    }
+
+    /**
+     * Queues the fence transitions of one geofencing event for evaluation.
+     * @param ruleKeys The keys of the rules whose fences were entered or left.
+     * @param entered true if the fences were entered, false if they were left.
+     * @param time The time of the transition in milliseconds since the epoch.
+     * @param pendingResult The pending broadcast to finish once the transitions are processed or
+     *                      null.
+     */
+    public void postFenceTransitions(String[] ruleKeys, boolean entered, long time,
+                                     BroadcastReceiver.PendingResult pendingResult) {
+        enqueue(EngineEvent.transition(ruleKeys, entered, time), pendingResult);
+    }
+
+    /**
+     * Queues the start or end of a time window for evaluation.
+     * @param time The time of the boundary in milliseconds since the epoch.
+     * @param pendingResult The pending broadcast to finish once the boundary is processed or null.
+     */
+    public void postTimeWindowBoundary(long time, BroadcastReceiver.PendingResult pendingResult) {
+        enqueue(EngineEvent.timeWindow(time), pendingResult);
+    }
+
+    private void enqueue(EngineEvent event, final BroadcastReceiver.PendingResult pendingResult) {
+        if (pendingResult != null) {
+            event.completion = new Runnable() {
+                @Override
+                public void run() {
+                    finish(pendingResult);
+                }
+            };
+        }
+        EngineEvent dropped = queue.offer(event);
+        if (dropped != null) {
+            Log.w(LOG_TAG, "Event queue is full, dropped " + dropped + ".");
+            if (dropped.completion != null) {
+                dropped.completion.run();
+            }
+        }
+    }
+
+    private static void finish(BroadcastReceiver.PendingResult pendingResult) {
+        if (pendingResult != null) {
+            pendingResult.finish();
+        }
+    }
+
+    private void processEvents() {
+        while (true) {
+            EngineEvent event;
+            try {
+                event = queue.take();
+            } catch (InterruptedException e) {
+                Log.w(LOG_TAG, "Engine thread was interrupted.", e);
+                try {
+                    scenarios.flushState();
+                } finally {
+                    runCompletions();
+                }
+                return;
+            }
+
+            do {
+                try {
+                    process(event);
+                } catch (RuntimeException e) {
+                    // A failing update or action must not stop the engine.
+                    Log.e(LOG_TAG, "Failed to process " + event + ".", e);
+                }
+                if (event.completion != null) {
+                    completions.add(event.completion);
+                }
+                event = queue.poll();
+            } while (event != null);
+
+            try {
+                // Persist the state changes of all processed updates at once.
+                scenarios.flushState();
+                powerAccounting.saveIfDue(System.currentTimeMillis());
+                Rule[] enteredRules = scenarios.getEnteredRules();
+                state.setEnteredRules(enteredRules);
+                updateTimeWindowAlarm(enteredRules);
+            } catch (RuntimeException e) {
+                // The unsaved state stays dirty and is written after the next batch.
+                Log.e(LOG_TAG, "Failed to persist the processed events.", e);
+            } finally {
+                runCompletions();
+            }
+        }
+    }
+
+    /**
+     * Finishes the pending broadcasts of the processed events, which allows the system to stop
+     * the process again.
+     */
+    private void runCompletions() {
+        runAll(completions);
+        completions.clear();
+    }
+
+    private static void runAll(List<Runnable> runnables) {
+        for (int i = 0; i < runnables.size(); i++) {
+            try {
+                runnables.get(i).run();
+            } catch (RuntimeException e) {
+                Log.e(LOG_TAG, "Failed to finish a pending broadcast.", e);
+            }
+        }
+    }
+
+    private void process(EngineEvent event) {
+        switch (event.type) {
+            case EngineEvent.TYPE_LOCATION_RESULT:
+                recordLocationResult(event.locations);
+                // Evaluated like any other location update.
+            case EngineEvent.TYPE_LOCATION:
+                evaluator.evaluateLocations(event.locations);
+                publishLocation(event.locations);
+                adaptSampling(event.locations);
+                break;
+            case EngineEvent.TYPE_TIME_WINDOW:
+                timeWindowAlarm = 0;
+                powerAccounting.onWakeup(0, event.time);
+                evaluator.evaluateTimeWindows(event.time);
+                break;
+            case EngineEvent.TYPE_TRANSITION:
+                processTransitions(event.ruleKeys, event.entered, event.time);
+                break;
+            default:
+                for (int i = 0; i < event.activityTypes.length; i++) {
+                    eventLog.logActivity(event.time, event.activityTypes[i],
+                            event.confidences[i]);
+                }
+                powerAccounting.onActivitySample(System.currentTimeMillis());
+                int activityType = activityFusion.fuse(event.activityTypes, event.confidences,
+                        event.activityTypes.length);
+                if (activityType == ActivityFusion.NO_DECISION) {
+                    Log.d(LOG_TAG, "No activity is confident enough yet.");
+                    break;
+                }
+                eventLog.logFusedActivity(event.time, activityType);
+                state.setActivity(activityType);
+                evaluator.evaluateActivity(activityType, event.time);
+                gateLocationUpdates(activityType);
+                break;
+        }
+    }
+
+    /**
+     * Logs and evaluates the fence transitions of one geofencing event. The wakeup is accounted
+     * to the scenarios of the transitioned fences.
+     * @param ruleKeys The keys of the rules whose fences were entered or left.
+     * @param entered true if the fences were entered, false if they were left.
+     * @param time The time of the transition in milliseconds since the epoch.
+     */
+    private void processTransitions(String[] ruleKeys, boolean entered, long time) {
+        RuleTable ruleTable = scenarios.getRuleTable();
+        int scenarioMask = 0;
+        for (String ruleKey : ruleKeys) {
+            eventLog.logTransition(time, ruleKey, entered, true);
+            Rule rule = ruleTable.getRule(ruleKey);
+            if (rule != null) {
+                scenarioMask |= 1 << rule.getAction().ordinal();
+                evaluator.evaluateTransition(rule, entered, time);
+            } else {
+                Log.w(LOG_TAG, "Ignoring transition of unknown rule " + ruleKey + ".");
+            }
+        }
+        powerAccounting.onWakeup(scenarioMask, time);
+    }
+
+    /**
+     * Logs the fixes of a location result and accounts them to the current sampling tier.
+     * @param locations The received fixes, ordered by time.
+     */
+    private void recordLocationResult(LocationBatch locations) {
+        for (int i = 0; i < locations.size(); i++) {
+            eventLog.logLocation(locations.getTime(i), locations.getLatitude(i),
+                    locations.getLongitude(i), locations.getSpeed(i));
+        }
+        Metrics.LOCATION_FIXES.add(locations.size());
+        powerAccounting.onLocationFixes(locations.size(),
+                LocationSampling.getTier(context) == SamplingTier.NEAR, System.currentTimeMillis());
+    }
+
+    /**
+     * Keeps an alarm at the next time window boundary while a fence is entered, so the rules of
+     * the entered fences are evaluated when their window starts. Without entered fences no
+     * wakeups are needed, since entering a fence evaluates the window anyway.
+     * @param enteredRules The rules whose fence is entered.
+     */
+    private void updateTimeWindowAlarm(Rule[] enteredRules) {
+        long next = Long.MAX_VALUE;
+        if (enteredRules.length > 0 && LocationSampling.isTrackingActive(context)) {
+            next = scenarios.getNextTimeFrameTransition(System.currentTimeMillis());
+        }
+        if (next == Long.MAX_VALUE) {
+            if (timeWindowAlarm != 0) {
+                TimeWindowAlarm.cancel(context);
+                timeWindowAlarm = 0;
+            }
+        } else if (next != timeWindowAlarm) {
+            TimeWindowAlarm.schedule(context, next);
+            timeWindowAlarm = next;
+        }
+    }
+
+    /**
+     * Pauses the location updates after a run of STILL activities and resumes them when the user
+     * moves again. Before pausing and after resuming the last known location is evaluated, so a
+     * fence entered just before the user stopped is still noticed and rules waiting for STILL
+     * inside a fence, like the home scenario, keep working.
+     * @param activityType The evaluated activity.
+     */
+    private void gateLocationUpdates(int activityType) {
+        switch (stillGate.onActivity(activityType, LocationSampling.isPaused(context))) {
+            case StillGate.PAUSE:
+                if (LocationSampling.pause(context)) {
+                    evaluateLastLocation();
+                }
+                break;
+            case StillGate.RESUME:
+                if (LocationSampling.resume(context)) {
+                    evaluateLastLocation();
+                }
+                break;
+        }
+    }
+
+    /**
+     * Queues the last known location for evaluation.
+     */
+    private void evaluateLastLocation() {
+        try {
+            LocationServices.getFusedLocationProviderClient(context).getLastLocation()
+                    .addOnSuccessListener(new OnSuccessListener<Location>() {
+                        @Override
+                        public void onSuccess(Location location) {
+                            if (location != null) {
+                                LocationBatch batch = new LocationBatch(1);
+                                batch.add(location.getLatitude(), location.getLongitude(),
+                                        location.getTime(),
+                                        location.hasSpeed() ? location.getSpeed() : -1);
+                                postLocationUpdate(batch);
+                            }
+                        }
+                    });
+        } catch (SecurityException ex) {
+            Log.e(LOG_TAG, "Location permission denied.", ex);
+        }
+    }
+
+    /**
+     * Adapts the location sampling to the distance between the most recent fix and the nearest
+     * fence boundary. The fixes sampled from now on are accounted to the scenario of that fence.
+     * @param locations The evaluated fixes, ordered by time.
+     */
+    private void adaptSampling(LocationBatch locations) {
+        int last = locations.size() - 1;
+        double latitude = locations.getLatitude(last);
+        double longitude = locations.getLongitude(last);
+        RuleTable ruleTable = scenarios.getRuleTable();
+        Fence nearest = ruleTable.getFenceIndex().getNearestFence(latitude, longitude);
+        double distance = nearest != null ? nearest.distanceToBoundary(latitude, longitude)
+                : Double.POSITIVE_INFINITY;
+        powerAccounting.setLocationCause(
+                nearest != null ? ruleTable.getRules()[nearest.getId()].getAction() : null);
+        double speed = SamplingPolicy.estimateSpeed(locations.getSpeed(last),
+                scenarios.getCurrentActivity());
+        SamplingTier tier = SamplingPolicy.selectTier(distance, speed);
+        Log.d(LOG_TAG, "Nearest fence boundary is " + distance + "m away at " + speed + "m/s.");
+        LocationSampling.updateTier(context, tier);
+    }
+
+    @Override
+    public void onRuleTriggered(Rule rule) {
+        Scenarios.Scenario scenario = rule.getAction();
+        long time = System.currentTimeMillis();
+        eventLog.logAction(time, rule.getKey(), scenario.ordinal());
+        // An action that is already in flight is not run again, so it is not accounted again.
+        if (actionExecutor.submit(scenario)) {
+            powerAccounting.onAction(scenario, time);
+        }
+    }
+
+    /**
+     * Publishes the most recent fix of a location update. The UI only shows the latest location,
+     * so the older fixes of the batch are not published.
+     * @param locations The evaluated fixes, ordered by time.
+     */
+    private void publishLocation(LocationBatch locations) {
+        int last = locations.size() - 1;
+        state.setLocation(locations.getLatitude(last), locations.getLongitude(last),
+                locations.getTime(last));
+    }
+}
@@ -0,0 +1,243 @@
+package com.g15.smarthelper.engine;
+
+import android.util.Log;
+
+import com.g15.smarthelper.Scenarios;
+import com.g15.smarthelper.eventlog.EventLog;
+import com.g15.smarthelper.fence.Fence;
+import com.g15.smarthelper.metrics.Metrics;
+import com.g15.smarthelper.rules.Rule;
+import com.g15.smarthelper.rules.RuleTable;
+
+import java.util.Arrays;
+
+/**
+ * The {@link ScenarioEvaluator} checks activity and location updates against the scenario rules
+ * and reports every rule that is triggered. It only updates the state held by {@link Scenarios};
+ * persisting the state and running the actions is left to the caller.
+ *
+ * Location updates change the fence membership of a rule only after as many consecutive samples
+ * as the rule's dwell count agree on the change. A fence is entered within its radius, but only
+ * left outside of its exit radius, so a user standing at the boundary does not flap between both.
+ * A fix that is not newer than the last evaluated one, like the last known location that is
+ * posted again when the updates are paused or resumed, is skipped, so it never counts twice.
+ *
+ * An evaluator is not thread safe and is meant to be used by a single thread.
+ */
+public class ScenarioEvaluator {
+
+    private static final String LOG_TAG = "ScenarioEvaluator";
+
+    /**
+     * Receives the rules triggered by the evaluation.
+     */
+    public interface TriggerListener {
+        /**
+         * Called when the conditions of a rule are met.
+         * @param rule The triggered rule.
+         */
+        void onRuleTriggered(Rule rule);
+    }
+
+    private final Scenarios scenarios;
+    private final TriggerListener listener;
+    private final EventLog eventLog;
+
+    // The number of consecutive samples that disagreed with the membership of each rule, and the
+    // sample that was counted last. A count only continues if the previous sample was counted.
+    private RuleTable pendingTable;
+    private int[] pendingCounts;
+    private long[] pendingSamples;
+    private long sample;
+    // The time of the last evaluated location fix.
+    private long lastFixTime = Long.MIN_VALUE;
+
+    public ScenarioEvaluator(Scenarios scenarios, TriggerListener listener) {
+        this(scenarios, listener, null);
+    }
+
+    /**
+     * Creates an evaluator that records the fence transitions detected from location updates.
+     * @param scenarios The scenarios to evaluate.
+     * @param listener The listener of triggered rules.
+     * @param eventLog The log of the transitions or null.
+     */
+    public ScenarioEvaluator(Scenarios scenarios, TriggerListener listener, EventLog eventLog) {
+        this.scenarios = scenarios;
+        this.listener = listener;
+        this.eventLog = eventLog;
+    }
+
+    /**
+     * Process the activity update and trigger the scenarios if the conditions match. Only the rules
+     * registered for the new activity are evaluated.
+     * @param activityType The updated activity value.
+     * @param time The time of the update in milliseconds since the epoch.
+     */
+    public void evaluateActivity(int activityType, long time) {
+        int previousActivity = scenarios.getCurrentActivity();
+        if (activityType != previousActivity) {
+            Log.d(LOG_TAG, "Activity changed from " + previousActivity + " to " + activityType + ".");
+
+            Rule[] rules = scenarios.getRuleTable().getRulesForActivity(activityType);
+            for (Rule rule : rules) {
+                Metrics.countEvaluation(rule.getAction());
+                boolean isInFence = scenarios.getRuleGeofenceEntered(rule);
+                boolean previouslyTriggered = scenarios.getRuleTriggered(rule);
+
+                if (isInFence && !previouslyTriggered && scenarios.isInTimeFrame(rule, time)) {
+                    Log.i(LOG_TAG, "Rule " + rule.getKey() + " was triggered by activity " + activityType);
+                    scenarios.setRuleTriggered(rule, true);
+                    listener.onRuleTriggered(rule);
+                }
+            }
+        }
+        scenarios.setCurrentActivity(activityType);
+    }
+
+    /**
+     * Process the location fixes of a batch in the order of their time. Every fence transition
+     * along the trajectory is tracked in the in-memory state, so a fence that is entered and left
+     * within the batch is still noticed.
+     * @param batch The location fixes, they are sorted by time by this method.
+     */
+    public void evaluateLocations(LocationBatch batch) {
+        batch.sortByTime();
+        for (int i = 0; i < batch.size(); i++) {
+            evaluateLocation(batch.getLatitude(i), batch.getLongitude(i), batch.getTime(i));
+        }
+    }
+
+    /**
+     * Process the location update and trigger the scenarios if the conditions match. An update
+     * that is not newer than the last evaluated one is skipped.
+     * @param latitude The latitude of the update.
+     * @param longitude The longitude of the update.
+     * @param time The time of the update in milliseconds since the epoch.
+     */
+    public void evaluateLocation(double latitude, double longitude, long time) {
+        int currentActivity = scenarios.getCurrentActivity();
+        RuleTable ruleTable = scenarios.getRuleTable();
+        preparePending(ruleTable);
+        if (time <= lastFixTime) {
+            Log.v(LOG_TAG, "Skipped the location fix of " + time + ", it was already evaluated.");
+            return;
+        }
+        lastFixTime = time;
+        sample++;
+
+        // Rules that were entered before and are beyond their exit radius have been left.
+        for (Rule rule : scenarios.getEnteredRules()) {
+            if (!rule.getFence().isInsideExitRadius(latitude, longitude) && confirm(rule)) {
+                if (eventLog != null) {
+                    eventLog.logTransition(time, rule.getKey(), false, false);
+                }
+                leave(rule);
+            }
+        }
+
+        // Only fences near the location can contain it, all other fences are outside anyway.
+        Rule[] rules = ruleTable.getRules();
+        for (Fence fence : ruleTable.getFenceIndex().query(latitude, longitude)) {
+            Rule rule = rules[fence.getId()];
+            if (scenarios.getRuleGeofenceEntered(rule) || !fence.contains(latitude, longitude)
+                    || !confirm(rule)) {
+                continue;
+            }
+
+            if (eventLog != null) {
+                eventLog.logTransition(time, rule.getKey(), true, false);
+            }
+            enter(rule, currentActivity, time);
+        }
+    }
+
+    /**
+     * Process a fence transition reported by the system geofencing. The system applies its own
+     * filtering, so the transition is not subject to the dwell count.
+     * @param rule The rule whose fence was entered or left.
+     * @param entered true if the fence was entered, false if it was left.
+     * @param time The time of the transition in milliseconds since the epoch.
+     */
+    public void evaluateTransition(Rule rule, boolean entered, long time) {
+        preparePending(scenarios.getRuleTable());
+        pendingSamples[rule.getIndex()] = Long.MIN_VALUE;
+        boolean wasEntered = scenarios.getRuleGeofenceEntered(rule);
+        if (entered && !wasEntered) {
+            enter(rule, scenarios.getCurrentActivity(), time);
+        } else if (!entered && wasEntered) {
+            leave(rule);
+        }
+    }
+
+    /**
+     * Process the start or end of a time window. Rules whose fence is entered and whose activity
+     * is performed trigger when their window starts, as no other update may arrive then.
+     * @param time The time of the boundary in milliseconds since the epoch.
+     */
+    public void evaluateTimeWindows(long time) {
+        int currentActivity = scenarios.getCurrentActivity();
+        for (Rule rule : scenarios.getEnteredRules()) {
+            Metrics.countEvaluation(rule.getAction());
+            if (rule.getTargetActivity() == currentActivity && !scenarios.getRuleTriggered(rule)
+                    && scenarios.isInTimeFrame(rule, time)) {
+                Log.i(LOG_TAG, "Rule " + rule.getKey() + " was triggered by its time window.");
+                scenarios.setRuleTriggered(rule, true);
+                listener.onRuleTriggered(rule);
+            }
+        }
+    }
+
+    /**
+     * Resets the pending membership changes if the rules were compiled again.
+     */
+    private void preparePending(RuleTable ruleTable) {
+        if (ruleTable == pendingTable) {
+            return;
+        }
+        pendingTable = ruleTable;
+        pendingCounts = new int[ruleTable.size()];
+        pendingSamples = new long[ruleTable.size()];
+        Arrays.fill(pendingSamples, Long.MIN_VALUE);
+    }
+
+    /**
+     * Counts the current sample towards a membership change of a rule.
+     * @return true if enough consecutive samples agreed on the change.
+     */
+    private boolean confirm(Rule rule) {
+        int index = rule.getIndex();
+        pendingCounts[index] = pendingSamples[index] == sample - 1 ? pendingCounts[index] + 1 : 1;
+        if (pendingCounts[index] < rule.getDwellCount()) {
+            pendingSamples[index] = sample;
+            return false;
+        }
+        pendingSamples[index] = Long.MIN_VALUE;
+        return true;
+    }
+
+    /**
+     * Marks the fence of a rule as entered and triggers the rule if the user already performs its
+     * activity.
+     */
+    private void enter(Rule rule, int currentActivity, long time) {
+        scenarios.setRuleGeofenceEntered(rule, true);
+
+        Metrics.countEvaluation(rule.getAction());
+        if (rule.getTargetActivity() == currentActivity
+                && scenarios.isInTimeFrame(rule, time)) {
+            Log.i(LOG_TAG, "Rule " + rule.getKey() + " was triggered by entering its fence.");
+            scenarios.setRuleTriggered(rule, true);
+            listener.onRuleTriggered(rule);
+        }
+    }
+
+    /**
+     * Marks the fence of a rule as left, so the rule can trigger again on the next entry.
+     */
+    private void leave(Rule rule) {
+        scenarios.setRuleGeofenceEntered(rule, false);
+        scenarios.setRuleTriggered(rule, false);
+        Log.i(LOG_TAG, "Rule " + rule.getKey() + " was left.");
+    }
+}
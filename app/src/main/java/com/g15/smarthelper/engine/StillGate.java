@@ -0,0 +1,54 @@
+package com.g15.smarthelper.engine;
+
+import com.google.android.gms.location.DetectedActivity;
+
+/**
+ * The {@link StillGate} decides when the location updates can be paused because the activity
+ * recognition keeps reporting {@link DetectedActivity#STILL}. The updates are paused after a
+ * run of STILL samples and resumed with the first sample of another activity.
+ *
+ * The gate only counts samples, whether the updates are paused is passed in, as it outlives the
+ * process.
+ */
+public class StillGate {
+
+    /** Nothing has to be changed. */
+    public static final int KEEP = 0;
+    /** The location updates should be paused. */
+    public static final int PAUSE = 1;
+    /** The location updates should be resumed. */
+    public static final int RESUME = 2;
+
+    private final int stillSamplesBeforePause;
+    private int stillCount;
+
+    /**
+     * Creates a new gate.
+     * @param stillSamplesBeforePause The number of consecutive STILL samples after which the
+     *                                location updates are paused.
+     */
+    public StillGate(int stillSamplesBeforePause) {
+        if (stillSamplesBeforePause <= 0) {
+            throw new IllegalArgumentException("The number of samples has to be positive: "
+                    + stillSamplesBeforePause);
+        }
+        this.stillSamplesBeforePause = stillSamplesBeforePause;
+    }
+
+    /**
+     * Counts an activity sample.
+     * @param activityType The detected activity type.
+     * @param paused Whether the location updates are currently paused.
+     * @return {@link #PAUSE}, {@link #RESUME} or {@link #KEEP}.
+     */
+    public int onActivity(int activityType, boolean paused) {
+        if (activityType != DetectedActivity.STILL) {
+            stillCount = 0;
+            return paused ? RESUME : KEEP;
+        }
+        if (stillCount < stillSamplesBeforePause) {
+            stillCount++;
+        }
+        return !paused && stillCount >= stillSamplesBeforePause ? PAUSE : KEEP;
+    }
+}
@@ -0,0 +1,320 @@
+package com.g15.smarthelper.eventlog;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.g15.smarthelper.Constants;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The {@link EventLog} records the sensor updates, fence transitions and dispatched actions, so it
+ * can be reconstructed afterwards why a scenario fired or did not fire.
+ *
+ * The log is a ring of fixed-size binary records in a memory-mapped file. When the ring is full
+ * the oldest records are overwritten. Writing a record only puts primitive values into the
+ * mapped buffer and allocates nothing; the kernel writes the pages back, so the records survive
+ * the process being killed. The records can be read back as {@link EventRecord}s, from the live
+ * log or from a copied file.
+ *
+ * File layout: a header of {@link #HEADER_SIZE} bytes with the magic number, the version, the
+ * record size, the capacity and the number of records ever written, followed by the ring of
+ * records of {@link #RECORD_SIZE} bytes. All values are little endian.
+ */
+public class EventLog {
+
+    private static final String LOG_TAG = "EventLog";
+    private static final String FILE_NAME = "events.log";
+
+    static final int MAGIC = 0x53484556; // "SHEV"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int RECORD_SIZE = 64;
+    static final int KEY_LENGTH = 16;
+
+    // Header offsets.
+    private static final int MAGIC_OFFSET = 0;
+    private static final int VERSION_OFFSET = 4;
+    private static final int RECORD_SIZE_OFFSET = 8;
+    private static final int CAPACITY_OFFSET = 12;
+    private static final int COUNT_OFFSET = 16;
+
+    // Record offsets.
+    static final int SEQUENCE = 0;
+    static final int TIME = 8;
+    static final int TYPE = 16;
+    static final int CODE = 20;
+    static final int LATITUDE = 24;
+    static final int LONGITUDE = 32;
+    static final int VALUE = 40;
+    static final int KEY = 48;
+
+    private static EventLog instance;
+
+    private final ByteBuffer buffer;
+    private final int capacity;
+    private long count;
+
+    /**
+     * Returns the log of the app. If the log file cannot be mapped, the records are only kept in
+     * memory.
+     * @param context A context of the app.
+     * @return The shared log.
+     */
+    public static synchronized EventLog getInstance(Context context) {
+        if (instance == null) {
+            File file = new File(context.getApplicationContext().getFilesDir(), FILE_NAME);
+            try {
+                instance = open(file, Constants.EVENT_LOG_CAPACITY);
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Could not map the event log " + file + ".", e);
+                instance = new EventLog(
+                        ByteBuffer.allocateDirect(size(Constants.EVENT_LOG_CAPACITY)),
+                        Constants.EVENT_LOG_CAPACITY);
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Maps a log file, creating it if needed. A file with a different layout is cleared.
+     * @param file The log file.
+     * @param capacity The number of records of the ring.
+     * @return The log.
+     * @throws IOException If the file cannot be mapped.
+     */
+    public static EventLog open(File file, int capacity) throws IOException {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The capacity has to be positive: " + capacity);
+        }
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+        try {
+            // The mapping stays valid after the channel is closed.
+            ByteBuffer buffer = randomAccessFile.getChannel()
+                    .map(FileChannel.MapMode.READ_WRITE, 0, size(capacity));
+            return new EventLog(buffer, capacity);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Reads all records of a log file, e.g. one exported from a device.
+     * @param file The log file.
+     * @return The records from the oldest to the newest.
+     * @throws IOException If the file cannot be read or is no event log.
+     */
+    public static List<EventRecord> readFile(File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.capacity() < HEADER_SIZE || buffer.getInt(MAGIC_OFFSET) != MAGIC
+                    || buffer.getInt(VERSION_OFFSET) != VERSION
+                    || buffer.getInt(RECORD_SIZE_OFFSET) != RECORD_SIZE) {
+                throw new IOException(file + " is no event log.");
+            }
+            int capacity = buffer.getInt(CAPACITY_OFFSET);
+            if (buffer.capacity() < size(capacity)) {
+                throw new IOException(file + " is truncated.");
+            }
+            return read(buffer, capacity, buffer.getLong(COUNT_OFFSET));
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    EventLog(ByteBuffer buffer, int capacity) {
+        this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+        this.capacity = capacity;
+        if (buffer.getInt(MAGIC_OFFSET) == MAGIC && buffer.getInt(VERSION_OFFSET) == VERSION
+                && buffer.getInt(RECORD_SIZE_OFFSET) == RECORD_SIZE
+                && buffer.getInt(CAPACITY_OFFSET) == capacity) {
+            count = buffer.getLong(COUNT_OFFSET);
+        } else {
+            for (int i = 0; i < HEADER_SIZE; i += 8) {
+                buffer.putLong(i, 0);
+            }
+            buffer.putInt(MAGIC_OFFSET, MAGIC);
+            buffer.putInt(VERSION_OFFSET, VERSION);
+            buffer.putInt(RECORD_SIZE_OFFSET, RECORD_SIZE);
+            buffer.putInt(CAPACITY_OFFSET, capacity);
+            count = 0;
+        }
+    }
+
+    private static int size(int capacity) {
+        return HEADER_SIZE + capacity * RECORD_SIZE;
+    }
+
+    /**
+     * Records a location fix.
+     * @param time The time of the fix in milliseconds since the epoch.
+     * @param latitude The latitude of the fix.
+     * @param longitude The longitude of the fix.
+     * @param speed The speed in meters per second or a negative value if unknown.
+     */
+    public synchronized void logLocation(long time, double latitude, double longitude, float speed) {
+        int offset = begin(EventRecord.TYPE_LOCATION, time, 0);
+        buffer.putDouble(offset + LATITUDE, latitude);
+        buffer.putDouble(offset + LONGITUDE, longitude);
+        buffer.putFloat(offset + VALUE, speed);
+        commit(offset);
+    }
+
+    /**
+     * Records a probable activity of an activity recognition result.
+     * @param time The time of the result in milliseconds since the epoch.
+     * @param activityType The detected activity type.
+     * @param confidence The confidence of the activity.
+     */
+    public synchronized void logActivity(long time, int activityType, int confidence) {
+        int offset = begin(EventRecord.TYPE_ACTIVITY, time, activityType);
+        buffer.putFloat(offset + VALUE, confidence);
+        commit(offset);
+    }
+
+    /**
+     * Records the activity the results were fused into.
+     * @param time The time of the last result in milliseconds since the epoch.
+     * @param activityType The fused activity type.
+     */
+    public synchronized void logFusedActivity(long time, int activityType) {
+        commit(begin(EventRecord.TYPE_FUSED_ACTIVITY, time, activityType));
+    }
+
+    /**
+     * Records that the fence of a rule was entered or left.
+     * @param time The time of the transition in milliseconds since the epoch.
+     * @param ruleKey The key of the rule.
+     * @param entered true if the fence was entered.
+     * @param system true if the transition was reported by the system geofencing, false if it
+     *               was detected from location updates.
+     */
+    public synchronized void logTransition(long time, String ruleKey, boolean entered,
+                                           boolean system) {
+        int offset = begin(system ? EventRecord.TYPE_SYSTEM_TRANSITION : EventRecord.TYPE_TRANSITION,
+                time, entered ? 1 : 0);
+        putKey(offset, ruleKey);
+        commit(offset);
+    }
+
+    /**
+     * Records that the action of a triggered rule was dispatched.
+     * @param time The time of the dispatch in milliseconds since the epoch.
+     * @param ruleKey The key of the rule.
+     * @param scenario The ordinal of the rule's scenario.
+     */
+    public synchronized void logAction(long time, String ruleKey, int scenario) {
+        int offset = begin(EventRecord.TYPE_ACTION, time, scenario);
+        putKey(offset, ruleKey);
+        commit(offset);
+    }
+
+    /**
+     * Claims the next slot of the ring and writes the common fields of a record. The slot is
+     * marked as incomplete until the record is committed.
+     * @return The offset of the record.
+     */
+    private int begin(int type, long time, int code) {
+        int offset = HEADER_SIZE + (int) (count % capacity) * RECORD_SIZE;
+        buffer.putLong(offset + SEQUENCE, -1);
+        buffer.putLong(offset + TIME, time);
+        buffer.putInt(offset + TYPE, type);
+        buffer.putInt(offset + CODE, code);
+        buffer.putDouble(offset + LATITUDE, 0);
+        buffer.putDouble(offset + LONGITUDE, 0);
+        buffer.putFloat(offset + VALUE, 0);
+        buffer.putInt(offset + VALUE + 4, 0);
+        buffer.putLong(offset + KEY, 0);
+        buffer.putLong(offset + KEY + 8, 0);
+        return offset;
+    }
+
+    /**
+     * Marks a record as complete and appends it to the ring.
+     */
+    private void commit(int offset) {
+        buffer.putLong(offset + SEQUENCE, count);
+        count++;
+        buffer.putLong(COUNT_OFFSET, count);
+    }
+
+    /**
+     * Stores the first characters of a key as ASCII, longer keys are cut off.
+     */
+    private void putKey(int offset, String key) {
+        int length = Math.min(key.length(), KEY_LENGTH);
+        for (int i = 0; i < length; i++) {
+            char c = key.charAt(i);
+            buffer.put(offset + KEY + i, (byte) (c < 128 ? c : '?'));
+        }
+    }
+
+    /**
+     * @return The number of records written since the log was created, including overwritten
+     *         records.
+     */
+    public synchronized long getWrittenCount() {
+        return count;
+    }
+
+    /**
+     * Reads the records of the ring.
+     * @return The records from the oldest to the newest.
+     */
+    public synchronized List<EventRecord> readAll() {
+        return read(buffer, capacity, count);
+    }
+
+    /**
+     * Writes all records as comma separated values, one record per line after a header line.
+     * @param writer The writer to export to.
+     * @throws IOException If writing fails.
+     */
+    public void exportCsv(Writer writer) throws IOException {
+        writer.write(EventRecord.CSV_HEADER);
+        writer.write('\n');
+        for (EventRecord record : readAll()) {
+            writer.write(record.toCsv());
+            writer.write('\n');
+        }
+        writer.flush();
+    }
+
+    private static List<EventRecord> read(ByteBuffer buffer, int capacity, long count) {
+        long first = Math.max(0, count - capacity);
+        List<EventRecord> records = new ArrayList<>((int) (count - first));
+        byte[] key = new byte[KEY_LENGTH];
+        for (long sequence = first; sequence < count; sequence++) {
+            int offset = HEADER_SIZE + (int) (sequence % capacity) * RECORD_SIZE;
+            if (buffer.getLong(offset + SEQUENCE) != sequence) {
+                // The record was not written completely.
+                continue;
+            }
+            int keyLength = 0;
+            while (keyLength < KEY_LENGTH && buffer.get(offset + KEY + keyLength) != 0) {
+                key[keyLength] = buffer.get(offset + KEY + keyLength);
+                keyLength++;
+            }
+            records.add(new EventRecord(sequence,
+                    buffer.getLong(offset + TIME),
+                    buffer.getInt(offset + TYPE),
+                    buffer.getInt(offset + CODE),
+                    buffer.getDouble(offset + LATITUDE),
+                    buffer.getDouble(offset + LONGITUDE),
+                    buffer.getFloat(offset + VALUE),
+                    keyLength > 0 ? new String(key, 0, keyLength) : null));
+        }
+        return records;
+    }
+}
@@ -0,0 +1,94 @@
+package com.g15.smarthelper.eventlog;
+
+/**
+ * A record read back from the {@link EventLog}. The meaning of the code, location and value
+ * depends on the type of the record:
+ * <ul>
+ *     <li>{@link #TYPE_LOCATION}: the location and its speed as value.</li>
+ *     <li>{@link #TYPE_ACTIVITY}: the activity type as code and its confidence as value.</li>
+ *     <li>{@link #TYPE_FUSED_ACTIVITY}: the activity type as code.</li>
+ *     <li>{@link #TYPE_TRANSITION} and {@link #TYPE_SYSTEM_TRANSITION}: 1 as code if the fence
+ *     of the rule with the key was entered, 0 if it was left.</li>
+ *     <li>{@link #TYPE_ACTION}: the scenario ordinal as code and the key of the rule.</li>
+ * </ul>
+ */
+public final class EventRecord {
+
+    public static final int TYPE_LOCATION = 1;
+    public static final int TYPE_ACTIVITY = 2;
+    public static final int TYPE_FUSED_ACTIVITY = 3;
+    public static final int TYPE_TRANSITION = 4;
+    public static final int TYPE_SYSTEM_TRANSITION = 5;
+    public static final int TYPE_ACTION = 6;
+
+    static final String CSV_HEADER = "sequence,time,type,code,latitude,longitude,value,key";
+
+    private final long sequence;
+    private final long time;
+    private final int type;
+    private final int code;
+    private final double latitude;
+    private final double longitude;
+    private final float value;
+    private final String key;
+
+    EventRecord(long sequence, long time, int type, int code, double latitude, double longitude,
+                float value, String key) {
+        this.sequence = sequence;
+        this.time = time;
+        this.type = type;
+        this.code = code;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.value = value;
+        this.key = key;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    public int getCode() {
+        return code;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public float getValue() {
+        return value;
+    }
+
+    /**
+     * @return The first characters of the rule key, or null if the record has no key.
+     */
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * @return The record as a line of comma separated values, see {@link #CSV_HEADER}.
+     */
+    String toCsv() {
+        return sequence + "," + time + "," + type + "," + code + "," + latitude + "," + longitude
+                + "," + value + "," + (key != null ? key : "");
+    }
+
+    @Override
+    public String toString() {
+        return "EventRecord{" + toCsv() + "}";
+    }
+}
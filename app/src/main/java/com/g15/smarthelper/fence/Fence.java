@@ -0,0 +1,227 @@
+package com.g15.smarthelper.fence;
+
+/**
+ * A {@link Fence} is an immutable circular geofence. Besides its center and radius it stores the
+ * latitude/longitude bounding box of the circle, which is used to place the fence in a
+ * {@link FenceIndex}.
+ *
+ * A fence can have an exit radius larger than its radius: a location is inside once it is within
+ * the radius, but only outside again once it is beyond the exit radius. The bounding box covers
+ * the exit radius.
+ *
+ * {@link #contains(double, double)} rejects locations outside of the bounding box first and then
+ * compares the squared equirectangular distance, using the lengths of a degree at the fence's
+ * latitude, against the squared radius. Only locations within a small band around the boundary,
+ * where the planar approximation could decide wrong, are checked with the exact geodesic distance.
+ */
+public class Fence {
+
+    // Lower bound of the length of one degree of latitude in meters, so the box never cuts the circle.
+    static final double METERS_PER_DEGREE = 110574;
+    // Bounding boxes closer to the poles than this latitude are clamped.
+    private static final double MAX_LATITUDE = 89;
+    // Bound of the planar distance error in meters: a constant part and a part relative to the
+    // radius. The error stays below 0.2 m for radii up to 10 km and latitudes up to 80°.
+    private static final double TOLERANCE = 0.5;
+    private static final double RELATIVE_TOLERANCE = 0.0001;
+
+    private final int id;
+    private final double latitude;
+    private final double longitude;
+    private final int radius;
+    private final int exitRadius;
+
+    private final double minLatitude;
+    private final double maxLatitude;
+    private final double minLongitude;
+    private final double maxLongitude;
+
+    private final double metersPerDegreeLatitude;
+    private final double metersPerDegreeLongitude;
+    // The change of the length of a degree of longitude per degree of latitude, relative to its
+    // length at the fence's latitude and halved, so the length at the mean latitude is used.
+    private final double longitudeScaleSlope;
+    private final double innerRadiusSquared;
+    private final double outerRadiusSquared;
+    private final double innerExitRadiusSquared;
+    private final double outerExitRadiusSquared;
+
+    /**
+     * Creates a new fence.
+     * @param id The identifier the owner of the fence uses to look up its data.
+     * @param latitude The latitude of the fence's center.
+     * @param longitude The longitude of the fence's center.
+     * @param radius The fence's radius in meters.
+     */
+    public Fence(int id, double latitude, double longitude, int radius) {
+        this(id, latitude, longitude, radius, radius);
+    }
+
+    /**
+     * Creates a new fence with an exit radius.
+     * @param id The identifier the owner of the fence uses to look up its data.
+     * @param latitude The latitude of the fence's center.
+     * @param longitude The longitude of the fence's center.
+     * @param radius The fence's radius in meters.
+     * @param exitRadius The radius in meters outside of which the fence is left, at least radius.
+     */
+    public Fence(int id, double latitude, double longitude, int radius, int exitRadius) {
+        if (exitRadius < radius) {
+            throw new IllegalArgumentException("The exit radius " + exitRadius
+                    + " is smaller than the radius " + radius);
+        }
+        this.id = id;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.radius = radius;
+        this.exitRadius = exitRadius;
+
+        double latitudeSpan = exitRadius / METERS_PER_DEGREE;
+        double boxLatitude = Math.min(Math.abs(latitude) + latitudeSpan, MAX_LATITUDE);
+        double longitudeSpan = latitudeSpan / Math.cos(Math.toRadians(boxLatitude));
+        this.minLatitude = latitude - latitudeSpan;
+        this.maxLatitude = latitude + latitudeSpan;
+        this.minLongitude = longitude - longitudeSpan;
+        this.maxLongitude = longitude + longitudeSpan;
+
+        double scaleLatitude = Math.max(-MAX_LATITUDE, Math.min(latitude, MAX_LATITUDE));
+        this.metersPerDegreeLatitude = Geodesy.metersPerDegreeLatitude(scaleLatitude);
+        this.metersPerDegreeLongitude = Geodesy.metersPerDegreeLongitude(scaleLatitude);
+        this.longitudeScaleSlope = Math.tan(Math.toRadians(scaleLatitude)) * Math.toRadians(1) / 2;
+        this.innerRadiusSquared = square(Math.max(radius - tolerance(radius), 0));
+        this.outerRadiusSquared = square(radius + tolerance(radius));
+        this.innerExitRadiusSquared = square(Math.max(exitRadius - tolerance(exitRadius), 0));
+        this.outerExitRadiusSquared = square(exitRadius + tolerance(exitRadius));
+    }
+
+    /**
+     * Checks whether a location is inside the fence.
+     * @param latitude The latitude of the location.
+     * @param longitude The longitude of the location.
+     * @return true if the geodesic distance to the center is smaller than the radius.
+     */
+    public boolean contains(double latitude, double longitude) {
+        return isWithin(latitude, longitude, radius, innerRadiusSquared, outerRadiusSquared);
+    }
+
+    /**
+     * Checks whether a location is inside the exit radius, i.e. whether a fence that was entered
+     * before has not been left yet.
+     * @param latitude The latitude of the location.
+     * @param longitude The longitude of the location.
+     * @return true if the geodesic distance to the center is smaller than the exit radius.
+     */
+    public boolean isInsideExitRadius(double latitude, double longitude) {
+        return isWithin(latitude, longitude, exitRadius, innerExitRadiusSquared,
+                outerExitRadiusSquared);
+    }
+
+    private boolean isWithin(double latitude, double longitude, int radius,
+                             double innerRadiusSquared, double outerRadiusSquared) {
+        if (latitude < minLatitude || latitude > maxLatitude) {
+            return false;
+        }
+        double deltaLongitude = longitude - this.longitude;
+        if (deltaLongitude > 180) {
+            deltaLongitude -= 360;
+        } else if (deltaLongitude < -180) {
+            deltaLongitude += 360;
+        }
+        if (this.longitude + deltaLongitude < minLongitude
+                || this.longitude + deltaLongitude > maxLongitude) {
+            return false;
+        }
+
+        double distanceSquared = planarDistanceSquared(latitude - this.latitude, deltaLongitude);
+        if (distanceSquared < innerRadiusSquared) {
+            return true;
+        }
+        if (distanceSquared > outerRadiusSquared) {
+            return false;
+        }
+        return Geodesy.distance(latitude, longitude, this.latitude, this.longitude) < radius;
+    }
+
+    /**
+     * Computes the distance of a location to the boundary of the fence.
+     * @param latitude The latitude of the location.
+     * @param longitude The longitude of the location.
+     * @return The distance in meters, negative if the location is inside the fence.
+     */
+    public double distanceToBoundary(double latitude, double longitude) {
+        return Geodesy.distance(latitude, longitude, this.latitude, this.longitude) - radius;
+    }
+
+    /**
+     * Approximates the distance of a location to the center of the fence.
+     * @param latitude The latitude of the location.
+     * @param longitude The longitude of the location.
+     * @return The equirectangular distance in meters.
+     */
+    double planarDistance(double latitude, double longitude) {
+        double deltaLongitude = longitude - this.longitude;
+        if (deltaLongitude > 180) {
+            deltaLongitude -= 360;
+        } else if (deltaLongitude < -180) {
+            deltaLongitude += 360;
+        }
+        return Math.sqrt(planarDistanceSquared(latitude - this.latitude, deltaLongitude));
+    }
+
+    private static double tolerance(int radius) {
+        return TOLERANCE + RELATIVE_TOLERANCE * radius;
+    }
+
+    private static double square(double value) {
+        return value * value;
+    }
+
+    private double planarDistanceSquared(double deltaLatitude, double deltaLongitude) {
+        double y = deltaLatitude * metersPerDegreeLatitude;
+        double x = deltaLongitude * metersPerDegreeLongitude
+                * (1 - longitudeScaleSlope * deltaLatitude);
+        return x * x + y * y;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public int getRadius() {
+        return radius;
+    }
+
+    public int getExitRadius() {
+        return exitRadius;
+    }
+
+    public double getMinLatitude() {
+        return minLatitude;
+    }
+
+    public double getMaxLatitude() {
+        return maxLatitude;
+    }
+
+    public double getMinLongitude() {
+        return minLongitude;
+    }
+
+    public double getMaxLongitude() {
+        return maxLongitude;
+    }
+
+    @Override
+    public String toString() {
+        return "Fence{id=" + id + ", lat=" + latitude + ", lng=" + longitude + ", r=" + radius
+                + ", exit=" + exitRadius + "}";
+    }
+}
@@ -0,0 +1,289 @@
+package com.g15.smarthelper.fence;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@link FenceIndex} is a uniform latitude/longitude grid over a fixed set of fences. Every
+ * fence is registered in all grid cells its bounding box overlaps, so a query only has to look at
+ * the single cell containing the location. The cost of a query therefore depends on the number
+ * of fences near the location and not on the total number of fences.
+ *
+ * The longitude cells wrap around at the antimeridian, so a fence whose bounding box crosses
+ * ±180° is registered in the cells on both sides.
+ *
+ * The nearest fence is searched in rings of cells around the cell of the location, which stops
+ * as soon as the next ring is further away than the nearest boundary found. Fences beyond the
+ * searched rings are found in a list sorted by latitude.
+ *
+ * The index is immutable and can be shared between threads. It has to be rebuilt when the fences
+ * change.
+ */
+public class FenceIndex {
+
+    /** The edge length of a grid cell in degrees (about 1.1 km in latitude). */
+    public static final double CELL_SIZE = 0.01;
+
+    // The number of longitude cells around the globe.
+    private static final int LONGITUDE_CELLS = (int) Math.round(360 / CELL_SIZE);
+
+    // The number of rings of cells searched for the nearest fence before all fences are scanned.
+    private static final int MAX_SEARCH_RINGS = 8;
+
+    private static final Fence[] NO_FENCES = new Fence[0];
+
+    private final Fence[] fences;
+    private final Fence[] fencesByLatitude;
+    private final int maxRadius;
+
+    // Open addressing hash table from packed cell coordinates to the fences overlapping the cell.
+    private final long[] cellKeys;
+    private final Fence[][] cellFences;
+    private final int mask;
+
+    /**
+     * Builds the index for the given fences.
+     * @param fences The fences to index.
+     */
+    public FenceIndex(List<Fence> fences) {
+        this.fences = fences.toArray(new Fence[0]);
+        this.fencesByLatitude = this.fences.clone();
+        Arrays.sort(fencesByLatitude, new Comparator<Fence>() {
+            @Override
+            public int compare(Fence a, Fence b) {
+                return Double.compare(a.getLatitude(), b.getLatitude());
+            }
+        });
+        int maxRadius = 0;
+        for (Fence fence : this.fences) {
+            maxRadius = Math.max(maxRadius, fence.getRadius());
+        }
+        this.maxRadius = maxRadius;
+
+        Map<Long, List<Fence>> cells = new HashMap<>();
+        for (Fence fence : this.fences) {
+            int minLatCell = cell(fence.getMinLatitude());
+            int maxLatCell = cell(fence.getMaxLatitude());
+            int minLngCell = cell(fence.getMinLongitude());
+            int lngCellCount = Math.min(cell(fence.getMaxLongitude()) - minLngCell + 1,
+                    LONGITUDE_CELLS);
+            for (int latCell = minLatCell; latCell <= maxLatCell; latCell++) {
+                for (int i = 0; i < lngCellCount; i++) {
+                    long key = key(latCell, longitudeCell(minLngCell + i));
+                    List<Fence> cellContent = cells.get(key);
+                    if (cellContent == null) {
+                        cellContent = new ArrayList<>();
+                        cells.put(key, cellContent);
+                    }
+                    cellContent.add(fence);
+                }
+            }
+        }
+
+        int capacity = Integer.highestOneBit(Math.max(cells.size(), 1) * 2) * 2;
+        cellKeys = new long[capacity];
+        cellFences = new Fence[capacity][];
+        mask = capacity - 1;
+        for (Map.Entry<Long, List<Fence>> entry : cells.entrySet()) {
+            long key = entry.getKey();
+            int slot = slot(key);
+            while (cellFences[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            cellKeys[slot] = key;
+            cellFences[slot] = entry.getValue().toArray(new Fence[0]);
+        }
+    }
+
+    /**
+     * Returns the fences that may contain the location. Fences that are not returned are
+     * guaranteed not to contain it. The returned array is shared and must not be modified.
+     * @param latitude The latitude of the location.
+     * @param longitude The longitude of the location.
+     * @return The candidate fences, possibly an empty array.
+     */
+    public Fence[] query(double latitude, double longitude) {
+        return cellFences(cell(latitude), cell(longitude));
+    }
+
+    private Fence[] cellFences(int latCell, int lngCell) {
+        long key = key(latCell, longitudeCell(lngCell));
+        int slot = slot(key);
+        while (cellFences[slot] != null) {
+            if (cellKeys[slot] == key) {
+                return cellFences[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return NO_FENCES;
+    }
+
+    /**
+     * Computes the distance of a location to the nearest fence boundary.
+     * @param latitude The latitude of the location.
+     * @param longitude The longitude of the location.
+     * @return The distance in meters, negative if the location is inside a fence and positive
+     *         infinity if the index is empty.
+     */
+    public double distanceToNearestBoundary(double latitude, double longitude) {
+        Fence fence = getNearestFence(latitude, longitude);
+        return fence != null ? fence.distanceToBoundary(latitude, longitude)
+                : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Finds the fence whose boundary is nearest to a location. The cells around the location are
+     * searched ring by ring. Every fence not registered in the searched rings lies outside of them,
+     * so the search stops once the nearest boundary found is closer than the outer edge of the
+     * rings. If that does not happen within {@link #MAX_SEARCH_RINGS} rings, the fences are
+     * scanned by latitude instead.
+     * @param latitude The latitude of the location.
+     * @param longitude The longitude of the location.
+     * @return The nearest fence or null if the index is empty.
+     */
+    public Fence getNearestFence(double latitude, double longitude) {
+        int latCell = cell(latitude);
+        int lngCell = cell(longitude);
+        Nearest nearest = new Nearest(latitude, longitude);
+        for (int ring = 0; ring <= MAX_SEARCH_RINGS; ring++) {
+            if (ring == 0) {
+                nearest.consider(cellFences(latCell, lngCell));
+            } else {
+                for (int i = -ring; i <= ring; i++) {
+                    nearest.consider(cellFences(latCell - ring, lngCell + i));
+                    nearest.consider(cellFences(latCell + ring, lngCell + i));
+                }
+                for (int i = 1 - ring; i < ring; i++) {
+                    nearest.consider(cellFences(latCell + i, lngCell - ring));
+                    nearest.consider(cellFences(latCell + i, lngCell + ring));
+                }
+            }
+            if (nearest.distance <= ring * minCellMeters(latitude, ring)) {
+                return nearest.fence;
+            }
+        }
+        return scanByLatitude(nearest);
+    }
+
+    /**
+     * Scans the fences outwards from the latitude of the location until their latitude alone puts
+     * them further away than the nearest boundary found so far.
+     * @param nearest The nearest fence found so far.
+     * @return The nearest fence or null if the index is empty.
+     */
+    private Fence scanByLatitude(Nearest nearest) {
+        int low = 0;
+        int high = fencesByLatitude.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (fencesByLatitude[middle].getLatitude() < nearest.latitude) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        for (int i = low; i < fencesByLatitude.length; i++) {
+            if (latitudeBound(fencesByLatitude[i], nearest.latitude, maxRadius)
+                    >= nearest.distance) {
+                break;
+            }
+            nearest.consider(fencesByLatitude[i]);
+        }
+        for (int i = low - 1; i >= 0; i--) {
+            if (latitudeBound(fencesByLatitude[i], nearest.latitude, maxRadius)
+                    >= nearest.distance) {
+                break;
+            }
+            nearest.consider(fencesByLatitude[i]);
+        }
+        return nearest.fence;
+    }
+
+    /**
+     * Computes a lower bound of the distance between a location and the boundary of a fence from
+     * the latitude difference alone.
+     */
+    private static double latitudeBound(Fence fence, double latitude, int radius) {
+        return Math.abs(latitude - fence.getLatitude()) * Fence.METERS_PER_DEGREE - radius;
+    }
+
+    /**
+     * Computes the shortest edge of the cells within a number of rings around a latitude. The
+     * longitude edge shrinks towards the poles, so it is taken at the latitude nearest to a pole.
+     */
+    private static double minCellMeters(double latitude, int rings) {
+        double poleward = Math.min(Math.abs(latitude) + (rings + 1) * CELL_SIZE, 90);
+        return CELL_SIZE * Math.min(Fence.METERS_PER_DEGREE,
+                Geodesy.metersPerDegreeLongitude(poleward));
+    }
+
+    /**
+     * The nearest fence found by a search.
+     */
+    private static final class Nearest {
+        final double latitude;
+        final double longitude;
+        Fence fence;
+        double distance = Double.POSITIVE_INFINITY;
+
+        Nearest(double latitude, double longitude) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+        }
+
+        void consider(Fence[] candidates) {
+            for (Fence candidate : candidates) {
+                consider(candidate);
+            }
+        }
+
+        void consider(Fence candidate) {
+            if (latitudeBound(candidate, latitude, candidate.getRadius()) >= distance) {
+                return;
+            }
+            double candidateDistance = candidate.distanceToBoundary(latitude, longitude);
+            if (candidateDistance < distance) {
+                distance = candidateDistance;
+                fence = candidate;
+            }
+        }
+    }
+
+    /**
+     * Returns all indexed fences. The returned array is shared and must not be modified.
+     * @return The indexed fences.
+     */
+    public Fence[] getFences() {
+        return fences;
+    }
+
+    public int size() {
+        return fences.length;
+    }
+
+    private static int cell(double degrees) {
+        return (int) Math.floor(degrees / CELL_SIZE);
+    }
+
+    /**
+     * Wraps a longitude cell into the range [0, LONGITUDE_CELLS), so the cells east of 180° are
+     * the cells east of -180°.
+     */
+    private static int longitudeCell(int cell) {
+        int wrapped = cell % LONGITUDE_CELLS;
+        return wrapped < 0 ? wrapped + LONGITUDE_CELLS : wrapped;
+    }
+
+    private static long key(int latCell, int lngCell) {
+        return ((long) latCell << 32) | (lngCell & 0xffffffffL);
+    }
+
+    private int slot(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,114 @@
+package com.g15.smarthelper.fence;
+
+/**
+ * Geodesic computations on the WGS84 ellipsoid that do not depend on the Android framework.
+ */
+public final class Geodesy {
+
+    /** The semi-major axis of the WGS84 ellipsoid in meters. */
+    static final double SEMI_MAJOR_AXIS = 6378137.0;
+    /** The semi-minor axis of the WGS84 ellipsoid in meters. */
+    static final double SEMI_MINOR_AXIS = 6356752.3142;
+    /** The squared first eccentricity of the WGS84 ellipsoid. */
+    static final double ECCENTRICITY_SQUARED = 1 - (SEMI_MINOR_AXIS * SEMI_MINOR_AXIS)
+            / (SEMI_MAJOR_AXIS * SEMI_MAJOR_AXIS);
+
+    private static final double FLATTENING = (SEMI_MAJOR_AXIS - SEMI_MINOR_AXIS) / SEMI_MAJOR_AXIS;
+    private static final int MAX_ITERATIONS = 20;
+
+    private Geodesy() {
+    }
+
+    /**
+     * Computes the length of the geodesic between two points with Vincenty's inverse formula.
+     * This is the same computation as {@link android.location.Location#distanceBetween}.
+     * @param latitude1 The latitude of the first point in degrees.
+     * @param longitude1 The longitude of the first point in degrees.
+     * @param latitude2 The latitude of the second point in degrees.
+     * @param longitude2 The longitude of the second point in degrees.
+     * @return The distance in meters.
+     */
+    public static double distance(double latitude1, double longitude1,
+                                  double latitude2, double longitude2) {
+        double lat1 = Math.toRadians(latitude1);
+        double lat2 = Math.toRadians(latitude2);
+        double a = SEMI_MAJOR_AXIS;
+        double b = SEMI_MINOR_AXIS;
+        double f = FLATTENING;
+        double aSqMinusBSqOverBSq = (a * a - b * b) / (b * b);
+
+        double l = Math.toRadians(longitude2) - Math.toRadians(longitude1);
+        double uA = 0.0;
+        double u1 = Math.atan((1.0 - f) * Math.tan(lat1));
+        double u2 = Math.atan((1.0 - f) * Math.tan(lat2));
+
+        double cosU1 = Math.cos(u1);
+        double cosU2 = Math.cos(u2);
+        double sinU1 = Math.sin(u1);
+        double sinU2 = Math.sin(u2);
+        double cosU1cosU2 = cosU1 * cosU2;
+        double sinU1sinU2 = sinU1 * sinU2;
+
+        double sigma = 0.0;
+        double deltaSigma = 0.0;
+        double lambda = l;
+        for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+            double lambdaOrig = lambda;
+            double cosLambda = Math.cos(lambda);
+            double sinLambda = Math.sin(lambda);
+            double t1 = cosU2 * sinLambda;
+            double t2 = cosU1 * sinU2 - sinU1 * cosU2 * cosLambda;
+            double sinSqSigma = t1 * t1 + t2 * t2;
+            double sinSigma = Math.sqrt(sinSqSigma);
+            double cosSigma = sinU1sinU2 + cosU1cosU2 * cosLambda;
+            sigma = Math.atan2(sinSigma, cosSigma);
+            double sinAlpha = (sinSigma == 0) ? 0.0 : cosU1cosU2 * sinLambda / sinSigma;
+            double cosSqAlpha = 1.0 - sinAlpha * sinAlpha;
+            double cos2SM = (cosSqAlpha == 0) ? 0.0 : cosSigma - 2.0 * sinU1sinU2 / cosSqAlpha;
+
+            double uSquared = cosSqAlpha * aSqMinusBSqOverBSq;
+            uA = 1 + (uSquared / 16384.0)
+                    * (4096.0 + uSquared * (-768 + uSquared * (320.0 - 175.0 * uSquared)));
+            double uB = (uSquared / 1024.0)
+                    * (256.0 + uSquared * (-128.0 + uSquared * (74.0 - 47.0 * uSquared)));
+            double c = (f / 16.0) * cosSqAlpha * (4.0 + f * (4.0 - 3.0 * cosSqAlpha));
+            double cos2SMSq = cos2SM * cos2SM;
+            deltaSigma = uB * sinSigma * (cos2SM + (uB / 4.0) * (cosSigma * (-1.0 + 2.0 * cos2SMSq)
+                    - (uB / 6.0) * cos2SM * (-3.0 + 4.0 * sinSigma * sinSigma) * (-3.0 + 4.0 * cos2SMSq)));
+
+            lambda = l + (1.0 - c) * f * sinAlpha
+                    * (sigma + c * sinSigma * (cos2SM + c * cosSigma * (-1.0 + 2.0 * cos2SM * cos2SM)));
+
+            double delta = (lambda - lambdaOrig) / lambda;
+            if (Math.abs(delta) < 1.0e-12) {
+                break;
+            }
+        }
+        return b * uA * (sigma - deltaSigma);
+    }
+
+    /**
+     * Computes the length of one degree of latitude at the given latitude from the meridional
+     * radius of curvature.
+     * @param latitude The latitude in degrees.
+     * @return The length in meters.
+     */
+    static double metersPerDegreeLatitude(double latitude) {
+        double sin = Math.sin(Math.toRadians(latitude));
+        double w = 1 - ECCENTRICITY_SQUARED * sin * sin;
+        return Math.toRadians(SEMI_MAJOR_AXIS * (1 - ECCENTRICITY_SQUARED) / (w * Math.sqrt(w)));
+    }
+
+    /**
+     * Computes the length of one degree of longitude at the given latitude from the radius of the
+     * parallel.
+     * @param latitude The latitude in degrees.
+     * @return The length in meters.
+     */
+    static double metersPerDegreeLongitude(double latitude) {
+        double radians = Math.toRadians(latitude);
+        double sin = Math.sin(radians);
+        double w = 1 - ECCENTRICITY_SQUARED * sin * sin;
+        return Math.toRadians(SEMI_MAJOR_AXIS * Math.cos(radians) / Math.sqrt(w));
+    }
+}
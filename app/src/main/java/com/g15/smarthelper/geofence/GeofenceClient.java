@@ -0,0 +1,23 @@
+package com.g15.smarthelper.geofence;
+
+import com.g15.smarthelper.fence.Fence;
+
+/**
+ * The {@link GeofenceClient} registers fences with a geofencing provider, which reports the
+ * transitions to the {@link com.g15.smarthelper.receiver.GeofenceTransitionReceiver}. It hides the
+ * Play Services API, so the registration can be tested against a fake client.
+ */
+public interface GeofenceClient {
+
+    /**
+     * Replaces all registered geofences of the app.
+     * @param requestIds The identifiers the transitions of the fences are reported with.
+     * @param fences The fences to register, in the same order as the identifiers.
+     */
+    void replaceGeofences(String[] requestIds, Fence[] fences);
+
+    /**
+     * Removes all registered geofences of the app.
+     */
+    void removeGeofences();
+}
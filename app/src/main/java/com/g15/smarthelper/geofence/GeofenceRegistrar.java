@@ -0,0 +1,55 @@
+package com.g15.smarthelper.geofence;
+
+import android.util.Log;
+
+import com.g15.smarthelper.fence.Fence;
+import com.g15.smarthelper.rules.Rule;
+import com.g15.smarthelper.rules.RuleTable;
+
+/**
+ * The {@link GeofenceRegistrar} registers the fences of all rules with a {@link GeofenceClient}.
+ * Every fence is registered with the key of its rule as request id, so a reported transition can
+ * be mapped back to the rule with {@link RuleTable#getRule(String)}.
+ */
+public class GeofenceRegistrar {
+
+    private static final String LOG_TAG = "GeofenceRegistrar";
+
+    /** The maximum number of geofences Play Services accepts per app. */
+    static final int MAX_GEOFENCES = 100;
+
+    private final GeofenceClient client;
+
+    public GeofenceRegistrar(GeofenceClient client) {
+        this.client = client;
+    }
+
+    /**
+     * Replaces the registered geofences by the fences of the rules.
+     * @param ruleTable The rules to register the fences of.
+     */
+    public void register(RuleTable ruleTable) {
+        Rule[] rules = ruleTable.getRules();
+        int count = Math.min(rules.length, MAX_GEOFENCES);
+        if (count < rules.length) {
+            Log.w(LOG_TAG, "Only the first " + MAX_GEOFENCES + " of " + rules.length
+                    + " fences can be registered.");
+        }
+        String[] requestIds = new String[count];
+        Fence[] fences = new Fence[count];
+        for (int i = 0; i < count; i++) {
+            requestIds[i] = rules[i].getKey();
+            fences[i] = rules[i].getFence();
+        }
+        client.replaceGeofences(requestIds, fences);
+        Log.i(LOG_TAG, "Registered " + count + " geofences.");
+    }
+
+    /**
+     * Removes all registered geofences.
+     */
+    public void unregister() {
+        client.removeGeofences();
+        Log.i(LOG_TAG, "Removed all geofences.");
+    }
+}
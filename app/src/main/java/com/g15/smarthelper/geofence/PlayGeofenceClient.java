@@ -0,0 +1,119 @@
+package com.g15.smarthelper.geofence;
+
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.g15.smarthelper.fence.Fence;
+import com.g15.smarthelper.receiver.GeofenceTransitionReceiver;
+import com.google.android.gms.location.Geofence;
+import com.google.android.gms.location.GeofencingClient;
+import com.google.android.gms.location.GeofencingRequest;
+import com.google.android.gms.location.LocationServices;
+import com.google.android.gms.tasks.OnCompleteListener;
+import com.google.android.gms.tasks.OnFailureListener;
+import com.google.android.gms.tasks.Task;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The {@link PlayGeofenceClient} registers the fences with the Play Services
+ * {@link GeofencingClient}. Enter and exit transitions are delivered to the
+ * {@link GeofenceTransitionReceiver}.
+ *
+ * A replacement removes all fences before it adds the new ones once the removal completed. Every
+ * replacement and removal starts a new generation, and a replacement only adds its fences if no
+ * newer one was issued meanwhile, so an outdated set of fences is never registered.
+ */
+public class PlayGeofenceClient implements GeofenceClient {
+
+    private static final String LOG_TAG = "PlayGeofenceClient";
+
+    private final Context context;
+    private final GeofencingClient geofencingClient;
+    private PendingIntent pendingIntent;
+    private int generation = 0;
+
+    public PlayGeofenceClient(Context context) {
+        this.context = context.getApplicationContext();
+        this.geofencingClient = LocationServices.getGeofencingClient(this.context);
+    }
+
+    private synchronized PendingIntent getPendingIntent() {
+        if (pendingIntent == null) {
+            Intent intent = new Intent(context, GeofenceTransitionReceiver.class);
+            pendingIntent = PendingIntent.getBroadcast(context, 2, intent,
+                    PendingIntent.FLAG_UPDATE_CURRENT);
+        }
+        return pendingIntent;
+    }
+
+    @Override
+    public void replaceGeofences(String[] requestIds, Fence[] fences) {
+        final List<Geofence> geofences = new ArrayList<>(fences.length);
+        for (int i = 0; i < fences.length; i++) {
+            geofences.add(new Geofence.Builder()
+                    .setRequestId(requestIds[i])
+                    .setCircularRegion(fences[i].getLatitude(), fences[i].getLongitude(),
+                            fences[i].getRadius())
+                    .setExpirationDuration(Geofence.NEVER_EXPIRE)
+                    .setTransitionTypes(Geofence.GEOFENCE_TRANSITION_ENTER
+                            | Geofence.GEOFENCE_TRANSITION_EXIT)
+                    .build());
+        }
+
+        // Fences of removed rules have to go as well, so all fences are removed first. The lock
+        // keeps the calls in the order of their generations.
+        synchronized (this) {
+            final int replacement = ++generation;
+            geofencingClient.removeGeofences(getPendingIntent())
+                    .addOnCompleteListener(new OnCompleteListener<Void>() {
+                        @Override
+                        public void onComplete(@NonNull Task<Void> task) {
+                            addGeofences(replacement, geofences);
+                        }
+                    });
+        }
+    }
+
+    /**
+     * Adds the fences of a replacement, unless a newer replacement or removal was issued since.
+     * @param replacement The generation of the replacement.
+     * @param geofences The fences to add.
+     */
+    private synchronized void addGeofences(int replacement, List<Geofence> geofences) {
+        if (replacement != generation) {
+            Log.d(LOG_TAG, "Skipped adding outdated geofences.");
+        } else if (!geofences.isEmpty()) {
+            addGeofences(geofences);
+        }
+    }
+
+    private void addGeofences(List<Geofence> geofences) {
+        GeofencingRequest request = new GeofencingRequest.Builder()
+                .setInitialTrigger(GeofencingRequest.INITIAL_TRIGGER_ENTER)
+                .addGeofences(geofences)
+                .build();
+        try {
+            geofencingClient.addGeofences(request, getPendingIntent())
+                    .addOnFailureListener(new OnFailureListener() {
+                        @Override
+                        public void onFailure(@NonNull Exception e) {
+                            Log.e(LOG_TAG, "Failed to add geofences.", e);
+                        }
+                    });
+        } catch (SecurityException ex) {
+            Log.e(LOG_TAG, "Location permission denied.", ex);
+        }
+    }
+
+    @Override
+    public synchronized void removeGeofences() {
+        generation++;
+        geofencingClient.removeGeofences(getPendingIntent());
+    }
+}
@@ -0,0 +1,37 @@
+package com.g15.smarthelper.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link Counter} counts events of one kind. It is updated without locks and can be shared
+ * between threads.
+ */
+public final class Counter {
+
+    private final String name;
+    private final AtomicLong count = new AtomicLong();
+
+    Counter(String name) {
+        this.name = name;
+    }
+
+    public void increment() {
+        count.incrementAndGet();
+    }
+
+    /**
+     * Counts several events at once.
+     * @param events The number of events.
+     */
+    public void add(long events) {
+        count.addAndGet(events);
+    }
+
+    public long get() {
+        return count.get();
+    }
+
+    public String getName() {
+        return name;
+    }
+}
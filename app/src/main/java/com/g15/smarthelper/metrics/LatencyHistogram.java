@@ -0,0 +1,109 @@
+package com.g15.smarthelper.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A {@link LatencyHistogram} counts durations in fixed buckets from 50 microseconds to 10
+ * seconds. Recording a duration increments a single bucket without locks or allocations, so it
+ * can be called on every sensor event. Percentiles are estimated as the upper bound of the
+ * bucket they fall into.
+ */
+public final class LatencyHistogram {
+
+    // The upper bounds of the buckets in microseconds. Durations beyond the last bound are
+    // counted in an extra overflow bucket.
+    private static final long[] BOUNDS_MICROS = {
+            50, 100, 250, 500,
+            1000, 2500, 5000, 10000, 25000, 50000, 100000, 250000, 500000,
+            1000000, 2500000, 5000000, 10000000
+    };
+
+    private final String name;
+    private final AtomicLongArray buckets = new AtomicLongArray(BOUNDS_MICROS.length + 1);
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Records a duration.
+     * @param nanos The duration in nanoseconds, e.g. the difference of two
+     *              {@link System#nanoTime()} values.
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        long micros = nanos / 1000;
+        int bucket = 0;
+        while (bucket < BOUNDS_MICROS.length && micros > BOUNDS_MICROS[bucket]) {
+            bucket++;
+        }
+        buckets.incrementAndGet(bucket);
+        totalNanos.addAndGet(nanos);
+        long max = maxNanos.get();
+        while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+            max = maxNanos.get();
+        }
+    }
+
+    /**
+     * @return The number of recorded durations.
+     */
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            count += buckets.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * @return The mean of the recorded durations in microseconds, or 0 if nothing was recorded.
+     */
+    public double getMeanMicros() {
+        long count = getCount();
+        return count == 0 ? 0 : totalNanos.get() / 1000.0 / count;
+    }
+
+    /**
+     * @return The longest recorded duration in microseconds.
+     */
+    public long getMaxMicros() {
+        return maxNanos.get() / 1000;
+    }
+
+    /**
+     * Estimates a percentile of the recorded durations.
+     * @param percentile The percentile, from 0 to 100.
+     * @return The upper bound in microseconds of the bucket the percentile falls into, the
+     *         longest duration for the overflow bucket, or 0 if nothing was recorded.
+     */
+    public long getPercentileMicros(double percentile) {
+        long[] counts = new long[buckets.length()];
+        long count = 0;
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = buckets.get(i);
+            count += counts[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long seen = 0;
+        for (int i = 0; i < BOUNDS_MICROS.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return BOUNDS_MICROS[i];
+            }
+        }
+        return getMaxMicros();
+    }
+
+    public String getName() {
+        return name;
+    }
+}
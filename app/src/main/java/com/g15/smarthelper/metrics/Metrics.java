@@ -0,0 +1,165 @@
+package com.g15.smarthelper.metrics;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.g15.smarthelper.Scenarios;
+import com.g15.smarthelper.power.PowerAccounting;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * The runtime metrics of the app. All metrics live in one process-wide {@link MetricsRegistry}
+ * and are kept in memory only, so they start over with every process.
+ *
+ * The receivers count the updates they receive and time their {@code onReceive}, the SQLite
+ * store of the {@link Scenarios} times its configuration and state transactions, the rule
+ * evaluation counts how often the rules of each scenario are checked and triggered, and the action
+ * executor times the queued and running actions and counts the actions that were deduplicated,
+ * timed out or failed. The notification dispatcher counts the posted and the rate limited
+ * notifications.
+ */
+public final class Metrics {
+
+    private static final String LOG_TAG = "Metrics";
+    private static final String DUMP_FILE_FORMAT = "'metrics-'yyyyMMdd-HHmmss'.txt'";
+
+    public static final MetricsRegistry REGISTRY = new MetricsRegistry();
+
+    // Updates received by the receivers.
+    public static final Counter LOCATION_FIXES = REGISTRY.counter("location.fixes");
+    public static final Counter ACTIVITY_RESULTS = REGISTRY.counter("activity.results");
+    public static final Counter GEOFENCE_TRANSITIONS = REGISTRY.counter("geofence.transitions");
+    public static final Counter TIME_WINDOW_ALARMS = REGISTRY.counter("timewindow.alarms");
+
+    // Notifications of the scenario actions.
+    public static final Counter NOTIFICATIONS_POSTED = REGISTRY.counter("notifications.posted");
+    public static final Counter NOTIFICATIONS_LIMITED = REGISTRY.counter("notifications.limited");
+
+    // Actions of triggered rules.
+    public static final Counter ACTIONS_DEDUPLICATED = REGISTRY.counter("actions.deduplicated");
+    public static final Counter ACTIONS_TIMED_OUT = REGISTRY.counter("actions.timedout");
+    public static final Counter ACTIONS_FAILED = REGISTRY.counter("actions.failed");
+
+    private static final Scenarios.Scenario[] SCENARIOS = Scenarios.Scenario.values();
+    private static final Counter[] RULE_EVALUATIONS = new Counter[SCENARIOS.length];
+    private static final Counter[] RULE_TRIGGERS = new Counter[SCENARIOS.length];
+
+    static {
+        for (Scenarios.Scenario scenario : SCENARIOS) {
+            String name = scenario.name().toLowerCase(Locale.US);
+            RULE_EVALUATIONS[scenario.ordinal()] = REGISTRY.counter(name + ".evaluated");
+            RULE_TRIGGERS[scenario.ordinal()] = REGISTRY.counter(name + ".triggered");
+        }
+    }
+
+    // Time spent in the receivers.
+    public static final LatencyHistogram LOCATION_RECEIVER =
+            REGISTRY.histogram("receiver.location");
+    public static final LatencyHistogram ACTIVITY_RECEIVER =
+            REGISTRY.histogram("receiver.activity");
+    public static final LatencyHistogram GEOFENCE_RECEIVER =
+            REGISTRY.histogram("receiver.geofence");
+    public static final LatencyHistogram TIME_WINDOW_RECEIVER =
+            REGISTRY.histogram("receiver.timewindow");
+
+    // Time spent in the in-process location callback of the location service.
+    public static final LatencyHistogram LOCATION_CALLBACK =
+            REGISTRY.histogram("callback.location");
+
+    // Time from the creation of the main activity until its first frame is drawn.
+    public static final LatencyHistogram STARTUP_FIRST_FRAME =
+            REGISTRY.histogram("startup.firstframe");
+
+    // Time the writes of the scenario store block the calling thread.
+    public static final LatencyHistogram STORE_CONFIG = REGISTRY.histogram("store.config");
+    public static final LatencyHistogram STORE_STATE = REGISTRY.histogram("store.state");
+
+    // Time the actions wait for a thread of the executor.
+    public static final LatencyHistogram ACTION_QUEUE = REGISTRY.histogram("action.queue");
+
+    private static final LatencyHistogram[] ACTIONS = new LatencyHistogram[SCENARIOS.length];
+
+    static {
+        for (Scenarios.Scenario scenario : SCENARIOS) {
+            ACTIONS[scenario.ordinal()] =
+                    REGISTRY.histogram("action." + scenario.name().toLowerCase(Locale.US));
+        }
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * Counts that the conditions of a rule were checked.
+     * @param scenario The scenario of the rule.
+     */
+    public static void countEvaluation(Scenarios.Scenario scenario) {
+        RULE_EVALUATIONS[scenario.ordinal()].increment();
+    }
+
+    /**
+     * Counts that a rule was triggered.
+     * @param scenario The scenario of the rule.
+     */
+    public static void countTrigger(Scenarios.Scenario scenario) {
+        RULE_TRIGGERS[scenario.ordinal()].increment();
+    }
+
+    /**
+     * Returns the histogram of the time a scenario's action takes to run.
+     * @param scenario The scenario of the action.
+     * @return The histogram.
+     */
+    public static LatencyHistogram action(Scenarios.Scenario scenario) {
+        return ACTIONS[scenario.ordinal()];
+    }
+
+    /**
+     * @return The report of all metrics, see {@link MetricsRegistry#writeReport(Writer)}.
+     */
+    public static String getReport() {
+        StringWriter writer = new StringWriter();
+        try {
+            REGISTRY.writeReport(writer);
+        } catch (IOException e) {
+            // A StringWriter does not fail.
+            throw new IllegalStateException(e);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Writes the report of all metrics and of the {@link PowerAccounting} to a new file in the
+     * app's external files directory, which can be pulled from the device without root, or in its
+     * internal files directory if there is no external storage.
+     * @param context A context of the app.
+     * @return The written file.
+     * @throws IOException If the file cannot be written.
+     */
+    public static File dump(Context context) throws IOException {
+        File directory = context.getExternalFilesDir(null);
+        if (directory == null) {
+            directory = context.getFilesDir();
+        }
+        String name = new SimpleDateFormat(DUMP_FILE_FORMAT, Locale.US).format(new Date());
+        File file = new File(directory, name);
+        Writer writer = new FileWriter(file);
+        try {
+            REGISTRY.writeReport(writer);
+            writer.write('\n');
+            PowerAccounting.getInstance(context).writeReport(writer, System.currentTimeMillis());
+        } finally {
+            writer.close();
+        }
+        Log.i(LOG_TAG, "Dumped the metrics to " + file + ".");
+        return file;
+    }
+}
@@ -0,0 +1,88 @@
+package com.g15.smarthelper.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The {@link MetricsRegistry} holds named {@link Counter}s and {@link LatencyHistogram}s. The
+ * metrics are meant to be created once and kept in fields, so updating them never looks anything
+ * up; the registry is only used to list them for a report.
+ */
+public class MetricsRegistry {
+
+    private static final double NANOS_PER_HOUR = 3600e9;
+
+    private final List<Counter> counters = new CopyOnWriteArrayList<>();
+    private final List<LatencyHistogram> histograms = new CopyOnWriteArrayList<>();
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * Creates a counter and adds it to the registry.
+     * @param name The name of the counter in the report.
+     * @return The new counter.
+     */
+    public Counter counter(String name) {
+        Counter counter = new Counter(name);
+        counters.add(counter);
+        return counter;
+    }
+
+    /**
+     * Creates a histogram and adds it to the registry.
+     * @param name The name of the histogram in the report.
+     * @return The new histogram.
+     */
+    public LatencyHistogram histogram(String name) {
+        LatencyHistogram histogram = new LatencyHistogram(name);
+        histograms.add(histogram);
+        return histogram;
+    }
+
+    public List<Counter> getCounters() {
+        return new ArrayList<>(counters);
+    }
+
+    public List<LatencyHistogram> getHistograms() {
+        return new ArrayList<>(histograms);
+    }
+
+    /**
+     * @return The time since the registry was created in milliseconds.
+     */
+    public long getUptimeMillis() {
+        return (System.nanoTime() - startNanos) / 1000000;
+    }
+
+    /**
+     * Writes all metrics as text: every counter with its rate per hour since the registry was
+     * created, and every histogram with its count and estimated percentiles in microseconds.
+     * @param writer The writer to write to.
+     * @throws IOException If writing fails.
+     */
+    public void writeReport(Writer writer) throws IOException {
+        double hours = Math.max(System.nanoTime() - startNanos, 1) / NANOS_PER_HOUR;
+        writer.write(String.format(Locale.US, "uptime %.2f h\n", hours));
+        for (Counter counter : counters) {
+            long count = counter.get();
+            writer.write(String.format(Locale.US, "%-28s %8d %10.1f/h\n",
+                    counter.getName(), count, count / hours));
+        }
+        for (LatencyHistogram histogram : histograms) {
+            long count = histogram.getCount();
+            if (count == 0) {
+                writer.write(String.format(Locale.US, "%-28s %8d\n", histogram.getName(), 0));
+                continue;
+            }
+            writer.write(String.format(Locale.US,
+                    "%-28s %8d  mean %.0f  p50 %d  p99 %d  max %d us\n",
+                    histogram.getName(), count, histogram.getMeanMicros(),
+                    histogram.getPercentileMicros(50), histogram.getPercentileMicros(99),
+                    histogram.getMaxMicros()));
+        }
+        writer.flush();
+    }
+}
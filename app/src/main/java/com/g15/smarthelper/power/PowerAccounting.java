@@ -0,0 +1,391 @@
+package com.g15.smarthelper.power;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.g15.smarthelper.Constants;
+import com.g15.smarthelper.Scenarios;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * The {@link PowerAccounting} attributes the work that costs battery to the scenarios that caused
+ * it, so it can be told which scenario costs what. Per day and scenario it counts the location
+ * fixes, split by whether they were requested with high accuracy, the receiver wakeups, the
+ * activity samples and the executed actions, and estimates their energy with a
+ * {@link PowerModel}.
+ *
+ * The events are attributed as follows:
+ * <ul>
+ *     <li>The location request is chosen for the fence nearest to the user, so fixes and their
+ *     wakeups go to the scenario of that fence. Until the first fix was evaluated they are
+ *     shared by the enabled scenarios.</li>
+ *     <li>Activity updates are requested for all enabled scenarios, so activity samples and
+ *     their wakeups are shared by them.</li>
+ *     <li>Geofence transitions go to the scenarios of the transitioned fences, time window alarms
+ *     are shared by the enabled scenarios.</li>
+ *     <li>Actions go to their scenario.</li>
+ * </ul>
+ * A shared event is split evenly, which is why events are counted in thousandths.
+ *
+ * All counts live in a single primitive array indexed by day, scenario and kind, so recording an
+ * event takes a few array writes. The counts of the last {@link #DAYS} days are saved to a file
+ * at most once a minute and when the tracking service ends.
+ */
+public class PowerAccounting {
+
+    private static final String LOG_TAG = "PowerAccounting";
+    private static final String FILE_NAME = "power.dat";
+    private static final int FILE_VERSION = 1;
+    private static final long SAVE_INTERVAL = 60 * 1000;
+
+    public static final int FIX_HIGH_ACCURACY = 0;
+    public static final int FIX = 1;
+    public static final int WAKEUP = 2;
+    public static final int ACTIVITY_SAMPLE = 3;
+    public static final int ACTION = 4;
+    static final int KIND_COUNT = 5;
+    private static final String[] KIND_NAMES =
+            {"hi-acc fixes", "fixes", "wakeups", "activity", "actions"};
+
+    /** The number of days the counts are kept for. */
+    public static final int DAYS = 7;
+    /** An event counts as this many units, so a shared event can be split between scenarios. */
+    public static final long UNITS_PER_EVENT = 1000;
+
+    private static final Scenarios.Scenario[] SCENARIOS = Scenarios.Scenario.values();
+    private static final int SCENARIO_COUNT = SCENARIOS.length;
+    private static final int NO_CAUSE = -1;
+
+    private static PowerAccounting instance;
+
+    private final Scenarios scenarios;
+    private final TimeZone timeZone;
+    private final File file;
+
+    // The counts in units, indexed by (slot * SCENARIO_COUNT + scenario) * KIND_COUNT + kind.
+    private final long[] counts = new long[DAYS * SCENARIO_COUNT * KIND_COUNT];
+    // The day of every slot as a number of days since the epoch in the time zone, -1 if unused.
+    private final long[] slotDays = new long[DAYS];
+    private int slot = -1;
+    private long dayStart = Long.MAX_VALUE;
+    private long dayEnd = Long.MIN_VALUE;
+    private int locationCause = NO_CAUSE;
+    private boolean dirty;
+    private long lastSave;
+
+    /**
+     * Returns the accounting of the app, loaded from its file.
+     * @param context A context of the app.
+     * @return The shared accounting.
+     */
+    public static synchronized PowerAccounting getInstance(Context context) {
+        if (instance == null) {
+            instance = new PowerAccounting(Scenarios.getInstance(context),
+                    TimeZone.getTimeZone(Constants.TIME_ZONE),
+                    new File(context.getApplicationContext().getFilesDir(), FILE_NAME));
+        }
+        return instance;
+    }
+
+    /**
+     * Creates an accounting.
+     * @param scenarios The scenarios whose activation decides how shared events are split.
+     * @param timeZone The time zone the days are counted in.
+     * @param file The file the counts are saved to and loaded from, or null to keep them in
+     *             memory only.
+     */
+    public PowerAccounting(Scenarios scenarios, TimeZone timeZone, File file) {
+        this.scenarios = scenarios;
+        this.timeZone = timeZone;
+        this.file = file;
+        Arrays.fill(slotDays, -1);
+        if (file != null && file.exists()) {
+            load();
+        }
+    }
+
+    /**
+     * Records location fixes delivered to the app.
+     * @param count The number of fixes.
+     * @param highAccuracy true if the fixes were requested with high accuracy.
+     * @param time The time of the delivery in milliseconds since the epoch.
+     */
+    public synchronized void onLocationFixes(int count, boolean highAccuracy, long time) {
+        int mask = locationCause != NO_CAUSE ? 1 << locationCause : enabledMask();
+        record(highAccuracy ? FIX_HIGH_ACCURACY : FIX, mask, count, time);
+        record(WAKEUP, mask, 1, time);
+    }
+
+    /**
+     * Records an activity recognition result delivered to the app.
+     * @param time The time of the delivery in milliseconds since the epoch.
+     */
+    public synchronized void onActivitySample(long time) {
+        int mask = enabledMask();
+        record(ACTIVITY_SAMPLE, mask, 1, time);
+        record(WAKEUP, mask, 1, time);
+    }
+
+    /**
+     * Records a wakeup of a receiver.
+     * @param scenarioMask The scenarios that caused the wakeup, a bit per scenario ordinal, or 0
+     *                     if it is shared by the enabled scenarios.
+     * @param time The time of the wakeup in milliseconds since the epoch.
+     */
+    public synchronized void onWakeup(int scenarioMask, long time) {
+        record(WAKEUP, scenarioMask != 0 ? scenarioMask : enabledMask(), 1, time);
+    }
+
+    /**
+     * Records the execution of a scenario's action.
+     * @param scenario The scenario.
+     * @param time The time of the execution in milliseconds since the epoch.
+     */
+    public synchronized void onAction(Scenarios.Scenario scenario, long time) {
+        record(ACTION, 1 << scenario.ordinal(), 1, time);
+    }
+
+    /**
+     * Sets the scenario the current location request is made for.
+     * @param scenario The scenario of the fence the sampling was chosen for, or null if the
+     *                 request is shared by the enabled scenarios.
+     */
+    public synchronized void setLocationCause(Scenarios.Scenario scenario) {
+        locationCause = scenario != null ? scenario.ordinal() : NO_CAUSE;
+    }
+
+    /**
+     * @return A bit per enabled scenario, or all scenarios if none is enabled.
+     */
+    private int enabledMask() {
+        int mask = 0;
+        for (Scenarios.Scenario scenario : SCENARIOS) {
+            if (scenarios.isScenarioActivated(scenario)) {
+                mask |= 1 << scenario.ordinal();
+            }
+        }
+        return mask != 0 ? mask : (1 << SCENARIO_COUNT) - 1;
+    }
+
+    /**
+     * Adds events to the counts of the scenarios of a mask, split evenly between them. What is
+     * left after the split goes to the first of them.
+     */
+    private void record(int kind, int mask, int events, long time) {
+        if (time < dayStart || time >= dayEnd) {
+            selectDay(time);
+        }
+        long units = events * UNITS_PER_EVENT;
+        int shares = Integer.bitCount(mask);
+        long share = units / shares;
+        long rest = units - share * shares;
+        int base = slot * SCENARIO_COUNT * KIND_COUNT + kind;
+        for (int scenario = 0; scenario < SCENARIO_COUNT; scenario++) {
+            if ((mask & (1 << scenario)) != 0) {
+                counts[base + scenario * KIND_COUNT] += share + rest;
+                rest = 0;
+            }
+        }
+        dirty = true;
+    }
+
+    /**
+     * Selects the slot of the day of an instant, clearing the counts of the day that was kept in
+     * the slot before.
+     */
+    private void selectDay(long time) {
+        Calendar calendar = Calendar.getInstance(timeZone);
+        calendar.setTimeInMillis(time);
+        calendar.set(Calendar.HOUR_OF_DAY, 0);
+        calendar.set(Calendar.MINUTE, 0);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        dayStart = calendar.getTimeInMillis();
+        calendar.add(Calendar.DAY_OF_MONTH, 1);
+        dayEnd = calendar.getTimeInMillis();
+
+        long day = epochDay(time);
+        slot = (int) (day % DAYS);
+        if (slotDays[slot] != day) {
+            slotDays[slot] = day;
+            int start = slot * SCENARIO_COUNT * KIND_COUNT;
+            Arrays.fill(counts, start, start + SCENARIO_COUNT * KIND_COUNT, 0);
+        }
+    }
+
+    private long epochDay(long time) {
+        return (time + timeZone.getOffset(time)) / (24L * 60 * 60 * 1000);
+    }
+
+    /**
+     * Returns the count of a kind of event on a day.
+     * @param time An instant on the day in milliseconds since the epoch.
+     * @param scenario The scenario the events were attributed to.
+     * @param kind The kind of event, e.g. {@link #WAKEUP}.
+     * @return The count in units of {@link #UNITS_PER_EVENT}, or 0 if the day is not kept.
+     */
+    public synchronized long getUnits(long time, Scenarios.Scenario scenario, int kind) {
+        int daySlot = slotOf(epochDay(time));
+        return daySlot < 0 ? 0
+                : counts[(daySlot * SCENARIO_COUNT + scenario.ordinal()) * KIND_COUNT + kind];
+    }
+
+    /**
+     * Estimates the energy a scenario cost on a day.
+     * @param time An instant on the day in milliseconds since the epoch.
+     * @param scenario The scenario.
+     * @return The energy in joules.
+     */
+    public synchronized double getEnergy(long time, Scenarios.Scenario scenario) {
+        int daySlot = slotOf(epochDay(time));
+        return daySlot < 0 ? 0 : energy(daySlot, scenario.ordinal());
+    }
+
+    private int slotOf(long day) {
+        int daySlot = (int) (day % DAYS);
+        return slotDays[daySlot] == day ? daySlot : -1;
+    }
+
+    private double energy(int daySlot, int scenario) {
+        int base = (daySlot * SCENARIO_COUNT + scenario) * KIND_COUNT;
+        double joules = 0;
+        for (int kind = 0; kind < KIND_COUNT; kind++) {
+            joules += PowerModel.JOULES[kind] * counts[base + kind] / UNITS_PER_EVENT;
+        }
+        return joules;
+    }
+
+    /**
+     * Writes the totals and the estimated energy of every kept day, newest first.
+     * @param writer The writer to write to.
+     * @param now The current time in milliseconds since the epoch.
+     * @throws IOException If writing fails.
+     */
+    public synchronized void writeReport(Writer writer, long now) throws IOException {
+        writer.write("energy per scenario and day (estimated)\n");
+        long today = epochDay(now);
+        Calendar calendar = Calendar.getInstance(timeZone);
+        for (long day = today; day > today - DAYS; day--) {
+            int daySlot = slotOf(day);
+            if (daySlot < 0) {
+                continue;
+            }
+            calendar.setTimeInMillis(now);
+            calendar.add(Calendar.DAY_OF_MONTH, (int) (day - today));
+            writer.write(String.format(Locale.US, "%1$tY-%1$tm-%1$td\n", calendar));
+            for (int scenario = 0; scenario < SCENARIO_COUNT; scenario++) {
+                StringBuilder line = new StringBuilder(String.format(Locale.US, "  %-18s %8.1f J",
+                        SCENARIOS[scenario].name().toLowerCase(Locale.US), energy(daySlot, scenario)));
+                int base = (daySlot * SCENARIO_COUNT + scenario) * KIND_COUNT;
+                for (int kind = 0; kind < KIND_COUNT; kind++) {
+                    line.append(String.format(Locale.US, ", %s %.1f", KIND_NAMES[kind],
+                            counts[base + kind] / (double) UNITS_PER_EVENT));
+                }
+                writer.write(line.append('\n').toString());
+            }
+        }
+        writer.flush();
+    }
+
+    /**
+     * @param now The current time in milliseconds since the epoch.
+     * @return The report of the kept days, see {@link #writeReport(Writer, long)}.
+     */
+    public String getReport(long now) {
+        StringWriter writer = new StringWriter();
+        try {
+            writeReport(writer, now);
+        } catch (IOException e) {
+            // A StringWriter does not fail.
+            throw new IllegalStateException(e);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * Saves the counts if they changed and the last save was at least a minute ago.
+     * @param now The current time in milliseconds since the epoch.
+     */
+    public synchronized void saveIfDue(long now) {
+        if (dirty && Math.abs(now - lastSave) >= SAVE_INTERVAL) {
+            save();
+            lastSave = now;
+        }
+    }
+
+    /**
+     * Saves the counts if they changed. The file is replaced as a whole, so a failed save keeps
+     * the previous counts.
+     */
+    public synchronized void save() {
+        if (file == null || !dirty) {
+            return;
+        }
+        File temporary = new File(file.getPath() + ".tmp");
+        try {
+            DataOutputStream out = new DataOutputStream(new FileOutputStream(temporary));
+            try {
+                out.writeInt(FILE_VERSION);
+                out.writeInt(DAYS);
+                out.writeInt(SCENARIO_COUNT);
+                out.writeInt(KIND_COUNT);
+                out.writeInt(locationCause);
+                for (long day : slotDays) {
+                    out.writeLong(day);
+                }
+                for (long count : counts) {
+                    out.writeLong(count);
+                }
+            } finally {
+                out.close();
+            }
+            if (!temporary.renameTo(file)) {
+                throw new IOException("Could not replace " + file + ".");
+            }
+            dirty = false;
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Could not save the power accounting.", e);
+        }
+    }
+
+    private void load() {
+        try {
+            DataInputStream in = new DataInputStream(new FileInputStream(file));
+            try {
+                if (in.readInt() != FILE_VERSION || in.readInt() != DAYS
+                        || in.readInt() != SCENARIO_COUNT || in.readInt() != KIND_COUNT) {
+                    Log.w(LOG_TAG, "Ignoring the power accounting of another layout.");
+                    return;
+                }
+                int cause = in.readInt();
+                long[] days = new long[DAYS];
+                for (int i = 0; i < days.length; i++) {
+                    days[i] = in.readLong();
+                }
+                long[] loaded = new long[counts.length];
+                for (int i = 0; i < loaded.length; i++) {
+                    loaded[i] = in.readLong();
+                }
+                locationCause = cause >= 0 && cause < SCENARIO_COUNT ? cause : NO_CAUSE;
+                System.arraycopy(days, 0, slotDays, 0, days.length);
+                System.arraycopy(loaded, 0, counts, 0, loaded.length);
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            Log.e(LOG_TAG, "Could not load the power accounting.", e);
+        }
+    }
+}
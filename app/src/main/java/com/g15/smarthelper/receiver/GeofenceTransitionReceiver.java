@@ -0,0 +1,65 @@
+package com.g15.smarthelper.receiver;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.location.Location;
+import android.util.Log;
+
+import com.g15.smarthelper.engine.ScenarioEngine;
+import com.g15.smarthelper.metrics.Metrics;
+import com.google.android.gms.location.Geofence;
+import com.google.android.gms.location.GeofenceStatusCodes;
+import com.google.android.gms.location.GeofencingEvent;
+
+import java.util.List;
+
+
+/**
+ * The {@link GeofenceTransitionReceiver} is a {@link BroadcastReceiver} that handles the fence
+ * transitions of the system geofencing. The request id of each geofence is the key of its rule;
+ * entering and leaving is handed to the {@link ScenarioEngine}, which evaluates it like a
+ * transition detected from location updates.
+ */
+public class GeofenceTransitionReceiver extends BroadcastReceiver {
+    private static final String LOG_TAG = "GeofenceTransitionRcv";
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        GeofencingEvent event = GeofencingEvent.fromIntent(intent);
+        if (event == null) {
+            return;
+        }
+        if (event.hasError()) {
+            Log.e(LOG_TAG, "Geofencing error: "
+                    + GeofenceStatusCodes.getStatusCodeString(event.getErrorCode()));
+            return;
+        }
+
+        int transition = event.getGeofenceTransition();
+        if (transition != Geofence.GEOFENCE_TRANSITION_ENTER
+                && transition != Geofence.GEOFENCE_TRANSITION_EXIT) {
+            Log.w(LOG_TAG, "Ignoring geofence transition " + transition + ".");
+            return;
+        }
+
+        long start = System.nanoTime();
+        boolean entered = transition == Geofence.GEOFENCE_TRANSITION_ENTER;
+        Location location = event.getTriggeringLocation();
+        long time = location != null ? location.getTime() : System.currentTimeMillis();
+        List<Geofence> geofences = event.getTriggeringGeofences();
+        if (geofences != null) {
+            String[] ruleKeys = new String[geofences.size()];
+            for (int i = 0; i < ruleKeys.length; i++) {
+                ruleKeys[i] = geofences.get(i).getRequestId();
+                Log.i(LOG_TAG, "Received geofence transition " + transition + " of "
+                        + ruleKeys[i] + ".");
+            }
+            // The engine finishes the broadcast once the transitions have been processed.
+            ScenarioEngine.getInstance(context)
+                    .postFenceTransitions(ruleKeys, entered, time, goAsync());
+            Metrics.GEOFENCE_TRANSITIONS.add(ruleKeys.length);
+        }
+        Metrics.GEOFENCE_RECEIVER.record(System.nanoTime() - start);
+    }
+}
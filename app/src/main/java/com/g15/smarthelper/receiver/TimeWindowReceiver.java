@@ -0,0 +1,31 @@
+package com.g15.smarthelper.receiver;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+import com.g15.smarthelper.Services.TimeWindowAlarm;
+import com.g15.smarthelper.engine.ScenarioEngine;
+import com.g15.smarthelper.metrics.Metrics;
+
+
+/**
+ * The {@link TimeWindowReceiver} is a {@link BroadcastReceiver} that handles the
+ * {@link TimeWindowAlarm}. When a time window starts or ends, the {@link ScenarioEngine} evaluates
+ * the rules whose fences are currently entered again.
+ */
+public class TimeWindowReceiver extends BroadcastReceiver {
+    private static final String LOG_TAG = "TimeWindowReceiver";
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        Log.i(LOG_TAG, "Received a time window alarm.");
+        long start = System.nanoTime();
+        // The engine finishes the broadcast once the boundary has been processed.
+        ScenarioEngine.getInstance(context)
+                .postTimeWindowBoundary(System.currentTimeMillis(), goAsync());
+        Metrics.TIME_WINDOW_ALARMS.increment();
+        Metrics.TIME_WINDOW_RECEIVER.record(System.nanoTime() - start);
+    }
+}
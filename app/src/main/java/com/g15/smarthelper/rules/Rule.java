@@ -0,0 +1,81 @@
+package com.g15.smarthelper.rules;
+
+import com.g15.smarthelper.Scenarios;
+import com.g15.smarthelper.fence.Fence;
+
+/**
+ * A {@link Rule} is a compiled {@link RuleDefinition} with a resolved fence. Its index is the
+ * position in the {@link RuleTable} and the id of its fence.
+ */
+public class Rule {
+
+    private final int index;
+    private final RuleDefinition definition;
+    private final Fence fence;
+
+    Rule(int index, RuleDefinition definition, Fence fence) {
+        this.index = index;
+        this.definition = definition;
+        this.fence = fence;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public String getKey() {
+        return definition.getKey();
+    }
+
+    public Scenarios.Scenario getAction() {
+        return definition.getAction();
+    }
+
+    public int getTargetActivity() {
+        return definition.getTargetActivity();
+    }
+
+    public int getStartMinute() {
+        return definition.getStartMinute();
+    }
+
+    public int getEndMinute() {
+        return definition.getEndMinute();
+    }
+
+    /**
+     * @return The number of consecutive samples a membership change of the fence needs.
+     */
+    public int getDwellCount() {
+        return definition.getDwellCount();
+    }
+
+    public Fence getFence() {
+        return fence;
+    }
+
+    public RuleDefinition getDefinition() {
+        return definition;
+    }
+
+    /**
+     * Checks if a time of day is inside the rule's time window.
+     * @param minuteOfDay The minutes after midnight.
+     * @return If the time is inside the window.
+     */
+    public boolean isInTimeWindow(int minuteOfDay) {
+        int start = getStartMinute();
+        int end = getEndMinute();
+        if (start <= end) {
+            return minuteOfDay >= start && minuteOfDay < end;
+        } else {
+            // The window wraps around midnight.
+            return minuteOfDay >= start || minuteOfDay < end;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Rule{" + getKey() + ", action=" + getAction() + ", activity=" + getTargetActivity() + "}";
+    }
+}
@@ -0,0 +1,276 @@
+package com.g15.smarthelper.rules;
+
+import com.g15.smarthelper.Scenarios;
+import com.google.android.gms.location.DetectedActivity;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A {@link RuleDefinition} describes when a scenario action is triggered: inside a fence, while the
+ * user performs the target activity and during a time window. The definitions are persisted as
+ * JSON and compiled into a {@link RuleTable} for evaluation.
+ *
+ * A definition without its own fence uses the fence configured for its action's scenario.
+ *
+ * To keep the fence membership from flapping at the boundary, a fence is left only outside of a
+ * larger exit radius, and a membership change is only accepted after a number of consecutive
+ * location samples agree on it (the dwell count).
+ */
+public class RuleDefinition {
+
+    /** The minutes of a day. A time window from 0 to this value covers the whole day. */
+    public static final int MINUTES_PER_DAY = 24 * 60;
+    /** The number of consecutive samples a membership change needs unless configured otherwise. */
+    public static final int DEFAULT_DWELL_COUNT = 2;
+
+    // The default exit radius is the radius plus a fifth of it, but at least this many meters.
+    private static final int MIN_EXIT_MARGIN = 10;
+
+    private static final String KEY = "key";
+    private static final String ACTION = "action";
+    private static final String ACTIVITY = "activity";
+    private static final String START_MINUTE = "start";
+    private static final String END_MINUTE = "end";
+    private static final String LATITUDE = "lat";
+    private static final String LONGITUDE = "lng";
+    private static final String RADIUS = "radius";
+    private static final String EXIT_RADIUS = "exitRadius";
+    private static final String DWELL_COUNT = "dwell";
+
+    private final String key;
+    private final Scenarios.Scenario action;
+    private final int targetActivity;
+    private final int startMinute;
+    private final int endMinute;
+    private final boolean hasFence;
+    private final double latitude;
+    private final double longitude;
+    private final int radius;
+    private final int exitRadius;
+    private final int dwellCount;
+
+    /**
+     * Creates a rule that uses the fence of its action's scenario.
+     * @param key The unique key of the rule, used to persist its state.
+     * @param action The scenario whose action is triggered.
+     * @param targetActivity The {@link DetectedActivity} type the rule triggers at.
+     * @param startMinute The start of the time window in minutes after midnight.
+     * @param endMinute The end of the time window in minutes after midnight (exclusive). The
+     *                  window wraps around midnight if it ends before it starts.
+     */
+    public RuleDefinition(String key, Scenarios.Scenario action, int targetActivity,
+                          int startMinute, int endMinute) {
+        this(key, action, targetActivity, startMinute, endMinute, false, 0, 0, 0, 0, 0);
+    }
+
+    /**
+     * Creates a rule with its own fence.
+     * @param key The unique key of the rule, used to persist its state.
+     * @param action The scenario whose action is triggered.
+     * @param targetActivity The {@link DetectedActivity} type the rule triggers at.
+     * @param startMinute The start of the time window in minutes after midnight.
+     * @param endMinute The end of the time window in minutes after midnight (exclusive).
+     * @param latitude The latitude of the fence's center.
+     * @param longitude The longitude of the fence's center.
+     * @param radius The fence's radius in meters.
+     */
+    public RuleDefinition(String key, Scenarios.Scenario action, int targetActivity,
+                          int startMinute, int endMinute,
+                          double latitude, double longitude, int radius) {
+        this(key, action, targetActivity, startMinute, endMinute, true, latitude, longitude, radius,
+                0, 0);
+    }
+
+    private RuleDefinition(String key, Scenarios.Scenario action, int targetActivity,
+                           int startMinute, int endMinute, boolean hasFence,
+                           double latitude, double longitude, int radius,
+                           int exitRadius, int dwellCount) {
+        this.key = key;
+        this.action = action;
+        this.targetActivity = targetActivity;
+        this.startMinute = startMinute;
+        this.endMinute = endMinute;
+        this.hasFence = hasFence;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.radius = radius;
+        this.exitRadius = exitRadius;
+        this.dwellCount = dwellCount;
+    }
+
+    /**
+     * Returns the rules of the built-in scenarios. Their keys are the scenario names, so their
+     * state is stored under the same keys as before rules were introduced.
+     * @return The default rules.
+     */
+    public static List<RuleDefinition> getDefaults() {
+        List<RuleDefinition> defaults = new ArrayList<>();
+        defaults.add(new RuleDefinition(Scenarios.Scenario.SCENARIO_MUSIC.name(),
+                Scenarios.Scenario.SCENARIO_MUSIC, DetectedActivity.RUNNING, 0, MINUTES_PER_DAY));
+        defaults.add(new RuleDefinition(Scenarios.Scenario.SCENARIO_WARNING.name(),
+                Scenarios.Scenario.SCENARIO_WARNING, DetectedActivity.WALKING, 0, MINUTES_PER_DAY));
+        // The home scenario is restricted to the night (23:00 - 04:00).
+        defaults.add(new RuleDefinition(Scenarios.Scenario.SCENARIO_HOME.name(),
+                Scenarios.Scenario.SCENARIO_HOME, DetectedActivity.STILL, 23 * 60, 4 * 60));
+        return defaults;
+    }
+
+    /**
+     * Parses a list of rules from its JSON representation.
+     * @param json The JSON array of rules.
+     * @return The parsed rules.
+     * @throws JSONException If the JSON is not a valid list of rules or two rules have the same
+     * key.
+     */
+    public static List<RuleDefinition> fromJson(String json) throws JSONException {
+        JSONArray array = new JSONArray(json);
+        List<RuleDefinition> definitions = new ArrayList<>(array.length());
+        Set<String> keys = new HashSet<>();
+        for (int i = 0; i < array.length(); i++) {
+            JSONObject object = array.getJSONObject(i);
+            if (!keys.add(object.getString(KEY))) {
+                throw new JSONException("Duplicate rule key " + object.getString(KEY));
+            }
+            Scenarios.Scenario action;
+            try {
+                action = Scenarios.Scenario.valueOf(object.getString(ACTION));
+            } catch (IllegalArgumentException e) {
+                throw new JSONException("Unknown rule action " + object.optString(ACTION, null));
+            }
+            definitions.add(new RuleDefinition(
+                    object.getString(KEY),
+                    action,
+                    object.getInt(ACTIVITY),
+                    object.optInt(START_MINUTE, 0),
+                    object.optInt(END_MINUTE, MINUTES_PER_DAY),
+                    object.has(RADIUS),
+                    object.optDouble(LATITUDE, 0),
+                    object.optDouble(LONGITUDE, 0),
+                    object.optInt(RADIUS, 0),
+                    object.optInt(EXIT_RADIUS, 0),
+                    object.optInt(DWELL_COUNT, 0)));
+        }
+        return definitions;
+    }
+
+    /**
+     * Serializes a list of rules to JSON.
+     * @param definitions The rules to serialize.
+     * @return The JSON array of rules.
+     * @throws JSONException If a rule cannot be serialized.
+     */
+    public static String toJson(List<RuleDefinition> definitions) throws JSONException {
+        JSONArray array = new JSONArray();
+        for (RuleDefinition definition : definitions) {
+            JSONObject object = new JSONObject()
+                    .put(KEY, definition.key)
+                    .put(ACTION, definition.action.name())
+                    .put(ACTIVITY, definition.targetActivity)
+                    .put(START_MINUTE, definition.startMinute)
+                    .put(END_MINUTE, definition.endMinute);
+            if (definition.hasFence) {
+                object.put(LATITUDE, definition.latitude)
+                        .put(LONGITUDE, definition.longitude)
+                        .put(RADIUS, definition.radius);
+            }
+            if (definition.exitRadius > 0) {
+                object.put(EXIT_RADIUS, definition.exitRadius);
+            }
+            if (definition.dwellCount > 0) {
+                object.put(DWELL_COUNT, definition.dwellCount);
+            }
+            array.put(object);
+        }
+        return array.toString();
+    }
+
+    /**
+     * Returns a copy of this rule with the given fence. The hysteresis settings are kept.
+     * @param latitude The latitude of the fence's center.
+     * @param longitude The longitude of the fence's center.
+     * @param radius The fence's radius in meters.
+     * @return The rule with the fence.
+     */
+    public RuleDefinition withFence(double latitude, double longitude, int radius) {
+        return new RuleDefinition(key, action, targetActivity, startMinute, endMinute, true,
+                latitude, longitude, radius, exitRadius, dwellCount);
+    }
+
+    /**
+     * Returns a copy of this rule with the given hysteresis settings.
+     * @param exitRadius The radius in meters outside of which the fence is left, or 0 for the
+     *                   default exit radius.
+     * @param dwellCount The number of consecutive samples a membership change needs, or 0 for
+     *                   {@link #DEFAULT_DWELL_COUNT}.
+     * @return The rule with the settings.
+     */
+    public RuleDefinition withHysteresis(int exitRadius, int dwellCount) {
+        return new RuleDefinition(key, action, targetActivity, startMinute, endMinute, hasFence,
+                latitude, longitude, radius, exitRadius, dwellCount);
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public Scenarios.Scenario getAction() {
+        return action;
+    }
+
+    public int getTargetActivity() {
+        return targetActivity;
+    }
+
+    public int getStartMinute() {
+        return startMinute;
+    }
+
+    public int getEndMinute() {
+        return endMinute;
+    }
+
+    /**
+     * Returns if the rule defines its own fence or uses the fence of its action's scenario.
+     * @return If the rule has its own fence.
+     */
+    public boolean hasFence() {
+        return hasFence;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    public int getRadius() {
+        return radius;
+    }
+
+    /**
+     * Returns the radius outside of which the fence is left. It is never smaller than the radius.
+     * @return The exit radius in meters.
+     */
+    public int getExitRadius() {
+        if (exitRadius > 0) {
+            return Math.max(exitRadius, radius);
+        }
+        return radius + Math.max(MIN_EXIT_MARGIN, radius / 5);
+    }
+
+    /**
+     * @return The number of consecutive samples a membership change needs.
+     */
+    public int getDwellCount() {
+        return dwellCount > 0 ? dwellCount : DEFAULT_DWELL_COUNT;
+    }
+}
@@ -0,0 +1,123 @@
+package com.g15.smarthelper.rules;
+
+import com.g15.smarthelper.fence.Fence;
+import com.g15.smarthelper.fence.FenceIndex;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The {@link RuleTable} is the compiled, immutable form of all rules. The rules are indexed by
+ * their target activity, so an activity update only has to look at the rules registered for that
+ * activity, and by their fence, so a location update only has to look at the rules near the
+ * location.
+ */
+public class RuleTable {
+
+    private static final Rule[] NO_RULES = new Rule[0];
+
+    private final Rule[] rules;
+    private final Rule[][] rulesByActivity;
+    private final FenceIndex fenceIndex;
+    private final Map<String, Rule> rulesByKey = new HashMap<>();
+
+    /**
+     * Compiles the rule table. Definitions without a fence are skipped, since they can never
+     * trigger.
+     * @param definitions The rule definitions with resolved fences.
+     * @throws IllegalArgumentException If two definitions have the same key.
+     */
+    public RuleTable(List<RuleDefinition> definitions) {
+        List<Rule> compiled = new ArrayList<>();
+        List<Fence> fences = new ArrayList<>();
+        int maxActivity = -1;
+        Set<String> keys = new HashSet<>();
+        for (RuleDefinition definition : definitions) {
+            // The state of a rule is stored by its key, so a second rule would share it.
+            if (!keys.add(definition.getKey())) {
+                throw new IllegalArgumentException("Duplicate rule key " + definition.getKey());
+            }
+            if (!definition.hasFence()) {
+                continue;
+            }
+            // The fence id is the index of the rule in the table.
+            int index = compiled.size();
+            Fence fence = new Fence(index, definition.getLatitude(), definition.getLongitude(),
+                    definition.getRadius(), definition.getExitRadius());
+            Rule rule = new Rule(index, definition, fence);
+            compiled.add(rule);
+            rulesByKey.put(rule.getKey(), rule);
+            fences.add(fence);
+            maxActivity = Math.max(maxActivity, definition.getTargetActivity());
+        }
+        rules = compiled.toArray(NO_RULES);
+        fenceIndex = new FenceIndex(fences);
+
+        rulesByActivity = new Rule[maxActivity + 1][];
+        for (int activity = 0; activity <= maxActivity; activity++) {
+            List<Rule> activityRules = new ArrayList<>();
+            for (Rule rule : rules) {
+                if (rule.getTargetActivity() == activity) {
+                    activityRules.add(rule);
+                }
+            }
+            rulesByActivity[activity] = activityRules.toArray(NO_RULES);
+        }
+    }
+
+    /**
+     * Returns all rules of the table. The returned array is shared and must not be modified.
+     * @return All rules ordered by their index.
+     */
+    public Rule[] getRules() {
+        return rules;
+    }
+
+    /**
+     * Returns the rules that trigger at an activity. The returned array is shared and must not be
+     * modified.
+     * @param activityType The detected activity type.
+     * @return The rules with that target activity, possibly an empty array.
+     */
+    public Rule[] getRulesForActivity(int activityType) {
+        if (activityType < 0 || activityType >= rulesByActivity.length) {
+            return NO_RULES;
+        }
+        return rulesByActivity[activityType];
+    }
+
+    /**
+     * Looks up a rule by its key.
+     * @param key The key of the rule.
+     * @return The rule or null if the table has no rule with that key.
+     */
+    public Rule getRule(String key) {
+        return rulesByKey.get(key);
+    }
+
+    /**
+     * Returns the spatial index of the rule fences. The id of each fence is the index of its rule.
+     * @return The fence index.
+     */
+    public FenceIndex getFenceIndex() {
+        return fenceIndex;
+    }
+
+    /**
+     * Checks if a rule is part of this table.
+     * @param rule The rule to check.
+     * @return If the rule belongs to this table.
+     */
+    public boolean contains(Rule rule) {
+        int index = rule.getIndex();
+        return index < rules.length && rules[index] == rule;
+    }
+
+    public int size() {
+        return rules.length;
+    }
+}
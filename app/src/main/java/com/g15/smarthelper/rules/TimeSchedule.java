@@ -0,0 +1,203 @@
+package com.g15.smarthelper.rules;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * A {@link TimeSchedule} answers whether the rules of a {@link RuleTable} are inside their time
+ * windows. The windows are given in minutes of the day in a fixed time zone.
+ *
+ * Instead of converting every checked instant to a time of day, the schedule caches which rules
+ * are active until the next instant at which any window starts or ends. A check within that span
+ * only compares the instant against the cached span. The span is computed with a {@link Calendar},
+ * so days that are shorter or longer because of daylight saving time are handled correctly.
+ *
+ * A schedule can be shared between threads, every recomputed span is published as a whole.
+ */
+public class TimeSchedule {
+
+    private static final long MILLIS_PER_MINUTE = 60 * 1000;
+
+    /**
+     * The activity of all rules between two window boundaries.
+     */
+    private static final class Span {
+        final long start;
+        final long end;
+        final boolean[] active;
+
+        Span(long start, long end, boolean[] active) {
+            this.start = start;
+            this.end = end;
+            this.active = active;
+        }
+    }
+
+    private final Rule[] rules;
+    private final TimeZone timeZone;
+    // The distinct minutes of the day at which any window starts or ends, in ascending order.
+    private final int[] boundaries;
+    private volatile Span span = new Span(0, 0, new boolean[0]);
+
+    /**
+     * Compiles the time windows of the rules of a table.
+     * @param table The rules.
+     * @param timeZone The time zone the windows are given in.
+     */
+    public TimeSchedule(RuleTable table, TimeZone timeZone) {
+        this.rules = table.getRules();
+        this.timeZone = timeZone;
+
+        int[] minutes = new int[rules.length * 2];
+        int count = 0;
+        for (Rule rule : rules) {
+            int start = rule.getStartMinute() % RuleDefinition.MINUTES_PER_DAY;
+            int end = rule.getEndMinute() % RuleDefinition.MINUTES_PER_DAY;
+            if (rule.getStartMinute() == 0 && rule.getEndMinute() >= RuleDefinition.MINUTES_PER_DAY) {
+                // The window covers the whole day and never changes.
+                continue;
+            }
+            minutes[count++] = start;
+            minutes[count++] = end;
+        }
+        Arrays.sort(minutes, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || minutes[distinct - 1] != minutes[i]) {
+                minutes[distinct++] = minutes[i];
+            }
+        }
+        this.boundaries = Arrays.copyOf(minutes, distinct);
+    }
+
+    /**
+     * Checks whether a rule is inside its time window.
+     * @param rule A rule of the compiled table.
+     * @param time The instant in milliseconds since the epoch.
+     * @return true if the rule is active at the instant.
+     */
+    public boolean isActive(Rule rule, long time) {
+        Span current = span;
+        if (time < current.start || time >= current.end) {
+            current = computeSpan(time);
+        }
+        return current.active[rule.getIndex()];
+    }
+
+    /**
+     * Returns the next instant at which a time window starts or ends.
+     * @param time The instant in milliseconds since the epoch to start from.
+     * @return The next boundary after the instant, or {@link Long#MAX_VALUE} if the activity of
+     *         the rules never changes.
+     */
+    public long getNextTransition(long time) {
+        Span current = span;
+        if (time < current.start || time >= current.end) {
+            current = computeSpan(time);
+        }
+        return current.end;
+    }
+
+    private Span computeSpan(long time) {
+        Calendar calendar = Calendar.getInstance(timeZone);
+        calendar.setTimeInMillis(time);
+        int minuteOfDay = minuteOfDay(calendar);
+        boolean[] active = new boolean[rules.length];
+        for (Rule rule : rules) {
+            active[rule.getIndex()] = rule.isInTimeWindow(minuteOfDay);
+        }
+        // The span is only known to start at the instant, earlier instants are computed again.
+        Span computed = new Span(time, nextChange(time), active);
+        span = computed;
+        return computed;
+    }
+
+    /**
+     * Finds the first instant after the given one at which the activity of a rule can change.
+     * Besides the window boundaries this is every change of the time zone's offset, where the
+     * time of day jumps.
+     */
+    private long nextChange(long time) {
+        if (boundaries.length == 0) {
+            return Long.MAX_VALUE;
+        }
+        long next = nextBoundary(time);
+        int offset = timeZone.getOffset(time);
+        if (timeZone.getOffset(next) == offset) {
+            return next;
+        }
+        // Search the last instant with the current offset, the offset changes right after it.
+        long low = time;
+        long high = next;
+        while (high - low > 1) {
+            long middle = low + (high - low) / 2;
+            if (timeZone.getOffset(middle) == offset) {
+                low = middle;
+            } else {
+                high = middle;
+            }
+        }
+        return high;
+    }
+
+    /**
+     * Finds the first boundary after the instant, looking at the boundaries of the same and of
+     * the next day. A time of day that occurs twice when the clocks are put back is a boundary
+     * at both instants.
+     */
+    private long nextBoundary(long time) {
+        Calendar day = Calendar.getInstance(timeZone);
+        day.setTimeInMillis(time);
+        Calendar check = Calendar.getInstance(timeZone);
+        int savings = timeZone.getDSTSavings();
+        for (int days = 0; days < 2; days++) {
+            long next = Long.MAX_VALUE;
+            for (int boundary : boundaries) {
+                long instant = instantOf(day, boundary);
+                if (instant > time) {
+                    next = Math.min(next, instant);
+                }
+                if (savings != 0) {
+                    next = Math.min(next, repeated(check, instant - savings, boundary, time));
+                    next = Math.min(next, repeated(check, instant + savings, boundary, time));
+                }
+            }
+            if (next != Long.MAX_VALUE) {
+                return next;
+            }
+            day.add(Calendar.DAY_OF_MONTH, 1);
+        }
+        return time + RuleDefinition.MINUTES_PER_DAY * MILLIS_PER_MINUTE;
+    }
+
+    /**
+     * Returns the instant if it is after the given time and has the boundary's time of day,
+     * otherwise {@link Long#MAX_VALUE}.
+     */
+    private static long repeated(Calendar check, long instant, int boundary, long time) {
+        if (instant <= time) {
+            return Long.MAX_VALUE;
+        }
+        check.setTimeInMillis(instant);
+        return minuteOfDay(check) == boundary ? instant : Long.MAX_VALUE;
+    }
+
+    /**
+     * Computes the instant of a day at which the time of day reaches a minute. A minute that is
+     * skipped when the clocks are put forward is moved behind the gap, which is found by
+     * {@link #nextChange(long)} anyway.
+     */
+    private long instantOf(Calendar day, int minute) {
+        Calendar calendar = (Calendar) day.clone();
+        calendar.set(Calendar.HOUR_OF_DAY, minute / 60);
+        calendar.set(Calendar.MINUTE, minute % 60);
+        calendar.set(Calendar.SECOND, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        return calendar.getTimeInMillis();
+    }
+
+    private static int minuteOfDay(Calendar calendar) {
+        return calendar.get(Calendar.HOUR_OF_DAY) * 60 + calendar.get(Calendar.MINUTE);
+    }
+}
@@ -0,0 +1,169 @@
+package com.g15.smarthelper.state;
+
+import com.g15.smarthelper.rules.Rule;
+
+/**
+ * The {@link EngineState} holds the latest location, activity and fence states evaluated by the
+ * engine, so the UI can show them.
+ *
+ * The state is a single slot: every update overwrites the previous values, and an observer that
+ * has not read the state yet is not notified again. However many updates arrive in between, an
+ * observer is notified once and reads only the latest state, so a slow or paused UI never builds
+ * up a backlog. Updating the state only stores primitive values and allocates nothing.
+ */
+public class EngineState {
+
+    /**
+     * Is told that the state changed after it last read the state.
+     */
+    public interface Observer {
+        /**
+         * Called on the thread that changed the state. It should only schedule reading the
+         * state, e.g. on the main thread.
+         */
+        void onStateChanged();
+    }
+
+    /**
+     * The registration of an {@link Observer}.
+     */
+    public final class Subscription {
+        private final Observer observer;
+        // Guarded by the state, true while the observer was notified but did not read yet.
+        private boolean notified;
+
+        private Subscription(Observer observer) {
+            this.observer = observer;
+        }
+
+        /**
+         * Copies the latest state. The observer is notified again on the next change.
+         * @param snapshot The snapshot to copy the state into.
+         */
+        public void read(StateSnapshot snapshot) {
+            synchronized (EngineState.this) {
+                snapshot.copyFrom(state);
+                notified = false;
+            }
+        }
+
+        /**
+         * Stops the notifications of the observer.
+         */
+        public void cancel() {
+            unsubscribe(this);
+        }
+    }
+
+    private static final Subscription[] NO_SUBSCRIPTIONS = new Subscription[0];
+    private static final EngineState INSTANCE = new EngineState();
+
+    private final StateSnapshot state = new StateSnapshot();
+    // Replaced as a whole, so it can be iterated without holding the lock.
+    private volatile Subscription[] subscriptions = NO_SUBSCRIPTIONS;
+
+    /**
+     * @return The state of the app.
+     */
+    public static EngineState getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Stores the most recent evaluated location.
+     * @param latitude The latitude of the fix.
+     * @param longitude The longitude of the fix.
+     * @param time The time of the fix in milliseconds since the epoch.
+     */
+    public void setLocation(double latitude, double longitude, long time) {
+        synchronized (this) {
+            state.hasLocation = true;
+            state.latitude = latitude;
+            state.longitude = longitude;
+            state.locationTime = time;
+            state.version++;
+        }
+        notifyObservers();
+    }
+
+    /**
+     * Stores the fused activity.
+     * @param activityType The activity type.
+     */
+    public void setActivity(int activityType) {
+        synchronized (this) {
+            if (state.activityType == activityType) {
+                return;
+            }
+            state.activityType = activityType;
+            state.version++;
+        }
+        notifyObservers();
+    }
+
+    /**
+     * Stores which fences are entered.
+     * @param enteredRules The rules whose fence is entered.
+     */
+    public void setEnteredRules(Rule[] enteredRules) {
+        int scenarios = 0;
+        for (Rule rule : enteredRules) {
+            scenarios |= 1 << rule.getAction().ordinal();
+        }
+        synchronized (this) {
+            if (state.enteredCount == enteredRules.length && state.enteredScenarios == scenarios) {
+                return;
+            }
+            state.enteredCount = enteredRules.length;
+            state.enteredScenarios = scenarios;
+            state.version++;
+        }
+        notifyObservers();
+    }
+
+    /**
+     * Registers an observer. It is notified on the next change, the current state can be read
+     * right away.
+     * @param observer The observer.
+     * @return The subscription to read the state with.
+     */
+    public synchronized Subscription subscribe(Observer observer) {
+        Subscription subscription = new Subscription(observer);
+        Subscription[] current = subscriptions;
+        Subscription[] updated = new Subscription[current.length + 1];
+        System.arraycopy(current, 0, updated, 0, current.length);
+        updated[current.length] = subscription;
+        subscriptions = updated;
+        return subscription;
+    }
+
+    private synchronized void unsubscribe(Subscription subscription) {
+        Subscription[] current = subscriptions;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == subscription) {
+                Subscription[] updated = new Subscription[current.length - 1];
+                System.arraycopy(current, 0, updated, 0, i);
+                System.arraycopy(current, i + 1, updated, i, updated.length - i);
+                subscriptions = updated;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Notifies the observers that read the state since they were last notified. The observers
+     * are called without holding the lock.
+     */
+    private void notifyObservers() {
+        for (Subscription subscription : subscriptions) {
+            boolean notify;
+            synchronized (this) {
+                notify = !subscription.notified;
+                subscription.notified = true;
+            }
+            if (notify) {
+                subscription.observer.onStateChanged();
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.g15.smarthelper.state;
+
+/**
+ * A copy of the {@link EngineState} taken at one instant. A snapshot is reused for every read,
+ * so reading the state allocates nothing.
+ */
+public final class StateSnapshot {
+
+    /** The activity type before the first activity has been decided. */
+    public static final int NO_ACTIVITY = -1;
+
+    long version;
+    boolean hasLocation;
+    double latitude;
+    double longitude;
+    long locationTime;
+    int activityType = NO_ACTIVITY;
+    int enteredCount;
+    int enteredScenarios;
+
+    void copyFrom(StateSnapshot other) {
+        version = other.version;
+        hasLocation = other.hasLocation;
+        latitude = other.latitude;
+        longitude = other.longitude;
+        locationTime = other.locationTime;
+        activityType = other.activityType;
+        enteredCount = other.enteredCount;
+        enteredScenarios = other.enteredScenarios;
+    }
+
+    /**
+     * @return The number of changes of the state before the snapshot was taken.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return true if a location has been evaluated yet.
+     */
+    public boolean hasLocation() {
+        return hasLocation;
+    }
+
+    public double getLatitude() {
+        return latitude;
+    }
+
+    public double getLongitude() {
+        return longitude;
+    }
+
+    /**
+     * @return The time of the most recent fix in milliseconds since the epoch.
+     */
+    public long getLocationTime() {
+        return locationTime;
+    }
+
+    /**
+     * @return The fused activity type or {@link #NO_ACTIVITY}.
+     */
+    public int getActivityType() {
+        return activityType;
+    }
+
+    /**
+     * @return The number of rules whose fence is entered.
+     */
+    public int getEnteredCount() {
+        return enteredCount;
+    }
+
+    /**
+     * @return A bit per scenario ordinal that has an entered fence.
+     */
+    public int getEnteredScenarios() {
+        return enteredScenarios;
+    }
+}
@@ -0,0 +1,124 @@
+package com.g15.smarthelper.store;
+
+import android.content.SharedPreferences;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Moves the scenario configuration and state from the shared preferences, where former versions
+ * of the app stored them, into a {@link ScenarioStore}.
+ *
+ * The preferences are cleared once all values have been copied, so the migration runs once. If the
+ * process dies before, the values are copied again on the next start, which overwrites the
+ * partially copied values with the same ones.
+ */
+public final class PreferencesMigration {
+
+    /** The name of the shared preferences file of former versions. */
+    public static final String SHARED_PREFERENCES_KEY = "scenarios-shared-preferences";
+
+    private static final String CURRENT_ACTIVITY = "current_activity";
+    private static final String SCENARIOS_INITIALIZED = "scenarios_initialized";
+    private static final String SCENARIO_RULES = "scenario_rules";
+    private static final String KEY_PREFIX = "scenario";
+    private static final String ACTIVATED_SUFFIX = "_activated";
+    private static final String LOCATION_SET_SUFFIX = "_location_set";
+    private static final String RADIUS_SUFFIX = "_radius";
+    private static final String LAT_SUFFIX = "_lat";
+    private static final String LNG_SUFFIX = "_lng";
+    private static final String TRIGGERED_SUFFIX = "_triggered";
+    private static final String GEOFENCE_ENTERED_SUFFIX = "_geofence_entered";
+
+    private PreferencesMigration() {
+    }
+
+    /**
+     * Copies the stored values into the store and clears the preferences. Nothing is done if the
+     * preferences are empty.
+     * @param preferences The preferences of a former version.
+     * @param store The store to copy the values to.
+     * @param scenarioNames The names of the scenarios, indexed by the scenario ordinal.
+     * @return true if values have been migrated.
+     */
+    public static boolean migrate(SharedPreferences preferences, ScenarioStore store,
+                                  String[] scenarioNames) {
+        Map<String, ?> values = preferences.getAll();
+        if (values.isEmpty()) {
+            return false;
+        }
+
+        List<Integer> fenced = new ArrayList<>();
+        for (int i = 0; i < scenarioNames.length; i++) {
+            String prefix = KEY_PREFIX + scenarioNames[i];
+            store.writeActivated(i, preferences.getBoolean(prefix + ACTIVATED_SUFFIX, false));
+            if (preferences.getBoolean(prefix + LOCATION_SET_SUFFIX, false)) {
+                fenced.add(i);
+            }
+        }
+        if (!fenced.isEmpty()) {
+            int[] scenarios = new int[fenced.size()];
+            double[] latitudes = new double[scenarios.length];
+            double[] longitudes = new double[scenarios.length];
+            int[] radii = new int[scenarios.length];
+            for (int i = 0; i < scenarios.length; i++) {
+                String prefix = KEY_PREFIX + scenarioNames[fenced.get(i)];
+                scenarios[i] = fenced.get(i);
+                latitudes[i] = Double.longBitsToDouble(preferences.getLong(prefix + LAT_SUFFIX, 0));
+                longitudes[i] = Double.longBitsToDouble(preferences.getLong(prefix + LNG_SUFFIX, 0));
+                radii[i] = preferences.getInt(prefix + RADIUS_SUFFIX, 0);
+            }
+            store.writeFences(scenarios, latitudes, longitudes, radii);
+        }
+
+        String rules = preferences.getString(SCENARIO_RULES, null);
+        if (rules != null) {
+            store.writeRules(rules);
+        }
+        if (preferences.getBoolean(SCENARIOS_INITIALIZED, false)) {
+            store.writeInitialized();
+        }
+
+        // The state keys are derived from the rule keys, which are only known from the stored
+        // keys themselves.
+        Map<String, boolean[]> states = new HashMap<>();
+        for (Map.Entry<String, ?> entry : values.entrySet()) {
+            String key = entry.getKey();
+            if (!key.startsWith(KEY_PREFIX) || !(entry.getValue() instanceof Boolean)) {
+                continue;
+            }
+            int field;
+            String ruleKey;
+            if (key.endsWith(GEOFENCE_ENTERED_SUFFIX)) {
+                field = 1;
+                ruleKey = key.substring(KEY_PREFIX.length(),
+                        key.length() - GEOFENCE_ENTERED_SUFFIX.length());
+            } else if (key.endsWith(TRIGGERED_SUFFIX)) {
+                field = 0;
+                ruleKey = key.substring(KEY_PREFIX.length(),
+                        key.length() - TRIGGERED_SUFFIX.length());
+            } else {
+                continue;
+            }
+            boolean[] state = states.get(ruleKey);
+            if (state == null) {
+                state = new boolean[2];
+                states.put(ruleKey, state);
+            }
+            state[field] = (Boolean) entry.getValue();
+        }
+        List<ScenarioStore.RuleStateRow> rows = new ArrayList<>(states.size());
+        for (Map.Entry<String, boolean[]> entry : states.entrySet()) {
+            rows.add(new ScenarioStore.RuleStateRow(entry.getKey(), entry.getValue()[0],
+                    entry.getValue()[1]));
+        }
+        int currentActivity = values.containsKey(CURRENT_ACTIVITY)
+                ? preferences.getInt(CURRENT_ACTIVITY, 0) : ScenarioStore.ACTIVITY_UNCHANGED;
+        store.writeState(currentActivity, rows);
+
+        preferences.edit().clear().commit();
+        return true;
+    }
+}
@@ -0,0 +1,114 @@
+package com.g15.smarthelper.store;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The {@link ScenarioStore} persists the configuration of the scenarios and the runtime state of
+ * the rules for {@link com.g15.smarthelper.Scenarios}, which keeps the values in memory and only
+ * reads them when they are loaded.
+ *
+ * Every write method is atomic: either all of its values are stored or none is. Single fields
+ * are updated in place, without rewriting the other values.
+ */
+public interface ScenarioStore {
+
+    /** Passed to {@link #writeState(int, List)} if the current activity did not change. */
+    int ACTIVITY_UNCHANGED = Integer.MIN_VALUE;
+
+    /**
+     * The stored configuration of one scenario.
+     */
+    final class ScenarioRow {
+        public final boolean activated;
+        public final boolean locationSet;
+        public final double latitude;
+        public final double longitude;
+        public final int radius;
+
+        public ScenarioRow(boolean activated, boolean locationSet, double latitude,
+                           double longitude, int radius) {
+            this.activated = activated;
+            this.locationSet = locationSet;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.radius = radius;
+        }
+    }
+
+    /**
+     * The stored runtime state of one rule.
+     */
+    final class RuleStateRow {
+        public final String ruleKey;
+        public final boolean triggered;
+        public final boolean geofenceEntered;
+
+        public RuleStateRow(String ruleKey, boolean triggered, boolean geofenceEntered) {
+            this.ruleKey = ruleKey;
+            this.triggered = triggered;
+            this.geofenceEntered = geofenceEntered;
+        }
+    }
+
+    /**
+     * @return The configuration of every scenario, indexed by the scenario ordinal.
+     */
+    ScenarioRow[] readScenarios();
+
+    /**
+     * Stores if a scenario is activated.
+     * @param scenario The scenario ordinal.
+     * @param activated The activation state.
+     */
+    void writeActivated(int scenario, boolean activated);
+
+    /**
+     * Stores the fences of several scenarios in one transaction and marks their location as set.
+     * The arrays are parallel, an index describes one scenario.
+     * @param scenarios The scenario ordinals.
+     * @param latitudes The latitudes of the fence centers.
+     * @param longitudes The longitudes of the fence centers.
+     * @param radii The radii of the fences in meters.
+     */
+    void writeFences(int[] scenarios, double[] latitudes, double[] longitudes, int[] radii);
+
+    /**
+     * @return true if the scenarios have been initialized.
+     */
+    boolean readInitialized();
+
+    /**
+     * Marks the scenarios as initialized.
+     */
+    void writeInitialized();
+
+    /**
+     * @return The rule definitions as JSON, or null if the default rules are used.
+     */
+    String readRules();
+
+    /**
+     * Stores the rule definitions.
+     * @param json The rule definitions as JSON.
+     */
+    void writeRules(String json);
+
+    /**
+     * @param defaultActivity The activity returned if none is stored.
+     * @return The last detected activity.
+     */
+    int readCurrentActivity(int defaultActivity);
+
+    /**
+     * @return The runtime state of every rule that has been stored, by rule key.
+     */
+    Map<String, RuleStateRow> readRuleStates();
+
+    /**
+     * Stores the changed runtime state in one transaction.
+     * @param currentActivity The last detected activity, or {@link #ACTIVITY_UNCHANGED}.
+     * @param ruleStates The rules whose state changed.
+     */
+    void writeState(int currentActivity, List<RuleStateRow> ruleStates);
+}
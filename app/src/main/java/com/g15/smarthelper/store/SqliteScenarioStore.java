@@ -0,0 +1,244 @@
+package com.g15.smarthelper.store;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+
+import com.g15.smarthelper.metrics.Metrics;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link ScenarioStore} in an SQLite database with a fixed schema: a row per scenario, a row per
+ * rule that has runtime state and a row per setting.
+ *
+ * Every write binds its values to a statement that is compiled once, so a change updates only the
+ * affected row instead of rewriting a whole file. Writes that belong together run in one
+ * transaction. The database uses write-ahead logging, so a commit only appends to the log.
+ */
+public class SqliteScenarioStore extends SQLiteOpenHelper implements ScenarioStore {
+
+    private static final String DATABASE_NAME = "scenarios.db";
+    private static final int DATABASE_VERSION = 1;
+
+    private static final String SETTING_INITIALIZED = "initialized";
+    private static final String SETTING_RULES = "rules";
+    private static final String SETTING_CURRENT_ACTIVITY = "current_activity";
+
+    private final int scenarioCount;
+    private SQLiteStatement updateActivated;
+    private SQLiteStatement updateFence;
+    private SQLiteStatement replaceSetting;
+    private SQLiteStatement replaceRuleState;
+
+    /**
+     * Opens the store of the app.
+     * @param context A context of the app.
+     * @param scenarioCount The number of scenarios.
+     */
+    public SqliteScenarioStore(Context context, int scenarioCount) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this.scenarioCount = scenarioCount;
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE scenarios ("
+                + "id INTEGER PRIMARY KEY, "
+                + "activated INTEGER NOT NULL DEFAULT 0, "
+                + "location_set INTEGER NOT NULL DEFAULT 0, "
+                + "latitude REAL NOT NULL DEFAULT 0, "
+                + "longitude REAL NOT NULL DEFAULT 0, "
+                + "radius INTEGER NOT NULL DEFAULT 0)");
+        db.execSQL("CREATE TABLE rule_state ("
+                + "rule_key TEXT PRIMARY KEY, "
+                + "triggered INTEGER NOT NULL DEFAULT 0, "
+                + "geofence_entered INTEGER NOT NULL DEFAULT 0)");
+        db.execSQL("CREATE TABLE settings ("
+                + "name TEXT PRIMARY KEY, "
+                + "value TEXT)");
+        ensureScenarioRows(db);
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // There is only one version of the schema so far.
+    }
+
+    @Override
+    public void onOpen(SQLiteDatabase db) {
+        super.onOpen(db);
+        // Scenarios added in a later version of the app get their row on the next start.
+        ensureScenarioRows(db);
+    }
+
+    private void ensureScenarioRows(SQLiteDatabase db) {
+        for (int i = 0; i < scenarioCount; i++) {
+            db.execSQL("INSERT OR IGNORE INTO scenarios (id) VALUES (?)", new Object[]{i});
+        }
+    }
+
+    /**
+     * Returns the open database and compiles the write statements on first use.
+     */
+    private SQLiteDatabase database() {
+        SQLiteDatabase db = getWritableDatabase();
+        if (updateActivated == null) {
+            updateActivated = db.compileStatement(
+                    "UPDATE scenarios SET activated = ? WHERE id = ?");
+            updateFence = db.compileStatement("UPDATE scenarios SET location_set = 1, "
+                    + "latitude = ?, longitude = ?, radius = ? WHERE id = ?");
+            replaceSetting = db.compileStatement(
+                    "INSERT OR REPLACE INTO settings (name, value) VALUES (?, ?)");
+            replaceRuleState = db.compileStatement("INSERT OR REPLACE INTO rule_state "
+                    + "(rule_key, triggered, geofence_entered) VALUES (?, ?, ?)");
+        }
+        return db;
+    }
+
+    @Override
+    public synchronized ScenarioRow[] readScenarios() {
+        ScenarioRow[] rows = new ScenarioRow[scenarioCount];
+        Cursor cursor = database().rawQuery("SELECT id, activated, location_set, latitude, "
+                + "longitude, radius FROM scenarios", null);
+        try {
+            while (cursor.moveToNext()) {
+                int id = cursor.getInt(0);
+                if (id >= 0 && id < scenarioCount) {
+                    rows[id] = new ScenarioRow(cursor.getInt(1) != 0, cursor.getInt(2) != 0,
+                            cursor.getDouble(3), cursor.getDouble(4), cursor.getInt(5));
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        for (int i = 0; i < scenarioCount; i++) {
+            if (rows[i] == null) {
+                rows[i] = new ScenarioRow(false, false, 0, 0, 0);
+            }
+        }
+        return rows;
+    }
+
+    @Override
+    public synchronized void writeActivated(int scenario, boolean activated) {
+        long start = System.nanoTime();
+        database();
+        updateActivated.bindLong(1, activated ? 1 : 0);
+        updateActivated.bindLong(2, scenario);
+        updateActivated.executeUpdateDelete();
+        Metrics.STORE_CONFIG.record(System.nanoTime() - start);
+    }
+
+    @Override
+    public synchronized void writeFences(int[] scenarios, double[] latitudes,
+                                         double[] longitudes, int[] radii) {
+        long start = System.nanoTime();
+        SQLiteDatabase db = database();
+        db.beginTransaction();
+        try {
+            for (int i = 0; i < scenarios.length; i++) {
+                updateFence.bindDouble(1, latitudes[i]);
+                updateFence.bindDouble(2, longitudes[i]);
+                updateFence.bindLong(3, radii[i]);
+                updateFence.bindLong(4, scenarios[i]);
+                updateFence.executeUpdateDelete();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        Metrics.STORE_CONFIG.record(System.nanoTime() - start);
+    }
+
+    @Override
+    public synchronized boolean readInitialized() {
+        return "1".equals(readSetting(SETTING_INITIALIZED));
+    }
+
+    @Override
+    public synchronized void writeInitialized() {
+        long start = System.nanoTime();
+        writeSetting(SETTING_INITIALIZED, "1");
+        Metrics.STORE_CONFIG.record(System.nanoTime() - start);
+    }
+
+    @Override
+    public synchronized String readRules() {
+        return readSetting(SETTING_RULES);
+    }
+
+    @Override
+    public synchronized void writeRules(String json) {
+        long start = System.nanoTime();
+        writeSetting(SETTING_RULES, json);
+        Metrics.STORE_CONFIG.record(System.nanoTime() - start);
+    }
+
+    @Override
+    public synchronized int readCurrentActivity(int defaultActivity) {
+        String value = readSetting(SETTING_CURRENT_ACTIVITY);
+        return value != null ? Integer.parseInt(value) : defaultActivity;
+    }
+
+    @Override
+    public synchronized Map<String, RuleStateRow> readRuleStates() {
+        Map<String, RuleStateRow> states = new HashMap<>();
+        Cursor cursor = database().rawQuery(
+                "SELECT rule_key, triggered, geofence_entered FROM rule_state", null);
+        try {
+            while (cursor.moveToNext()) {
+                String ruleKey = cursor.getString(0);
+                states.put(ruleKey, new RuleStateRow(ruleKey, cursor.getInt(1) != 0,
+                        cursor.getInt(2) != 0));
+            }
+        } finally {
+            cursor.close();
+        }
+        return states;
+    }
+
+    @Override
+    public synchronized void writeState(int currentActivity, List<RuleStateRow> ruleStates) {
+        long start = System.nanoTime();
+        SQLiteDatabase db = database();
+        db.beginTransaction();
+        try {
+            if (currentActivity != ACTIVITY_UNCHANGED) {
+                writeSetting(SETTING_CURRENT_ACTIVITY, Integer.toString(currentActivity));
+            }
+            for (RuleStateRow row : ruleStates) {
+                replaceRuleState.bindString(1, row.ruleKey);
+                replaceRuleState.bindLong(2, row.triggered ? 1 : 0);
+                replaceRuleState.bindLong(3, row.geofenceEntered ? 1 : 0);
+                replaceRuleState.executeInsert();
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        Metrics.STORE_STATE.record(System.nanoTime() - start);
+    }
+
+    private String readSetting(String name) {
+        Cursor cursor = database().rawQuery("SELECT value FROM settings WHERE name = ?",
+                new String[]{name});
+        try {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    private void writeSetting(String name, String value) {
+        database();
+        replaceSetting.bindString(1, name);
+        replaceSetting.bindString(2, value);
+        replaceSetting.executeInsert();
+    }
+}
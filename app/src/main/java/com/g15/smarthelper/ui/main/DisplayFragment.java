@@ -1,39 +1,62 @@
 package com.g15.smarthelper.ui.main;
 
 import android.content.Context;
-import android.content.Intent;
-import android.content.IntentFilter;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.Button;
 import android.widget.ImageView;
+import android.widget.ScrollView;
 import android.widget.TextView;
+import android.widget.Toast;
 
 import androidx.annotation.Nullable;
 import androidx.annotation.NonNull;
 import androidx.fragment.app.Fragment;
-import androidx.localbroadcastmanager.content.LocalBroadcastManager;
 
+import com.g15.smarthelper.BackgroundExecutor;
 import com.g15.smarthelper.R;
-import com.g15.smarthelper.Constants;
 
-import com.g15.smarthelper.ScenarioHandler.HomeAction;
-import com.g15.smarthelper.receiver.ActivityUpdateReceiver;
-import com.g15.smarthelper.receiver.LocationUpdateReceiver;
+import com.g15.smarthelper.Scenarios;
+import com.g15.smarthelper.metrics.Metrics;
+import com.g15.smarthelper.power.PowerAccounting;
+import com.g15.smarthelper.state.EngineState;
+import com.g15.smarthelper.state.StateSnapshot;
 
 import com.google.android.gms.location.DetectedActivity;
 
+import java.io.File;
+import java.io.IOException;
+
 
 public class DisplayFragment extends Fragment {
 
     private static String LOG_TAG = "display-fragment";
-    ActivityUpdateReceiver activityReceiver;
-    LocationUpdateReceiver locationReceiver;
+    private static final long DIAGNOSTICS_REFRESH_MILLIS = 1000;
 
-    private TextView txtActivity, txtLocation;
+    private TextView txtActivity, txtLocation, txtFences, txtDiagnostics;
     private ImageView imgActivity;
+    private Button btnDiagnostics, btnDumpMetrics;
+    private ScrollView scrollDiagnostics;
+
+    // The rendered state, the views are only updated when it changes.
+    private int shownActivity = Integer.MIN_VALUE;
+    private long shownLocationTime = -1;
+    private int shownScenarios = -1;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    // Increased whenever the refreshing starts or stops, so a report of an older run is dropped.
+    private int diagnosticsGeneration = 0;
+    private final Runnable refreshDiagnostics = new Runnable() {
+        @Override
+        public void run() {
+            refreshDiagnostics(diagnosticsGeneration);
+        }
+    };
 
     @Override
     public View onCreateView(
@@ -52,35 +75,144 @@ public class DisplayFragment extends Fragment {
 
         txtActivity = getActivity().findViewById(R.id.txt_activity);
         txtLocation = getActivity().findViewById(R.id.txt_location);
+        txtFences = getActivity().findViewById(R.id.txt_fences);
         imgActivity = getActivity().findViewById(R.id.img_activity);
 
         txtLocation.setText("Location: " + defaultLocation);
         txtActivity.setText("Activity: " + defaultActivity);
         imgActivity.setImageResource(defaultIcon);
+        shownActivity = Integer.MIN_VALUE;
+        shownLocationTime = -1;
+        shownScenarios = -1;
+
+        txtDiagnostics = getActivity().findViewById(R.id.txt_diagnostics);
+        scrollDiagnostics = getActivity().findViewById(R.id.scroll_diagnostics);
+        btnDiagnostics = getActivity().findViewById(R.id.btn_diagnostics);
+        btnDumpMetrics = getActivity().findViewById(R.id.btn_dump_metrics);
+
+        btnDiagnostics.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                setDiagnosticsVisible(scrollDiagnostics.getVisibility() != View.VISIBLE);
+            }
+        });
+        btnDumpMetrics.setOnClickListener(new View.OnClickListener() {
+            @Override
+            public void onClick(View v) {
+                dumpMetrics();
+            }
+        });
+
+        // The state is only rendered while this tab is the resumed one.
+        StateRenderer.bind(getViewLifecycleOwner(), EngineState.getInstance(),
+                new StateRenderer.Renderer() {
+                    @Override
+                    public void render(StateSnapshot snapshot) {
+                        renderState(snapshot);
+                    }
+                });
     }
 
-    @Override
-    public void onActivityCreated(Bundle savedInstanceState) {
-        super.onActivityCreated(savedInstanceState);
+    /**
+     * Updates the views whose part of the state changed since it was last rendered.
+     * @param snapshot The latest state.
+     */
+    private void renderState(StateSnapshot snapshot) {
+        if (snapshot.getActivityType() != shownActivity) {
+            shownActivity = snapshot.getActivityType();
+            handleUserActivity(shownActivity);
+        }
+        if (snapshot.hasLocation() && snapshot.getLocationTime() != shownLocationTime) {
+            shownLocationTime = snapshot.getLocationTime();
+            handleUserLocation(snapshot.getLatitude(), snapshot.getLongitude());
+        }
+        if (snapshot.getEnteredScenarios() != shownScenarios) {
+            shownScenarios = snapshot.getEnteredScenarios();
+            handleEnteredScenarios(shownScenarios);
+        }
+    }
 
-        activityReceiver = new ActivityUpdateReceiver() {
+    /**
+     * Shows or hides the diagnostics section. The metrics are refreshed every second while the
+     * section is visible.
+     * @param visible If the diagnostics should be shown.
+     */
+    private void setDiagnosticsVisible(boolean visible) {
+        scrollDiagnostics.setVisibility(visible ? View.VISIBLE : View.GONE);
+        btnDumpMetrics.setVisibility(visible ? View.VISIBLE : View.GONE);
+        btnDiagnostics.setText(visible ? R.string.diagnostics_hide : R.string.diagnostics_show);
+        stopDiagnostics();
+        if (visible) {
+            startDiagnostics();
+        }
+    }
+
+    private void startDiagnostics() {
+        diagnosticsGeneration++;
+        refreshDiagnostics.run();
+    }
+
+    private void stopDiagnostics() {
+        diagnosticsGeneration++;
+        handler.removeCallbacks(refreshDiagnostics);
+    }
+
+    /**
+     * Builds the diagnostics report on a background thread, since the power accounting is loaded
+     * from its file, and shows it. The next refresh is scheduled once the report is shown.
+     * @param generation The generation of the refreshing this report belongs to.
+     */
+    private void refreshDiagnostics(final int generation) {
+        final Context context = getActivity().getApplicationContext();
+        BackgroundExecutor.execute(new Runnable() {
             @Override
-            public void onReceive(Context context, Intent intent) {
-                int type = intent.getIntExtra("type", -1);
-                Log.i(LOG_TAG, "Broadcast: Activity received, Type = " + type);
-                handleUserActivity(type);
+            public void run() {
+                final String report = Metrics.getReport() + "\n" + PowerAccounting
+                        .getInstance(context).getReport(System.currentTimeMillis());
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != diagnosticsGeneration) {
+                            return;
+                        }
+                        txtDiagnostics.setText(report);
+                        handler.postDelayed(refreshDiagnostics, DIAGNOSTICS_REFRESH_MILLIS);
+                    }
+                });
             }
-        };
+        });
+    }
 
-        locationReceiver = new LocationUpdateReceiver() {
+    /**
+     * Writes the current metrics to a file on a background thread and tells the user where to
+     * find it.
+     */
+    private void dumpMetrics() {
+        final Context context = getActivity().getApplicationContext();
+        BackgroundExecutor.execute(new Runnable() {
             @Override
-            public void onReceive(Context context, Intent intent) {
-                double latitude = intent.getDoubleExtra("latitude", 0);
-                double longitude = intent.getDoubleExtra("longitude", 0);
-                Log.i(LOG_TAG, "Broadcast: Location received, latitude = " + latitude + "; longitude = " + longitude);
-                handleUserLocation(latitude, longitude);
+            public void run() {
+                String message;
+                int duration;
+                try {
+                    File file = Metrics.dump(context);
+                    message = context.getString(R.string.diagnostics_dumped, file.getPath());
+                    duration = Toast.LENGTH_LONG;
+                } catch (IOException e) {
+                    Log.e(LOG_TAG, "Could not dump the metrics.", e);
+                    message = context.getString(R.string.diagnostics_dump_failed);
+                    duration = Toast.LENGTH_SHORT;
+                }
+                final String text = message;
+                final int length = duration;
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        Toast.makeText(context, text, length).show();
+                    }
+                });
             }
-        };
+        });
     }
 
     /**
@@ -93,6 +225,35 @@ public class DisplayFragment extends Fragment {
         txtLocation.setText(location);
     }
 
+    /**
+     * Display the scenarios whose fence is entered.
+     * @param scenarios A bit per scenario ordinal that has an entered fence.
+     */
+    private void handleEnteredScenarios(int scenarios) {
+        StringBuilder names = new StringBuilder();
+        for (Scenarios.Scenario scenario : Scenarios.Scenario.values()) {
+            if ((scenarios & (1 << scenario.ordinal())) == 0) {
+                continue;
+            }
+            if (names.length() > 0) {
+                names.append(", ");
+            }
+            switch (scenario) {
+                case SCENARIO_MUSIC:
+                    names.append(getString(R.string.tab_1_list_1));
+                    break;
+                case SCENARIO_WARNING:
+                    names.append(getString(R.string.tab_1_list_2));
+                    break;
+                case SCENARIO_HOME:
+                    names.append(getString(R.string.tab_1_list_3));
+                    break;
+            }
+        }
+        txtFences.setText(names.length() > 0 ? getString(R.string.fences_entered, names)
+                : getString(R.string.fences_none));
+    }
+
     /**
      * Display the activity data.
      * @param activityType The activity type to be displayed.
@@ -150,20 +311,16 @@ public class DisplayFragment extends Fragment {
     }
 
     @Override
-    public void onStart() {
-        super.onStart();
-
-        LocalBroadcastManager.getInstance(getActivity()).registerReceiver(activityReceiver,
-                new IntentFilter(Constants.BROADCAST_DETECTED_ACTIVITY));
-        LocalBroadcastManager.getInstance(getActivity()).registerReceiver(locationReceiver,
-                new IntentFilter(Constants.BROADCAST_DETECTED_LOCATION));
+    public void onResume() {
+        super.onResume();
+        if (scrollDiagnostics.getVisibility() == View.VISIBLE) {
+            startDiagnostics();
+        }
     }
 
     @Override
-    public void onDestroy() {
-        super.onDestroy();
-
-        LocalBroadcastManager.getInstance(getActivity()).unregisterReceiver(activityReceiver);
-        LocalBroadcastManager.getInstance(getActivity()).unregisterReceiver(locationReceiver);
+    public void onPause() {
+        super.onPause();
+        stopDiagnostics();
     }
-}
\ No newline at end of file
+}
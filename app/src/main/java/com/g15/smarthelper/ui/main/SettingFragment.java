@@ -3,11 +3,12 @@ package com.g15.smarthelper.ui.main;
 import android.Manifest;
 import android.content.Context;
 import android.content.DialogInterface;
-import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
 import android.provider.Settings;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -23,6 +24,7 @@ import androidx.appcompat.app.AlertDialog;
 import androidx.core.app.ActivityCompat;
 import androidx.fragment.app.Fragment;
 
+import com.g15.smarthelper.BackgroundExecutor;
 import com.g15.smarthelper.MainActivity;
 import com.g15.smarthelper.R;
 import com.g15.smarthelper.Scenarios;
@@ -32,8 +34,6 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
-import static com.g15.smarthelper.Scenarios.SHARED_PREFERENCES_KEY;
-
 
 public class SettingFragment extends Fragment implements CompoundButton.OnCheckedChangeListener {
 
@@ -47,6 +47,7 @@ public class SettingFragment extends Fragment implements CompoundButton.OnChecke
     private CompoundButton currentTargetSwitch;
     private List<String> missingPermissions = new ArrayList<>();
     private int permissionCounter = 0;
+    private final Handler handler = new Handler(Looper.getMainLooper());
 
     @Override
     public View onCreateView(
@@ -61,40 +62,73 @@ public class SettingFragment extends Fragment implements CompoundButton.OnChecke
         musicSwitch = view.findViewById(R.id.switch1);
         warningSwitch = view.findViewById(R.id.switch2);
         homeSwitch = view.findViewById(R.id.switch3);
+        setSwitchesEnabled(false);
 
-        SharedPreferences sharedPreferences = getActivity()
-                .getSharedPreferences(SHARED_PREFERENCES_KEY, Context.MODE_PRIVATE);
-        scenarios = new Scenarios(sharedPreferences);
-
-        initializeScenarioActivated();
+        loadScenarios();
+    }
 
-        musicSwitch.setOnCheckedChangeListener(this);
-        warningSwitch.setOnCheckedChangeListener(this);
-        homeSwitch.setOnCheckedChangeListener(this);
+    /**
+     * Loads the scenarios in the background, since opening the database may migrate it, and
+     * restores the switches when they are loaded.
+     */
+    private void loadScenarios() {
+        final Context context = getActivity().getApplicationContext();
+        BackgroundExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                final Scenarios loaded = Scenarios.getInstance(context);
+                setInitialLocation(loaded);
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (getView() == null) {
+                            // The view has been destroyed in the meantime.
+                            return;
+                        }
+                        scenarios = loaded;
+                        initializeScenarioActivated();
+
+                        musicSwitch.setOnCheckedChangeListener(SettingFragment.this);
+                        warningSwitch.setOnCheckedChangeListener(SettingFragment.this);
+                        homeSwitch.setOnCheckedChangeListener(SettingFragment.this);
+                        setSwitchesEnabled(true);
+                    }
+                });
+            }
+        });
+    }
 
-        setInitialLocation();
+    private void setSwitchesEnabled(boolean enabled) {
+        musicSwitch.setEnabled(enabled);
+        warningSwitch.setEnabled(enabled);
+        homeSwitch.setEnabled(enabled);
     }
 
     /**
      * Set the location of the scenarios.
+     * @param scenarios The loaded scenarios.
      */
-    private void setInitialLocation() {
+    private static void setInitialLocation(Scenarios scenarios) {
         if (!scenarios.getScenariosInitialized()) {
             Log.i(LOG_TAG, "Initializing scenario locations with default values.");
             double herrnGartenLat = 49.8775;
             double herrnGartenLng = 8.6525;
             int herrnGartenRadius = 150; // in meters
-            scenarios.setScenarioFence(Scenarios.Scenario.SCENARIO_MUSIC, herrnGartenLat, herrnGartenLng, herrnGartenRadius);
 
             double homeLat = 49.8727;
             double homeLng = 8.6312;
             int homeRadius = 50; // in meters
-            scenarios.setScenarioFence(Scenarios.Scenario.SCENARIO_HOME, homeLat, homeLng, homeRadius);
 
             double warningLat = 49.8521;
             double warningLng = 8.6463;
             int warningRadius = 50; // in meters
-            scenarios.setScenarioFence(Scenarios.Scenario.SCENARIO_WARNING, warningLat, warningLng, warningRadius);
+
+            scenarios.setScenarioFences(
+                    new Scenarios.Scenario[]{Scenarios.Scenario.SCENARIO_MUSIC,
+                            Scenarios.Scenario.SCENARIO_HOME, Scenarios.Scenario.SCENARIO_WARNING},
+                    new double[]{herrnGartenLat, homeLat, warningLat},
+                    new double[]{herrnGartenLng, homeLng, warningLng},
+                    new int[]{herrnGartenRadius, homeRadius, warningRadius});
 
             scenarios.initializeScenarios();
         } else {
@@ -0,0 +1,96 @@
+package com.g15.smarthelper.ui.main;
+
+import android.view.Choreographer;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import com.g15.smarthelper.state.EngineState;
+import com.g15.smarthelper.state.StateSnapshot;
+
+/**
+ * The {@link StateRenderer} shows the {@link EngineState} while a lifecycle is resumed. A change
+ * of the state schedules a single frame, and the state is read and rendered once in that frame,
+ * so the views are updated at most at the frame rate however fast the updates arrive. While the
+ * lifecycle is paused the renderer is not subscribed and nothing is scheduled.
+ */
+public class StateRenderer implements LifecycleEventObserver, EngineState.Observer,
+        Choreographer.FrameCallback {
+
+    /**
+     * Updates the views from a snapshot of the state.
+     */
+    public interface Renderer {
+        /**
+         * Called on the main thread in a frame after the state changed.
+         * @param snapshot The latest state.
+         */
+        void render(StateSnapshot snapshot);
+    }
+
+    private final EngineState state;
+    private final Renderer renderer;
+    private final Choreographer choreographer;
+    private final StateSnapshot snapshot = new StateSnapshot();
+    private EngineState.Subscription subscription;
+    private long renderedVersion = -1;
+
+    /**
+     * Creates a renderer, it has to be created on the main thread.
+     * @param state The state to show.
+     * @param renderer The renderer updating the views.
+     */
+    public StateRenderer(EngineState state, Renderer renderer) {
+        this.state = state;
+        this.renderer = renderer;
+        this.choreographer = Choreographer.getInstance();
+    }
+
+    /**
+     * Shows the state while a lifecycle is resumed.
+     * @param owner The owner of the lifecycle, e.g. the view lifecycle of a fragment.
+     * @param state The state to show.
+     * @param renderer The renderer updating the views.
+     */
+    public static void bind(LifecycleOwner owner, EngineState state, Renderer renderer) {
+        owner.getLifecycle().addObserver(new StateRenderer(state, renderer));
+    }
+
+    @Override
+    public void onStateChanged(@NonNull LifecycleOwner source, @NonNull Lifecycle.Event event) {
+        switch (event) {
+            case ON_RESUME:
+                subscription = state.subscribe(this);
+                // Show the state that changed while the lifecycle was paused.
+                choreographer.postFrameCallback(this);
+                break;
+            case ON_PAUSE:
+                subscription.cancel();
+                subscription = null;
+                choreographer.removeFrameCallback(this);
+                break;
+            case ON_DESTROY:
+                source.getLifecycle().removeObserver(this);
+                break;
+        }
+    }
+
+    @Override
+    public void onStateChanged() {
+        choreographer.postFrameCallback(this);
+    }
+
+    @Override
+    public void doFrame(long frameTimeNanos) {
+        if (subscription == null) {
+            return;
+        }
+        subscription.read(snapshot);
+        if (snapshot.getVersion() != renderedVersion) {
+            renderedVersion = snapshot.getVersion();
+            renderer.render(snapshot);
+        }
+    }
+}
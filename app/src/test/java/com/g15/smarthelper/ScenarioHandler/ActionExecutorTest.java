@@ -0,0 +1,230 @@
+package com.g15.smarthelper.ScenarioHandler;
+
+import com.g15.smarthelper.Scenarios;
+import com.g15.smarthelper.metrics.Metrics;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.g15.smarthelper.Scenarios.Scenario.SCENARIO_HOME;
+import static com.g15.smarthelper.Scenarios.Scenario.SCENARIO_MUSIC;
+import static com.g15.smarthelper.Scenarios.Scenario.SCENARIO_WARNING;
+import static org.junit.Assert.*;
+
+/**
+ * Tests that the {@link ActionExecutor} runs the actions off the calling thread, deduplicates
+ * actions in flight and interrupts actions that take too long.
+ */
+public class ActionExecutorTest {
+
+    private static final long WAIT_SECONDS = 5;
+
+    /**
+     * An action that waits until it is released or interrupted.
+     */
+    private static class BlockingAction implements ScenarioAction {
+        final Scenarios.Scenario scenario;
+        final long timeout;
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch finished = new CountDownLatch(1);
+        final AtomicInteger runs = new AtomicInteger();
+        volatile boolean interrupted;
+        volatile Thread thread;
+
+        BlockingAction(Scenarios.Scenario scenario, long timeout) {
+            this.scenario = scenario;
+            this.timeout = timeout;
+        }
+
+        @Override
+        public Scenarios.Scenario getScenario() {
+            return scenario;
+        }
+
+        @Override
+        public long getTimeoutMillis() {
+            return timeout;
+        }
+
+        @Override
+        public void execute() {
+            thread = Thread.currentThread();
+            runs.incrementAndGet();
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            } finally {
+                finished.countDown();
+            }
+        }
+    }
+
+    private final ActionRegistry registry = new ActionRegistry();
+    private final ActionExecutor executor = new ActionExecutor(registry);
+
+    @After
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    public void actionRunsOnAnotherThread() throws InterruptedException {
+        BlockingAction action = new BlockingAction(SCENARIO_MUSIC, 10000);
+        registry.register(action);
+        long runs = Metrics.action(SCENARIO_MUSIC).getCount();
+
+        assertTrue(executor.submit(SCENARIO_MUSIC));
+        assertTrue(action.started.await(WAIT_SECONDS, TimeUnit.SECONDS));
+        assertNotSame(Thread.currentThread(), action.thread);
+        action.release.countDown();
+        assertTrue(action.finished.await(WAIT_SECONDS, TimeUnit.SECONDS));
+        waitUntilDone(SCENARIO_MUSIC);
+        assertEquals(runs + 1, Metrics.action(SCENARIO_MUSIC).getCount());
+    }
+
+    @Test
+    public void actionInFlightIsNotQueuedAgain() throws InterruptedException {
+        BlockingAction action = new BlockingAction(SCENARIO_WARNING, 10000);
+        registry.register(action);
+        long deduplicated = Metrics.ACTIONS_DEDUPLICATED.get();
+
+        assertTrue(executor.submit(SCENARIO_WARNING));
+        assertTrue(action.started.await(WAIT_SECONDS, TimeUnit.SECONDS));
+        assertFalse(executor.submit(SCENARIO_WARNING));
+        assertFalse(executor.submit(SCENARIO_WARNING));
+        assertEquals(deduplicated + 2, Metrics.ACTIONS_DEDUPLICATED.get());
+
+        action.release.countDown();
+        waitUntilDone(SCENARIO_WARNING);
+        assertTrue(executor.submit(SCENARIO_WARNING));
+        waitUntilDone(SCENARIO_WARNING);
+        assertEquals(2, action.runs.get());
+    }
+
+    @Test
+    public void slowActionIsInterrupted() throws InterruptedException {
+        BlockingAction action = new BlockingAction(SCENARIO_HOME, 50);
+        registry.register(action);
+        long timedOut = Metrics.ACTIONS_TIMED_OUT.get();
+
+        assertTrue(executor.submit(SCENARIO_HOME));
+        assertTrue(action.finished.await(WAIT_SECONDS, TimeUnit.SECONDS));
+        assertTrue(action.interrupted);
+        waitUntilDone(SCENARIO_HOME);
+        // The timeout is counted by the watchdog, which can finish after the action.
+        long deadline = System.currentTimeMillis() + WAIT_SECONDS * 1000;
+        while (Metrics.ACTIONS_TIMED_OUT.get() == timedOut
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(timedOut + 1, Metrics.ACTIONS_TIMED_OUT.get());
+    }
+
+    @Test
+    public void timedOutActionIgnoringTheInterruptIsNotRunTwice() throws InterruptedException {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger runs = new AtomicInteger();
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        registry.register(new ScenarioAction() {
+            @Override
+            public Scenarios.Scenario getScenario() {
+                return SCENARIO_WARNING;
+            }
+
+            @Override
+            public long getTimeoutMillis() {
+                return 50;
+            }
+
+            @Override
+            public void execute() {
+                runs.incrementAndGet();
+                maxRunning.set(Math.max(maxRunning.get(), running.incrementAndGet()));
+                started.countDown();
+                while (release.getCount() > 0) {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        // Ignored on purpose.
+                    }
+                }
+                running.decrementAndGet();
+            }
+        });
+        long timedOut = Metrics.ACTIONS_TIMED_OUT.get();
+
+        assertTrue(executor.submit(SCENARIO_WARNING));
+        assertTrue(started.await(WAIT_SECONDS, TimeUnit.SECONDS));
+        long deadline = System.currentTimeMillis() + WAIT_SECONDS * 1000;
+        while (Metrics.ACTIONS_TIMED_OUT.get() == timedOut
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(timedOut + 1, Metrics.ACTIONS_TIMED_OUT.get());
+
+        // The interrupted action is still running, so it is not queued again.
+        assertTrue(executor.isInFlight(SCENARIO_WARNING));
+        assertFalse(executor.submit(SCENARIO_WARNING));
+        release.countDown();
+        waitUntilDone(SCENARIO_WARNING);
+
+        assertTrue(executor.submit(SCENARIO_WARNING));
+        waitUntilDone(SCENARIO_WARNING);
+        assertEquals(2, runs.get());
+        assertEquals(1, maxRunning.get());
+    }
+
+    @Test
+    public void failingActionDoesNotStopTheExecutor() throws InterruptedException {
+        final AtomicInteger runs = new AtomicInteger();
+        registry.register(new ScenarioAction() {
+            @Override
+            public Scenarios.Scenario getScenario() {
+                return SCENARIO_MUSIC;
+            }
+
+            @Override
+            public long getTimeoutMillis() {
+                return 10000;
+            }
+
+            @Override
+            public void execute() {
+                runs.incrementAndGet();
+                throw new IllegalStateException("Failing on purpose.");
+            }
+        });
+        long failed = Metrics.ACTIONS_FAILED.get();
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(executor.submit(SCENARIO_MUSIC));
+            waitUntilDone(SCENARIO_MUSIC);
+        }
+        assertEquals(3, runs.get());
+        assertEquals(failed + 3, Metrics.ACTIONS_FAILED.get());
+    }
+
+    @Test
+    public void scenarioWithoutActionIsIgnored() {
+        assertFalse(executor.submit(SCENARIO_HOME));
+        assertFalse(executor.isInFlight(SCENARIO_HOME));
+    }
+
+    private void waitUntilDone(Scenarios.Scenario scenario) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + WAIT_SECONDS * 1000;
+        while (executor.isInFlight(scenario)) {
+            assertTrue("The action of " + scenario + " did not finish.",
+                    System.currentTimeMillis() < deadline);
+            Thread.sleep(5);
+        }
+    }
+}
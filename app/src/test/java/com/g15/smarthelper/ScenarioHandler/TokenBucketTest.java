@@ -0,0 +1,58 @@
+package com.g15.smarthelper.ScenarioHandler;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the burst and the refill of a {@link TokenBucket}.
+ */
+public class TokenBucketTest {
+
+    private static final long MINUTE = 60 * 1000;
+
+    @Test
+    public void burstIsLimitedToTheCapacity() {
+        TokenBucket bucket = new TokenBucket(3, 10 * MINUTE);
+        assertTrue(bucket.tryAcquire(0));
+        assertTrue(bucket.tryAcquire(1));
+        assertTrue(bucket.tryAcquire(2));
+        assertFalse(bucket.tryAcquire(3));
+        assertFalse(bucket.tryAcquire(10 * MINUTE - 1));
+    }
+
+    @Test
+    public void tokensAreAddedPerInterval() {
+        TokenBucket bucket = new TokenBucket(3, 10 * MINUTE);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(bucket.tryAcquire(0));
+        }
+        assertEquals(1, bucket.getTokens(15 * MINUTE));
+        assertTrue(bucket.tryAcquire(15 * MINUTE));
+        // The half interval carries over to the next token.
+        assertEquals(1, bucket.getTokens(20 * MINUTE));
+        assertEquals(3, bucket.getTokens(24 * 60 * MINUTE));
+    }
+
+    @Test
+    public void flappingIsLimitedToOnePerInterval() {
+        TokenBucket bucket = new TokenBucket(3, 10 * MINUTE);
+        int passed = 0;
+        // A trigger every 10 seconds for two hours.
+        for (long time = 0; time < 120 * MINUTE; time += 10 * 1000) {
+            if (bucket.tryAcquire(time)) {
+                passed++;
+            }
+        }
+        assertEquals(3 + 11, passed);
+    }
+
+    @Test
+    public void clockSetBackDoesNotAddTokens() {
+        TokenBucket bucket = new TokenBucket(1, 10 * MINUTE);
+        assertTrue(bucket.tryAcquire(100 * MINUTE));
+        assertFalse(bucket.tryAcquire(50 * MINUTE));
+        assertFalse(bucket.tryAcquire(59 * MINUTE));
+        assertTrue(bucket.tryAcquire(60 * MINUTE));
+    }
+}
@@ -0,0 +1,61 @@
+package com.g15.smarthelper;
+
+import com.g15.smarthelper.rules.Rule;
+import com.g15.smarthelper.store.MemoryScenarioStore;
+import com.g15.smarthelper.store.ScenarioStore;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that the {@link Scenarios} keep unsaved state changes when writing them fails.
+ */
+public class ScenariosTest {
+
+    /**
+     * A store whose next state write fails.
+     */
+    private static class FailingStore extends MemoryScenarioStore {
+        boolean failNextWrite;
+
+        FailingStore() {
+            super(Scenarios.Scenario.values().length);
+        }
+
+        @Override
+        public synchronized void writeState(int currentActivity,
+                                            List<ScenarioStore.RuleStateRow> ruleStates) {
+            if (failNextWrite) {
+                failNextWrite = false;
+                throw new IllegalStateException("Failing on purpose.");
+            }
+            super.writeState(currentActivity, ruleStates);
+        }
+    }
+
+    @Test
+    public void failedFlush_isRetriedByTheNextFlush() {
+        FailingStore store = new FailingStore();
+        Scenarios scenarios = new Scenarios(store);
+        scenarios.setScenarioFence(Scenarios.Scenario.SCENARIO_HOME, 49.8727, 8.6312, 50);
+        Rule rule = scenarios.getRuleTable().getRules()[0];
+        scenarios.setRuleTriggered(rule, true);
+
+        store.failNextWrite = true;
+        try {
+            scenarios.flushState();
+            fail("The write should have failed.");
+        } catch (IllegalStateException expected) {
+            // The change has to survive the failed write.
+        }
+        assertFalse(store.readRuleStates().containsKey(rule.getKey()));
+
+        scenarios.flushState();
+        Map<String, ScenarioStore.RuleStateRow> rows = store.readRuleStates();
+        assertTrue(rows.get(rule.getKey()).triggered);
+    }
+}
@@ -0,0 +1,62 @@
+package com.g15.smarthelper.engine;
+
+import com.google.android.gms.location.DetectedActivity;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that the {@link ActivityFusion} decides on one activity per result and smooths out
+ * single contradicting results.
+ */
+public class ActivityFusionTest {
+
+    @Test
+    public void confidentActivity_isAcceptedImmediately() {
+        ActivityFusion fusion = new ActivityFusion(3, 70);
+        assertEquals(DetectedActivity.WALKING, fuse(fusion, DetectedActivity.WALKING, 90,
+                DetectedActivity.ON_FOOT, 90));
+    }
+
+    @Test
+    public void uncertainActivity_isNotAccepted() {
+        ActivityFusion fusion = new ActivityFusion(3, 70);
+        assertEquals(ActivityFusion.NO_DECISION, fuse(fusion, DetectedActivity.WALKING, 50,
+                DetectedActivity.RUNNING, 40));
+        assertEquals(ActivityFusion.NO_DECISION, fuse(fusion, DetectedActivity.TILTING, 100));
+        assertEquals(ActivityFusion.NO_DECISION, fuse(fusion, DetectedActivity.UNKNOWN, 100));
+    }
+
+    @Test
+    public void singleContradictingResult_keepsDecision() {
+        ActivityFusion fusion = new ActivityFusion(3, 70);
+        fuse(fusion, DetectedActivity.RUNNING, 100);
+        fuse(fusion, DetectedActivity.RUNNING, 100);
+        fuse(fusion, DetectedActivity.RUNNING, 100);
+        assertEquals(DetectedActivity.RUNNING, fuse(fusion, DetectedActivity.STILL, 100));
+        assertEquals(DetectedActivity.RUNNING, fuse(fusion, DetectedActivity.RUNNING, 100));
+    }
+
+    @Test
+    public void lastingChange_isAccepted() {
+        ActivityFusion fusion = new ActivityFusion(3, 70);
+        fuse(fusion, DetectedActivity.WALKING, 100);
+        fuse(fusion, DetectedActivity.WALKING, 100);
+        fuse(fusion, DetectedActivity.WALKING, 100);
+        assertEquals(DetectedActivity.WALKING, fuse(fusion, DetectedActivity.RUNNING, 100));
+        assertEquals(DetectedActivity.RUNNING, fuse(fusion, DetectedActivity.RUNNING, 100));
+        assertEquals(DetectedActivity.RUNNING, fusion.getDecision());
+    }
+
+    private static int fuse(ActivityFusion fusion, int... typesAndConfidences) {
+        int count = typesAndConfidences.length / 2;
+        int[] types = new int[count];
+        int[] confidences = new int[count];
+        for (int i = 0; i < count; i++) {
+            types[i] = typesAndConfidences[2 * i];
+            confidences[i] = typesAndConfidences[2 * i + 1];
+        }
+        return fusion.fuse(types, confidences, count);
+    }
+}
@@ -0,0 +1,118 @@
+package com.g15.smarthelper.engine;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that the {@link EventQueue} stays bounded and drops stale location fixes first.
+ */
+public class EventQueueTest {
+
+    @Test
+    public void events_areTakenInOrder() throws InterruptedException {
+        EventQueue queue = new EventQueue(4);
+        EngineEvent activity = activity(8, 1);
+        EngineEvent location = location(49.8775, 8.6525, 2);
+        assertNull(queue.offer(activity));
+        assertNull(queue.offer(location));
+
+        assertSame(activity, queue.take());
+        assertSame(location, queue.poll());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void fullQueue_dropsOldestLocation() {
+        EventQueue queue = new EventQueue(3);
+        EngineEvent activity = activity(8, 1);
+        EngineEvent first = location(49.0, 8.0, 2);
+        EngineEvent second = location(49.1, 8.1, 3);
+        queue.offer(activity);
+        queue.offer(first);
+        queue.offer(second);
+
+        EngineEvent third = location(49.2, 8.2, 4);
+        assertSame(first, queue.offer(third));
+        assertEquals(3, queue.size());
+        assertEquals(1, queue.getDroppedCount());
+
+        assertSame(activity, queue.poll());
+        assertSame(second, queue.poll());
+        assertSame(third, queue.poll());
+    }
+
+    @Test
+    public void fullQueue_dropsLocationResultBeforeActivity() {
+        EventQueue queue = new EventQueue(2);
+        EngineEvent activity = activity(8, 1);
+        LocationBatch batch = new LocationBatch(1);
+        batch.add(49.0, 8.0, 2, -1);
+        EngineEvent result = EngineEvent.locationResult(batch);
+        queue.offer(activity);
+        queue.offer(result);
+
+        EngineEvent next = activity(7, 3);
+        assertSame(result, queue.offer(next));
+        assertSame(activity, queue.poll());
+        assertSame(next, queue.poll());
+    }
+
+    @Test
+    public void fullQueueOfActivities_dropsOldestEvent() {
+        EventQueue queue = new EventQueue(2);
+        EngineEvent first = activity(8, 1);
+        EngineEvent second = activity(7, 2);
+        queue.offer(first);
+        queue.offer(second);
+
+        EngineEvent third = activity(3, 3);
+        assertSame(first, queue.offer(third));
+        assertSame(second, queue.poll());
+        assertSame(third, queue.poll());
+    }
+
+    @Test
+    public void fullQueueWithoutLocations_dropsActivityBeforeTransition() {
+        EventQueue queue = new EventQueue(2);
+        EngineEvent transition = EngineEvent.transition(new String[] {"home"}, true, 1);
+        EngineEvent activity = activity(8, 2);
+        queue.offer(transition);
+        queue.offer(activity);
+
+        EngineEvent boundary = EngineEvent.timeWindow(3);
+        assertSame(activity, queue.offer(boundary));
+        assertSame(transition, queue.poll());
+        assertSame(boundary, queue.poll());
+    }
+
+    @Test
+    public void fullQueueOfTransitions_keepsThemAndDropsNewActivity() {
+        EventQueue queue = new EventQueue(2);
+        EngineEvent entered = EngineEvent.transition(new String[] {"home"}, true, 1);
+        EngineEvent boundary = EngineEvent.timeWindow(2);
+        queue.offer(entered);
+        queue.offer(boundary);
+
+        EngineEvent activity = activity(8, 3);
+        assertSame(activity, queue.offer(activity));
+        assertEquals(1, queue.getDroppedCount());
+
+        EngineEvent left = EngineEvent.transition(new String[] {"home"}, false, 4);
+        assertNull(queue.offer(left));
+        assertEquals(3, queue.size());
+        assertSame(entered, queue.poll());
+        assertSame(boundary, queue.poll());
+        assertSame(left, queue.poll());
+    }
+
+    private static EngineEvent activity(int activityType, long time) {
+        return EngineEvent.activity(new int[] {activityType}, new int[] {100}, time);
+    }
+
+    private static EngineEvent location(double latitude, double longitude, long time) {
+        LocationBatch batch = new LocationBatch(1);
+        batch.add(latitude, longitude, time, -1);
+        return EngineEvent.location(batch);
+    }
+}
@@ -0,0 +1,34 @@
+package com.g15.smarthelper.engine;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the time ordering of a {@link LocationBatch}.
+ */
+public class LocationBatchTest {
+
+    @Test
+    public void sortByTime_keepsFixesTogether() {
+        LocationBatch batch = new LocationBatch(4);
+        batch.add(49.3, 8.3, 300, -1);
+        batch.add(49.1, 8.1, 100, -1);
+        batch.add(49.4, 8.4, 400, -1);
+        batch.add(49.2, 8.2, 200, -1);
+        batch.sortByTime();
+
+        for (int i = 0; i < batch.size(); i++) {
+            assertEquals(100 * (i + 1), batch.getTime(i));
+            assertEquals(49.1 + 0.1 * i, batch.getLatitude(i), 1e-9);
+            assertEquals(8.1 + 0.1 * i, batch.getLongitude(i), 1e-9);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void add_failsWhenFull() {
+        LocationBatch batch = new LocationBatch(1);
+        batch.add(49.1, 8.1, 100, -1);
+        batch.add(49.2, 8.2, 200, -1);
+    }
+}
@@ -0,0 +1,40 @@
+package com.g15.smarthelper.engine;
+
+import com.google.android.gms.location.DetectedActivity;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the selection of the location {@link SamplingTier}.
+ */
+public class SamplingPolicyTest {
+
+    @Test
+    public void insideOrNearFence_usesHighAccuracy() {
+        assertEquals(SamplingTier.NEAR, SamplingPolicy.selectTier(-50, 2.5));
+        assertEquals(SamplingTier.NEAR, SamplingPolicy.selectTier(100, 2.5));
+    }
+
+    @Test
+    public void tier_widensWithDistance() {
+        double walking = SamplingPolicy.estimateSpeed(-1, DetectedActivity.WALKING);
+        assertEquals(SamplingTier.APPROACHING, SamplingPolicy.selectTier(1000, walking));
+        assertEquals(SamplingTier.FAR, SamplingPolicy.selectTier(5000, walking));
+        assertEquals(SamplingTier.REMOTE, SamplingPolicy.selectTier(30000, walking));
+    }
+
+    @Test
+    public void tier_tightensWithSpeed() {
+        double driving = SamplingPolicy.estimateSpeed(-1, DetectedActivity.IN_VEHICLE);
+        assertEquals(SamplingTier.APPROACHING, SamplingPolicy.selectTier(30000, driving));
+        assertEquals(SamplingTier.NEAR, SamplingPolicy.selectTier(5000, driving));
+    }
+
+    @Test
+    public void reportedSpeed_isOnlyTrustedAboveTypicalSpeed() {
+        assertEquals(2.5, SamplingPolicy.estimateSpeed(1, DetectedActivity.WALKING), 0);
+        assertEquals(30, SamplingPolicy.estimateSpeed(30, DetectedActivity.WALKING), 0);
+    }
+}
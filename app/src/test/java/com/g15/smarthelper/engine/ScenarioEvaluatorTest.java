@@ -0,0 +1,63 @@
+package com.g15.smarthelper.engine;
+
+import com.g15.smarthelper.Scenarios;
+import com.g15.smarthelper.rules.Rule;
+import com.g15.smarthelper.store.MemoryScenarioStore;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests how the {@link ScenarioEvaluator} counts location fixes towards the dwell count.
+ */
+public class ScenarioEvaluatorTest {
+
+    private static final double LATITUDE = 49.8727;
+    private static final double LONGITUDE = 8.6312;
+
+    private static final ScenarioEvaluator.TriggerListener IGNORE_TRIGGERS =
+            new ScenarioEvaluator.TriggerListener() {
+                @Override
+                public void onRuleTriggered(Rule rule) {
+                }
+            };
+
+    private static Scenarios createScenarios() {
+        Scenarios scenarios = new Scenarios(
+                new MemoryScenarioStore(Scenarios.Scenario.values().length));
+        scenarios.setScenarioFence(Scenarios.Scenario.SCENARIO_HOME, LATITUDE, LONGITUDE, 50);
+        return scenarios;
+    }
+
+    @Test
+    public void repeatedFix_doesNotCountTowardsDwell() {
+        Scenarios scenarios = createScenarios();
+        Rule rule = scenarios.getRuleTable().getRules()[0];
+        assertTrue(rule.getDwellCount() > 1);
+        ScenarioEvaluator evaluator = new ScenarioEvaluator(scenarios, IGNORE_TRIGGERS);
+
+        for (int i = 0; i < rule.getDwellCount(); i++) {
+            evaluator.evaluateLocation(LATITUDE, LONGITUDE, 1000);
+        }
+        assertFalse(scenarios.getRuleGeofenceEntered(rule));
+
+        for (int i = 1; i < rule.getDwellCount(); i++) {
+            evaluator.evaluateLocation(LATITUDE, LONGITUDE, 1000 + i * 1000);
+        }
+        assertTrue(scenarios.getRuleGeofenceEntered(rule));
+    }
+
+    @Test
+    public void olderFix_isSkipped() {
+        Scenarios scenarios = createScenarios();
+        Rule rule = scenarios.getRuleTable().getRules()[0];
+        ScenarioEvaluator evaluator = new ScenarioEvaluator(scenarios, IGNORE_TRIGGERS);
+
+        evaluator.evaluateLocation(LATITUDE, LONGITUDE, 5000);
+        for (int i = 1; i < rule.getDwellCount(); i++) {
+            evaluator.evaluateLocation(LATITUDE, LONGITUDE, 5000 - i * 1000);
+        }
+        assertFalse(scenarios.getRuleGeofenceEntered(rule));
+    }
+}
@@ -0,0 +1,38 @@
+package com.g15.smarthelper.engine;
+
+import com.google.android.gms.location.DetectedActivity;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests when the {@link StillGate} pauses and resumes the location updates.
+ */
+public class StillGateTest {
+
+    @Test
+    public void pausesAfterRunOfStillSamples() {
+        StillGate gate = new StillGate(3);
+        assertEquals(StillGate.KEEP, gate.onActivity(DetectedActivity.STILL, false));
+        assertEquals(StillGate.KEEP, gate.onActivity(DetectedActivity.STILL, false));
+        assertEquals(StillGate.PAUSE, gate.onActivity(DetectedActivity.STILL, false));
+        assertEquals(StillGate.KEEP, gate.onActivity(DetectedActivity.STILL, true));
+    }
+
+    @Test
+    public void otherActivityRestartsTheRun() {
+        StillGate gate = new StillGate(2);
+        assertEquals(StillGate.KEEP, gate.onActivity(DetectedActivity.STILL, false));
+        assertEquals(StillGate.KEEP, gate.onActivity(DetectedActivity.WALKING, false));
+        assertEquals(StillGate.KEEP, gate.onActivity(DetectedActivity.STILL, false));
+        assertEquals(StillGate.PAUSE, gate.onActivity(DetectedActivity.STILL, false));
+    }
+
+    @Test
+    public void resumesOnFirstOtherActivity() {
+        StillGate gate = new StillGate(2);
+        assertEquals(StillGate.RESUME, gate.onActivity(DetectedActivity.WALKING, true));
+        assertEquals(StillGate.KEEP, gate.onActivity(DetectedActivity.WALKING, false));
+    }
+}
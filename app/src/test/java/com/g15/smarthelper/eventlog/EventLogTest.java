@@ -0,0 +1,95 @@
+package com.g15.smarthelper.eventlog;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that the {@link EventLog} keeps the newest records of its ring across reopening.
+ */
+public class EventLogTest {
+
+    @Test
+    public void records_areReadBackInOrder() throws IOException {
+        EventLog log = EventLog.open(tempFile(), 8);
+        log.logLocation(1, 49.8775, 8.6525, 1.5f);
+        log.logActivity(2, 8, 90);
+        log.logFusedActivity(2, 8);
+        log.logTransition(3, "park", true, false);
+        log.logAction(4, "park", 0);
+
+        List<EventRecord> records = log.readAll();
+        assertEquals(5, records.size());
+        EventRecord location = records.get(0);
+        assertEquals(EventRecord.TYPE_LOCATION, location.getType());
+        assertEquals(49.8775, location.getLatitude(), 0);
+        assertEquals(8.6525, location.getLongitude(), 0);
+        assertEquals(1.5f, location.getValue(), 0);
+        assertNull(location.getKey());
+        assertEquals(EventRecord.TYPE_ACTIVITY, records.get(1).getType());
+        assertEquals(8, records.get(1).getCode());
+        assertEquals(90, records.get(1).getValue(), 0);
+        assertEquals(EventRecord.TYPE_TRANSITION, records.get(3).getType());
+        assertEquals(1, records.get(3).getCode());
+        assertEquals("park", records.get(3).getKey());
+        assertEquals(EventRecord.TYPE_ACTION, records.get(4).getType());
+        assertEquals(4, records.get(4).getTime());
+    }
+
+    @Test
+    public void fullRing_overwritesOldestRecords() throws IOException {
+        EventLog log = EventLog.open(tempFile(), 4);
+        for (int i = 0; i < 10; i++) {
+            log.logActivity(i, 3, 100);
+        }
+
+        List<EventRecord> records = log.readAll();
+        assertEquals(10, log.getWrittenCount());
+        assertEquals(4, records.size());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(6 + i, records.get(i).getSequence());
+            assertEquals(6 + i, records.get(i).getTime());
+        }
+    }
+
+    @Test
+    public void reopenedLog_continuesAfterLastRecord() throws IOException {
+        File file = tempFile();
+        EventLog log = EventLog.open(file, 4);
+        log.logTransition(1, "a-rule-with-a-long-key", false, true);
+        log.logActivity(2, 7, 80);
+
+        EventLog reopened = EventLog.open(file, 4);
+        assertEquals(2, reopened.getWrittenCount());
+        reopened.logActivity(3, 8, 80);
+
+        List<EventRecord> records = EventLog.readFile(file);
+        assertEquals(3, records.size());
+        assertEquals(EventRecord.TYPE_SYSTEM_TRANSITION, records.get(0).getType());
+        assertEquals("a-rule-with-a-lo", records.get(0).getKey());
+        assertEquals(3, records.get(2).getTime());
+
+        // A different capacity does not fit the ring, so the log starts over.
+        assertEquals(0, EventLog.open(file, 8).getWrittenCount());
+    }
+
+    @Test
+    public void export_writesOneLinePerRecord() throws IOException {
+        EventLog log = EventLog.open(tempFile(), 4);
+        log.logAction(5, "home", 2);
+        StringWriter writer = new StringWriter();
+        log.exportCsv(writer);
+        assertEquals(EventRecord.CSV_HEADER + "\n0,5,6,2,0.0,0.0,0.0,home\n", writer.toString());
+    }
+
+    private static File tempFile() throws IOException {
+        File file = File.createTempFile("events", ".log");
+        file.deleteOnExit();
+        return file;
+    }
+}
@@ -0,0 +1,135 @@
+package com.g15.smarthelper.fence;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that the {@link FenceIndex} never misses a fence containing the queried location.
+ */
+public class FenceIndexTest {
+
+    private static final double EARTH_RADIUS = 6371008.8;
+
+    @Test
+    public void emptyIndex_returnsNoCandidates() {
+        FenceIndex index = new FenceIndex(Collections.<Fence>emptyList());
+        assertEquals(0, index.query(49.8775, 8.6525).length);
+    }
+
+    @Test
+    public void query_returnsFenceAtItsCenter() {
+        Fence fence = new Fence(0, 49.8775, 8.6525, 150);
+        FenceIndex index = new FenceIndex(Collections.singletonList(fence));
+        assertTrue(Arrays.asList(index.query(49.8775, 8.6525)).contains(fence));
+        assertEquals(0, index.query(49.8521, 8.6463).length);
+    }
+
+    @Test
+    public void query_findsFenceAcrossTheAntimeridian() {
+        Fence east = new Fence(0, -16.5, 179.999, 500);
+        Fence west = new Fence(1, -16.5, -179.999, 500);
+        FenceIndex index = new FenceIndex(Arrays.asList(east, west));
+        List<Fence> fromWest = Arrays.asList(index.query(-16.5, -179.998));
+        List<Fence> fromEast = Arrays.asList(index.query(-16.5, 179.998));
+        assertTrue(fromWest.contains(east) && fromWest.contains(west));
+        assertTrue(fromEast.contains(east) && fromEast.contains(west));
+        assertTrue(east.contains(-16.5, -179.998));
+    }
+
+    @Test
+    public void query_findsAllContainingFences() {
+        Random random = new Random(42);
+        List<Fence> fences = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            double lat = 49.7 + random.nextDouble() * 0.4;
+            double lng = 8.4 + random.nextDouble() * 0.5;
+            fences.add(new Fence(i, lat, lng, 20 + random.nextInt(2000)));
+        }
+        FenceIndex index = new FenceIndex(fences);
+
+        long candidates = 0;
+        for (int i = 0; i < 5000; i++) {
+            double lat = 49.7 + random.nextDouble() * 0.4;
+            double lng = 8.4 + random.nextDouble() * 0.5;
+            List<Fence> result = Arrays.asList(index.query(lat, lng));
+            candidates += result.size();
+            for (Fence fence : fences) {
+                if (distance(lat, lng, fence.getLatitude(), fence.getLongitude()) < fence.getRadius()) {
+                    assertTrue("Missing " + fence + " at " + lat + "," + lng, result.contains(fence));
+                }
+            }
+        }
+        // The grid has to prune most of the fences.
+        assertTrue(candidates / 5000 < fences.size() / 10);
+    }
+
+    @Test
+    public void distanceToNearestBoundary_matchesBruteForce() {
+        Random random = new Random(5);
+        List<Fence> fences = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            fences.add(new Fence(i, 49 + random.nextDouble(), 8 + random.nextDouble(),
+                    20 + random.nextInt(2000)));
+        }
+        FenceIndex index = new FenceIndex(fences);
+        assertEquals(Double.POSITIVE_INFINITY,
+                new FenceIndex(Collections.<Fence>emptyList()).distanceToNearestBoundary(49, 8), 0);
+
+        for (int i = 0; i < 500; i++) {
+            double lat = 48.5 + random.nextDouble() * 2;
+            double lng = 7.5 + random.nextDouble() * 2;
+            double expected = Double.POSITIVE_INFINITY;
+            for (Fence fence : fences) {
+                expected = Math.min(expected, fence.distanceToBoundary(lat, lng));
+            }
+            assertEquals(expected, index.distanceToNearestBoundary(lat, lng), 1e-6);
+        }
+    }
+
+    @Test
+    public void getNearestFence_matchesBruteForceAmongDenseFences() {
+        Random random = new Random(11);
+        List<Fence> fences = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            fences.add(new Fence(i, 49.7 + random.nextDouble() * 0.4,
+                    8.4 + random.nextDouble() * 0.5, 20 + random.nextInt(300)));
+        }
+        FenceIndex index = new FenceIndex(fences);
+
+        for (int i = 0; i < 500; i++) {
+            double lat = 49.6 + random.nextDouble() * 0.6;
+            double lng = 8.3 + random.nextDouble() * 0.7;
+            double expected = Double.POSITIVE_INFINITY;
+            for (Fence fence : fences) {
+                expected = Math.min(expected, fence.distanceToBoundary(lat, lng));
+            }
+            Fence nearest = index.getNearestFence(lat, lng);
+            assertEquals(expected, nearest.distanceToBoundary(lat, lng), 1e-6);
+        }
+    }
+
+    @Test
+    public void getNearestFence_searchesAcrossTheAntimeridian() {
+        Fence east = new Fence(0, -16.5, 179.99, 100);
+        Fence west = new Fence(1, -16.5, -179.9, 100);
+        FenceIndex index = new FenceIndex(Arrays.asList(east, west));
+        assertSame(east, index.getNearestFence(-16.5, -179.995));
+        assertSame(west, index.getNearestFence(-16.5, -179.91));
+    }
+
+    private static double distance(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * EARTH_RADIUS * Math.asin(Math.sqrt(a));
+    }
+}
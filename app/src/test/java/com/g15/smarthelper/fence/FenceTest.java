@@ -0,0 +1,98 @@
+package com.g15.smarthelper.fence;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the planar distance kernel of {@link Fence} against the exact geodesic distance.
+ */
+public class FenceTest {
+
+    private static final int MAX_RADIUS = 10000;
+
+    @Test
+    public void geodesy_matchesKnownDistance() {
+        // One degree of latitude at the equator on the WGS84 ellipsoid.
+        assertEquals(110574.4, Geodesy.distance(0, 0, 1, 0), 0.5);
+        assertEquals(0, Geodesy.distance(49.8775, 8.6525, 49.8775, 8.6525), 0);
+    }
+
+    @Test
+    public void planarDistance_isCloseToGeodesicDistance() {
+        Random random = new Random(7);
+        for (int latitude = -80; latitude <= 80; latitude += 10) {
+            for (int i = 0; i < 2000; i++) {
+                Fence fence = new Fence(0, latitude + random.nextDouble(),
+                        random.nextDouble() * 360 - 180, MAX_RADIUS);
+                double[] location = randomLocationNear(random, fence, MAX_RADIUS);
+                double exact = Geodesy.distance(location[0], location[1],
+                        fence.getLatitude(), fence.getLongitude());
+                double planar = fence.planarDistance(location[0], location[1]);
+                assertEquals("Error at " + location[0] + "," + location[1], exact, planar, 0.2);
+            }
+        }
+    }
+
+    @Test
+    public void contains_agreesWithGeodesicDistance() {
+        Random random = new Random(11);
+        for (int i = 0; i < 50000; i++) {
+            int radius = 10 + random.nextInt(MAX_RADIUS);
+            Fence fence = new Fence(0, random.nextDouble() * 160 - 80,
+                    random.nextDouble() * 360 - 180, radius);
+            double[] location = randomLocationNear(random, fence, radius);
+            double exact = Geodesy.distance(location[0], location[1],
+                    fence.getLatitude(), fence.getLongitude());
+            assertEquals("Wrong decision at distance " + exact + " for " + fence,
+                    exact < radius, fence.contains(location[0], location[1]));
+        }
+    }
+
+    @Test
+    public void isInsideExitRadius_agreesWithGeodesicDistance() {
+        Random random = new Random(13);
+        for (int i = 0; i < 20000; i++) {
+            int radius = 10 + random.nextInt(MAX_RADIUS / 2);
+            int exitRadius = radius + random.nextInt(radius);
+            Fence fence = new Fence(0, random.nextDouble() * 160 - 80,
+                    random.nextDouble() * 360 - 180, radius, exitRadius);
+            double[] location = randomLocationNear(random, fence, exitRadius);
+            double exact = Geodesy.distance(location[0], location[1],
+                    fence.getLatitude(), fence.getLongitude());
+            assertEquals("Wrong decision at distance " + exact + " for " + fence,
+                    exact < exitRadius, fence.isInsideExitRadius(location[0], location[1]));
+            assertEquals("Wrong decision at distance " + exact + " for " + fence,
+                    exact < radius, fence.contains(location[0], location[1]));
+        }
+    }
+
+    @Test
+    public void contains_handlesTheAntimeridian() {
+        Fence fence = new Fence(0, 0, 179.999, 500);
+        assertTrue(fence.contains(0, -179.999));
+        assertFalse(fence.contains(0, -179.99));
+    }
+
+    /**
+     * Creates a random location up to 1.5 radii away from the fence's center, with more samples
+     * close to the boundary.
+     */
+    private static double[] randomLocationNear(Random random, Fence fence, int radius) {
+        double distance = random.nextBoolean()
+                ? random.nextDouble() * radius * 1.5
+                : radius * (0.99 + random.nextDouble() * 0.02);
+        double bearing = random.nextDouble() * 2 * Math.PI;
+        double latitude = fence.getLatitude() + distance * Math.cos(bearing) / 110574;
+        double longitude = fence.getLongitude() + distance * Math.sin(bearing)
+                / (111320 * Math.cos(Math.toRadians(fence.getLatitude())));
+        if (longitude > 180) {
+            longitude -= 360;
+        } else if (longitude < -180) {
+            longitude += 360;
+        }
+        return new double[] {latitude, longitude};
+    }
+}
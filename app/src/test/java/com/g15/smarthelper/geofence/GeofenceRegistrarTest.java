@@ -0,0 +1,90 @@
+package com.g15.smarthelper.geofence;
+
+import com.g15.smarthelper.Scenarios;
+import com.g15.smarthelper.fence.Fence;
+import com.g15.smarthelper.rules.Rule;
+import com.g15.smarthelper.rules.RuleDefinition;
+import com.g15.smarthelper.rules.RuleTable;
+import com.google.android.gms.location.DetectedActivity;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the registration of the rule fences against a fake {@link GeofenceClient}.
+ */
+public class GeofenceRegistrarTest {
+
+    private static class FakeGeofenceClient implements GeofenceClient {
+        String[] requestIds;
+        Fence[] fences;
+        int removeCount;
+
+        @Override
+        public void replaceGeofences(String[] requestIds, Fence[] fences) {
+            this.requestIds = requestIds;
+            this.fences = fences;
+        }
+
+        @Override
+        public void removeGeofences() {
+            requestIds = null;
+            fences = null;
+            removeCount++;
+        }
+    }
+
+    @Test
+    public void register_usesRuleKeysAsRequestIds() {
+        List<RuleDefinition> definitions = new ArrayList<>();
+        definitions.add(definition("park", 49.8775, 8.6525, 150));
+        definitions.add(definition("market", 49.8521, 8.6463, 50));
+        RuleTable table = new RuleTable(definitions);
+        FakeGeofenceClient client = new FakeGeofenceClient();
+
+        new GeofenceRegistrar(client).register(table);
+
+        assertArrayEquals(new String[] {"park", "market"}, client.requestIds);
+        for (int i = 0; i < client.fences.length; i++) {
+            Rule rule = table.getRule(client.requestIds[i]);
+            assertSame(rule.getFence(), client.fences[i]);
+        }
+    }
+
+    @Test
+    public void register_replacesPreviousFences() {
+        FakeGeofenceClient client = new FakeGeofenceClient();
+        GeofenceRegistrar registrar = new GeofenceRegistrar(client);
+        registrar.register(new RuleTable(Collections.singletonList(
+                definition("park", 49.8775, 8.6525, 150))));
+        registrar.register(new RuleTable(Collections.<RuleDefinition>emptyList()));
+
+        assertEquals(0, client.requestIds.length);
+        registrar.unregister();
+        assertNull(client.requestIds);
+        assertEquals(1, client.removeCount);
+    }
+
+    @Test
+    public void register_isLimitedToMaxGeofences() {
+        List<RuleDefinition> definitions = new ArrayList<>();
+        for (int i = 0; i < GeofenceRegistrar.MAX_GEOFENCES + 20; i++) {
+            definitions.add(definition("rule" + i, 49 + i * 0.01, 8, 100));
+        }
+        FakeGeofenceClient client = new FakeGeofenceClient();
+
+        new GeofenceRegistrar(client).register(new RuleTable(definitions));
+
+        assertEquals(GeofenceRegistrar.MAX_GEOFENCES, client.fences.length);
+    }
+
+    private static RuleDefinition definition(String key, double lat, double lng, int radius) {
+        return new RuleDefinition(key, Scenarios.Scenario.SCENARIO_MUSIC, DetectedActivity.RUNNING,
+                0, RuleDefinition.MINUTES_PER_DAY, lat, lng, radius);
+    }
+}
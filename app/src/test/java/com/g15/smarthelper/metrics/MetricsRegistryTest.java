@@ -0,0 +1,86 @@
+package com.g15.smarthelper.metrics;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the counters, the histogram buckets and the report of a {@link MetricsRegistry}.
+ */
+public class MetricsRegistryTest {
+
+    private static final long MICROS = 1000;
+
+    @Test
+    public void countersAreExactUnderContention() throws InterruptedException {
+        final Counter counter = new MetricsRegistry().counter("test");
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 100000; j++) {
+                        counter.increment();
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        counter.add(5);
+        assertEquals(400005, counter.get());
+    }
+
+    @Test
+    public void percentilesAreBucketBounds() {
+        LatencyHistogram histogram = new MetricsRegistry().histogram("test");
+        assertEquals(0, histogram.getPercentileMicros(50));
+
+        for (int i = 0; i < 90; i++) {
+            histogram.record(30 * MICROS);
+        }
+        for (int i = 0; i < 9; i++) {
+            histogram.record(2000 * MICROS);
+        }
+        histogram.record(20000000 * MICROS);
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(50, histogram.getPercentileMicros(50));
+        assertEquals(50, histogram.getPercentileMicros(90));
+        assertEquals(2500, histogram.getPercentileMicros(99));
+        // Beyond the last bucket the longest duration is reported.
+        assertEquals(20000000, histogram.getPercentileMicros(100));
+        assertEquals(20000000, histogram.getMaxMicros());
+        assertEquals((90 * 30 + 9 * 2000 + 20000000) / 100.0, histogram.getMeanMicros(), 1e-6);
+    }
+
+    @Test
+    public void boundsBelongToTheirBucket() {
+        LatencyHistogram histogram = new MetricsRegistry().histogram("test");
+        histogram.record(100 * MICROS);
+        assertEquals(100, histogram.getPercentileMicros(100));
+        histogram.record(-1);
+        assertEquals(50, histogram.getPercentileMicros(50));
+    }
+
+    @Test
+    public void reportListsAllMetrics() throws IOException {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("location.fixes").add(12);
+        registry.histogram("receiver.location").record(300 * MICROS);
+        registry.histogram("preferences.commit");
+
+        StringWriter writer = new StringWriter();
+        registry.writeReport(writer);
+        String report = writer.toString();
+        assertTrue(report, report.startsWith("uptime "));
+        assertTrue(report, report.matches("(?s).*location\\.fixes +12 .*/h\n.*"));
+        assertTrue(report, report.matches("(?s).*receiver\\.location +1 .*p50 500 .*"));
+        assertTrue(report, report.matches("(?s).*preferences\\.commit +0\n.*"));
+    }
+}
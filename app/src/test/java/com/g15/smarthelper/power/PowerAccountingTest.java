@@ -0,0 +1,121 @@
+package com.g15.smarthelper.power;
+
+import com.g15.smarthelper.Scenarios;
+import com.g15.smarthelper.store.MemoryScenarioStore;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import static com.g15.smarthelper.Scenarios.Scenario.SCENARIO_HOME;
+import static com.g15.smarthelper.Scenarios.Scenario.SCENARIO_MUSIC;
+import static com.g15.smarthelper.Scenarios.Scenario.SCENARIO_WARNING;
+import static org.junit.Assert.*;
+
+/**
+ * Tests how the {@link PowerAccounting} attributes events to the scenarios and days.
+ */
+public class PowerAccountingTest {
+
+    private static final TimeZone BERLIN = TimeZone.getTimeZone("Europe/Berlin");
+    private static final long DAY = 24 * 60 * 60 * 1000;
+
+    private Scenarios scenarios;
+    private long noon;
+
+    @Before
+    public void setUp() {
+        scenarios = new Scenarios(new MemoryScenarioStore(Scenarios.Scenario.values().length));
+        scenarios.enableScenario(SCENARIO_MUSIC);
+        scenarios.enableScenario(SCENARIO_HOME);
+        Calendar calendar = Calendar.getInstance(BERLIN);
+        calendar.clear();
+        calendar.set(2026, Calendar.JUNE, 1, 12, 0);
+        noon = calendar.getTimeInMillis();
+    }
+
+    @Test
+    public void sharedEventsAreSplitBetweenEnabledScenarios() {
+        PowerAccounting accounting = new PowerAccounting(scenarios, BERLIN, null);
+        accounting.onActivitySample(noon);
+        accounting.onActivitySample(noon + 1);
+        accounting.onActivitySample(noon + 2);
+
+        assertEquals(1500, accounting.getUnits(noon, SCENARIO_MUSIC, PowerAccounting.ACTIVITY_SAMPLE));
+        assertEquals(1500, accounting.getUnits(noon, SCENARIO_HOME, PowerAccounting.ACTIVITY_SAMPLE));
+        assertEquals(0, accounting.getUnits(noon, SCENARIO_WARNING, PowerAccounting.ACTIVITY_SAMPLE));
+        assertEquals(1500, accounting.getUnits(noon, SCENARIO_HOME, PowerAccounting.WAKEUP));
+
+        scenarios.enableScenario(SCENARIO_WARNING);
+        accounting.onWakeup(0, noon);
+        // The rest of the split goes to the first scenario.
+        assertEquals(1500 + 334, accounting.getUnits(noon, SCENARIO_MUSIC, PowerAccounting.WAKEUP));
+        assertEquals(333, accounting.getUnits(noon, SCENARIO_WARNING, PowerAccounting.WAKEUP));
+    }
+
+    @Test
+    public void fixesGoToTheScenarioOfTheNearestFence() {
+        PowerAccounting accounting = new PowerAccounting(scenarios, BERLIN, null);
+        accounting.onLocationFixes(4, true, noon);
+        accounting.setLocationCause(SCENARIO_WARNING);
+        accounting.onLocationFixes(4, true, noon);
+        accounting.onLocationFixes(2, false, noon);
+
+        assertEquals(2000, accounting.getUnits(noon, SCENARIO_MUSIC, PowerAccounting.FIX_HIGH_ACCURACY));
+        assertEquals(4000, accounting.getUnits(noon, SCENARIO_WARNING, PowerAccounting.FIX_HIGH_ACCURACY));
+        assertEquals(2000, accounting.getUnits(noon, SCENARIO_WARNING, PowerAccounting.FIX));
+        assertEquals(2000, accounting.getUnits(noon, SCENARIO_WARNING, PowerAccounting.WAKEUP));
+
+        accounting.onWakeup(1 << SCENARIO_HOME.ordinal(), noon);
+        accounting.onAction(SCENARIO_HOME, noon);
+        assertEquals(1000, accounting.getUnits(noon, SCENARIO_HOME, PowerAccounting.ACTION));
+        assertEquals(2 * 7 + 0.5 * 0.1 + 0.1 + 0.5,
+                accounting.getEnergy(noon, SCENARIO_HOME), 1e-9);
+    }
+
+    @Test
+    public void daysAreCountedSeparatelyForAWeek() {
+        PowerAccounting accounting = new PowerAccounting(scenarios, BERLIN, null);
+        accounting.onAction(SCENARIO_MUSIC, noon);
+        accounting.onAction(SCENARIO_MUSIC, noon + DAY);
+        accounting.onAction(SCENARIO_MUSIC, noon + DAY);
+        // Back to the first day, e.g. for a late delivery.
+        accounting.onAction(SCENARIO_MUSIC, noon + 1);
+
+        assertEquals(2000, accounting.getUnits(noon, SCENARIO_MUSIC, PowerAccounting.ACTION));
+        assertEquals(2000, accounting.getUnits(noon + DAY, SCENARIO_MUSIC, PowerAccounting.ACTION));
+        assertEquals(0, accounting.getUnits(noon + 2 * DAY, SCENARIO_MUSIC, PowerAccounting.ACTION));
+
+        // A week later the slot of the first day is reused.
+        accounting.onAction(SCENARIO_MUSIC, noon + PowerAccounting.DAYS * DAY);
+        assertEquals(0, accounting.getUnits(noon, SCENARIO_MUSIC, PowerAccounting.ACTION));
+        assertEquals(1000, accounting.getUnits(noon + PowerAccounting.DAYS * DAY, SCENARIO_MUSIC,
+                PowerAccounting.ACTION));
+
+        String report = accounting.getReport(noon + PowerAccounting.DAYS * DAY);
+        assertTrue(report, report.contains("2026-06-08\n"));
+        assertTrue(report, report.contains("2026-06-02\n"));
+        assertFalse(report, report.contains("2026-06-01\n"));
+    }
+
+    @Test
+    public void countsSurviveARestart() throws IOException {
+        File file = File.createTempFile("power", ".dat");
+        file.deleteOnExit();
+        assertTrue(file.delete());
+
+        PowerAccounting accounting = new PowerAccounting(scenarios, BERLIN, file);
+        accounting.setLocationCause(SCENARIO_HOME);
+        accounting.onLocationFixes(3, false, noon);
+        accounting.saveIfDue(noon);
+
+        PowerAccounting restarted = new PowerAccounting(scenarios, BERLIN, file);
+        assertEquals(3000, restarted.getUnits(noon, SCENARIO_HOME, PowerAccounting.FIX));
+        restarted.onLocationFixes(1, false, noon);
+        assertEquals(4000, restarted.getUnits(noon, SCENARIO_HOME, PowerAccounting.FIX));
+    }
+}
@@ -0,0 +1,97 @@
+package com.g15.smarthelper.replay;
+
+import com.g15.smarthelper.Constants;
+import com.g15.smarthelper.Scenarios;
+import com.g15.smarthelper.engine.ActivityFusion;
+import com.g15.smarthelper.engine.LocationBatch;
+import com.g15.smarthelper.engine.ScenarioEvaluator;
+import com.g15.smarthelper.rules.Rule;
+
+/**
+ * Replays a {@link Trace} through the same steps the receivers and the
+ * {@link com.g15.smarthelper.engine.ScenarioEngine} take for every delivery: location results
+ * are copied into a {@link LocationBatch} and evaluated, activity results are fused and the
+ * fused activity is evaluated, and the state is flushed afterwards. The time window alarm is
+ * simulated with a {@link VirtualClock}, so a trace of a whole day replays in a moment.
+ *
+ * The Android parts of the engine, publishing the
+ * {@link com.g15.smarthelper.state.EngineState} and running the actions, are left out; the
+ * triggered rules are counted instead.
+ */
+public class ReplayHarness implements ScenarioEvaluator.TriggerListener {
+
+    private final Scenarios scenarios;
+    private int[] triggers;
+
+    /**
+     * Creates a harness for configured scenarios. Their state is changed by the replay.
+     * @param scenarios The scenarios with their rules and fences.
+     */
+    public ReplayHarness(Scenarios scenarios) {
+        this.scenarios = scenarios;
+    }
+
+    /**
+     * Replays a trace from the current state of the scenarios.
+     * @param trace The trace to replay.
+     * @return The triggers and timings of the replay.
+     */
+    public ReplayResult replay(Trace trace) {
+        Rule[] rules = scenarios.getRuleTable().getRules();
+        triggers = new int[rules.length];
+        TriggerOracle oracle = new TriggerOracle(scenarios);
+        ActivityFusion fusion = new ActivityFusion(Constants.ACTIVITY_WINDOW_SIZE,
+                Constants.CONFIDENCE);
+        ScenarioEvaluator evaluator = new ScenarioEvaluator(scenarios, this);
+
+        VirtualClock clock = new VirtualClock(0);
+        long alarm = Long.MAX_VALUE;
+        long[] latencies = new long[trace.getEvents().size()];
+        int index = 0;
+        for (TraceEvent event : trace.getEvents()) {
+            if (alarm <= event.time) {
+                clock.advanceTo(alarm);
+                evaluator.evaluateTimeWindows(clock.now());
+                oracle.observeTime(clock.now());
+            }
+            clock.advanceTo(event.time);
+
+            long start = System.nanoTime();
+            deliver(event, fusion, evaluator);
+            scenarios.flushState();
+            latencies[index++] = System.nanoTime() - start;
+
+            oracle.observe(event);
+            alarm = scenarios.getEnteredRules().length > 0
+                    ? scenarios.getNextTimeFrameTransition(clock.now()) : Long.MAX_VALUE;
+        }
+
+        String[] keys = new String[rules.length];
+        for (Rule rule : rules) {
+            keys[rule.getIndex()] = rule.getKey();
+        }
+        return new ReplayResult(trace.getName(), keys, oracle.getExpected(), triggers,
+                trace.getSampleCount(), latencies);
+    }
+
+    private void deliver(TraceEvent event, ActivityFusion fusion, ScenarioEvaluator evaluator) {
+        if (event.isLocation()) {
+            LocationBatch batch = new LocationBatch(event.size());
+            for (int i = 0; i < event.size(); i++) {
+                batch.add(event.latitudes[i], event.longitudes[i], event.times[i],
+                        event.speeds[i]);
+            }
+            evaluator.evaluateLocations(batch);
+        } else {
+            int activityType = fusion.fuse(event.activityTypes, event.confidences, event.size());
+            if (activityType != ActivityFusion.NO_DECISION) {
+                evaluator.evaluateActivity(activityType, event.time);
+            }
+        }
+    }
+
+    @Override
+    public void onRuleTriggered(Rule rule) {
+        triggers[rule.getIndex()]++;
+    }
+}
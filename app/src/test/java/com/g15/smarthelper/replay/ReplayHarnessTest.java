@@ -0,0 +1,157 @@
+package com.g15.smarthelper.replay;
+
+import com.g15.smarthelper.Scenarios;
+import com.g15.smarthelper.eventlog.EventLog;
+import com.g15.smarthelper.rules.RuleDefinition;
+import com.g15.smarthelper.store.MemoryScenarioStore;
+import com.google.android.gms.location.DetectedActivity;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Replays synthetic and recorded traces through the scenario evaluation and checks the triggers
+ * against the true trajectories. The reports include the throughput of the evaluation and are only
+ * printed if the system property {@code replay.report} is true.
+ */
+public class ReplayHarnessTest {
+
+    private static final boolean REPORT = Boolean.getBoolean("replay.report");
+
+    private static final String MUSIC = Scenarios.Scenario.SCENARIO_MUSIC.name();
+    private static final String WARNING = Scenarios.Scenario.SCENARIO_WARNING.name();
+    private static final String HOME = Scenarios.Scenario.SCENARIO_HOME.name();
+
+    @Test
+    public void commute_triggersEveryScenarioOnce() {
+        Trace trace = TraceGenerators.commute(1, morning());
+        ReplayResult result = new ReplayHarness(darmstadt()).replay(trace);
+        report(result);
+
+        assertEquals(trace.getEvents().size(), result.getDeliveries());
+        assertEquals(trace.getSampleCount(), result.getSamples());
+        assertTrue(result.isCorrect());
+        assertEquals(0, result.getSpuriousTriggers());
+        assertEquals(1, result.getActualTriggers(WARNING));
+        assertEquals(1, result.getActualTriggers(MUSIC));
+        // The user is home at night, when the home scenario is active.
+        assertEquals(1, result.getActualTriggers(HOME));
+    }
+
+    @Test
+    public void urbanJitter_doesNotTriggerAgain() {
+        Scenarios scenarios = new Scenarios(new MemoryScenarioStore(Scenarios.Scenario.values().length));
+        scenarios.setScenarioFence(Scenarios.Scenario.SCENARIO_WARNING,
+                TraceGenerators.MARKET_LATITUDE, TraceGenerators.MARKET_LONGITUDE, 100);
+        // Stand 80 m north of the center, 20 m inside the boundary.
+        Trace trace = TraceGenerators.urbanJitter(2, morning(),
+                TraceGenerators.MARKET_LATITUDE + 80 / 111200.0, TraceGenerators.MARKET_LONGITUDE,
+                15, 2 * 60 * 60 * 1000);
+        ReplayResult result = new ReplayHarness(scenarios).replay(trace);
+        report(result);
+
+        assertEquals(trace.getEvents().size(), result.getDeliveries());
+        assertEquals(1, result.getExpectedTriggers(WARNING));
+        assertEquals(1, result.getActualTriggers(WARNING));
+    }
+
+    @Test
+    public void recordedTrace_replaysLikeTheOriginal() throws IOException {
+        Trace original = TraceGenerators.commute(3, morning());
+        File file = File.createTempFile("replay", ".log");
+        file.deleteOnExit();
+        EventLog log = EventLog.open(file, original.getSampleCount());
+        for (TraceEvent event : original.getEvents()) {
+            for (int i = 0; i < event.size(); i++) {
+                if (event.isLocation()) {
+                    log.logLocation(event.times[i], event.latitudes[i], event.longitudes[i],
+                            event.speeds[i]);
+                } else {
+                    log.logActivity(event.time, event.activityTypes[i], event.confidences[i]);
+                }
+            }
+        }
+
+        Trace recorded = Trace.fromEventLog("recorded", EventLog.readFile(file), 4);
+        assertEquals(original.getEvents().size(), recorded.getEvents().size());
+        ReplayResult expected = new ReplayHarness(darmstadt()).replay(original);
+        ReplayResult actual = new ReplayHarness(darmstadt()).replay(recorded);
+        for (String key : new String[] {MUSIC, WARNING, HOME}) {
+            assertEquals(expected.getActualTriggers(key), actual.getActualTriggers(key));
+        }
+    }
+
+    @Test
+    public void randomWalk_throughputWithManyFences() {
+        Scenarios scenarios = new Scenarios(new MemoryScenarioStore(Scenarios.Scenario.values().length));
+        scenarios.setRuleDefinitions(randomRules(new Random(4), 200));
+        Trace trace = TraceGenerators.randomWalk(5, morning(), TraceGenerators.MARKET_LATITUDE,
+                TraceGenerators.MARKET_LONGITUDE, 3000, 100000);
+        ReplayResult result = new ReplayHarness(scenarios).replay(trace);
+        report(result);
+
+        assertEquals(100000, result.getDeliveries());
+        assertEquals(trace.getSampleCount(), result.getSamples());
+        assertTrue(result.getLatencyNanos(50) <= result.getLatencyNanos(99));
+        // The walk often only grazes a fence for a single noisy fix, which the dwell filter is
+        // meant to ignore, so not every visit of the true trajectory triggers.
+        assertTrue("Recall " + result.getRecall(), result.getRecall() > 0.8);
+        assertTrue("Spurious " + result.getSpuriousTriggers(),
+                result.getSpuriousTriggers() < result.getDeliveries() / 1000);
+    }
+
+    private static void report(ReplayResult result) {
+        if (REPORT) {
+            System.out.print(result);
+        }
+    }
+
+    /**
+     * The scenarios with the default rules and fences around the places of the commute.
+     */
+    private static Scenarios darmstadt() {
+        Scenarios scenarios = new Scenarios(new MemoryScenarioStore(Scenarios.Scenario.values().length));
+        scenarios.setScenarioFence(Scenarios.Scenario.SCENARIO_MUSIC,
+                TraceGenerators.PARK_LATITUDE, TraceGenerators.PARK_LONGITUDE, 150);
+        scenarios.setScenarioFence(Scenarios.Scenario.SCENARIO_WARNING,
+                TraceGenerators.MARKET_LATITUDE, TraceGenerators.MARKET_LONGITUDE, 60);
+        scenarios.setScenarioFence(Scenarios.Scenario.SCENARIO_HOME,
+                TraceGenerators.HOME_LATITUDE, TraceGenerators.HOME_LONGITUDE, 50);
+        return scenarios;
+    }
+
+    private static List<RuleDefinition> randomRules(Random random, int count) {
+        int[] activities = {DetectedActivity.WALKING, DetectedActivity.RUNNING,
+                DetectedActivity.ON_BICYCLE, DetectedActivity.STILL};
+        Scenarios.Scenario[] scenarios = Scenarios.Scenario.values();
+        List<RuleDefinition> rules = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            rules.add(new RuleDefinition("rule" + i, scenarios[i % scenarios.length],
+                    activities[random.nextInt(activities.length)], 0,
+                    RuleDefinition.MINUTES_PER_DAY,
+                    TraceGenerators.MARKET_LATITUDE + (random.nextDouble() - 0.5) * 0.05,
+                    TraceGenerators.MARKET_LONGITUDE + (random.nextDouble() - 0.5) * 0.08,
+                    50 + random.nextInt(250)));
+        }
+        return rules;
+    }
+
+    /**
+     * 2026-06-01 07:30 in Darmstadt.
+     */
+    private static long morning() {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("Europe/Berlin"));
+        calendar.clear();
+        calendar.set(2026, Calendar.JUNE, 1, 7, 30);
+        return calendar.getTimeInMillis();
+    }
+}
@@ -0,0 +1,141 @@
+package com.g15.smarthelper.replay;
+
+import java.util.Arrays;
+
+/**
+ * The outcome of replaying a {@link Trace}: the triggers of every rule compared to the
+ * {@link TriggerOracle} and the time the engine spent on the deliveries.
+ */
+public final class ReplayResult {
+
+    private final String traceName;
+    private final String[] ruleKeys;
+    private final int[] expected;
+    private final int[] actual;
+    private final int deliveries;
+    private final int samples;
+    private final long elapsedNanos;
+    // The processing time of every delivery, sorted.
+    private final long[] latencies;
+
+    ReplayResult(String traceName, String[] ruleKeys, int[] expected, int[] actual, int samples,
+                 long[] latencies) {
+        this.traceName = traceName;
+        this.ruleKeys = ruleKeys;
+        this.expected = expected;
+        this.actual = actual;
+        this.deliveries = latencies.length;
+        this.samples = samples;
+        long sum = 0;
+        for (long latency : latencies) {
+            sum += latency;
+        }
+        this.elapsedNanos = sum;
+        this.latencies = latencies.clone();
+        Arrays.sort(this.latencies);
+    }
+
+    /**
+     * @param ruleKey The key of a rule.
+     * @return How often the rule should have triggered.
+     */
+    public int getExpectedTriggers(String ruleKey) {
+        return expected[indexOf(ruleKey)];
+    }
+
+    /**
+     * @param ruleKey The key of a rule.
+     * @return How often the rule triggered.
+     */
+    public int getActualTriggers(String ruleKey) {
+        return actual[indexOf(ruleKey)];
+    }
+
+    /**
+     * @return true if every rule triggered as often as it should have.
+     */
+    public boolean isCorrect() {
+        return Arrays.equals(expected, actual);
+    }
+
+    /**
+     * @return The share of the expected triggers that happened, without the surplus triggers.
+     */
+    public double getRecall() {
+        int expectedCount = 0;
+        int matched = 0;
+        for (int i = 0; i < expected.length; i++) {
+            expectedCount += expected[i];
+            matched += Math.min(expected[i], actual[i]);
+        }
+        return expectedCount == 0 ? 1 : (double) matched / expectedCount;
+    }
+
+    /**
+     * @return The number of triggers beyond the expected ones.
+     */
+    public int getSpuriousTriggers() {
+        int spurious = 0;
+        for (int i = 0; i < expected.length; i++) {
+            spurious += Math.max(0, actual[i] - expected[i]);
+        }
+        return spurious;
+    }
+
+    public int getDeliveries() {
+        return deliveries;
+    }
+
+    public int getSamples() {
+        return samples;
+    }
+
+    public double getDeliveriesPerSecond() {
+        return deliveries * 1e9 / Math.max(elapsedNanos, 1);
+    }
+
+    public double getSamplesPerSecond() {
+        return samples * 1e9 / Math.max(elapsedNanos, 1);
+    }
+
+    /**
+     * @param percentile The percentile from 0 to 100.
+     * @return The processing time of a delivery at the percentile in nanoseconds.
+     */
+    public long getLatencyNanos(double percentile) {
+        if (latencies.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100 * latencies.length) - 1;
+        return latencies[Math.max(0, Math.min(index, latencies.length - 1))];
+    }
+
+    private int indexOf(String ruleKey) {
+        for (int i = 0; i < ruleKeys.length; i++) {
+            if (ruleKeys[i].equals(ruleKey)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown rule " + ruleKey);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder();
+        report.append(traceName).append(": ").append(deliveries).append(" deliveries, ")
+                .append(samples).append(" samples\n");
+        report.append(String.format("  throughput: %.0f deliveries/s, %.0f samples/s%n",
+                getDeliveriesPerSecond(), getSamplesPerSecond()));
+        report.append(String.format("  latency: p50 %.1f us, p99 %.1f us, max %.1f us%n",
+                getLatencyNanos(50) / 1e3, getLatencyNanos(99) / 1e3, getLatencyNanos(100) / 1e3));
+        report.append(String.format("  triggers: recall %.3f, %d spurious%n", getRecall(),
+                getSpuriousTriggers()));
+        for (int i = 0; i < ruleKeys.length; i++) {
+            if (expected[i] != 0 || actual[i] != 0) {
+                report.append("    ").append(ruleKeys[i]).append(": expected ").append(expected[i])
+                        .append(", actual ").append(actual[i]).append('\n');
+            }
+        }
+        return report.toString();
+    }
+}
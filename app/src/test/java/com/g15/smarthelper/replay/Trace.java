@@ -0,0 +1,116 @@
+package com.g15.smarthelper.replay;
+
+import com.g15.smarthelper.eventlog.EventRecord;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A sequence of deliveries ordered by time, generated by the {@link TraceGenerators} or read
+ * from a recorded {@link com.g15.smarthelper.eventlog.EventLog}.
+ */
+public final class Trace {
+
+    private final String name;
+    private final List<TraceEvent> events;
+
+    public Trace(String name, List<TraceEvent> events) {
+        this.name = name;
+        this.events = new ArrayList<>(events);
+        Collections.sort(this.events, new Comparator<TraceEvent>() {
+            @Override
+            public int compare(TraceEvent first, TraceEvent second) {
+                return Long.compare(first.time, second.time);
+            }
+        });
+    }
+
+    /**
+     * Builds a trace from the records of an event log. Location records of the same time and
+     * activity records of the same time are delivered together. The true position and activity
+     * are not known, so the observed values are used instead.
+     * @param name The name of the trace.
+     * @param records The records, ordered by sequence.
+     * @param fixesPerResult The number of consecutive location records delivered together.
+     * @return The trace.
+     */
+    public static Trace fromEventLog(String name, List<EventRecord> records, int fixesPerResult) {
+        List<TraceEvent> events = new ArrayList<>();
+        List<EventRecord> fixes = new ArrayList<>();
+        List<EventRecord> activities = new ArrayList<>();
+        for (EventRecord record : records) {
+            if (record.getType() == EventRecord.TYPE_LOCATION) {
+                fixes.add(record);
+                if (fixes.size() == fixesPerResult) {
+                    events.add(toLocations(fixes));
+                    fixes.clear();
+                }
+            } else if (record.getType() == EventRecord.TYPE_ACTIVITY) {
+                if (!activities.isEmpty() && activities.get(0).getTime() != record.getTime()) {
+                    events.add(toActivities(activities));
+                    activities.clear();
+                }
+                activities.add(record);
+            }
+        }
+        if (!fixes.isEmpty()) {
+            events.add(toLocations(fixes));
+        }
+        if (!activities.isEmpty()) {
+            events.add(toActivities(activities));
+        }
+        return new Trace(name, events);
+    }
+
+    private static TraceEvent toLocations(List<EventRecord> fixes) {
+        int size = fixes.size();
+        double[] latitudes = new double[size];
+        double[] longitudes = new double[size];
+        long[] times = new long[size];
+        float[] speeds = new float[size];
+        for (int i = 0; i < size; i++) {
+            EventRecord fix = fixes.get(i);
+            latitudes[i] = fix.getLatitude();
+            longitudes[i] = fix.getLongitude();
+            times[i] = fix.getTime();
+            speeds[i] = fix.getValue();
+        }
+        return TraceEvent.locations(latitudes, longitudes, times, speeds, latitudes, longitudes);
+    }
+
+    private static TraceEvent toActivities(List<EventRecord> activities) {
+        int size = activities.size();
+        int[] types = new int[size];
+        int[] confidences = new int[size];
+        int best = 0;
+        for (int i = 0; i < size; i++) {
+            types[i] = activities.get(i).getCode();
+            confidences[i] = (int) activities.get(i).getValue();
+            if (confidences[i] > confidences[best]) {
+                best = i;
+            }
+        }
+        return TraceEvent.activities(activities.get(0).getTime(), types, confidences, types[best]);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<TraceEvent> getEvents() {
+        return Collections.unmodifiableList(events);
+    }
+
+    /**
+     * @return The number of fixes and probable activities of all deliveries.
+     */
+    public int getSampleCount() {
+        int count = 0;
+        for (TraceEvent event : events) {
+            count += event.size();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,69 @@
+package com.g15.smarthelper.replay;
+
+/**
+ * A delivery of a trace: either the fixes of one location result or the probable activities of
+ * one activity recognition result. Besides the observed values the true position and activity
+ * are kept, which the correctness oracle uses.
+ */
+public final class TraceEvent {
+
+    final long time;
+    final double[] latitudes;
+    final double[] longitudes;
+    final long[] times;
+    final float[] speeds;
+    final double[] trueLatitudes;
+    final double[] trueLongitudes;
+    final int[] activityTypes;
+    final int[] confidences;
+    final int trueActivity;
+
+    private TraceEvent(long time, double[] latitudes, double[] longitudes, long[] times,
+                       float[] speeds, double[] trueLatitudes, double[] trueLongitudes,
+                       int[] activityTypes, int[] confidences, int trueActivity) {
+        this.time = time;
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.times = times;
+        this.speeds = speeds;
+        this.trueLatitudes = trueLatitudes;
+        this.trueLongitudes = trueLongitudes;
+        this.activityTypes = activityTypes;
+        this.confidences = confidences;
+        this.trueActivity = trueActivity;
+    }
+
+    /**
+     * Creates the delivery of a location result. The fixes have to be ordered by time.
+     */
+    public static TraceEvent locations(double[] latitudes, double[] longitudes, long[] times,
+                                       float[] speeds, double[] trueLatitudes,
+                                       double[] trueLongitudes) {
+        return new TraceEvent(times[times.length - 1], latitudes, longitudes, times, speeds,
+                trueLatitudes, trueLongitudes, null, null, -1);
+    }
+
+    /**
+     * Creates the delivery of an activity recognition result.
+     */
+    public static TraceEvent activities(long time, int[] activityTypes, int[] confidences,
+                                        int trueActivity) {
+        return new TraceEvent(time, null, null, null, null, null, null, activityTypes,
+                confidences, trueActivity);
+    }
+
+    public boolean isLocation() {
+        return latitudes != null;
+    }
+
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * @return The number of fixes or probable activities.
+     */
+    public int size() {
+        return isLocation() ? latitudes.length : activityTypes.length;
+    }
+}
@@ -0,0 +1,286 @@
+package com.g15.smarthelper.replay;
+
+import com.google.android.gms.location.DetectedActivity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates synthetic traces around Darmstadt. The true trajectory is simulated in steps of one
+ * second; location results with noisy fixes and activity results with noisy confidences are
+ * derived from it at the rates the app requests them.
+ */
+public final class TraceGenerators {
+
+    public static final double HOME_LATITUDE = 49.8727;
+    public static final double HOME_LONGITUDE = 8.6312;
+    public static final double MARKET_LATITUDE = 49.8721;
+    public static final double MARKET_LONGITUDE = 8.6512;
+    public static final double PARK_LATITUDE = 49.8775;
+    public static final double PARK_LONGITUDE = 8.6625;
+    public static final double OFFICE_LATITUDE = 49.8613;
+    public static final double OFFICE_LONGITUDE = 8.6834;
+
+    private static final double METERS_PER_DEGREE_LATITUDE = 111200;
+    private static final long SECOND = 1000;
+    private static final long MINUTE = 60 * SECOND;
+
+    private TraceGenerators() {
+    }
+
+    /**
+     * A day of a commuter: at home in the morning, walking over the market to the park, running
+     * in the park, driving to the office and back home late in the evening.
+     * @param seed The seed of the noise.
+     * @param start The start time, the trace covers about 16 hours.
+     * @return The trace.
+     */
+    public static Trace commute(long seed, long start) {
+        Builder builder = new Builder(new Random(seed), start, HOME_LATITUDE, HOME_LONGITUDE, 8);
+        builder.stay(5 * MINUTE, DetectedActivity.STILL);
+        builder.moveTo(MARKET_LATITUDE, MARKET_LONGITUDE, 1.4, DetectedActivity.WALKING);
+        builder.wander(5 * MINUTE, 20, 0.8, DetectedActivity.WALKING);
+        builder.moveTo(PARK_LATITUDE, PARK_LONGITUDE, 1.4, DetectedActivity.WALKING);
+        builder.wander(15 * MINUTE, 80, 3, DetectedActivity.RUNNING);
+        builder.moveTo(HOME_LATITUDE, HOME_LONGITUDE, 1.4, DetectedActivity.WALKING);
+        builder.stay(10 * MINUTE, DetectedActivity.STILL);
+        builder.moveTo(OFFICE_LATITUDE, OFFICE_LONGITUDE, 12, DetectedActivity.IN_VEHICLE);
+        builder.stay(13 * 60 * MINUTE, DetectedActivity.STILL);
+        builder.moveTo(HOME_LATITUDE, HOME_LONGITUDE, 12, DetectedActivity.IN_VEHICLE);
+        builder.stay(60 * MINUTE, DetectedActivity.STILL);
+        return builder.build("commute");
+    }
+
+    /**
+     * A random walk that changes its direction, speed and activity from time to time. Once it is
+     * further away from the start than the range, it heads back.
+     * @param seed The seed of the walk and the noise.
+     * @param start The start time.
+     * @param latitude The latitude of the start.
+     * @param longitude The longitude of the start.
+     * @param range The distance from the start in meters the walk stays within.
+     * @param deliveries The number of location and activity results to generate.
+     * @return The trace.
+     */
+    public static Trace randomWalk(long seed, long start, double latitude, double longitude,
+                                   double range, int deliveries) {
+        Random random = new Random(seed);
+        Builder builder = new Builder(random, start, latitude, longitude, 5);
+        int[] activities = {DetectedActivity.WALKING, DetectedActivity.RUNNING,
+                DetectedActivity.ON_BICYCLE, DetectedActivity.STILL};
+        double[] speeds = {1.4, 3, 6, 0};
+        while (builder.events.size() < deliveries) {
+            int choice = random.nextInt(activities.length);
+            double north = (latitude - builder.latitude) * METERS_PER_DEGREE_LATITUDE;
+            double east = (longitude - builder.longitude) * builder.metersPerDegreeLongitude();
+            double heading = Math.hypot(north, east) > range
+                    ? Math.atan2(east, north) + random.nextGaussian() * 0.5
+                    : random.nextDouble() * 2 * Math.PI;
+            long duration = (1 + random.nextInt(10)) * MINUTE;
+            builder.walk(duration, heading, speeds[choice], activities[choice]);
+        }
+        List<TraceEvent> events = builder.events.subList(0, deliveries);
+        return new Trace("random walk", events);
+    }
+
+    /**
+     * A user standing inside a fence close to its boundary, with the noise and the occasional
+     * multipath outliers of a dense urban area.
+     * @param seed The seed of the noise.
+     * @param start The start time.
+     * @param latitude The latitude of the true position.
+     * @param longitude The longitude of the true position.
+     * @param noise The standard deviation of the fixes in meters.
+     * @param duration The duration of the trace in milliseconds.
+     * @return The trace.
+     */
+    public static Trace urbanJitter(long seed, long start, double latitude, double longitude,
+                                    double noise, long duration) {
+        Builder builder = new Builder(new Random(seed), start, latitude, longitude, noise);
+        builder.outlierProbability = 0.02;
+        builder.stay(duration, DetectedActivity.WALKING);
+        return builder.build("urban jitter");
+    }
+
+    /**
+     * Simulates the true trajectory and emits the results derived from it.
+     */
+    private static final class Builder {
+
+        private static final long FIX_INTERVAL = 20 * SECOND;
+        private static final long ACTIVITY_INTERVAL = 5 * SECOND;
+        private static final int FIXES_PER_RESULT = 4;
+        private static final double OUTLIER_DISTANCE = 150;
+
+        final Random random;
+        final double noise;
+        final List<TraceEvent> events = new ArrayList<>();
+        double outlierProbability;
+
+        long time;
+        double latitude;
+        double longitude;
+        double speed;
+        int activity;
+        long nextFix;
+        long nextActivity;
+
+        final double[] latitudes = new double[FIXES_PER_RESULT];
+        final double[] longitudes = new double[FIXES_PER_RESULT];
+        final long[] times = new long[FIXES_PER_RESULT];
+        final float[] speeds = new float[FIXES_PER_RESULT];
+        final double[] trueLatitudes = new double[FIXES_PER_RESULT];
+        final double[] trueLongitudes = new double[FIXES_PER_RESULT];
+        int pending;
+
+        Builder(Random random, long start, double latitude, double longitude, double noise) {
+            this.random = random;
+            this.time = start;
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.noise = noise;
+            this.nextFix = start;
+            this.nextActivity = start;
+            this.activity = DetectedActivity.STILL;
+        }
+
+        void stay(long duration, int activity) {
+            walk(duration, 0, 0, activity);
+        }
+
+        void walk(long duration, double heading, double speed, int activity) {
+            this.activity = activity;
+            this.speed = speed;
+            for (long end = time + duration; time < end; ) {
+                step(Math.cos(heading) * speed, Math.sin(heading) * speed);
+            }
+        }
+
+        void moveTo(double latitude, double longitude, double speed, int activity) {
+            this.activity = activity;
+            this.speed = speed;
+            while (true) {
+                double north = (latitude - this.latitude) * METERS_PER_DEGREE_LATITUDE;
+                double east = (longitude - this.longitude) * metersPerDegreeLongitude();
+                double distance = Math.hypot(north, east);
+                if (distance <= speed) {
+                    this.latitude = latitude;
+                    this.longitude = longitude;
+                    step(0, 0);
+                    return;
+                }
+                step(north / distance * speed, east / distance * speed);
+            }
+        }
+
+        /**
+         * Moves around randomly without getting further than the range from the current position.
+         */
+        void wander(long duration, double range, double speed, int activity) {
+            double centerLatitude = latitude;
+            double centerLongitude = longitude;
+            this.activity = activity;
+            this.speed = speed;
+            double heading = random.nextDouble() * 2 * Math.PI;
+            for (long end = time + duration; time < end; ) {
+                double north = (latitude - centerLatitude) * METERS_PER_DEGREE_LATITUDE;
+                double east = (longitude - centerLongitude) * metersPerDegreeLongitude();
+                if (Math.hypot(north, east) > range) {
+                    heading = Math.atan2(-east, -north) + random.nextGaussian() * 0.3;
+                } else {
+                    heading += random.nextGaussian() * 0.2;
+                }
+                step(Math.cos(heading) * speed, Math.sin(heading) * speed);
+            }
+        }
+
+        /**
+         * Moves the true position for one second and emits the results that are due.
+         */
+        private void step(double north, double east) {
+            latitude += north / METERS_PER_DEGREE_LATITUDE;
+            longitude += east / metersPerDegreeLongitude();
+            time += SECOND;
+            if (time >= nextFix) {
+                addFix();
+                nextFix += FIX_INTERVAL;
+            }
+            if (time >= nextActivity) {
+                addActivities();
+                nextActivity += ACTIVITY_INTERVAL;
+            }
+        }
+
+        private void addFix() {
+            double error = noise;
+            if (random.nextDouble() < outlierProbability) {
+                error = OUTLIER_DISTANCE;
+            }
+            latitudes[pending] = latitude + random.nextGaussian() * error / METERS_PER_DEGREE_LATITUDE;
+            longitudes[pending] = longitude + random.nextGaussian() * error / metersPerDegreeLongitude();
+            times[pending] = time;
+            speeds[pending] = (float) Math.max(0, speed + random.nextGaussian() * 0.3);
+            trueLatitudes[pending] = latitude;
+            trueLongitudes[pending] = longitude;
+            pending++;
+            if (pending == FIXES_PER_RESULT) {
+                flushFixes();
+            }
+        }
+
+        private void flushFixes() {
+            if (pending == 0) {
+                return;
+            }
+            events.add(TraceEvent.locations(copy(latitudes), copy(longitudes), copy(times),
+                    copy(speeds), copy(trueLatitudes), copy(trueLongitudes)));
+            pending = 0;
+        }
+
+        /**
+         * Reports the true activity with a high confidence, together with a second activity. Now
+         * and then the second activity is reported as the more probable one.
+         */
+        private void addActivities() {
+            int other = activity == DetectedActivity.STILL
+                    ? DetectedActivity.TILTING : DetectedActivity.STILL;
+            int confidence = 75 + random.nextInt(26);
+            if (random.nextDouble() < 0.05) {
+                confidence = 20 + random.nextInt(20);
+            }
+            int[] types;
+            int[] confidences;
+            if (activity == DetectedActivity.WALKING || activity == DetectedActivity.RUNNING) {
+                types = new int[] {DetectedActivity.ON_FOOT, activity, other};
+                confidences = new int[] {confidence, confidence, 100 - confidence};
+            } else {
+                types = new int[] {activity, other};
+                confidences = new int[] {confidence, 100 - confidence};
+            }
+            events.add(TraceEvent.activities(time, types, confidences, activity));
+        }
+
+        private double metersPerDegreeLongitude() {
+            return METERS_PER_DEGREE_LATITUDE * Math.cos(Math.toRadians(latitude));
+        }
+
+        Trace build(String name) {
+            flushFixes();
+            return new Trace(name, events);
+        }
+
+        private double[] copy(double[] values) {
+            return Arrays.copyOf(values, pending);
+        }
+
+        private long[] copy(long[] values) {
+            return Arrays.copyOf(values, pending);
+        }
+
+        private float[] copy(float[] values) {
+            return Arrays.copyOf(values, pending);
+        }
+    }
+}
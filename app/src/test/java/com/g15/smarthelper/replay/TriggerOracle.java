@@ -0,0 +1,76 @@
+package com.g15.smarthelper.replay;
+
+import com.g15.smarthelper.Scenarios;
+import com.g15.smarthelper.fence.Fence;
+import com.g15.smarthelper.rules.Rule;
+
+/**
+ * Decides from the true trajectory and activity of a trace how often every rule should trigger.
+ * A visit of a fence starts when the true position is inside the radius and ends when it is
+ * beyond the exit radius; a rule triggers at most once per visit, as soon as the true activity
+ * is its activity within its time window.
+ */
+final class TriggerOracle {
+
+    private final Scenarios scenarios;
+    private final Rule[] rules;
+    private final boolean[] inside;
+    private final boolean[] triggered;
+    private final int[] expected;
+    private int activity = -1;
+
+    TriggerOracle(Scenarios scenarios) {
+        this.scenarios = scenarios;
+        this.rules = scenarios.getRuleTable().getRules();
+        this.inside = new boolean[rules.length];
+        this.triggered = new boolean[rules.length];
+        this.expected = new int[rules.length];
+    }
+
+    void observe(TraceEvent event) {
+        if (!event.isLocation()) {
+            activity = event.trueActivity;
+            for (Rule rule : rules) {
+                check(rule, event.time);
+            }
+            return;
+        }
+        for (int i = 0; i < event.size(); i++) {
+            double latitude = event.trueLatitudes[i];
+            double longitude = event.trueLongitudes[i];
+            for (Rule rule : rules) {
+                int index = rule.getIndex();
+                Fence fence = rule.getFence();
+                if (!inside[index] && fence.contains(latitude, longitude)) {
+                    inside[index] = true;
+                    triggered[index] = false;
+                } else if (inside[index] && !fence.isInsideExitRadius(latitude, longitude)) {
+                    inside[index] = false;
+                }
+                check(rule, event.times[i]);
+            }
+        }
+    }
+
+    /**
+     * Checks a rule again at the start or end of a time window.
+     */
+    void observeTime(long time) {
+        for (Rule rule : rules) {
+            check(rule, time);
+        }
+    }
+
+    private void check(Rule rule, long time) {
+        int index = rule.getIndex();
+        if (inside[index] && !triggered[index] && rule.getTargetActivity() == activity
+                && scenarios.isInTimeFrame(rule, time)) {
+            triggered[index] = true;
+            expected[index]++;
+        }
+    }
+
+    int[] getExpected() {
+        return expected.clone();
+    }
+}
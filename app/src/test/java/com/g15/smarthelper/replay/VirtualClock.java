@@ -0,0 +1,31 @@
+package com.g15.smarthelper.replay;
+
+/**
+ * A clock that only moves when the replay advances it, so a trace covering hours is replayed in
+ * milliseconds and the replay does not depend on the time it is run at.
+ */
+public class VirtualClock {
+
+    private long now;
+
+    public VirtualClock(long start) {
+        this.now = start;
+    }
+
+    /**
+     * @return The current virtual time in milliseconds since the epoch.
+     */
+    public long now() {
+        return now;
+    }
+
+    /**
+     * Moves the clock forward. The clock never goes back, so an earlier time is ignored.
+     * @param time The new time in milliseconds since the epoch.
+     */
+    public void advanceTo(long time) {
+        if (time > now) {
+            now = time;
+        }
+    }
+}
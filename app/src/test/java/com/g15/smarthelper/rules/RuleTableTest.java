@@ -0,0 +1,103 @@
+package com.g15.smarthelper.rules;
+
+import com.g15.smarthelper.Scenarios;
+import com.google.android.gms.location.DetectedActivity;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the compilation of rule definitions into a {@link RuleTable}.
+ */
+public class RuleTableTest {
+
+    @Test
+    public void rulesAreIndexedByActivity() {
+        List<RuleDefinition> definitions = new ArrayList<>();
+        definitions.add(new RuleDefinition("park", Scenarios.Scenario.SCENARIO_MUSIC,
+                DetectedActivity.RUNNING, 0, RuleDefinition.MINUTES_PER_DAY, 49.8775, 8.6525, 150));
+        definitions.add(new RuleDefinition("market", Scenarios.Scenario.SCENARIO_WARNING,
+                DetectedActivity.WALKING, 0, RuleDefinition.MINUTES_PER_DAY, 49.8521, 8.6463, 50));
+        definitions.add(new RuleDefinition("stadium", Scenarios.Scenario.SCENARIO_MUSIC,
+                DetectedActivity.RUNNING, 0, RuleDefinition.MINUTES_PER_DAY, 49.8600, 8.6700, 300));
+        RuleTable table = new RuleTable(definitions);
+
+        assertEquals(3, table.size());
+        Rule[] running = table.getRulesForActivity(DetectedActivity.RUNNING);
+        assertEquals(2, running.length);
+        assertEquals("park", running[0].getKey());
+        assertEquals("stadium", running[1].getKey());
+        assertEquals(1, table.getRulesForActivity(DetectedActivity.WALKING).length);
+        assertEquals(0, table.getRulesForActivity(DetectedActivity.STILL).length);
+        assertEquals(0, table.getRulesForActivity(-1).length);
+        assertEquals(0, table.getRulesForActivity(100).length);
+    }
+
+    @Test
+    public void rulesWithoutFenceAreSkipped() {
+        List<RuleDefinition> definitions = new ArrayList<>();
+        definitions.add(new RuleDefinition("unresolved", Scenarios.Scenario.SCENARIO_HOME,
+                DetectedActivity.STILL, 23 * 60, 4 * 60));
+        definitions.add(new RuleDefinition("home", Scenarios.Scenario.SCENARIO_HOME,
+                DetectedActivity.STILL, 23 * 60, 4 * 60).withFence(49.8727, 8.6312, 50));
+        RuleTable table = new RuleTable(definitions);
+
+        assertEquals(1, table.size());
+        Rule rule = table.getRules()[0];
+        assertEquals("home", rule.getKey());
+        assertEquals(0, rule.getIndex());
+        assertEquals(0, rule.getFence().getId());
+        assertTrue(table.contains(rule));
+        assertSame(rule.getFence(), table.getFenceIndex().query(49.8727, 8.6312)[0]);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void duplicateKeysAreRejected() {
+        List<RuleDefinition> definitions = new ArrayList<>();
+        definitions.add(new RuleDefinition("park", Scenarios.Scenario.SCENARIO_MUSIC,
+                DetectedActivity.RUNNING, 0, RuleDefinition.MINUTES_PER_DAY, 49.8775, 8.6525, 150));
+        definitions.add(new RuleDefinition("park", Scenarios.Scenario.SCENARIO_WARNING,
+                DetectedActivity.WALKING, 0, RuleDefinition.MINUTES_PER_DAY, 49.8521, 8.6463, 50));
+        new RuleTable(definitions);
+    }
+
+    @Test
+    public void timeWindowWrapsAroundMidnight() {
+        RuleDefinition home = RuleDefinition.getDefaults().get(2);
+        Rule night = new RuleTable(withFence(home)).getRules()[0];
+        assertTrue(night.isInTimeWindow(23 * 60));
+        assertTrue(night.isInTimeWindow(0));
+        assertTrue(night.isInTimeWindow(4 * 60 - 1));
+        assertFalse(night.isInTimeWindow(4 * 60));
+        assertFalse(night.isInTimeWindow(12 * 60));
+        assertFalse(night.isInTimeWindow(23 * 60 - 1));
+    }
+
+    @Test
+    public void hysteresisHasDefaults() {
+        RuleDefinition park = RuleDefinition.getDefaults().get(0).withFence(49.8775, 8.6525, 150);
+        assertEquals(180, park.getExitRadius());
+        assertEquals(RuleDefinition.DEFAULT_DWELL_COUNT, park.getDwellCount());
+        assertEquals(60, park.withFence(49.8775, 8.6525, 50).getExitRadius());
+
+        RuleDefinition configured = park.withHysteresis(400, 5).withFence(49.8775, 8.6525, 200);
+        assertEquals(400, configured.getExitRadius());
+        assertEquals(5, configured.getDwellCount());
+        assertEquals(500, configured.withFence(49.8775, 8.6525, 500).getExitRadius());
+
+        Rule rule = new RuleTable(withFence(configured)).getRules()[0];
+        assertEquals(50, rule.getFence().getRadius());
+        assertEquals(400, rule.getFence().getExitRadius());
+        assertEquals(5, rule.getDwellCount());
+    }
+
+    private static List<RuleDefinition> withFence(RuleDefinition definition) {
+        List<RuleDefinition> definitions = new ArrayList<>();
+        definitions.add(definition.withFence(49.8727, 8.6312, 50));
+        return definitions;
+    }
+}
@@ -0,0 +1,130 @@
+package com.g15.smarthelper.rules;
+
+import com.g15.smarthelper.Scenarios;
+import com.google.android.gms.location.DetectedActivity;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests the cached time windows of a {@link TimeSchedule} against the time of day, also on the
+ * days daylight saving time starts and ends.
+ */
+public class TimeScheduleTest {
+
+    private static final TimeZone BERLIN = TimeZone.getTimeZone("Europe/Berlin");
+    private static final long MINUTE = 60 * 1000;
+
+    @Test
+    public void windowsFollowTheTimeOfDay() {
+        RuleTable table = table(window("night", 23 * 60, 4 * 60), window("day", 9 * 60, 17 * 60));
+        TimeSchedule schedule = new TimeSchedule(table, BERLIN);
+        Rule night = table.getRules()[0];
+        Rule day = table.getRules()[1];
+
+        assertTrue(schedule.isActive(night, time(2026, 6, 1, 23, 30)));
+        assertFalse(schedule.isActive(day, time(2026, 6, 1, 23, 30)));
+        assertTrue(schedule.isActive(night, time(2026, 6, 2, 3, 59)));
+        assertFalse(schedule.isActive(night, time(2026, 6, 2, 4, 0)));
+        assertTrue(schedule.isActive(day, time(2026, 6, 2, 9, 0)));
+        assertFalse(schedule.isActive(day, time(2026, 6, 2, 17, 0)));
+        // Checking an earlier instant again recomputes the cached span.
+        assertTrue(schedule.isActive(night, time(2026, 6, 1, 23, 0)));
+    }
+
+    @Test
+    public void nextTransitionIsTheNextBoundary() {
+        TimeSchedule schedule = new TimeSchedule(
+                table(window("night", 23 * 60, 4 * 60), window("day", 9 * 60, 17 * 60)), BERLIN);
+        assertEquals(time(2026, 6, 2, 4, 0), schedule.getNextTransition(time(2026, 6, 1, 23, 30)));
+        assertEquals(time(2026, 6, 2, 9, 0), schedule.getNextTransition(time(2026, 6, 2, 4, 0)));
+        assertEquals(time(2026, 6, 2, 23, 0), schedule.getNextTransition(time(2026, 6, 2, 17, 1)));
+    }
+
+    @Test
+    public void wholeDayWindowNeverChanges() {
+        RuleTable table = table(window("always", 0, RuleDefinition.MINUTES_PER_DAY));
+        TimeSchedule schedule = new TimeSchedule(table, BERLIN);
+        assertTrue(schedule.isActive(table.getRules()[0], time(2026, 6, 1, 12, 0)));
+        assertEquals(Long.MAX_VALUE, schedule.getNextTransition(time(2026, 6, 1, 12, 0)));
+    }
+
+    @Test
+    public void windowStartingInSkippedHourStartsAfterTheGap() {
+        // On 2026-03-29 the clocks in Berlin jump from 02:00 to 03:00.
+        RuleTable table = table(window("early", 2 * 60 + 30, 5 * 60));
+        TimeSchedule schedule = new TimeSchedule(table, BERLIN);
+        Rule early = table.getRules()[0];
+        long gap = time(2026, 3, 29, 3, 0);
+
+        assertEquals(gap, schedule.getNextTransition(time(2026, 3, 29, 1, 0)));
+        assertFalse(schedule.isActive(early, gap - 1));
+        assertTrue(schedule.isActive(early, gap));
+    }
+
+    @Test
+    public void windowEndingInRepeatedHourEndsTwice() {
+        // On 2026-10-25 the clocks in Berlin go back from 03:00 to 02:00.
+        RuleTable table = table(window("early", 2 * 60 + 30, 5 * 60));
+        TimeSchedule schedule = new TimeSchedule(table, BERLIN);
+        Rule early = table.getRules()[0];
+        long setBack = time(2026, 10, 25, 1, 0) + 2 * 60 * MINUTE;
+        long firstStart = setBack - 30 * MINUTE;
+        long secondStart = setBack + 30 * MINUTE;
+
+        assertEquals(firstStart, schedule.getNextTransition(firstStart - 20 * MINUTE));
+        assertTrue(schedule.isActive(early, firstStart));
+        assertEquals(setBack, schedule.getNextTransition(firstStart));
+        assertFalse(schedule.isActive(early, setBack));
+        assertEquals(secondStart, schedule.getNextTransition(setBack));
+        assertTrue(schedule.isActive(early, secondStart));
+    }
+
+    @Test
+    public void cachedAnswersMatchTheTimeOfDay() {
+        RuleTable table = table(window("night", 23 * 60, 4 * 60), window("day", 9 * 60, 17 * 60),
+                window("noon", 12 * 60, 12 * 60 + 1), window("early", 2 * 60 + 30, 2 * 60 + 45));
+        TimeSchedule schedule = new TimeSchedule(table, BERLIN);
+        assertMatchesTimeOfDay(table, schedule, time(2026, 3, 27, 0, 0), time(2026, 4, 2, 0, 0));
+        assertMatchesTimeOfDay(table, schedule, time(2026, 10, 23, 0, 0), time(2026, 10, 28, 0, 0));
+    }
+
+    private static void assertMatchesTimeOfDay(RuleTable table, TimeSchedule schedule, long from,
+                                               long to) {
+        Calendar calendar = Calendar.getInstance(BERLIN);
+        for (long time = from; time < to; time += 7 * MINUTE) {
+            calendar.setTimeInMillis(time);
+            int minuteOfDay = calendar.get(Calendar.HOUR_OF_DAY) * 60 + calendar.get(Calendar.MINUTE);
+            for (Rule rule : table.getRules()) {
+                assertEquals(rule.getKey() + " at " + time, rule.isInTimeWindow(minuteOfDay),
+                        schedule.isActive(rule, time));
+            }
+        }
+    }
+
+    private static RuleDefinition window(String key, int start, int end) {
+        return new RuleDefinition(key, Scenarios.Scenario.SCENARIO_HOME, DetectedActivity.STILL,
+                start, end, 49.8727, 8.6312, 50);
+    }
+
+    private static RuleTable table(RuleDefinition... definitions) {
+        List<RuleDefinition> list = new ArrayList<>();
+        for (RuleDefinition definition : definitions) {
+            list.add(definition);
+        }
+        return new RuleTable(list);
+    }
+
+    private static long time(int year, int month, int day, int hour, int minute) {
+        Calendar calendar = Calendar.getInstance(BERLIN);
+        calendar.clear();
+        calendar.set(year, month - 1, day, hour, minute);
+        return calendar.getTimeInMillis();
+    }
+}
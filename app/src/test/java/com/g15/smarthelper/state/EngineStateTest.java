@@ -0,0 +1,102 @@
+package com.g15.smarthelper.state;
+
+import com.g15.smarthelper.Scenarios;
+import com.g15.smarthelper.rules.Rule;
+import com.g15.smarthelper.rules.RuleDefinition;
+import com.g15.smarthelper.rules.RuleTable;
+import com.google.android.gms.location.DetectedActivity;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests that the {@link EngineState} conflates the updates between two reads of an observer.
+ */
+public class EngineStateTest {
+
+    private static class CountingObserver implements EngineState.Observer {
+        int notifications;
+
+        @Override
+        public void onStateChanged() {
+            notifications++;
+        }
+    }
+
+    @Test
+    public void updatesAreConflatedUntilRead() {
+        EngineState state = new EngineState();
+        CountingObserver observer = new CountingObserver();
+        EngineState.Subscription subscription = state.subscribe(observer);
+        StateSnapshot snapshot = new StateSnapshot();
+
+        for (int i = 1; i <= 1000; i++) {
+            state.setLocation(49 + i / 1000.0, 8, i);
+        }
+        state.setActivity(DetectedActivity.WALKING);
+        assertEquals(1, observer.notifications);
+
+        subscription.read(snapshot);
+        assertTrue(snapshot.hasLocation());
+        assertEquals(50, snapshot.getLatitude(), 1e-9);
+        assertEquals(1000, snapshot.getLocationTime());
+        assertEquals(DetectedActivity.WALKING, snapshot.getActivityType());
+        assertEquals(1001, snapshot.getVersion());
+
+        state.setLocation(50, 8, 1001);
+        assertEquals(2, observer.notifications);
+    }
+
+    @Test
+    public void unchangedValuesDoNotNotify() {
+        EngineState state = new EngineState();
+        CountingObserver observer = new CountingObserver();
+        EngineState.Subscription subscription = state.subscribe(observer);
+        StateSnapshot snapshot = new StateSnapshot();
+
+        state.setActivity(DetectedActivity.STILL);
+        subscription.read(snapshot);
+        state.setActivity(DetectedActivity.STILL);
+        state.setEnteredRules(new Rule[0]);
+        assertEquals(1, observer.notifications);
+        assertEquals(StateSnapshot.NO_ACTIVITY, new StateSnapshot().getActivityType());
+    }
+
+    @Test
+    public void enteredRulesAreReducedToScenarios() {
+        RuleTable table = new RuleTable(Arrays.asList(
+                rule("music", Scenarios.Scenario.SCENARIO_MUSIC),
+                rule("home", Scenarios.Scenario.SCENARIO_HOME),
+                rule("home2", Scenarios.Scenario.SCENARIO_HOME)));
+        EngineState state = new EngineState();
+        StateSnapshot snapshot = new StateSnapshot();
+
+        state.setEnteredRules(new Rule[] {table.getRules()[1], table.getRules()[2]});
+        state.subscribe(new CountingObserver()).read(snapshot);
+        assertEquals(2, snapshot.getEnteredCount());
+        assertEquals(1 << Scenarios.Scenario.SCENARIO_HOME.ordinal(),
+                snapshot.getEnteredScenarios());
+    }
+
+    @Test
+    public void cancelledObserverIsNotNotified() {
+        EngineState state = new EngineState();
+        CountingObserver first = new CountingObserver();
+        CountingObserver second = new CountingObserver();
+        EngineState.Subscription subscription = state.subscribe(first);
+        state.subscribe(second);
+
+        subscription.cancel();
+        state.setActivity(DetectedActivity.RUNNING);
+        assertEquals(0, first.notifications);
+        assertEquals(1, second.notifications);
+    }
+
+    private static RuleDefinition rule(String key, Scenarios.Scenario scenario) {
+        return new RuleDefinition(key, scenario, DetectedActivity.STILL, 0,
+                RuleDefinition.MINUTES_PER_DAY, 49.8727, 8.6312, 50);
+    }
+}
@@ -0,0 +1,102 @@
+package com.g15.smarthelper.store;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link ScenarioStore} that keeps the values in memory only, so the tests run without SQLite.
+ */
+public class MemoryScenarioStore implements ScenarioStore {
+
+    private final ScenarioRow[] scenarios;
+    private final Map<String, RuleStateRow> ruleStates = new HashMap<>();
+    private boolean initialized;
+    private String rules;
+    private Integer currentActivity;
+    private int writeCount;
+
+    /**
+     * Creates an empty store.
+     * @param scenarioCount The number of scenarios.
+     */
+    public MemoryScenarioStore(int scenarioCount) {
+        scenarios = new ScenarioRow[scenarioCount];
+        for (int i = 0; i < scenarioCount; i++) {
+            scenarios[i] = new ScenarioRow(false, false, 0, 0, 0);
+        }
+    }
+
+    /**
+     * @return The number of write calls, each of which would be a transaction.
+     */
+    public synchronized int getWriteCount() {
+        return writeCount;
+    }
+
+    @Override
+    public synchronized ScenarioRow[] readScenarios() {
+        return scenarios.clone();
+    }
+
+    @Override
+    public synchronized void writeActivated(int scenario, boolean activated) {
+        ScenarioRow row = scenarios[scenario];
+        scenarios[scenario] = new ScenarioRow(activated, row.locationSet, row.latitude,
+                row.longitude, row.radius);
+        writeCount++;
+    }
+
+    @Override
+    public synchronized void writeFences(int[] scenarios, double[] latitudes,
+                                         double[] longitudes, int[] radii) {
+        for (int i = 0; i < scenarios.length; i++) {
+            this.scenarios[scenarios[i]] = new ScenarioRow(this.scenarios[scenarios[i]].activated,
+                    true, latitudes[i], longitudes[i], radii[i]);
+        }
+        writeCount++;
+    }
+
+    @Override
+    public synchronized boolean readInitialized() {
+        return initialized;
+    }
+
+    @Override
+    public synchronized void writeInitialized() {
+        initialized = true;
+        writeCount++;
+    }
+
+    @Override
+    public synchronized String readRules() {
+        return rules;
+    }
+
+    @Override
+    public synchronized void writeRules(String json) {
+        rules = json;
+        writeCount++;
+    }
+
+    @Override
+    public synchronized int readCurrentActivity(int defaultActivity) {
+        return currentActivity != null ? currentActivity : defaultActivity;
+    }
+
+    @Override
+    public synchronized Map<String, RuleStateRow> readRuleStates() {
+        return new HashMap<>(ruleStates);
+    }
+
+    @Override
+    public synchronized void writeState(int currentActivity, List<RuleStateRow> ruleStates) {
+        if (currentActivity != ACTIVITY_UNCHANGED) {
+            this.currentActivity = currentActivity;
+        }
+        for (RuleStateRow row : ruleStates) {
+            this.ruleStates.put(row.ruleKey, row);
+        }
+        writeCount++;
+    }
+}
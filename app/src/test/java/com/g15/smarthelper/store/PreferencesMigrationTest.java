@@ -0,0 +1,114 @@
+package com.g15.smarthelper.store;
+
+import com.g15.smarthelper.FakeSharedPreferences;
+import com.g15.smarthelper.Scenarios;
+import com.g15.smarthelper.rules.Rule;
+import com.google.android.gms.location.DetectedActivity;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.g15.smarthelper.Scenarios.Scenario.SCENARIO_HOME;
+import static com.g15.smarthelper.Scenarios.Scenario.SCENARIO_MUSIC;
+import static com.g15.smarthelper.Scenarios.Scenario.SCENARIO_WARNING;
+import static org.junit.Assert.*;
+
+/**
+ * Tests that the {@link PreferencesMigration} moves the values of former versions into a
+ * {@link ScenarioStore}, and that {@link Scenarios} batches its writes to the store.
+ */
+public class PreferencesMigrationTest {
+
+    private static final String[] NAMES = {
+            SCENARIO_MUSIC.name(), SCENARIO_WARNING.name(), SCENARIO_HOME.name()};
+
+    private FakeSharedPreferences preferences;
+    private MemoryScenarioStore store;
+
+    @Before
+    public void setUp() {
+        preferences = new FakeSharedPreferences();
+        store = new MemoryScenarioStore(NAMES.length);
+    }
+
+    @Test
+    public void storedValuesAreMigrated() {
+        preferences.edit()
+                .putBoolean("scenarioSCENARIO_WARNING_activated", true)
+                .putBoolean("scenarioSCENARIO_WARNING_location_set", true)
+                .putLong("scenarioSCENARIO_WARNING_lat", Double.doubleToRawLongBits(49.85))
+                .putLong("scenarioSCENARIO_WARNING_lng", Double.doubleToRawLongBits(8.64))
+                .putInt("scenarioSCENARIO_WARNING_radius", 50)
+                .putBoolean("scenarioSCENARIO_WARNING_triggered", true)
+                .putBoolean("scenarioSCENARIO_WARNING_geofence_entered", true)
+                .putBoolean("scenarios_initialized", true)
+                .putInt("current_activity", DetectedActivity.WALKING)
+                .commit();
+
+        assertTrue(PreferencesMigration.migrate(preferences, store, NAMES));
+
+        Scenarios scenarios = new Scenarios(store);
+        assertTrue(scenarios.isScenarioActivated(SCENARIO_WARNING));
+        assertFalse(scenarios.isScenarioActivated(SCENARIO_MUSIC));
+        assertEquals(50, scenarios.getScenarioRadius(SCENARIO_WARNING));
+        assertEquals(-1, scenarios.getScenarioRadius(SCENARIO_HOME));
+        assertTrue(scenarios.getScenariosInitialized());
+        assertEquals(DetectedActivity.WALKING, scenarios.getCurrentActivity());
+
+        Rule rule = scenarios.getRuleTable().getRule(SCENARIO_WARNING.name());
+        assertNotNull(rule);
+        assertEquals(49.85, rule.getFence().getLatitude(), 0);
+        assertEquals(8.64, rule.getFence().getLongitude(), 0);
+        assertTrue(scenarios.getRuleTriggered(rule));
+        assertTrue(scenarios.getRuleGeofenceEntered(rule));
+        assertEquals(1, scenarios.getEnteredRules().length);
+    }
+
+    @Test
+    public void migrationRunsOnce() {
+        preferences.edit().putBoolean("scenarioSCENARIO_MUSIC_activated", true).commit();
+
+        assertTrue(PreferencesMigration.migrate(preferences, store, NAMES));
+        assertTrue(preferences.getAll().isEmpty());
+        int writes = store.getWriteCount();
+
+        assertFalse(PreferencesMigration.migrate(preferences, store, NAMES));
+        assertEquals(writes, store.getWriteCount());
+        assertTrue(new Scenarios(store).isScenarioActivated(SCENARIO_MUSIC));
+    }
+
+    @Test
+    public void fencesAreWrittenTogether() {
+        Scenarios scenarios = new Scenarios(store);
+        int writes = store.getWriteCount();
+
+        scenarios.setScenarioFences(new Scenarios.Scenario[]{SCENARIO_MUSIC, SCENARIO_HOME},
+                new double[]{49.87, 49.88}, new double[]{8.65, 8.63}, new int[]{150, 50});
+
+        assertEquals(writes + 1, store.getWriteCount());
+        assertEquals(150, scenarios.getScenarioRadius(SCENARIO_MUSIC));
+        assertEquals(50, new Scenarios(store).getScenarioRadius(SCENARIO_HOME));
+        assertEquals(2, scenarios.getRuleTable().size());
+    }
+
+    @Test
+    public void stateChangesAreFlushedInOneWrite() {
+        Scenarios scenarios = new Scenarios(store);
+        scenarios.setScenarioFence(SCENARIO_MUSIC, 49.87, 8.65, 150);
+        Rule rule = scenarios.getRuleTable().getRule(SCENARIO_MUSIC.name());
+        int writes = store.getWriteCount();
+
+        scenarios.flushState();
+        assertEquals(writes, store.getWriteCount());
+
+        scenarios.setRuleTriggered(rule, true);
+        scenarios.setRuleGeofenceEntered(rule, true);
+        scenarios.setCurrentActivity(DetectedActivity.RUNNING);
+        scenarios.flushState();
+        assertEquals(writes + 1, store.getWriteCount());
+
+        ScenarioStore.RuleStateRow row = store.readRuleStates().get(SCENARIO_MUSIC.name());
+        assertTrue(row.triggered && row.geofenceEntered);
+        assertEquals(DetectedActivity.RUNNING, store.readCurrentActivity(DetectedActivity.UNKNOWN));
+    }
+}
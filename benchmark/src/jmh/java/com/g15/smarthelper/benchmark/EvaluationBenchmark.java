@@ -0,0 +1,96 @@
+package com.g15.smarthelper.benchmark;
+
+import com.g15.smarthelper.Constants;
+import com.g15.smarthelper.Scenarios;
+import com.g15.smarthelper.engine.ActivityFusion;
+import com.g15.smarthelper.engine.LocationBatch;
+import com.g15.smarthelper.engine.ScenarioEvaluator;
+import com.g15.smarthelper.rules.Rule;
+import com.google.android.gms.location.DetectedActivity;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the full cycle the engine runs for an update: the evaluation of the rules and the
+ * flush of the changed state. An activity update is fused with the previous results first; a
+ * location update is a batch of fixes along a track that enters and leaves fences.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EvaluationBenchmark {
+
+    private static final int TRACK_LENGTH = 1024;
+    private static final int BATCH_SIZE = 4;
+    // 2026-06-01 12:00 UTC.
+    private static final long NOON = 1780315200000L;
+
+    // Alternating results, so the fused activity changes now and then.
+    private static final int[][] TYPES = {
+            {DetectedActivity.WALKING, DetectedActivity.ON_FOOT, DetectedActivity.STILL},
+            {DetectedActivity.STILL, DetectedActivity.TILTING},
+    };
+    private static final int[][] CONFIDENCES = {{75, 75, 20}, {90, 10}};
+
+    @Param({"3", "200"})
+    public int ruleCount;
+
+    private Scenarios scenarios;
+    private ScenarioEvaluator evaluator;
+    private ActivityFusion fusion;
+    private double[] track;
+    private int next;
+    private long time;
+    private int triggers;
+
+    @Setup
+    public void setUp() {
+        scenarios = Fixtures.scenarios(ruleCount, 5);
+        evaluator = new ScenarioEvaluator(scenarios, new ScenarioEvaluator.TriggerListener() {
+            @Override
+            public void onRuleTriggered(Rule rule) {
+                triggers++;
+            }
+        });
+        fusion = new ActivityFusion(Constants.ACTIVITY_WINDOW_SIZE, Constants.CONFIDENCE);
+        track = Fixtures.track(TRACK_LENGTH, 6);
+        time = NOON;
+    }
+
+    @Benchmark
+    public int activityUpdate() {
+        next++;
+        time += Constants.DETECTION_INTERVAL_IN_MILLISECONDS;
+        // Four results in a row per activity.
+        int[] types = TYPES[(next / 4) % TYPES.length];
+        int[] confidences = CONFIDENCES[(next / 4) % CONFIDENCES.length];
+        int activityType = fusion.fuse(types, confidences, types.length);
+        if (activityType != ActivityFusion.NO_DECISION) {
+            evaluator.evaluateActivity(activityType, time);
+        }
+        scenarios.flushState();
+        return triggers;
+    }
+
+    @Benchmark
+    public int locationUpdate() {
+        LocationBatch batch = new LocationBatch(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            next = (next + 1) % TRACK_LENGTH;
+            time += Constants.UPDATE_INTERVAL;
+            batch.add(track[next * 2], track[next * 2 + 1], time, 1.4f);
+        }
+        evaluator.evaluateLocations(batch);
+        scenarios.flushState();
+        return triggers;
+    }
+}
@@ -0,0 +1,81 @@
+package com.g15.smarthelper.benchmark;
+
+import com.g15.smarthelper.fence.Fence;
+import com.g15.smarthelper.fence.FenceIndex;
+import com.g15.smarthelper.fence.Geodesy;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the fence distance checks for locations along a track.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class FenceBenchmark {
+
+    private static final int TRACK_LENGTH = 1024;
+
+    @Param({"3", "200"})
+    public int ruleCount;
+
+    private Fence fence;
+    private FenceIndex index;
+    private double[] track;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        index = Fixtures.scenarios(ruleCount, 2).getRuleTable().getFenceIndex();
+        fence = index.getFences()[0];
+        track = Fixtures.track(TRACK_LENGTH, 3);
+    }
+
+    /**
+     * Moves to the next location of the track.
+     * @return The offset of the location's latitude in the track.
+     */
+    private int nextLocation() {
+        next = (next + 1) % TRACK_LENGTH;
+        return next * 2;
+    }
+
+    @Benchmark
+    public boolean contains() {
+        int i = nextLocation();
+        return fence.contains(track[i], track[i + 1]);
+    }
+
+    @Benchmark
+    public boolean isInsideExitRadius() {
+        int i = nextLocation();
+        return fence.isInsideExitRadius(track[i], track[i + 1]);
+    }
+
+    @Benchmark
+    public double geodesicDistance() {
+        int i = nextLocation();
+        return Geodesy.distance(track[i], track[i + 1], fence.getLatitude(), fence.getLongitude());
+    }
+
+    @Benchmark
+    public Fence[] queryIndex() {
+        int i = nextLocation();
+        return index.query(track[i], track[i + 1]);
+    }
+
+    @Benchmark
+    public double distanceToNearestBoundary() {
+        int i = nextLocation();
+        return index.distanceToNearestBoundary(track[i], track[i + 1]);
+    }
+}
@@ -0,0 +1,82 @@
+package com.g15.smarthelper.benchmark;
+
+import com.g15.smarthelper.Scenarios;
+import com.g15.smarthelper.rules.RuleDefinition;
+import com.google.android.gms.location.DetectedActivity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Builds the scenarios the benchmarks run against. The fences lie around Darmstadt, so the
+ * benchmarked locations are near some of them and far from most.
+ */
+final class Fixtures {
+
+    static final double LATITUDE = 49.8721;
+    static final double LONGITUDE = 8.6512;
+    // About 3 km in both directions.
+    private static final double LATITUDE_SPAN = 0.05;
+    private static final double LONGITUDE_SPAN = 0.08;
+
+    private static final int[] ACTIVITIES = {DetectedActivity.WALKING, DetectedActivity.RUNNING,
+            DetectedActivity.ON_BICYCLE, DetectedActivity.STILL};
+
+    private Fixtures() {
+    }
+
+    /**
+     * Creates scenarios with random rules. The first rule's fence is centered on
+     * {@link #LATITUDE}, {@link #LONGITUDE} with a radius of 100 m and its window covers the day.
+     * @param ruleCount The number of rules.
+     * @param seed The seed of the rules.
+     * @return The scenarios, all enabled.
+     */
+    static Scenarios scenarios(int ruleCount, long seed) {
+        Random random = new Random(seed);
+        Scenarios.Scenario[] actions = Scenarios.Scenario.values();
+        List<RuleDefinition> rules = new ArrayList<>();
+        rules.add(new RuleDefinition("rule0", actions[0], DetectedActivity.WALKING, 0,
+                RuleDefinition.MINUTES_PER_DAY, LATITUDE, LONGITUDE, 100));
+        for (int i = 1; i < ruleCount; i++) {
+            int start = random.nextInt(RuleDefinition.MINUTES_PER_DAY);
+            int end = random.nextBoolean() ? RuleDefinition.MINUTES_PER_DAY
+                    : random.nextInt(RuleDefinition.MINUTES_PER_DAY);
+            rules.add(new RuleDefinition("rule" + i, actions[i % actions.length],
+                    ACTIVITIES[random.nextInt(ACTIVITIES.length)],
+                    end == RuleDefinition.MINUTES_PER_DAY ? 0 : start, end,
+                    LATITUDE + (random.nextDouble() - 0.5) * LATITUDE_SPAN,
+                    LONGITUDE + (random.nextDouble() - 0.5) * LONGITUDE_SPAN,
+                    50 + random.nextInt(250)));
+        }
+
+        Scenarios scenarios = new Scenarios(new MemoryScenarioStore(Scenarios.Scenario.values().length));
+        scenarios.setRuleDefinitions(rules);
+        for (Scenarios.Scenario scenario : actions) {
+            scenarios.enableScenario(scenario);
+        }
+        return scenarios;
+    }
+
+    /**
+     * Creates a random track of locations around the fences.
+     * @param length The number of locations.
+     * @param seed The seed of the track.
+     * @return The latitudes and longitudes, interleaved.
+     */
+    static double[] track(int length, long seed) {
+        Random random = new Random(seed);
+        double[] track = new double[length * 2];
+        double latitude = LATITUDE;
+        double longitude = LONGITUDE;
+        for (int i = 0; i < length; i++) {
+            // Steps of up to about 40 m, pulled back towards the center.
+            latitude += (random.nextDouble() - 0.5) * 0.0007 + (LATITUDE - latitude) * 0.01;
+            longitude += (random.nextDouble() - 0.5) * 0.0011 + (LONGITUDE - longitude) * 0.01;
+            track[i * 2] = latitude;
+            track[i * 2 + 1] = longitude;
+        }
+        return track;
+    }
+}
@@ -0,0 +1,92 @@
+package com.g15.smarthelper.benchmark;
+
+import com.g15.smarthelper.store.ScenarioStore;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link ScenarioStore} that keeps the values in memory only, so the benchmarks measure the
+ * evaluation and not the stand-in database.
+ */
+class MemoryScenarioStore implements ScenarioStore {
+
+    private final ScenarioRow[] scenarios;
+    private final Map<String, RuleStateRow> ruleStates = new HashMap<>();
+    private boolean initialized;
+    private String rules;
+    private Integer currentActivity;
+
+    /**
+     * Creates an empty store.
+     * @param scenarioCount The number of scenarios.
+     */
+    MemoryScenarioStore(int scenarioCount) {
+        scenarios = new ScenarioRow[scenarioCount];
+        for (int i = 0; i < scenarioCount; i++) {
+            scenarios[i] = new ScenarioRow(false, false, 0, 0, 0);
+        }
+    }
+
+    @Override
+    public synchronized ScenarioRow[] readScenarios() {
+        return scenarios.clone();
+    }
+
+    @Override
+    public synchronized void writeActivated(int scenario, boolean activated) {
+        ScenarioRow row = scenarios[scenario];
+        scenarios[scenario] = new ScenarioRow(activated, row.locationSet, row.latitude,
+                row.longitude, row.radius);
+    }
+
+    @Override
+    public synchronized void writeFences(int[] scenarios, double[] latitudes,
+                                         double[] longitudes, int[] radii) {
+        for (int i = 0; i < scenarios.length; i++) {
+            this.scenarios[scenarios[i]] = new ScenarioRow(this.scenarios[scenarios[i]].activated,
+                    true, latitudes[i], longitudes[i], radii[i]);
+        }
+    }
+
+    @Override
+    public synchronized boolean readInitialized() {
+        return initialized;
+    }
+
+    @Override
+    public synchronized void writeInitialized() {
+        initialized = true;
+    }
+
+    @Override
+    public synchronized String readRules() {
+        return rules;
+    }
+
+    @Override
+    public synchronized void writeRules(String json) {
+        rules = json;
+    }
+
+    @Override
+    public synchronized int readCurrentActivity(int defaultActivity) {
+        return currentActivity != null ? currentActivity : defaultActivity;
+    }
+
+    @Override
+    public synchronized Map<String, RuleStateRow> readRuleStates() {
+        return new HashMap<>(ruleStates);
+    }
+
+    @Override
+    public synchronized void writeState(int currentActivity, List<RuleStateRow> ruleStates) {
+        if (currentActivity != ACTIVITY_UNCHANGED) {
+            this.currentActivity = currentActivity;
+        }
+        for (RuleStateRow row : ruleStates) {
+            this.ruleStates.put(row.ruleKey, row);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.g15.smarthelper.benchmark;
+
+import com.g15.smarthelper.Scenarios;
+import com.g15.smarthelper.rules.Rule;
+import com.google.android.gms.location.DetectedActivity;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the getters and setters of {@link Scenarios} that every sensor event calls.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ScenariosBenchmark {
+
+    @Param({"3", "200"})
+    public int ruleCount;
+
+    private Scenarios scenarios;
+    private Rule rule;
+    private boolean triggered;
+
+    @Setup
+    public void setUp() {
+        scenarios = Fixtures.scenarios(ruleCount, 1);
+        rule = scenarios.getRuleTable().getRules()[ruleCount - 1];
+        scenarios.setRuleGeofenceEntered(rule, true);
+        scenarios.flushState();
+    }
+
+    @Benchmark
+    public boolean isScenarioActivated() {
+        return scenarios.isScenarioActivated(Scenarios.Scenario.SCENARIO_WARNING);
+    }
+
+    @Benchmark
+    public int getCurrentActivity() {
+        return scenarios.getCurrentActivity();
+    }
+
+    @Benchmark
+    public boolean getRuleTriggered() {
+        return scenarios.getRuleTriggered(rule);
+    }
+
+    @Benchmark
+    public boolean getRuleGeofenceEntered() {
+        return scenarios.getRuleGeofenceEntered(rule);
+    }
+
+    @Benchmark
+    public Rule[] getEnteredRules() {
+        return scenarios.getEnteredRules();
+    }
+
+    @Benchmark
+    public Rule[] getRulesForActivity() {
+        return scenarios.getRuleTable().getRulesForActivity(DetectedActivity.WALKING);
+    }
+
+    /**
+     * Setting the value a rule already has, which most updates do.
+     */
+    @Benchmark
+    public void setRuleTriggeredUnchanged() {
+        scenarios.setRuleTriggered(rule, false);
+    }
+
+    /**
+     * Changing the state of a rule and persisting it, as when a rule triggers.
+     */
+    @Benchmark
+    public void setRuleTriggeredAndFlush() {
+        triggered = !triggered;
+        scenarios.setRuleTriggered(rule, triggered);
+        scenarios.flushState();
+    }
+
+    @Benchmark
+    public void setCurrentActivityAndFlush() {
+        triggered = !triggered;
+        scenarios.setCurrentActivity(triggered ? DetectedActivity.WALKING : DetectedActivity.STILL);
+        scenarios.flushState();
+    }
+}
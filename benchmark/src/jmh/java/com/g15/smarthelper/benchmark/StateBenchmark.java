@@ -0,0 +1,67 @@
+package com.g15.smarthelper.benchmark;
+
+import com.g15.smarthelper.state.EngineState;
+import com.g15.smarthelper.state.StateSnapshot;
+import com.google.android.gms.location.DetectedActivity;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures publishing the updates to the {@link EngineState} while the UI is subscribed. The
+ * observer does not read the state between the updates, like a UI waiting for the next frame.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class StateBenchmark {
+
+    private final EngineState state = EngineState.getInstance();
+    private final StateSnapshot snapshot = new StateSnapshot();
+    private EngineState.Subscription subscription;
+    private long time;
+    private int notifications;
+
+    @Setup
+    public void setUp() {
+        subscription = state.subscribe(new EngineState.Observer() {
+            @Override
+            public void onStateChanged() {
+                notifications++;
+            }
+        });
+    }
+
+    @TearDown
+    public void tearDown() {
+        subscription.cancel();
+    }
+
+    @Benchmark
+    public void setLocation() {
+        time += 20000;
+        state.setLocation(49.8727, 8.6312, time);
+    }
+
+    @Benchmark
+    public void setActivity() {
+        time++;
+        state.setActivity((time & 1) == 0 ? DetectedActivity.WALKING : DetectedActivity.STILL);
+    }
+
+    @Benchmark
+    public long setLocationAndRead() {
+        time += 20000;
+        state.setLocation(49.8727, 8.6312, time);
+        subscription.read(snapshot);
+        return snapshot.getVersion();
+    }
+}
@@ -0,0 +1,62 @@
+package com.g15.smarthelper.benchmark;
+
+import com.g15.smarthelper.Scenarios;
+import com.g15.smarthelper.rules.Rule;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time window checks of {@link Scenarios#isInTimeFrame(Rule, long)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TimeFrameBenchmark {
+
+    // 2026-06-01 12:00 UTC.
+    private static final long NOON = 1780315200000L;
+
+    @Param({"3", "200"})
+    public int ruleCount;
+
+    private Scenarios scenarios;
+    private Rule[] rules;
+    private int next;
+    private long time;
+
+    @Setup
+    public void setUp() {
+        scenarios = Fixtures.scenarios(ruleCount, 4);
+        rules = scenarios.getRuleTable().getRules();
+        time = NOON;
+    }
+
+    /**
+     * Checks the rules one after another at the same instant, as for the rules of an update.
+     */
+    @Benchmark
+    public boolean sameInstant() {
+        next = (next + 1) % rules.length;
+        return scenarios.isInTimeFrame(rules[next], NOON);
+    }
+
+    /**
+     * Checks a rule at instants 5 seconds apart, the interval of the activity updates, so the
+     * time passes window boundaries.
+     */
+    @Benchmark
+    public boolean advancingTime() {
+        next = (next + 1) % rules.length;
+        time += 5000;
+        return scenarios.isInTimeFrame(rules[next], time);
+    }
+}
@@ -0,0 +1,19 @@
+package android.content;
+
+import java.io.File;
+
+/**
+ * Stand-in for the Android class, only the methods the benchmarked code calls.
+ */
+public abstract class Context {
+
+    public static final int MODE_PRIVATE = 0;
+
+    public abstract Context getApplicationContext();
+
+    public abstract SharedPreferences getSharedPreferences(String name, int mode);
+
+    public abstract File getFilesDir();
+
+    public abstract File getExternalFilesDir(String type);
+}
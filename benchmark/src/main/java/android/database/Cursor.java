@@ -0,0 +1,22 @@
+package android.database;
+
+import java.io.Closeable;
+
+/**
+ * Stand-in for the Android interface, only the methods the benchmarked code calls.
+ */
+public interface Cursor extends Closeable {
+
+    boolean moveToFirst();
+
+    boolean moveToNext();
+
+    int getInt(int columnIndex);
+
+    double getDouble(int columnIndex);
+
+    String getString(int columnIndex);
+
+    @Override
+    void close();
+}
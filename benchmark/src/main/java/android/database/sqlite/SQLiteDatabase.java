@@ -0,0 +1,23 @@
+package android.database.sqlite;
+
+import android.database.Cursor;
+
+/**
+ * Stand-in for the Android class, only the methods the benchmarked code calls.
+ */
+public abstract class SQLiteDatabase {
+
+    public abstract void beginTransaction();
+
+    public abstract void setTransactionSuccessful();
+
+    public abstract void endTransaction();
+
+    public abstract void execSQL(String sql);
+
+    public abstract void execSQL(String sql, Object[] bindArgs);
+
+    public abstract SQLiteStatement compileStatement(String sql);
+
+    public abstract Cursor rawQuery(String sql, String[] selectionArgs);
+}
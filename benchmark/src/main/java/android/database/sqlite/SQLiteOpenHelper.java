@@ -0,0 +1,27 @@
+package android.database.sqlite;
+
+import android.content.Context;
+
+/**
+ * Stand-in for the Android class, only the methods the benchmarked code calls. The benchmarks
+ * never open a database.
+ */
+public abstract class SQLiteOpenHelper {
+
+    public SQLiteOpenHelper(Context context, String name, Object factory, int version) {
+    }
+
+    public abstract void onCreate(SQLiteDatabase db);
+
+    public abstract void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion);
+
+    public void onOpen(SQLiteDatabase db) {
+    }
+
+    public void setWriteAheadLoggingEnabled(boolean enabled) {
+    }
+
+    public SQLiteDatabase getWritableDatabase() {
+        throw new UnsupportedOperationException("The benchmarks have no database.");
+    }
+}
@@ -0,0 +1,17 @@
+package android.database.sqlite;
+
+/**
+ * Stand-in for the Android class, only the methods the benchmarked code calls.
+ */
+public abstract class SQLiteStatement {
+
+    public abstract void bindLong(int index, long value);
+
+    public abstract void bindDouble(int index, double value);
+
+    public abstract void bindString(int index, String value);
+
+    public abstract long executeInsert();
+
+    public abstract int executeUpdateDelete();
+}
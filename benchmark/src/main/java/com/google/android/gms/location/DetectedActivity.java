@@ -0,0 +1,16 @@
+package com.google.android.gms.location;
+
+/**
+ * Stand-in for the Play services class, only the activity types.
+ */
+public class DetectedActivity {
+
+    public static final int IN_VEHICLE = 0;
+    public static final int ON_BICYCLE = 1;
+    public static final int ON_FOOT = 2;
+    public static final int STILL = 3;
+    public static final int UNKNOWN = 4;
+    public static final int TILTING = 5;
+    public static final int WALKING = 7;
+    public static final int RUNNING = 8;
+}